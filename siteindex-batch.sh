@@ -0,0 +1,9 @@
+#!/usr/bin/env bash
+
+RESUME=
+if [ "$1" == "--resume" ]; then
+  RESUME=--resume
+  shift
+fi
+export BATCH_FILE=$1
+java -cp . -jar build/libs/siteindex-0.0.1-SNAPSHOT.jar $RESUME
@@ -0,0 +1,6 @@
+#!/usr/bin/env bash
+
+export DIFF_BEFORE=$1
+export DIFF_AFTER=$2
+export OUTPUT_FILE=$3
+java -cp . -jar build/libs/siteindex-0.0.1-SNAPSHOT.jar
@@ -0,0 +1,5 @@
+#!/usr/bin/env bash
+
+export REPORT_SNAPSHOT=$1
+export OUTPUT_FILE=$2
+java -cp . -jar build/libs/siteindex-0.0.1-SNAPSHOT.jar
@@ -0,0 +1,13 @@
+#!/usr/bin/env bash
+
+export HOMEPAGE_URL=$1
+export OUTPUT_FILE=$2
+export SITEINDEX_SHARD_COUNT=$3
+if [ -n "$4" ]; then
+  export SNAPSHOT_FILE=$4
+fi
+for ((i = 1; i < SITEINDEX_SHARD_COUNT; i++)); do
+  SITEINDEX_SHARD_INDEX=$i java -cp . -jar build/libs/siteindex-0.0.1-SNAPSHOT.jar &
+done
+SITEINDEX_SHARD_INDEX=0 java -cp . -jar build/libs/siteindex-0.0.1-SNAPSHOT.jar
+wait
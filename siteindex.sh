@@ -1,5 +1,13 @@
 #!/usr/bin/env bash
 
+RESUME=
+if [ "$1" == "--resume" ]; then
+  RESUME=--resume
+  shift
+fi
 export HOMEPAGE_URL=$1
 export OUTPUT_FILE=$2
-java -cp . -jar build/libs/siteindex-0.0.1-SNAPSHOT.jar
\ No newline at end of file
+if [ -n "$3" ]; then
+  export SNAPSHOT_FILE=$3
+fi
+java -cp . -jar build/libs/siteindex-0.0.1-SNAPSHOT.jar $RESUME
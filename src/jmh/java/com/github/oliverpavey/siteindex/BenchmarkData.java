@@ -0,0 +1,119 @@
+package com.github.oliverpavey.siteindex;
+
+import com.github.oliverpavey.siteindex.graph.SiteModelBuilder;
+import com.github.oliverpavey.siteindex.model.PageContent;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Data shared by the benchmarks: the pages of the bundled test site, and synthetic pages and site
+ * graphs of a chosen size. Synthetic data uses a fixed seed, so runs are comparable.
+ */
+public class BenchmarkData {
+
+    public static final String SITE = "http://sitename.com/";
+    public static final List<String> TESTSITE_PAGES = List.of("index.html", "about.html", "exercise.html",
+            "garden.html", "homeware.html", "tools.html");
+
+    static final long SEED = 20210611L;
+
+    /**
+     * @return The HTML of each page of the test site (from src/test/resources/testsite).
+     */
+    public static List<String> testsitePages() {
+
+        final List<String> pages = new ArrayList<>();
+        for (String page : TESTSITE_PAGES) {
+            try (InputStream in = BenchmarkData.class.getClassLoader().getResourceAsStream("testsite/" + page)) {
+                if (in == null)
+                    throw new IllegalStateException("Test site page not found: " + page);
+                pages.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Build a large, markup heavy page, with nested elements, inline script, links and images.
+     *
+     * @param blocks The number of repeated blocks of content.
+     * @return The HTML of the page.
+     */
+    public static String syntheticPage(int blocks) {
+
+        final Random random = new Random(SEED);
+        final StringBuilder html = new StringBuilder(blocks * 400);
+        html.append("<!DOCTYPE html>\n<html lang=\"en\"><head><meta charset=\"utf-8\">")
+                .append("<title>Synthetic &amp; large page</title>")
+                .append("<link rel=\"stylesheet\" href=\"css/site.css\">")
+                .append("<script src=\"js/site.js\"></script></head>\n<body>\n");
+        for (int i = 0; i < blocks; i++) {
+            html.append("<div class=\"card\" id=\"card").append(i).append("\"><!-- card ").append(i).append(" -->")
+                    .append("<h3 class=\"card-title\">Item ").append(i).append("</h3>")
+                    .append("<p class=\"card-text\">Some <em>text</em> with <b>markup</b> &mdash; and ")
+                    .append("<a href=\"section").append(random.nextInt(20)).append("/page").append(random.nextInt(500))
+                    .append(".html?ref=").append(i).append("#details\">a link</a>.</p>")
+                    .append("<img src=\"images/img").append(random.nextInt(100)).append(".jpg\" ")
+                    .append("srcset=\"images/img").append(i % 100).append("-2x.jpg 2x\" alt=\"item\">")
+                    .append("<a href=\"https://example").append(random.nextInt(10)).append(".com/\">external</a>")
+                    .append("<script>var x").append(i).append(" = '<a href=\"not-a-link.html\">';</script>")
+                    .append("</div>\n");
+        }
+        return html.append("</body></html>\n").toString();
+    }
+
+    /**
+     * Build the content of each page of a synthetic site, with links chosen at random between pages.
+     *
+     * @param pages        The number of pages.
+     * @param linksPerPage The number of links on each page.
+     * @return The content of each page, with page i at URI syntheticUri(i).
+     */
+    public static List<PageContent> syntheticSite(int pages, int linksPerPage) {
+
+        final Random random = new Random(SEED);
+        final List<PageContent> contents = new ArrayList<>(pages);
+        for (int page = 0; page < pages; page++) {
+            final PageContent content = new PageContent();
+            content.setTitle("Page " + page);
+            for (int link = 0; link < linksPerPage; link++)
+                content.getLinks().add(syntheticUri(random.nextInt(pages)));
+            content.getExternalLinks().add("https://example" + random.nextInt(50) + ".com/");
+            content.getResources().add(SITE + "images/img" + random.nextInt(200) + ".jpg");
+            content.getResources().add(SITE + "css/site.css");
+            contents.add(content);
+        }
+        return contents;
+    }
+
+    /**
+     * Build the model of a synthetic site.
+     *
+     * @param builder  The builder of the model.
+     * @param contents The content of each page. (See syntheticSite.)
+     * @return The model.
+     */
+    public static SiteScan buildSite(SiteModelBuilder builder, List<PageContent> contents) {
+
+        for (int page = 0; page < contents.size(); page++)
+            builder.addPage(syntheticUri(page), page == 0 ? 0 : 1, contents.get(page));
+        return builder.build(SITE, syntheticUri(0));
+    }
+
+    /**
+     * @param page The number of a synthetic page.
+     * @return The URI of the page.
+     */
+    public static String syntheticUri(int page) {
+        return SITE + "section" + (page % 20) + "/page" + page + ".html";
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.oliverpavey.siteindex;
+
+import com.github.oliverpavey.siteindex.graph.TreeSiteModelBuilder;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Benchmarks of rendering the report of a synthetic site: to a String, then removing blank lines
+ * (applyReportTemplate), or streamed through a filter (writeReport).
+ */
+@State(Scope.Benchmark)
+public class ReportBenchmark {
+
+    @Param({"100", "2000"})
+    public int pages;
+
+    private SiteindexAutorun autorun;
+    private SiteScan siteScan;
+
+    @Setup
+    public void setup() {
+        final ClassLoaderTemplateResolver templateResolver = new ClassLoaderTemplateResolver();
+        templateResolver.setPrefix("templates/");
+        templateResolver.setTemplateMode(TemplateMode.HTML);
+        templateResolver.setCharacterEncoding("UTF-8");
+        final SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(templateResolver);
+
+        autorun = new SiteindexAutorun(null, templateEngine);
+        siteScan = BenchmarkData.buildSite(new TreeSiteModelBuilder(), BenchmarkData.syntheticSite(pages, 20));
+    }
+
+    @Benchmark
+    public String applyReportTemplate() {
+        return autorun.applyReportTemplate(siteScan);
+    }
+
+    @Benchmark
+    public void writeReport() throws IOException {
+        autorun.writeReport(siteScan, Writer.nullWriter());
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import com.github.oliverpavey.siteindex.BenchmarkData;
+import com.github.oliverpavey.siteindex.model.PageContent;
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Benchmarks of building the model of a synthetic site graph, and of walking every link in it,
+ * with each kind of SiteModelBuilder.
+ */
+@State(Scope.Benchmark)
+public class SiteModelBenchmark {
+
+    @Param({"tree", "compact"})
+    public String model;
+
+    @Param({"10000"})
+    public int pages;
+
+    @Param({"20"})
+    public int linksPerPage;
+
+    private List<PageContent> contents;
+    private SiteScan siteScan;
+
+    @Setup
+    public void setup() {
+        contents = BenchmarkData.syntheticSite(pages, linksPerPage);
+        siteScan = build();
+    }
+
+    @Benchmark
+    public SiteScan buildModel() {
+        return build();
+    }
+
+    @Benchmark
+    public void walkLinks(Blackhole blackhole) {
+        for (PageScan pageScan : siteScan.getUriToPageScan().values()) {
+            for (PageScan link : pageScan.getLinks())
+                blackhole.consume(link.getUri());
+        }
+    }
+
+    private SiteScan build() {
+        final SiteModelBuilder builder = model.equals("tree") ? new TreeSiteModelBuilder() : new CompactSiteModelBuilder();
+        return BenchmarkData.buildSite(builder, contents);
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.oliverpavey.siteindex.scanner;
+
+import com.github.oliverpavey.siteindex.BenchmarkData;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Benchmarks of extracting the title and references of pages: one JSoup select per finder template
+ * (as the scanner used to), one walk of a JSoup document, and the tag tokenizer of fast extraction.
+ */
+@State(Scope.Benchmark)
+public class ExtractionBenchmark {
+
+    static final String LINK_TEMPLATES = "a.href";
+    static final String RESOURCE_TEMPLATES = "script.src,img.src,img.srcset,img.data-src,source.src,source.srcset,link.href";
+
+    @Param({"testsite", "synthetic"})
+    public String pages;
+
+    private List<String> html;
+    private ReferenceFinder referenceFinder;
+
+    @Setup
+    public void setup() {
+        html = pages.equals("testsite") ? BenchmarkData.testsitePages() : List.of(BenchmarkData.syntheticPage(2_000));
+        referenceFinder = ReferenceFinder.compile(LINK_TEMPLATES, RESOURCE_TEMPLATES);
+    }
+
+    @Benchmark
+    public void jsoupSelectPerTemplate(Blackhole blackhole) {
+        for (String page : html) {
+            final Document doc = Jsoup.parse(page, BenchmarkData.SITE);
+            blackhole.consume(doc.title());
+            for (String templates : new String[]{LINK_TEMPLATES, RESOURCE_TEMPLATES}) {
+                for (String template : templates.split(",")) {
+                    final String[] split = template.split("\\.");
+                    for (Element tag : doc.select(split[0]))
+                        blackhole.consume(tag.attr(split[1]));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void jsoupSingleWalk(Blackhole blackhole) {
+        for (String page : html) {
+            final Document doc = Jsoup.parse(page, BenchmarkData.SITE);
+            blackhole.consume(doc.title());
+            referenceFinder.find(doc, (tagName, attrName, value) -> blackhole.consume(value),
+                    (tagName, attrName, value) -> blackhole.consume(value));
+        }
+    }
+
+    @Benchmark
+    public void tagTokenizer(Blackhole blackhole) {
+        for (String page : html) {
+            blackhole.consume(referenceFinder.find(new TagTokenizer(page),
+                    (tagName, attrName, value) -> blackhole.consume(value),
+                    (tagName, attrName, value) -> blackhole.consume(value)));
+        }
+    }
+}
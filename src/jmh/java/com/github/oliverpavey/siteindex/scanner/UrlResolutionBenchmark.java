@@ -0,0 +1,45 @@
+package com.github.oliverpavey.siteindex.scanner;
+
+import com.github.oliverpavey.siteindex.tools.TextUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of resolving the references found on a page, and of the URL routines of TextUtils.
+ */
+@State(Scope.Benchmark)
+public class UrlResolutionBenchmark {
+
+    static final String PAGE_URL = "http://sitename.com/section/products/page.html";
+    static final String[] REFS = {
+            "about.html", "images/logo.svg", "css/site.css", "detail.html#reviews", "../index.html",
+            "/contact.html", "?page=2", "//cdn.example.com/lib.js", "https://example.com/", "./item.html?id=42",
+    };
+
+    @Benchmark
+    public void absoluteRefParsingBaseEachTime(Blackhole blackhole) {
+        for (String ref : REFS)
+            blackhole.consume(new AbsoluteRef(PAGE_URL, ref));
+    }
+
+    @Benchmark
+    public void absoluteRefParsingBaseOnce(Blackhole blackhole) {
+        final UrlBase base = UrlBase.parse(PAGE_URL);
+        for (String ref : REFS)
+            blackhole.consume(new AbsoluteRef(base, ref));
+    }
+
+    @Benchmark
+    public void joinUrl(Blackhole blackhole) {
+        for (String ref : REFS)
+            blackhole.consume(TextUtils.joinUrl(PAGE_URL, ref));
+    }
+
+    @Benchmark
+    public void extractDomain(Blackhole blackhole) {
+        for (String ref : REFS)
+            blackhole.consume(TextUtils.extractDomain(PAGE_URL));
+    }
+}
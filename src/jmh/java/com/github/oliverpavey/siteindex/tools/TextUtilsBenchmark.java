@@ -0,0 +1,46 @@
+package com.github.oliverpavey.siteindex.tools;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Benchmarks of removing the blank lines left in a report by its template: the whole report as
+ * a String, or streamed through a BlankLineFilterWriter.
+ */
+@State(Scope.Benchmark)
+public class TextUtilsBenchmark {
+
+    @Param({"1000", "50000"})
+    public int lines;
+
+    private String report;
+
+    @Setup
+    public void setup() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append("        <li>http://sitename.com/section/page").append(i).append(".html</li>\n");
+            if (i % 3 == 0)
+                text.append("            \r\n\n");
+        }
+        report = text.toString();
+    }
+
+    @Benchmark
+    public String removeBlankLines() {
+        return TextUtils.removeBlankLines(report);
+    }
+
+    @Benchmark
+    public void blankLineFilterWriter() throws IOException {
+        try (Writer writer = new BlankLineFilterWriter(Writer.nullWriter())) {
+            writer.write(report);
+        }
+    }
+}
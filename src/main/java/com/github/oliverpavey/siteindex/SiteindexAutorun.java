@@ -1,7 +1,13 @@
 package com.github.oliverpavey.siteindex;
 
+import com.github.oliverpavey.siteindex.batch.BatchEntry;
+import com.github.oliverpavey.siteindex.batch.BatchResult;
 import com.github.oliverpavey.siteindex.model.SiteScan;
 import com.github.oliverpavey.siteindex.scanner.SiteScanner;
+import com.github.oliverpavey.siteindex.snapshot.SnapshotDiff;
+import com.github.oliverpavey.siteindex.snapshot.SnapshotSource;
+import com.github.oliverpavey.siteindex.snapshot.Snapshots;
+import com.github.oliverpavey.siteindex.tools.BlankLineFilterWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
@@ -11,24 +17,82 @@ import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
 import java.io.*;
-
-import static com.github.oliverpavey.siteindex.tools.TextUtils.removeBlankLines;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Starts the site scan, using the environment variable parameters to identify the site to scan
  * and the output file to write.  (See the launcher: 'siteindex.sh'.)
+ * <p>
+ * Optionally the scan is also saved as a snapshot. When two snapshots are given instead of a site
+ * to scan, the snapshots are compared and a report of the changes is written.  (See the launcher:
+ * 'siteindex-diff.sh'.)  When one snapshot is given instead of a site to scan, the report is
+ * rendered from the snapshot.  (See the launcher: 'siteindex-report.sh'.)
+ * <p>
+ * When a batch file is given instead of a site to scan, each site it lists is scanned, several at
+ * once, and a summary of the batch is logged.  (See the launcher: 'siteindex-batch.sh'.)
+ * <p>
+ * In a sharded crawl, several processes scan one site together; only shard 0 writes the report
+ * and snapshot.  (See the launcher: 'siteindex-shards.sh'.)
+ * <p>
+ * With the '--resume' argument, a scan continues from the crawl journal of an earlier scan of the
+ * site which did not complete.
  */
 @Slf4j
 @Profile("!test")
 @Component
 public class SiteindexAutorun implements CommandLineRunner {
 
+    static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    static final String ARG_RESUME = "--resume";
+    static final long NANOS_PER_MILLI = 1_000_000;
+
     @Value("#{environment.HOMEPAGE_URL}")
     String homepageUrl;
 
     @Value("#{environment.OUTPUT_FILE}")
     String outputFile;
 
+    @Value("#{environment.SNAPSHOT_FILE}")
+    String snapshotFile;
+
+    @Value("#{environment.DIFF_BEFORE}")
+    String diffBefore;
+
+    @Value("#{environment.DIFF_AFTER}")
+    String diffAfter;
+
+    @Value("#{environment.REPORT_SNAPSHOT}")
+    String reportSnapshot;
+
+    @Value("#{environment.BATCH_FILE}")
+    String batchFile;
+
+    @Value("${siteindex.snapshot.format}")
+    String snapshotFormat;
+
+    @Value("${siteindex.batch.concurrent-sites}")
+    int concurrentSites;
+
+    @Value("${siteindex.shard.count}")
+    int shardCount;
+
+    @Value("${siteindex.shard.index}")
+    int shardIndex;
+
+    boolean resume;
+
     final SiteScanner siteScanner;
 
     final TemplateEngine templateEngine;
@@ -48,14 +112,22 @@ public class SiteindexAutorun implements CommandLineRunner {
      * The main method 'run()' from the Spring CommandLineRunner.
      * When this method terminates the program will exit.
      *
-     * @param args The command line arguments. Not used.
+     * @param args The command line arguments: '--resume' to resume an earlier scan.
      */
     @Override
     public void run(String... args) {
 
         syntax();
+        resume = Arrays.asList(args).contains(ARG_RESUME);
         try {
-            runScanner(homepageUrl, outputFile);
+            if (diffBefore != null && diffAfter != null)
+                runDiff(diffBefore, diffAfter, outputFile);
+            else if (reportSnapshot != null)
+                runReport(reportSnapshot, outputFile);
+            else if (batchFile != null)
+                runBatch(batchFile);
+            else
+                runScanner(homepageUrl, outputFile, snapshotFile);
 
         } catch (Exception e) {
             log.warn("An unexpected problem occurred during processing", e);
@@ -66,7 +138,11 @@ public class SiteindexAutorun implements CommandLineRunner {
      * Print the usage syntax.
      */
     private void syntax() {
-        log.info("Usage: siteindex.sh '<homepage-url>' '<output-file>'");
+        log.info("Usage: siteindex.sh [--resume] '<homepage-url>' '<output-file>' ['<snapshot-file>']");
+        log.info("   or: siteindex-diff.sh '<before-snapshot-file>' '<after-snapshot-file>' '<output-file>'");
+        log.info("   or: siteindex-report.sh '<snapshot-file>' '<output-file>'");
+        log.info("   or: siteindex-batch.sh [--resume] '<batch-file>'");
+        log.info("   or: siteindex-shards.sh '<homepage-url>' '<output-file>' <shards> ['<snapshot-file>']");
     }
 
     /**
@@ -74,17 +150,183 @@ public class SiteindexAutorun implements CommandLineRunner {
      * and writing the output to a file.
      *
      * @param homepageUrl The URL of the page from which the scan should start. (Typically the homepage.)
-     * @param outputFile  The filename to which the output should be written.
-     * @return The template output. This helps to make the method testable.
+     * @param outputFile  The filename to which the output should be written, or null to return the output.
+     * @return The template output if no output file is given (this helps to make the method testable),
+     * otherwise null.
      * @throws IOException Any exception which occurs whilst writing the output to disk.
      */
     String runScanner(final String homepageUrl, final String outputFile) throws IOException {
+        return runScanner(homepageUrl, outputFile, null);
+    }
+
+    /**
+     * Orchestrate running the site scanner, processing the output with our Thymeleaf template,
+     * and writing the output to a file. Optionally save a snapshot of the scan.
+     * <p>
+     * The report is streamed to the file as it is generated (removing blank lines as it goes),
+     * so the memory needed does not grow with the size of the report.
+     *
+     * @param homepageUrl  The URL of the page from which the scan should start. (Typically the homepage.)
+     * @param outputFile   The filename to which the output should be written, or null to return the output.
+     * @param snapshotFile The filename to which the snapshot should be written, or null for no snapshot.
+     * @return The template output if no output file is given (this helps to make the method testable),
+     * otherwise null.
+     * @throws IOException Any exception which occurs whilst writing the output to disk.
+     */
+    String runScanner(final String homepageUrl, final String outputFile, final String snapshotFile) throws IOException {
+
+        if (shardCount > 1 && shardIndex != 0) {
+            siteScanner.scan(homepageUrl, resume); // shard 0 reports the site
+            return null;
+        }
+        final SiteScan siteScan = scanSite(homepageUrl, snapshotFile);
+        return saveReport(siteScan, outputFile);
+    }
 
-        SiteScan siteScan = siteScanner.scan(homepageUrl).orElseThrow();
-        String xhtml = removeBlankLines(applyReportTemplate(siteScan));
-        if (outputFile != null)
-            saveTextToFile(xhtml, outputFile);
-        return xhtml;
+    /**
+     * Scan each site listed in a batch file, writing the report (and optionally snapshot) of each.
+     * Sites are scanned concurrently, up to the configured number at once, in the order listed;
+     * the pages scanned at once across all the sites are limited by the CrawlBudget.
+     *
+     * @param batchFile The filename of the batch file. (See BatchEntry for its format.)
+     * @return The summary of the batch, with the time taken by each site.
+     * @throws IOException Any exception reading the batch file.
+     */
+    String runBatch(final String batchFile) throws IOException {
+
+        final List<BatchEntry> entries;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(batchFile), StandardCharsets.UTF_8)) {
+            entries = BatchEntry.read(reader);
+        }
+        log.info("Batch commenced: {} sites, {} at a time", entries.size(), Math.max(1, concurrentSites));
+
+        final long start = System.nanoTime();
+        final ExecutorService sites = Executors.newFixedThreadPool(Math.max(1, concurrentSites));
+        final List<BatchResult> results = new ArrayList<>();
+        try {
+            final List<Future<BatchResult>> futures = new ArrayList<>();
+            for (BatchEntry entry : entries)
+                futures.add(sites.submit(() -> runBatchEntry(entry)));
+            for (Future<BatchResult> future : futures)
+                results.add(future.get());
+
+        } catch (InterruptedException e) {
+            log.warn("Batch interrupted: {}", batchFile);
+            Thread.currentThread().interrupt();
+
+        } catch (ExecutionException e) {
+            log.warn("Problem running batch: {}", e.getCause().getMessage(), e.getCause());
+
+        } finally {
+            sites.shutdownNow();
+        }
+
+        final String summary = BatchResult.summary(results, (System.nanoTime() - start) / NANOS_PER_MILLI);
+        log.info("{}", summary);
+        return summary;
+    }
+
+    /**
+     * Scan one site of a batch, writing its report (and optionally snapshot).
+     *
+     * @param entry The site to scan.
+     * @return The result, recording the problem if the scan failed.
+     */
+    private BatchResult runBatchEntry(final BatchEntry entry) {
+
+        final long start = System.nanoTime();
+        try {
+            final SiteScan siteScan = scanSite(entry.getHomepageUrl(), entry.getSnapshotFile());
+            saveReport(siteScan, entry.getOutputFile());
+            return new BatchResult(entry, siteScan.getUriToPageScan().size(),
+                    (System.nanoTime() - start) / NANOS_PER_MILLI, null);
+
+        } catch (IOException | RuntimeException e) {
+            log.warn("Problem scanning site '{}': {}", entry.getHomepageUrl(), e.toString());
+            return new BatchResult(entry, 0, (System.nanoTime() - start) / NANOS_PER_MILLI,
+                    e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    /**
+     * Scan a site, and optionally save a snapshot of the scan.
+     *
+     * @param homepageUrl  The URL of the page from which the scan should start. (Typically the homepage.)
+     * @param snapshotFile The filename to which the snapshot should be written, or null for no snapshot.
+     * @return The model of the site built by the scan.
+     * @throws IOException If the site could not be scanned, or any exception writing the snapshot.
+     */
+    private SiteScan scanSite(final String homepageUrl, final String snapshotFile) throws IOException {
+
+        final SiteScan siteScan = siteScanner.scan(homepageUrl, resume)
+                .orElseThrow(() -> new IOException(String.format("Could not scan site: %s", homepageUrl)));
+        if (snapshotFile != null && !snapshotFile.isBlank()) {
+            Snapshots.write(siteScan, Paths.get(snapshotFile), snapshotFormat);
+            log.info("Snapshot written to: {}", snapshotFile);
+        }
+        return siteScan;
+    }
+
+    /**
+     * Render the report of a scan saved as a snapshot (in either format), without scanning the site again.
+     *
+     * @param snapshotFile The filename of the snapshot.
+     * @param outputFile   The filename to which the output should be written, or null to return the output.
+     * @return The template output if no output file is given, otherwise null.
+     * @throws IOException Any exception reading the snapshot or writing the output.
+     */
+    String runReport(final String snapshotFile, final String outputFile) throws IOException {
+
+        final SiteScan siteScan;
+        try (SnapshotSource source = Snapshots.open(Paths.get(snapshotFile))) {
+            siteScan = Snapshots.load(source);
+        }
+        return saveReport(siteScan, outputFile);
+    }
+
+    /**
+     * Stream the report of a scan to a file, or (with no file) return it.
+     *
+     * @param siteScan   The model of the site built by the scan.
+     * @param outputFile The filename to which the output should be written, or null to return the output.
+     * @return The template output if no output file is given, otherwise null.
+     * @throws IOException Any exception which occurs whilst writing the output to disk.
+     */
+    private String saveReport(final SiteScan siteScan, final String outputFile) throws IOException {
+
+        if (outputFile == null) {
+            StringWriter stringWriter = new StringWriter();
+            writeReport(siteScan, stringWriter);
+            return stringWriter.toString();
+        }
+        try (Writer fileWriter = openFileWriter(outputFile)) {
+            writeReport(siteScan, fileWriter);
+        }
+        log.info("Site index written to: {}", outputFile);
+        return null;
+    }
+
+    /**
+     * Compare two snapshots, and write a report of the changes to a file (or the log).
+     *
+     * @param beforeFile The filename of the earlier snapshot.
+     * @param afterFile  The filename of the later snapshot.
+     * @param outputFile The filename to which the report should be written, or null to log the report.
+     * @throws IOException Any exception reading the snapshots or writing the report.
+     */
+    void runDiff(final String beforeFile, final String afterFile, final String outputFile) throws IOException {
+
+        try (SnapshotSource before = Snapshots.open(Paths.get(beforeFile));
+             SnapshotSource after = Snapshots.open(Paths.get(afterFile));
+             Writer writer = outputFile != null
+                     ? openFileWriter(outputFile)
+                     : new StringWriter()) {
+            new SnapshotDiff(writer).compare(before, after);
+            if (outputFile != null)
+                log.info("Snapshot differences written to: {}", outputFile);
+            else
+                log.info("{}", writer);
+        }
     }
 
     /**
@@ -103,17 +345,33 @@ public class SiteindexAutorun implements CommandLineRunner {
     }
 
     /**
-     * Encapsulate the writing of text to a file.
+     * Use Thymeleaf to convert the generated model into a report, streamed to a writer with blank
+     * lines removed. The writer is closed once the report is complete.
      *
-     * @param text       The text to write to the file.
-     * @param outputFile The filename of the file to write.
-     * @throws IOException Any exception which occurs whilst writing the output to disk.
+     * @param siteScan The model of the site built by the scan.
+     * @param out      The writer to which the report is written.
+     * @throws IOException Any exception which occurs whilst writing the report.
      */
-    private void saveTextToFile(String text, String outputFile) throws IOException {
+    public void writeReport(final SiteScan siteScan, final Writer out) throws IOException {
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
-            writer.write(text);
+        Context thymeleafContext = new Context();
+        thymeleafContext.setVariable("siteScan", siteScan);
+        try (Writer filterWriter = new BlankLineFilterWriter(out)) {
+            templateEngine.process("report_template.html", thymeleafContext, filterWriter);
         }
-        log.info("Site index written to: {}", outputFile);
+    }
+
+    /**
+     * Encapsulate opening a buffered writer on a file channel.
+     *
+     * @param outputFile The filename of the file to write.
+     * @return The writer, which the caller must close.
+     * @throws IOException Any exception which occurs whilst opening the file.
+     */
+    private Writer openFileWriter(String outputFile) throws IOException {
+
+        final FileChannel channel = FileChannel.open(Paths.get(outputFile),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE);
     }
 }
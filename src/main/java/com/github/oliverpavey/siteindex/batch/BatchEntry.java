@@ -0,0 +1,60 @@
+package com.github.oliverpavey.siteindex.batch;
+
+import lombok.Data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A site to scan in batch mode: its homepage, the file to write its report to, and optionally
+ * the file to save its snapshot to.
+ */
+@Data
+public class BatchEntry {
+
+    private final String homepageUrl;
+    private final String outputFile;
+    private final String snapshotFile;
+
+    /**
+     * Constructor.
+     *
+     * @param homepageUrl  The URL of the page from which the scan should start.
+     * @param outputFile   The filename to which the report should be written.
+     * @param snapshotFile The filename to which the snapshot should be written, or null for no snapshot.
+     */
+    public BatchEntry(String homepageUrl, String outputFile, String snapshotFile) {
+        this.homepageUrl = homepageUrl;
+        this.outputFile = outputFile;
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Read a batch file. Each line holds a homepage URL, an output file and optionally a snapshot
+     * file, separated by whitespace. Blank lines, and lines starting with '#', are skipped.
+     *
+     * @param reader The batch file.
+     * @return The sites to scan, in the order listed.
+     * @throws IOException Any exception reading the file, or a line which does not name a homepage and output file.
+     */
+    public static List<BatchEntry> read(BufferedReader reader) throws IOException {
+
+        final List<BatchEntry> entries = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            final String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#"))
+                continue;
+            final String[] fields = trimmed.split("\\s+");
+            if (fields.length < 2 || fields.length > 3)
+                throw new IOException(String.format(
+                        "Batch file line %d: expected '<homepage-url> <output-file> [<snapshot-file>]'", lineNumber));
+            entries.add(new BatchEntry(fields[0], fields[1], fields.length == 3 ? fields[2] : null));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.oliverpavey.siteindex.batch;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The outcome of scanning one site in batch mode, with the time it took.
+ */
+@Data
+public class BatchResult {
+
+    private final BatchEntry entry;
+    private final int pages;
+    private final long elapsedMs;
+    private final String error;
+
+    /**
+     * Constructor.
+     *
+     * @param entry     The site scanned.
+     * @param pages     The number of pages scanned.
+     * @param elapsedMs The time taken to scan the site and write its report.
+     * @param error     The problem which stopped the scan, or null if the scan succeeded.
+     */
+    public BatchResult(BatchEntry entry, int pages, long elapsedMs, String error) {
+        this.entry = entry;
+        this.pages = pages;
+        this.elapsedMs = elapsedMs;
+        this.error = error;
+    }
+
+    /**
+     * @return True if the site was scanned and its report written.
+     */
+    public boolean isOk() {
+        return error == null;
+    }
+
+    /**
+     * Describe the results of a batch: the totals, then one line per site in the order listed.
+     *
+     * @param results   The results of the sites.
+     * @param elapsedMs The time taken by the whole batch.
+     * @return The summary.
+     */
+    public static String summary(List<BatchResult> results, long elapsedMs) {
+
+        final long failed = results.stream().filter(result -> !result.isOk()).count();
+        final StringBuilder summary = new StringBuilder(String.format("Batch completed: %d sites (%d scanned, %d failed) in %.1f s",
+                results.size(), results.size() - failed, failed, elapsedMs / 1000.0));
+        for (BatchResult result : results) {
+            summary.append(System.lineSeparator());
+            if (result.isOk())
+                summary.append(String.format("  %8.1f s %7d pages  %s -> %s", result.elapsedMs / 1000.0,
+                        result.pages, result.entry.getHomepageUrl(), result.entry.getOutputFile()));
+            else
+                summary.append(String.format("  %8.1f s  failed        %s (%s)", result.elapsedMs / 1000.0,
+                        result.entry.getHomepageUrl(), result.error));
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.oliverpavey.siteindex.batch;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Component limiting the number of pages being scanned at once, across all the scans running in
+ * the application. (In batch mode many sites are scanned at once.)
+ * <p>
+ * Permits are granted first come, first served, and every scan has the same number of workers, so
+ * when the budget is exhausted each site receives an equal share of it.
+ */
+@Component
+public class CrawlBudget {
+
+    @Value("${siteindex.batch.max-workers}")
+    private int maxWorkers;
+
+    private Semaphore permits;
+
+    /**
+     * Create the permits, if there is a limit.
+     */
+    @PostConstruct
+    void init() {
+        if (maxWorkers > 0)
+            permits = new Semaphore(maxWorkers, true);
+    }
+
+    /**
+     * Wait for permission to scan a page. A call must be matched by a call to release().
+     *
+     * @throws InterruptedException If interrupted whilst waiting.
+     */
+    public void acquire() throws InterruptedException {
+        if (permits != null)
+            permits.acquire();
+    }
+
+    /**
+     * Record that a page scan (started by acquire) has finished.
+     */
+    public void release() {
+        if (permits != null)
+            permits.release();
+    }
+}
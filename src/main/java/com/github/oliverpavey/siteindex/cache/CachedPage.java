@@ -0,0 +1,44 @@
+package com.github.oliverpavey.siteindex.cache;
+
+import com.github.oliverpavey.siteindex.dedup.PageFingerprint;
+import com.github.oliverpavey.siteindex.model.PageContent;
+import lombok.Data;
+
+/**
+ * A page held in the response cache: the validators needed to make a conditional request
+ * for the page, and the content extracted and the fingerprint taken when it was last retrieved.
+ * (The fingerprint is PageFingerprint.NONE if duplicates were not detected by that scan.)
+ */
+@Data
+public class CachedPage {
+
+    private final String url;
+    private final String etag;
+    private final String lastModified;
+    private final PageContent content;
+    private final PageFingerprint fingerprint;
+
+    /**
+     * Constructor.
+     *
+     * @param url          The URL of the page.
+     * @param etag         The ETag header of the response, or an empty string.
+     * @param lastModified The Last-Modified header of the response, or an empty string.
+     * @param content      The content extracted from the page.
+     * @param fingerprint  The fingerprint of the page, by which duplicates are detected.
+     */
+    public CachedPage(String url, String etag, String lastModified, PageContent content, PageFingerprint fingerprint) {
+        this.url = url;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.content = content;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return True if the page can be requested conditionally. (Otherwise there is no point caching it.)
+     */
+    public boolean hasValidator() {
+        return !etag.isEmpty() || !lastModified.isEmpty();
+    }
+}
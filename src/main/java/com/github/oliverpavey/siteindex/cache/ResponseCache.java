@@ -0,0 +1,230 @@
+package com.github.oliverpavey.siteindex.cache;
+
+import com.github.oliverpavey.siteindex.dedup.PageFingerprint;
+import com.github.oliverpavey.siteindex.model.PageContent;
+import com.github.oliverpavey.siteindex.tools.DataStrings;
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Component keeping an on-disk cache of the pages retrieved by scans, so that a re-scan can make
+ * conditional requests (If-None-Match / If-Modified-Since) and reuse the extracted content of
+ * pages which have not changed, without downloading or parsing them again.
+ * <p>
+ * Each page is stored in its own file, named by a hash of its URL. The cache is limited in size,
+ * evicting the least recently used pages first; the file modification times record the order of
+ * use between runs.
+ */
+@Slf4j
+@Component
+public class ResponseCache {
+
+    static final int FORMAT_VERSION = 3;
+    static final String FILE_SUFFIX = ".page";
+
+    @Value("${siteindex.cache.enabled}")
+    private boolean enabled;
+
+    @Value("${siteindex.cache.dir}")
+    private String cacheDir;
+
+    @Value("${siteindex.cache.max-bytes}")
+    private long maxBytes;
+
+    private Path directory;
+    private final LinkedHashMap<String, Long> fileSizes = new LinkedHashMap<>(16, 0.75f, true); // access order
+    private long totalBytes;
+
+    /**
+     * Load the index of cached pages, least recently used first.
+     */
+    @PostConstruct
+    void init() {
+
+        if (!enabled)
+            return;
+        directory = Paths.get(cacheDir);
+        try {
+            Files.createDirectories(directory);
+            final List<Path> files;
+            try (Stream<Path> list = Files.list(directory)) {
+                files = list.filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX))
+                        .sorted(Comparator.comparing(ResponseCache::lastModifiedTime))
+                        .collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                final long size = Files.size(file);
+                fileSizes.put(file.getFileName().toString(), size);
+                totalBytes += size;
+            }
+            log.info("Response cache: {} pages, {} bytes in {}", fileSizes.size(), totalBytes, directory);
+
+        } catch (IOException e) {
+            log.warn("Response cache disabled. Could not read directory '{}': {}", cacheDir, e.getMessage());
+            enabled = false;
+        }
+    }
+
+    /**
+     * @return True if the cache is in use.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Look up a page in the cache.
+     *
+     * @param url The URL of the page.
+     * @return The cached page, if present.
+     */
+    public Optional<CachedPage> get(String url) {
+
+        if (!enabled)
+            return Optional.empty();
+        final String fileName = fileName(url);
+        synchronized (this) {
+            if (fileSizes.get(fileName) == null) // get() also marks the entry as recently used
+                return Optional.empty();
+        }
+
+        final Path file = directory.resolve(fileName);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final CachedPage cachedPage = read(in);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return cachedPage.getUrl().equals(url) ? Optional.of(cachedPage) : Optional.empty();
+
+        } catch (IOException e) {
+            log.debug("Could not read cached page '{}': {}", url, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Store a page in the cache, evicting the least recently used pages if the cache is full.
+     *
+     * @param cachedPage The page to store.
+     */
+    public void put(CachedPage cachedPage) {
+
+        if (!enabled || !cachedPage.hasValidator())
+            return;
+        final String fileName = fileName(cachedPage.getUrl());
+        final Path file = directory.resolve(fileName);
+        try {
+            final Path tempFile = Files.createTempFile(directory, "page", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                write(cachedPage, out);
+            }
+            final long size = Files.size(tempFile);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            synchronized (this) {
+                final Long previousSize = fileSizes.put(fileName, size);
+                totalBytes += size - (previousSize == null ? 0 : previousSize);
+                evict();
+            }
+
+        } catch (IOException e) {
+            log.debug("Could not cache page '{}': {}", cachedPage.getUrl(), e.getMessage());
+        }
+    }
+
+    /**
+     * Delete the least recently used pages until the cache is within its size limit.
+     */
+    private void evict() {
+
+        final Iterator<Map.Entry<String, Long>> iterator = fileSizes.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            final Map.Entry<String, Long> eldest = iterator.next();
+            try {
+                Files.deleteIfExists(directory.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                log.debug("Could not evict cached page '{}': {}", eldest.getKey(), e.getMessage());
+            }
+            totalBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private static String fileName(String url) {
+        return Hashing.sha256().hashString(url, StandardCharsets.UTF_8) + FILE_SUFFIX;
+    }
+
+    private static FileTime lastModifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void write(CachedPage cachedPage, DataOutputStream out) throws IOException {
+
+        final PageContent content = cachedPage.getContent();
+        final PageFingerprint fingerprint = cachedPage.getFingerprint();
+        out.writeInt(FORMAT_VERSION);
+        DataStrings.write(out, cachedPage.getUrl());
+        DataStrings.write(out, cachedPage.getEtag());
+        DataStrings.write(out, cachedPage.getLastModified());
+        DataStrings.write(out, content.getTitle());
+        writeList(content.getLinks(), out);
+        writeList(content.getExternalLinks(), out);
+        writeList(content.getResources(), out);
+        DataStrings.write(out, fingerprint.getExact());
+        out.writeBoolean(fingerprint.isSimHashed());
+        out.writeLong(fingerprint.getSimHash());
+    }
+
+    private static CachedPage read(DataInputStream in) throws IOException {
+
+        if (in.readInt() != FORMAT_VERSION)
+            throw new IOException("Unsupported cache format");
+        final String url = DataStrings.read(in);
+        final String etag = DataStrings.read(in);
+        final String lastModified = DataStrings.read(in);
+        final PageContent content = new PageContent();
+        content.setTitle(DataStrings.read(in));
+        readList(content.getLinks(), in);
+        readList(content.getExternalLinks(), in);
+        readList(content.getResources(), in);
+        final PageFingerprint fingerprint = new PageFingerprint(DataStrings.read(in), in.readBoolean(), in.readLong());
+        return new CachedPage(url, etag, lastModified, content, fingerprint);
+    }
+
+    private static void writeList(List<String> values, DataOutputStream out) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values)
+            DataStrings.write(out, value);
+    }
+
+    private static void readList(List<String> values, DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++)
+            values.add(DataStrings.read(in));
+    }
+}
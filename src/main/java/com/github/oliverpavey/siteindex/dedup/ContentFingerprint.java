@@ -0,0 +1,129 @@
+package com.github.oliverpavey.siteindex.dedup;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fingerprints of the content of a page: an exact hash of its body, and a SimHash of the text of the
+ * page, which differs in only a few bits between pages whose text is nearly the same.
+ * <p>
+ * The SimHash is built from shingles (runs of SHINGLE_WORDS consecutive words) of the text, so it
+ * reflects the order of the words as well as which words appear.
+ */
+final class ContentFingerprint {
+
+    static final int SHINGLE_WORDS = 3;
+    static final int SIMHASH_BITS = Long.SIZE;
+    static final String[] SKIPPED_ELEMENTS = {"script", "style"};
+
+    private ContentFingerprint() {
+    }
+
+    /**
+     * @param body The body of a page.
+     * @return The SHA-256 hash of the body, in hex.
+     */
+    static String exact(byte[] body) {
+        return Hashing.sha256().hashBytes(body).toString();
+    }
+
+    /**
+     * @param words The words of the text of a page.
+     * @return The number of shingles of the words.
+     */
+    static int shingleCount(List<String> words) {
+        return Math.max(0, words.size() - SHINGLE_WORDS + 1);
+    }
+
+    /**
+     * Calculate the SimHash of the text of a page: each bit is set if more of the shingles of the text
+     * have that bit set in their hash than do not.
+     *
+     * @param words The words of the text of a page.
+     * @return The SimHash.
+     */
+    static long simHash(List<String> words) {
+
+        final int[] votes = new int[SIMHASH_BITS];
+        final StringBuilder shingle = new StringBuilder();
+        for (int i = 0; i < shingleCount(words); i++) {
+            shingle.setLength(0);
+            for (int j = i; j < i + SHINGLE_WORDS; j++)
+                shingle.append(words.get(j)).append(' ');
+            final long hash = Hashing.murmur3_128().hashString(shingle, StandardCharsets.UTF_8).asLong();
+            for (int bit = 0; bit < SIMHASH_BITS; bit++)
+                votes[bit] += (hash >>> bit & 1) != 0 ? 1 : -1;
+        }
+        long simHash = 0;
+        for (int bit = 0; bit < SIMHASH_BITS; bit++) {
+            if (votes[bit] > 0)
+                simHash |= 1L << bit;
+        }
+        return simHash;
+    }
+
+    /**
+     * @return The number of bits in which two SimHashes differ.
+     */
+    static int distance(long simHash, long other) {
+        return Long.bitCount(simHash ^ other);
+    }
+
+    /**
+     * Read the words of the text of a page, in lower case: runs of letters and digits outside tags,
+     * skipping the content of script and style elements.
+     *
+     * @param html The page.
+     * @return The words.
+     */
+    static List<String> words(String html) {
+
+        final List<String> words = new ArrayList<>();
+        final StringBuilder word = new StringBuilder();
+        int i = 0;
+        while (i < html.length()) {
+            final char ch = html.charAt(i);
+            if (ch == '<') {
+                addWord(words, word);
+                i = skipTag(html, i);
+            } else {
+                if (Character.isLetterOrDigit(ch))
+                    word.append(Character.toLowerCase(ch));
+                else
+                    addWord(words, word);
+                i++;
+            }
+        }
+        addWord(words, word);
+        return words;
+    }
+
+    /**
+     * @return The position after the tag at a position, and after the content of the element too if it is skipped.
+     */
+    private static int skipTag(String html, int lt) {
+
+        final int gt = html.indexOf('>', lt);
+        if (gt < 0)
+            return html.length();
+        for (String element : SKIPPED_ELEMENTS) {
+            if (html.regionMatches(true, lt + 1, element, 0, element.length())) {
+                int end = html.indexOf("</", gt);
+                while (end >= 0 && !html.regionMatches(true, end + 2, element, 0, element.length()))
+                    end = html.indexOf("</", end + 2);
+                return end < 0 ? html.length() : end;
+            }
+        }
+        return gt + 1;
+    }
+
+    private static void addWord(List<String> words, StringBuilder word) {
+        if (word.length() > 0) {
+            words.add(word.toString());
+            word.setLength(0);
+        }
+    }
+}
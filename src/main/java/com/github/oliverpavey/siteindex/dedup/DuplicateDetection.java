@@ -0,0 +1,161 @@
+package com.github.oliverpavey.siteindex.dedup;
+
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+
+/**
+ * The detection of duplicate pages in a single scan.
+ * <p>
+ * Each page retrieved is registered as it is scanned. The first page with some content is its
+ * canonical page; a later page with exactly the same body, or (if near duplicates are detected) with
+ * a SimHash of its text within the maximum distance of a canonical page's, is a duplicate of it.
+ * <p>
+ * Pages with too little text for a reliable SimHash are only compared exactly.
+ * <p>
+ * Once the crawl is complete, apply() records the clusters of duplicates in the model.
+ */
+@Slf4j
+public class DuplicateDetection {
+
+    static final int MIN_SHINGLES = 16;
+
+    private final boolean enabled;
+    private final boolean nearDuplicates;
+
+    private final Map<String, String> exactCanonicals = new HashMap<>();
+    private final SimHashIndex<String> nearCanonicals;
+    private final Map<String, String> duplicateOf = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param enabled        False to register no pages, so none are duplicates.
+     * @param nearDuplicates True to detect pages with nearly the same text, as well as the same body.
+     * @param maxDistance    The maximum number of bits in which the SimHashes of near duplicates differ.
+     */
+    DuplicateDetection(boolean enabled, boolean nearDuplicates, int maxDistance) {
+        this.enabled = enabled;
+        this.nearDuplicates = enabled && nearDuplicates;
+        this.nearCanonicals = this.nearDuplicates ? new SimHashIndex<>(maxDistance) : null;
+    }
+
+    /**
+     * Register a page retrieved by the scan, unless it is a duplicate of a page registered before.
+     *
+     * @param url     The URL of the page.
+     * @param body    The body of the page.
+     * @param charset The character set named by the response, or null.
+     * @return The URL of the canonical page of which the page is a duplicate, or an empty optional if it is not one.
+     */
+    public Optional<String> register(String url, byte[] body, String charset) {
+        return register(url, fingerprint(body, charset));
+    }
+
+    /**
+     * Fingerprint a page retrieved by the scan.
+     *
+     * @param body    The body of the page.
+     * @param charset The character set named by the response, or null.
+     * @return The fingerprint, or PageFingerprint.NONE if duplicates are not detected.
+     */
+    public PageFingerprint fingerprint(byte[] body, String charset) {
+
+        if (!enabled)
+            return PageFingerprint.NONE;
+        final String exact = ContentFingerprint.exact(body);
+        if (nearDuplicates) {
+            final List<String> words = ContentFingerprint.words(new String(body, charsetOf(charset)));
+            if (ContentFingerprint.shingleCount(words) >= MIN_SHINGLES)
+                return new PageFingerprint(exact, true, ContentFingerprint.simHash(words));
+        }
+        return new PageFingerprint(exact, false, 0);
+    }
+
+    /**
+     * Register a page by its fingerprint, unless it is a duplicate of a page registered before. A
+     * page which was not fingerprinted is not registered. (Fingerprint pages before registering
+     * them, so pages are fingerprinted concurrently.)
+     *
+     * @param url         The URL of the page.
+     * @param fingerprint The fingerprint of the page, which may have been kept from an earlier scan.
+     * @return The URL of the canonical page of which the page is a duplicate, or an empty optional if it is not one.
+     */
+    public synchronized Optional<String> register(String url, PageFingerprint fingerprint) {
+
+        if (!enabled || !fingerprint.isPresent())
+            return Optional.empty();
+        final String exactCanonical = exactCanonicals.putIfAbsent(fingerprint.getExact(), url);
+        if (exactCanonical != null)
+            return Optional.of(duplicate(url, exactCanonical));
+        if (nearDuplicates && fingerprint.isSimHashed()) {
+            final Optional<String> nearCanonical = nearCanonicals.find(fingerprint.getSimHash());
+            if (nearCanonical.isPresent())
+                return Optional.of(duplicate(url, nearCanonical.get()));
+            nearCanonicals.add(fingerprint.getSimHash(), url);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Restore a page registered by an earlier crawl of the site, which is being resumed (or by
+     * another shard). The page is restored as it was registered, without being compared again, as
+     * the pages may not be restored in the order they were registered.
+     *
+     * @param url         The URL of the page.
+     * @param fingerprint The fingerprint of the page.
+     * @param canonical   The URL of the canonical page of which the page is a duplicate, or an empty string.
+     */
+    public synchronized void restore(String url, PageFingerprint fingerprint, String canonical) {
+
+        if (!enabled)
+            return;
+        if (fingerprint.isPresent())
+            exactCanonicals.putIfAbsent(fingerprint.getExact(), url);
+        if (!canonical.isEmpty())
+            duplicate(url, canonical);
+        else if (nearDuplicates && fingerprint.isSimHashed())
+            nearCanonicals.add(fingerprint.getSimHash(), url);
+    }
+
+    /**
+     * Record the clusters of duplicate pages in the model of the site.
+     *
+     * @param siteScan The model of the site built by the scan.
+     */
+    public synchronized void apply(SiteScan siteScan) {
+
+        duplicateOf.forEach((duplicate, canonical) -> siteScan.getDuplicateClusters()
+                .computeIfAbsent(canonical, key -> new TreeSet<>())
+                .add(duplicate));
+        if (!duplicateOf.isEmpty())
+            log.info("Duplicate pages: {} ({} clusters)", duplicateOf.size(), siteScan.getDuplicateClusters().size());
+    }
+
+    /**
+     * Record a duplicate. A page with the same body as a near duplicate is a duplicate of its canonical page.
+     *
+     * @return The URL of the canonical page.
+     */
+    private String duplicate(String url, String canonical) {
+        final String root = duplicateOf.getOrDefault(canonical, canonical);
+        duplicateOf.put(url, root);
+        return root;
+    }
+
+    private static Charset charsetOf(String name) {
+        try {
+            return name != null && Charset.isSupported(name) ? Charset.forName(name) : StandardCharsets.UTF_8;
+        } catch (IllegalCharsetNameException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
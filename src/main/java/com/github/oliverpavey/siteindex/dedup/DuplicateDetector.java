@@ -0,0 +1,35 @@
+package com.github.oliverpavey.siteindex.dedup;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Component detecting pages which serve the same content as another page of the site (e.g. the
+ * same page with tracking parameters, or a print view), so their links need not be extracted again.
+ * <p>
+ * Pages are compared by a SHA-256 hash of their body and, optionally, by a SimHash of their text to
+ * find near duplicates. (See DuplicateDetection.)
+ */
+@Component
+public class DuplicateDetector {
+
+    @Value("${siteindex.dedup.enabled}")
+    private boolean enabled;
+
+    @Value("${siteindex.dedup.near-duplicates}")
+    private boolean nearDuplicates;
+
+    @Value("${siteindex.dedup.max-distance}")
+    private int maxDistance;
+
+    /**
+     * Start detecting the duplicate pages of a scan, if the scan needs it. (e.g. Duplicates are not
+     * detected in a sharded crawl, as each shard sees only the pages it owns.)
+     *
+     * @param needed False to treat no page as a duplicate, even if detection is enabled.
+     * @return The detection of the scan, with which pages are registered as they are retrieved.
+     */
+    public DuplicateDetection start(boolean needed) {
+        return new DuplicateDetection(enabled && needed, nearDuplicates, maxDistance);
+    }
+}
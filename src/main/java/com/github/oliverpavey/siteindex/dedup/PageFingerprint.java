@@ -0,0 +1,43 @@
+package com.github.oliverpavey.siteindex.dedup;
+
+import lombok.Data;
+
+/**
+ * The fingerprints by which a page is compared with the other pages of a scan: the SHA-256 hash of
+ * its body and, if near duplicates are detected and the page has enough text, the SimHash of its text.
+ * <p>
+ * The fingerprint is kept with a cached page, so a page which has not been modified since it was
+ * cached can be compared without retrieving its body.
+ */
+@Data
+public class PageFingerprint {
+
+    /**
+     * The fingerprint of a page which was not fingerprinted, as duplicates were not detected.
+     */
+    public static final PageFingerprint NONE = new PageFingerprint("", false, 0);
+
+    private final String exact;
+    private final boolean simHashed;
+    private final long simHash;
+
+    /**
+     * Constructor.
+     *
+     * @param exact     The SHA-256 hash of the body of the page, in hex, or an empty string if not fingerprinted.
+     * @param simHashed True if the page has a SimHash.
+     * @param simHash   The SimHash of the text of the page, or 0 if it has none.
+     */
+    public PageFingerprint(String exact, boolean simHashed, long simHash) {
+        this.exact = exact;
+        this.simHashed = simHashed;
+        this.simHash = simHash;
+    }
+
+    /**
+     * @return True if the page was fingerprinted.
+     */
+    public boolean isPresent() {
+        return !exact.isEmpty();
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.oliverpavey.siteindex.dedup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Index of SimHashes, finding one within a maximum Hamming distance of a given SimHash without
+ * comparing it to every SimHash indexed.
+ * <p>
+ * The bits are divided into maxDistance + 1 bands. Two SimHashes which differ in at most maxDistance
+ * bits must agree exactly in at least one band (by the pigeonhole principle), so only the SimHashes
+ * sharing a band with the one sought need be compared. Not thread-safe.
+ *
+ * @param <T> The type of value indexed by each SimHash.
+ */
+class SimHashIndex<T> {
+
+    private final int maxDistance;
+    private final int[] bandStarts;
+    private final List<Map<Long, List<Indexed<T>>>> bands = new ArrayList<>();
+
+    /**
+     * A SimHash in the index, with its value.
+     */
+    private static class Indexed<T> {
+
+        final long simHash;
+        final T value;
+
+        Indexed(long simHash, T value) {
+            this.simHash = simHash;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxDistance The maximum number of bits in which a SimHash found may differ, from 0 to 63.
+     */
+    SimHashIndex(int maxDistance) {
+
+        if (maxDistance < 0 || maxDistance >= ContentFingerprint.SIMHASH_BITS)
+            throw new IllegalArgumentException(String.format("SimHash distance out of range: %d", maxDistance));
+        this.maxDistance = maxDistance;
+        final int bandCount = maxDistance + 1;
+        bandStarts = new int[bandCount + 1];
+        for (int band = 0; band <= bandCount; band++)
+            bandStarts[band] = band * ContentFingerprint.SIMHASH_BITS / bandCount;
+        for (int band = 0; band < bandCount; band++)
+            bands.add(new HashMap<>());
+    }
+
+    /**
+     * Find an indexed SimHash within the maximum distance of a SimHash.
+     *
+     * @param simHash The SimHash sought.
+     * @return The value of the nearest SimHash found, or an empty optional if there is none.
+     */
+    Optional<T> find(long simHash) {
+
+        Indexed<T> nearest = null;
+        int nearestDistance = maxDistance + 1;
+        for (int band = 0; band < bands.size(); band++) {
+            for (Indexed<T> candidate : bands.get(band).getOrDefault(bandOf(simHash, band), List.of())) {
+                final int distance = ContentFingerprint.distance(simHash, candidate.simHash);
+                if (distance < nearestDistance) {
+                    nearest = candidate;
+                    nearestDistance = distance;
+                }
+            }
+        }
+        return nearest == null ? Optional.empty() : Optional.of(nearest.value);
+    }
+
+    /**
+     * Add a SimHash to the index.
+     *
+     * @param simHash The SimHash.
+     * @param value   The value of the SimHash.
+     */
+    void add(long simHash, T value) {
+
+        final Indexed<T> indexed = new Indexed<>(simHash, value);
+        for (int band = 0; band < bands.size(); band++)
+            bands.get(band).computeIfAbsent(bandOf(simHash, band), key -> new ArrayList<>(1)).add(indexed);
+    }
+
+    /**
+     * @return The bits of a band of a SimHash.
+     */
+    private long bandOf(long simHash, int band) {
+        final int width = bandStarts[band + 1] - bandStarts[band];
+        final long mask = width == Long.SIZE ? -1L : (1L << width) - 1;
+        return simHash >>> bandStarts[band] & mask;
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.oliverpavey.siteindex.export;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends lines to an export file from a background thread.
+ * <p>
+ * The workers of a scan only add lines to a bounded queue (waiting when it is full, so a slow disk
+ * slows the crawl rather than filling the heap). The background thread writes each line to a
+ * buffered writer as it arrives, and flushes the writer once per flush interval, or sooner when the
+ * queue is empty, so the file can be followed while the crawl runs.
+ * <p>
+ * A writer which is not open ignores every line.
+ */
+@Slf4j
+class ExportWriter {
+
+    static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    private static final String END = new String(); // marks the end of the lines, compared by identity
+
+    private final Path file;
+    private final long flushIntervalMs;
+    private final BlockingQueue<String> queue;
+    private volatile boolean open;
+    private Thread writer;
+    private BufferedWriter out;
+
+    /**
+     * Constructor.
+     *
+     * @param file            The file to which lines are appended.
+     * @param queueSize       The number of lines which may wait to be written.
+     * @param flushIntervalMs The longest time between writes of the buffered lines to the file.
+     */
+    ExportWriter(Path file, int queueSize, long flushIntervalMs) {
+        this.file = file;
+        this.flushIntervalMs = flushIntervalMs;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    /**
+     * Open the file and start the writer.
+     *
+     * @param append True to keep the earlier content of the file, false to discard it.
+     * @param header A line to write first if the file is empty, or null for none.
+     * @throws IOException Any exception opening the file.
+     */
+    void start(boolean append, String header) throws IOException {
+
+        final Path parent = file.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+        out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING),
+                StandardCharsets.UTF_8), OUTPUT_BUFFER_SIZE);
+        if (header != null && Files.size(file) == 0) {
+            out.write(header);
+            out.write('\n');
+        }
+        open = true;
+
+        writer = new Thread(this::run, "page-export");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue a line to be written, waiting for space in the queue.
+     *
+     * @param line The line, without a line break.
+     */
+    void write(String line) {
+        if (!open)
+            return;
+        try {
+            queue.put(line);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write the lines still queued, and close the file.
+     */
+    void close() {
+
+        if (writer == null || !open)
+            return;
+        open = false;
+        try {
+            queue.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writer loop. Write each line as it is queued, flushing once per flush interval and whenever
+     * the queue is empty, until the writer is closed.
+     */
+    private void run() {
+
+        try (BufferedWriter ignored = out) {
+            long lastFlushMs = System.currentTimeMillis();
+            String line;
+            while ((line = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS)) != END) {
+                if (line != null) {
+                    out.write(line);
+                    out.write('\n');
+                }
+                if (queue.isEmpty() || System.currentTimeMillis() - lastFlushMs >= flushIntervalMs) {
+                    out.flush();
+                    lastFlushMs = System.currentTimeMillis();
+                }
+            }
+
+        } catch (IOException e) {
+            log.warn("Page export stopped. Could not write '{}': {}", file, e.getMessage());
+            open = false;
+            queue.clear();
+
+        } catch (InterruptedException e) {
+            log.warn("Page export interrupted: {}", file);
+            open = false;
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.oliverpavey.siteindex.export;
+
+import com.github.oliverpavey.siteindex.model.PageContent;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The record exported for one URL scanned: how it was retrieved, how long that took, and (for a page
+ * which could be read) the content extracted from it.
+ * <p>
+ * The record is written as a line of NDJSON or of CSV. In CSV, each list is written as one field,
+ * its URLs separated by spaces.
+ */
+@Data
+public class ExportedPage {
+
+    public static final String OUTCOME_SCANNED = "scanned";
+    public static final String OUTCOME_NOT_MODIFIED = "not-modified";
+    public static final String OUTCOME_DUPLICATE = "duplicate";
+    public static final String OUTCOME_UNREADABLE = "unreadable";
+    public static final String OUTCOME_FAILED = "failed";
+
+    static final String CSV_HEADER =
+            "site,uri,outcome,status,depth,title,fetch_ms,process_ms,links,external_links,resources,duplicate_of";
+
+    private final String site;
+    private final String uri;
+    private final int depth;
+    private String outcome = "";
+    private int status;
+    private long fetchMs;
+    private long processMs;
+    private PageContent content = new PageContent();
+    private String duplicateOf;
+
+    /**
+     * Constructor.
+     *
+     * @param site  The homepage of the scan.
+     * @param uri   The URL scanned.
+     * @param depth The number of links between the homepage and the URL.
+     */
+    public ExportedPage(String site, String uri, int depth) {
+        this.site = site;
+        this.uri = uri;
+        this.depth = depth;
+    }
+
+    /**
+     * @return The record as a JSON object, on one line.
+     */
+    String toJson() {
+
+        final StringBuilder json = new StringBuilder(256);
+        json.append("{\"site\":");
+        jsonString(json, site);
+        json.append(",\"uri\":");
+        jsonString(json, uri);
+        json.append(",\"outcome\":");
+        jsonString(json, outcome);
+        json.append(",\"status\":").append(status);
+        json.append(",\"depth\":").append(depth);
+        json.append(",\"title\":");
+        jsonString(json, content.getTitle());
+        json.append(",\"fetchMs\":").append(fetchMs);
+        json.append(",\"processMs\":").append(processMs);
+        json.append(",\"links\":");
+        jsonArray(json, content.getLinks());
+        json.append(",\"externalLinks\":");
+        jsonArray(json, content.getExternalLinks());
+        json.append(",\"resources\":");
+        jsonArray(json, content.getResources());
+        json.append(",\"duplicateOf\":");
+        if (duplicateOf == null)
+            json.append("null");
+        else
+            jsonString(json, duplicateOf);
+        return json.append('}').toString();
+    }
+
+    /**
+     * @return The record as a CSV row, in the order of the columns of CSV_HEADER.
+     */
+    String toCsv() {
+
+        final StringBuilder csv = new StringBuilder(256);
+        csvField(csv, site).append(',');
+        csvField(csv, uri).append(',');
+        csvField(csv, outcome).append(',');
+        csv.append(status).append(',');
+        csv.append(depth).append(',');
+        csvField(csv, content.getTitle()).append(',');
+        csv.append(fetchMs).append(',');
+        csv.append(processMs).append(',');
+        csvField(csv, String.join(" ", content.getLinks())).append(',');
+        csvField(csv, String.join(" ", content.getExternalLinks())).append(',');
+        csvField(csv, String.join(" ", content.getResources())).append(',');
+        csvField(csv, duplicateOf == null ? "" : duplicateOf);
+        return csv.toString();
+    }
+
+    private static void jsonArray(StringBuilder json, List<String> values) {
+
+        json.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0)
+                json.append(',');
+            jsonString(json, values.get(i));
+        }
+        json.append(']');
+    }
+
+    /**
+     * Append a JSON string, escaping quotes, backslashes and control characters.
+     */
+    private static void jsonString(StringBuilder json, String value) {
+
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (ch < ' ')
+                        json.append(String.format("\\u%04x", (int) ch));
+                    else
+                        json.append(ch);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Append a CSV field, quoted (with quotes doubled) if it contains a comma, quote or line break.
+     */
+    private static StringBuilder csvField(StringBuilder csv, String value) {
+
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return csv.append(value);
+        return csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
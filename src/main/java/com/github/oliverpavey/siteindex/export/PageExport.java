@@ -0,0 +1,41 @@
+package com.github.oliverpavey.siteindex.export;
+
+/**
+ * The export of the pages of a single scan, written by the ExportWriter shared by every scan.
+ * <p>
+ * Each record is formatted by the worker which scanned the page, so the writer only appends lines.
+ * An export which is not enabled ignores every record.
+ */
+public class PageExport {
+
+    private final ExportWriter writer;
+    private final boolean csv;
+
+    /**
+     * Constructor.
+     *
+     * @param writer The writer of the export file.
+     * @param csv    True to write CSV rows, false to write NDJSON lines.
+     */
+    PageExport(ExportWriter writer, boolean csv) {
+        this.writer = writer;
+        this.csv = csv;
+    }
+
+    /**
+     * @return An export which ignores every record.
+     */
+    static PageExport disabled() {
+        return new PageExport(null, false);
+    }
+
+    /**
+     * Export the record of a URL scanned.
+     *
+     * @param page The record.
+     */
+    public void page(ExportedPage page) {
+        if (writer != null)
+            writer.write(csv ? page.toCsv() : page.toJson());
+    }
+}
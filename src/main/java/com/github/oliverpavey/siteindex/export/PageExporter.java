@@ -0,0 +1,103 @@
+package com.github.oliverpavey.siteindex.export;
+
+import com.github.oliverpavey.siteindex.shard.CrawlSharding;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Component creating the PageExport of each scan.
+ * <p>
+ * Every scan run by the application appends to the same export file (each record names the site
+ * scanned), through one ExportWriter. The file is opened by the first scan: its earlier content is
+ * discarded, unless that scan is resuming an earlier crawl, whose records are kept. The file is
+ * closed when the application ends.
+ * <p>
+ * In a sharded crawl each shard exports the URLs it scans to a file of its own, with the shard
+ * number added to the name.
+ */
+@Slf4j
+@Component
+public class PageExporter {
+
+    static final String FORMAT_NDJSON = "ndjson";
+    static final String FORMAT_CSV = "csv";
+
+    @Value("${siteindex.export.file}")
+    private String file;
+
+    @Value("${siteindex.export.format}")
+    private String format;
+
+    @Value("${siteindex.export.queue-size}")
+    private int queueSize;
+
+    @Value("${siteindex.export.flush-interval-ms}")
+    private long flushIntervalMs;
+
+    private final CrawlSharding crawlSharding;
+
+    private ExportWriter writer;
+
+    /**
+     * Constructor.
+     *
+     * @param crawlSharding Decides which shard of a sharded crawl this process is.
+     */
+    public PageExporter(CrawlSharding crawlSharding) {
+        this.crawlSharding = crawlSharding;
+    }
+
+    /**
+     * Start the export of a scan, opening the export file if it is not yet open.
+     *
+     * @param resume True if the scan is resuming an earlier crawl.
+     * @return The export. (If no export file is configured, or it cannot be opened, one which ignores every record.)
+     */
+    public synchronized PageExport start(boolean resume) {
+
+        if (file.isBlank())
+            return PageExport.disabled();
+        final boolean csv = isCsv();
+        if (writer == null) {
+            final Path exportFile = crawlSharding.shardFile(Paths.get(file));
+            final ExportWriter newWriter = new ExportWriter(exportFile, Math.max(1, queueSize),
+                    Math.max(1, flushIntervalMs));
+            try {
+                newWriter.start(resume, csv ? ExportedPage.CSV_HEADER : null);
+            } catch (IOException e) {
+                log.warn("Page export disabled. Could not open '{}': {}", exportFile, e.getMessage());
+                return PageExport.disabled();
+            }
+            writer = newWriter;
+            log.info("Exporting pages to: {} ({})", exportFile, format);
+        }
+        return new PageExport(writer, csv);
+    }
+
+    /**
+     * Write the records still queued, and close the export file.
+     */
+    @PreDestroy
+    synchronized void close() {
+        if (writer != null)
+            writer.close();
+    }
+
+    private boolean isCsv() {
+
+        switch (format) {
+            case FORMAT_NDJSON:
+                return false;
+            case FORMAT_CSV:
+                return true;
+            default:
+                throw new IllegalStateException(String.format("Unknown siteindex.export.format: '%s'", format));
+        }
+    }
+}
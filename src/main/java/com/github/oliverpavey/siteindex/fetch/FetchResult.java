@@ -0,0 +1,105 @@
+package com.github.oliverpavey.siteindex.fetch;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The response to a request made by a PageFetcher.
+ */
+@Data
+public class FetchResult {
+
+    static final String HEADER_CONTENT_TYPE = "content-type";
+    static final String CHARSET_PARAMETER = "charset=";
+
+    private final String url;
+    private final String finalUrl;
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+
+    /**
+     * Constructor.
+     *
+     * @param url      The URL requested.
+     * @param finalUrl The URL which responded, after following any redirects.
+     * @param status   The HTTP status of the response.
+     * @param headers  The response headers, keyed by header name. (Case insensitive, or lower case.)
+     * @param body     The response body.
+     */
+    public FetchResult(String url, String finalUrl, int status, Map<String, List<String>> headers, byte[] body) {
+        this.url = url;
+        this.finalUrl = finalUrl;
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * @return True if the HTTP status indicates success.
+     */
+    public boolean isOk() {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * Look up the first value of a response header.
+     *
+     * @param name The header name. (Case insensitive.)
+     * @return The header value, if present.
+     */
+    public Optional<String> header(String name) {
+        final List<String> values = headers.get(name.toLowerCase(Locale.ROOT));
+        return values == null || values.isEmpty() ? Optional.empty() : Optional.of(values.get(0));
+    }
+
+    /**
+     * @return The mime type of the response (without parameters), or an empty string if not given.
+     */
+    public String getMimeType() {
+        return mimeType(header(HEADER_CONTENT_TYPE).orElse(""));
+    }
+
+    /**
+     * @return The character set named in the Content-Type header, or null if not given.
+     */
+    public String getCharset() {
+        final String contentType = header(HEADER_CONTENT_TYPE).orElse("").toLowerCase(Locale.ROOT);
+        final int index = contentType.indexOf(CHARSET_PARAMETER);
+        if (index < 0)
+            return null;
+        final String charset = contentType.substring(index + CHARSET_PARAMETER.length()).split(";")[0];
+        return charset.replace("\"", "").trim();
+    }
+
+    /**
+     * Check whether the response could be an HTML page. Uses the same rule as JSoup: text or XML
+     * content types are accepted, and so is a response which does not declare a type.
+     *
+     * @return True if the response may be parsed as a page.
+     */
+    public boolean isPage() {
+        return isPage(header(HEADER_CONTENT_TYPE).orElse(""));
+    }
+
+    /**
+     * @param contentType The Content-Type header of a response, or an empty string if not given.
+     * @return True if the response may be parsed as a page. (See isPage().)
+     */
+    static boolean isPage(String contentType) {
+        final String mimeType = mimeType(contentType);
+        return mimeType.isEmpty()
+                || mimeType.startsWith("text/")
+                || mimeType.equals("application/xml")
+                || (mimeType.startsWith("application/") && mimeType.endsWith("+xml"));
+    }
+
+    private static String mimeType(String contentType) {
+        final int semicolon = contentType.indexOf(';');
+        return (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+    }
+}
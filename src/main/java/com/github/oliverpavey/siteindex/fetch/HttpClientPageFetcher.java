@@ -0,0 +1,142 @@
+package com.github.oliverpavey.siteindex.fetch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PageFetcher sharing a single pooled java.net.http.HttpClient between all scans.
+ * <p>
+ * Connections are kept alive and reused between requests to the same host, and HTTP/2 is
+ * negotiated where the server supports it, so a scan of a single site pays for very few
+ * connection (and TLS) handshakes. Response bodies are returned as bytes, leaving the
+ * parsing to the caller.
+ * <p>
+ * When a page is fetched, the status and Content-Type of the response are checked before the body
+ * is read: the body of an error, or of anything which is not a page (an image, a PDF, a video...),
+ * is discarded unread, and a page body is cut off at the maximum body size.
+ * <p>
+ * URLs are percent-encoded as needed before they are requested. (See RequestUris.)
+ */
+@Slf4j
+@Component
+public class HttpClientPageFetcher implements PageFetcher {
+
+    static final String CONNECTION_POOL_SIZE_PROPERTY = "jdk.httpclient.connectionPoolSize";
+    static final String HEADER_USER_AGENT = "User-Agent";
+
+    @Value("${siteindex.fetcher.connect-timeout-ms}")
+    private long connectTimeoutMs;
+
+    @Value("${siteindex.fetcher.read-timeout-ms}")
+    private long readTimeoutMs;
+
+    @Value("${siteindex.fetcher.pool-size}")
+    private int poolSize;
+
+    @Value("${siteindex.fetcher.user-agent}")
+    private String userAgent;
+
+    @Value("${siteindex.fetcher.max-body-bytes}")
+    private int maxBodyBytes;
+
+    private HttpClient httpClient;
+
+    /**
+     * Build the shared client once the configuration has been injected.
+     */
+    @PostConstruct
+    void init() {
+
+        // The JDK reads the connection pool size once, when the first client is created.
+        if (System.getProperty(CONNECTION_POOL_SIZE_PROPERTY) == null)
+            System.setProperty(CONNECTION_POOL_SIZE_PROPERTY, Integer.toString(poolSize));
+
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(Executors.newFixedThreadPool(Math.max(1, poolSize), daemonThreads()))
+                .build();
+        log.debug("HttpClient created: pool size {}, connect timeout {}ms, read timeout {}ms",
+                poolSize, connectTimeoutMs, readTimeoutMs);
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetchAsync(String url, Map<String, String> requestHeaders) {
+        return send(url, requestHeaders, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetchPageAsync(String url, Map<String, String> requestHeaders) {
+        return send(url, requestHeaders, this::pageBody);
+    }
+
+    private CompletableFuture<FetchResult> send(String url, Map<String, String> requestHeaders,
+                                                HttpResponse.BodyHandler<byte[]> bodyHandler) {
+
+        final HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(RequestUris.of(url))
+                    .timeout(Duration.ofMillis(readTimeoutMs))
+                    .header(HEADER_USER_AGENT, userAgent)
+                    .GET();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException(String.format("Invalid URL: %s", url), e));
+        }
+        requestHeaders.forEach(builder::header);
+
+        return httpClient.sendAsync(builder.build(), bodyHandler)
+                .thenApply(response -> new FetchResult(url, response.uri().toString(), response.statusCode(),
+                        response.headers().map(), response.body()));
+    }
+
+    /**
+     * Read the body of a page, up to the maximum body size (or without limit if that is 0). The body
+     * of a response with an error status, or which is not a page, is discarded.
+     *
+     * @param responseInfo The status and headers of the response.
+     * @return The subscriber reading the body.
+     */
+    private HttpResponse.BodySubscriber<byte[]> pageBody(HttpResponse.ResponseInfo responseInfo) {
+
+        final int status = responseInfo.statusCode();
+        if (status < 200 || status >= 300
+                || !FetchResult.isPage(responseInfo.headers().firstValue(FetchResult.HEADER_CONTENT_TYPE).orElse("")))
+            return HttpResponse.BodySubscribers.replacing(new byte[0]);
+        return new LimitedBodySubscriber(maxBodyBytes > 0 ? maxBodyBytes : Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return The client shared by all requests, for components making requests other than page retrieval.
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * The client threads should not keep the application alive once the scan is complete.
+     *
+     * @return A factory for daemon threads.
+     */
+    private static ThreadFactory daemonThreads() {
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, "siteindex-http-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
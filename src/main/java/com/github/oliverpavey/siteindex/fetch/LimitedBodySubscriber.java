@@ -0,0 +1,67 @@
+package com.github.oliverpavey.siteindex.fetch;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Reads a response body into a byte array, up to a maximum size. A longer body is cut off at the
+ * maximum (as JSoup did), and the rest of it is not read.
+ */
+class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+    private final int maxBytes;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes The largest body read.
+     */
+    LimitedBodySubscriber(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public CompletionStage<byte[]> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+
+        for (ByteBuffer buffer : buffers) {
+            final byte[] bytes = new byte[Math.min(buffer.remaining(), maxBytes - body.size())];
+            buffer.get(bytes);
+            body.write(bytes, 0, bytes.length);
+            if (body.size() >= maxBytes) {
+                subscription.cancel();
+                result.complete(body.toByteArray());
+                return;
+            }
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        result.complete(body.toByteArray());
+    }
+}
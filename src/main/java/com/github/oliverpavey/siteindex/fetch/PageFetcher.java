@@ -0,0 +1,87 @@
+package com.github.oliverpavey.siteindex.fetch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Retrieves the content of a URL for a scan.
+ */
+public interface PageFetcher {
+
+    /**
+     * Start retrieving a URL, following any redirects.
+     *
+     * @param url            The URL to retrieve.
+     * @param requestHeaders Additional headers to send with the request. (May be empty.)
+     * @return A future completing with the response, or exceptionally with an IOException.
+     */
+    CompletableFuture<FetchResult> fetchAsync(String url, Map<String, String> requestHeaders);
+
+    /**
+     * Retrieve a URL, following any redirects, waiting for the response.
+     *
+     * @param url            The URL to retrieve.
+     * @param requestHeaders Additional headers to send with the request. (May be empty.)
+     * @return The response. Responses with an error status are returned rather than thrown.
+     * @throws IOException If no response could be obtained.
+     */
+    default FetchResult fetch(String url, Map<String, String> requestHeaders) throws IOException {
+        return await(url, fetchAsync(url, requestHeaders));
+    }
+
+    /**
+     * Start retrieving a URL which should be a page, following any redirects. The body of a response
+     * which has an error status, or is not a page, need not be read; and a long body may be cut off.
+     *
+     * @param url            The URL to retrieve.
+     * @param requestHeaders Additional headers to send with the request. (May be empty.)
+     * @return A future completing with the response, or exceptionally with an IOException.
+     */
+    default CompletableFuture<FetchResult> fetchPageAsync(String url, Map<String, String> requestHeaders) {
+        return fetchAsync(url, requestHeaders);
+    }
+
+    /**
+     * Retrieve a URL which should be a page, following any redirects, waiting for the response. (See fetchPageAsync.)
+     *
+     * @param url            The URL to retrieve.
+     * @param requestHeaders Additional headers to send with the request. (May be empty.)
+     * @return The response. Responses with an error status are returned rather than thrown.
+     * @throws IOException If no response could be obtained.
+     */
+    default FetchResult fetchPage(String url, Map<String, String> requestHeaders) throws IOException {
+        return await(url, fetchPageAsync(url, requestHeaders));
+    }
+
+    /**
+     * Retrieve a URL, following any redirects, waiting for the response.
+     *
+     * @param url The URL to retrieve.
+     * @return The response. Responses with an error status are returned rather than thrown.
+     * @throws IOException If no response could be obtained.
+     */
+    default FetchResult fetch(String url) throws IOException {
+        return fetch(url, Map.of());
+    }
+
+    /**
+     * Wait for a response, unwrapping the IOException with which it failed.
+     */
+    private static FetchResult await(String url, CompletableFuture<FetchResult> response) throws IOException {
+        try {
+            return response.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Interrupted retrieving: %s", url));
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.oliverpavey.siteindex.fetch;
+
+import java.net.IDN;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts the URLs found on pages into URIs which can be requested.
+ * <p>
+ * Pages often link to URLs which are not strictly valid: with spaces, non-ASCII characters or
+ * characters such as '|' or '{'. Browsers (and JSoup) percent-encode these when making the request,
+ * so the same is done here. Characters which are already percent-encoded are left as they are, and
+ * a non-ASCII host name is converted to its ASCII (punycode) form.
+ */
+public final class RequestUris {
+
+    static final String HEX_DIGITS = "0123456789ABCDEF";
+    static final String ALLOWED_PUNCTUATION = "-._~:/?@!$&'()*+,;="; // RFC 3986 unreserved and reserved, less '#[]'
+
+    private RequestUris() {
+    }
+
+    /**
+     * @param url An absolute URL, as found on a page.
+     * @return The URI to request.
+     * @throws IllegalArgumentException If the URL cannot be made into a URI. (e.g. It has an invalid host.)
+     */
+    public static URI of(String url) {
+        return URI.create(encode(url));
+    }
+
+    /**
+     * Percent-encode the characters of a URL which may not appear in a URI.
+     *
+     * @param url An absolute URL.
+     * @return The URL, encoded. (The same string, if nothing needed encoding.)
+     */
+    static String encode(String url) {
+
+        final int authorityStart = url.indexOf("://") + 3;
+        int authorityEnd = authorityStart < 3 ? 0 : authorityStart;
+        while (authorityEnd > 0 && authorityEnd < url.length() && "/?#".indexOf(url.charAt(authorityEnd)) < 0)
+            authorityEnd++;
+        if (isEncoded(url, authorityEnd))
+            return url;
+
+        final StringBuilder encoded = new StringBuilder(url.length() + 16);
+        if (authorityEnd > 0) {
+            encoded.append(url, 0, authorityStart);
+            encoded.append(asciiAuthority(url.substring(authorityStart, authorityEnd)));
+        }
+        boolean fragment = false;
+        for (int i = authorityEnd; i < url.length(); ) {
+            final int codePoint = url.codePointAt(i);
+            final int next = i + Character.charCount(codePoint);
+            if (codePoint == '#' && !fragment) {
+                fragment = true;
+                encoded.append('#');
+            } else if (codePoint == '%' && isPercentEncoded(url, i)) {
+                encoded.append('%');
+            } else if (isAllowed(codePoint)) {
+                encoded.append((char) codePoint);
+            } else {
+                for (byte b : url.substring(i, next).getBytes(StandardCharsets.UTF_8))
+                    encoded.append('%').append(HEX_DIGITS.charAt(b >> 4 & 0xF)).append(HEX_DIGITS.charAt(b & 0xF));
+            }
+            i = next;
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * @return True if the host is ASCII, and the rest of the URL from a position needs no encoding.
+     */
+    private static boolean isEncoded(String url, int from) {
+
+        for (int i = 0; i < from; i++) {
+            if (url.charAt(i) > '~')
+                return false;
+        }
+        boolean fragment = false;
+        for (int i = from; i < url.length(); i++) {
+            final char ch = url.charAt(i);
+            if (ch == '#' && !fragment)
+                fragment = true;
+            else if (ch == '%' ? !isPercentEncoded(url, i) : !isAllowed(ch))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Convert the host of an authority ([user-info@]host[:port]) to ASCII, if it is not.
+     */
+    private static String asciiAuthority(String authority) {
+
+        final int hostStart = authority.lastIndexOf('@') + 1;
+        int hostEnd = authority.lastIndexOf(':');
+        if (hostEnd < hostStart || authority.indexOf(']', hostStart) > hostEnd)
+            hostEnd = authority.length();
+        final String host = authority.substring(hostStart, hostEnd);
+        if (host.chars().allMatch(ch -> ch <= '~'))
+            return authority;
+        return authority.substring(0, hostStart) + IDN.toASCII(host) + authority.substring(hostEnd);
+    }
+
+    private static boolean isPercentEncoded(String url, int percent) {
+        return percent + 2 < url.length()
+                && Character.digit(url.charAt(percent + 1), 16) >= 0
+                && Character.digit(url.charAt(percent + 2), 16) >= 0;
+    }
+
+    private static boolean isAllowed(int ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9')
+                || ALLOWED_PUNCTUATION.indexOf(ch) >= 0;
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Frozen link graph of a scanned site, held in primitive arrays rather than objects per page and link.
+ * <p>
+ * Pages, external links and resources each have dense integer ids in URI order. The links, external
+ * links and resources of each page are held in compressed sparse row form: the targets of page
+ * <i>p</i> are {@code targets[offsets[p]]} to {@code targets[offsets[p + 1] - 1]}, sorted by id,
+ * so that each edge costs a single int.
+ * <p>
+ * PageScan views of the pages are created on demand (see CompactPageScan), so code written against
+ * the PageScan model, such as the report template, can read the graph unchanged.
+ */
+public class CompactLinkGraph {
+
+    private final String[] pageUris;
+    private final String[] pageTitles;
+    private final int[] pageDepths;
+    private final int[] pageReferences;
+    private final int[] linkOffsets;
+    private final int[] linkTargets;
+    private final String[] externalUrls;
+    private final int[] externalOffsets;
+    private final int[] externalTargets;
+    private final ResourceScan[] resources;
+    private final String[] resourceUris;
+    private final int[] resourceOffsets;
+    private final int[] resourceTargets;
+    private final int homepageId;
+
+    /**
+     * Constructor. The arrays are held, not copied. (See CompactSiteModelBuilder.)
+     */
+    CompactLinkGraph(String[] pageUris, String[] pageTitles, int[] pageDepths, int[] pageReferences,
+                     int[] linkOffsets, int[] linkTargets,
+                     String[] externalUrls, int[] externalOffsets, int[] externalTargets,
+                     ResourceScan[] resources, int[] resourceOffsets, int[] resourceTargets,
+                     int homepageId) {
+        this.pageUris = pageUris;
+        this.pageTitles = pageTitles;
+        this.pageDepths = pageDepths;
+        this.pageReferences = pageReferences;
+        this.linkOffsets = linkOffsets;
+        this.linkTargets = linkTargets;
+        this.externalUrls = externalUrls;
+        this.externalOffsets = externalOffsets;
+        this.externalTargets = externalTargets;
+        this.resources = resources;
+        this.resourceUris = Arrays.stream(resources).map(ResourceScan::getUri).toArray(String[]::new);
+        this.resourceOffsets = resourceOffsets;
+        this.resourceTargets = resourceTargets;
+        this.homepageId = homepageId;
+    }
+
+    /**
+     * @return The number of pages in the graph.
+     */
+    public int pageCount() {
+        return pageUris.length;
+    }
+
+    /**
+     * @return The id of the homepage.
+     */
+    public int getHomepageId() {
+        return homepageId;
+    }
+
+    /**
+     * @param uri The URI of a page.
+     * @return The id of the page, or -1 if the graph has no page with that URI.
+     */
+    public int pageId(String uri) {
+        final int id = Arrays.binarySearch(pageUris, uri);
+        return id < 0 ? -1 : id;
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The URI of the page.
+     */
+    public String pageUri(int pageId) {
+        return pageUris[pageId];
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The title of the page.
+     */
+    public String pageTitle(int pageId) {
+        return pageTitles[pageId];
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The number of links between the homepage and the page.
+     */
+    public int pageDepth(int pageId) {
+        return pageDepths[pageId];
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The number of other pages linking to the page.
+     */
+    public int pageReferences(int pageId) {
+        return pageReferences[pageId];
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The ids of the pages it links to, in URI order.
+     */
+    public int[] links(int pageId) {
+        return Arrays.copyOfRange(linkTargets, linkOffsets[pageId], linkOffsets[pageId + 1]);
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The external URLs it links to, in order.
+     */
+    public String[] externalLinks(int pageId) {
+        return Arrays.stream(externalTargets, externalOffsets[pageId], externalOffsets[pageId + 1])
+                .mapToObj(id -> externalUrls[id])
+                .toArray(String[]::new);
+    }
+
+    /**
+     * @return The number of distinct external URLs linked to by the site.
+     */
+    public int externalLinkCount() {
+        return externalUrls.length;
+    }
+
+    /**
+     * @return The number of resources used by the site.
+     */
+    public int resourceCount() {
+        return resources.length;
+    }
+
+    /**
+     * @param resourceId The id of a resource.
+     * @return The model of the resource.
+     */
+    public ResourceScan resource(int resourceId) {
+        return resources[resourceId];
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return A read-only PageScan view of the page.
+     */
+    public PageScan pageScan(int pageId) {
+        return new CompactPageScan(this, pageId);
+    }
+
+    /**
+     * @return The homepage, as a PageScan view.
+     */
+    public PageScan homepage() {
+        return pageScan(homepageId);
+    }
+
+    /**
+     * @return A read-only map, in URI order, of the pages as PageScan views.
+     */
+    public Map<String, PageScan> pageMap() {
+        return new SortedArrayMap<>(pageUris, this::pageScan);
+    }
+
+    /**
+     * @return A read-only map, in URI order, of the resources.
+     */
+    public Map<String, ResourceScan> resourceMap() {
+        return new SortedArrayMap<>(resourceUris, id -> resources[id]);
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return A read-only set view of the pages it links to.
+     */
+    Set<PageScan> linkSet(int pageId) {
+        return new IdRangeSet<>(linkTargets, linkOffsets[pageId], linkOffsets[pageId + 1], this::pageScan);
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return A read-only set view of the external URLs it links to.
+     */
+    Set<String> externalLinkSet(int pageId) {
+        return new IdRangeSet<>(externalTargets, externalOffsets[pageId], externalOffsets[pageId + 1],
+                id -> externalUrls[id]);
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return A read-only set view of the resources it uses.
+     */
+    Set<ResourceScan> resourceSet(int pageId) {
+        return new IdRangeSet<>(resourceTargets, resourceOffsets[pageId], resourceOffsets[pageId + 1],
+                id -> resources[id]);
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+
+import java.util.Set;
+
+/**
+ * Read-only PageScan view of a page in a CompactLinkGraph. Views are created on demand, and read
+ * through to the arrays of the graph, so they hold no collections of their own.
+ */
+public class CompactPageScan extends PageScan {
+
+    private final CompactLinkGraph graph;
+    private final int pageId;
+
+    /**
+     * Constructor.
+     *
+     * @param graph  The graph holding the page.
+     * @param pageId The id of the page in the graph.
+     */
+    CompactPageScan(CompactLinkGraph graph, int pageId) {
+        this.graph = graph;
+        this.pageId = pageId;
+    }
+
+    /**
+     * @return The id of the page in its graph.
+     */
+    public int getPageId() {
+        return pageId;
+    }
+
+    @Override
+    public String getUri() {
+        return graph.pageUri(pageId);
+    }
+
+    @Override
+    public String getTitle() {
+        return graph.pageTitle(pageId);
+    }
+
+    @Override
+    public int getReferences() {
+        return graph.pageReferences(pageId);
+    }
+
+    @Override
+    public int getDepth() {
+        return graph.pageDepth(pageId);
+    }
+
+    @Override
+    public Set<PageScan> getLinks() {
+        return graph.linkSet(pageId);
+    }
+
+    @Override
+    public Set<String> getExternalLinks() {
+        return graph.externalLinkSet(pageId);
+    }
+
+    @Override
+    public Set<ResourceScan> getResources() {
+        return graph.resourceSet(pageId);
+    }
+
+    @Override
+    public void setUri(String uri) {
+        throw new UnsupportedOperationException("Compact page views are read-only");
+    }
+
+    @Override
+    public void setTitle(String title) {
+        throw new UnsupportedOperationException("Compact page views are read-only");
+    }
+
+    @Override
+    public void setReferences(int references) {
+        throw new UnsupportedOperationException("Compact page views are read-only");
+    }
+
+    @Override
+    public void setDepth(int depth) {
+        throw new UnsupportedOperationException("Compact page views are read-only");
+    }
+
+    @Override
+    public void setLinks(Set<PageScan> links) {
+        throw new UnsupportedOperationException("Compact page views are read-only");
+    }
+
+    @Override
+    public void setExternalLinks(Set<String> externalLinks) {
+        throw new UnsupportedOperationException("Compact page views are read-only");
+    }
+
+    @Override
+    public void setResources(Set<ResourceScan> resources) {
+        throw new UnsupportedOperationException("Compact page views are read-only");
+    }
+
+    @Override
+    public void incReferences() {
+        throw new UnsupportedOperationException("Compact page views are read-only");
+    }
+
+    @Override
+    public int compareTo(PageScan other) {
+        return getUri().compareTo(other.getUri());
+    }
+
+    /**
+     * Views are equal when they show the same page of the same graph.
+     * (The links are not compared, as they may lead back to this page.)
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof CompactPageScan))
+            return false;
+        final CompactPageScan view = (CompactPageScan) other;
+        return graph == view.graph && pageId == view.pageId;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(graph) * 31 + pageId;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactPageScan(uri=" + getUri() + ", depth=" + getDepth() + ")";
+    }
+}
@@ -0,0 +1,220 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import com.github.oliverpavey.siteindex.model.PageContent;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * SiteModelBuilder holding the site as a CompactLinkGraph.
+ * <p>
+ * During the scan every URL found is interned to an integer id, and each page keeps only arrays of
+ * the ids it refers to. When the model is built the pages, external links and resources are each
+ * numbered in URI order and the references are frozen into compressed sparse row arrays; the
+ * SiteScan returned reads them through views.
+ */
+public class CompactSiteModelBuilder implements SiteModelBuilder {
+
+    private static final int NONE = -1;
+
+    private final UrlInternTable urls = new UrlInternTable();
+    private final Map<Integer, PendingPage> pages = new ConcurrentHashMap<>();
+
+    /**
+     * A page as recorded during the scan, with references as URL ids in the order they were found.
+     */
+    private static class PendingPage {
+
+        final int depth;
+        final String title;
+        final int[] links;
+        final int[] externalLinks;
+        final int[] resources;
+
+        PendingPage(int depth, String title, int[] links, int[] externalLinks, int[] resources) {
+            this.depth = depth;
+            this.title = title;
+            this.links = links;
+            this.externalLinks = externalLinks;
+            this.resources = resources;
+        }
+    }
+
+    @Override
+    public void addPage(String uri, int depth, PageContent content) {
+
+        pages.putIfAbsent(urls.intern(uri), new PendingPage(depth, content.getTitle(),
+                intern(content.getLinks()), intern(content.getExternalLinks()), intern(content.getResources())));
+    }
+
+    @Override
+    public boolean hasPage(String uri) {
+        final int id = urls.idOf(uri);
+        return id != NONE && pages.containsKey(id);
+    }
+
+    @Override
+    public int pageCount() {
+        return pages.size();
+    }
+
+    @Override
+    public SiteScan build(String domain, String homepageUri) {
+
+        final CompactLinkGraph graph = freeze(homepageUri);
+        pages.clear();
+
+        final SiteScan siteScan = new SiteScan();
+        siteScan.setDomain(domain);
+        siteScan.setHomepage(graph.homepage());
+        siteScan.setUriToPageScan(graph.pageMap());
+        siteScan.setUriToResourceScan(graph.resourceMap());
+        return siteScan;
+    }
+
+    /**
+     * Number the pages, external links and resources, and build the arrays of the graph.
+     *
+     * @param homepageUri The URI of the homepage.
+     * @return The graph.
+     */
+    CompactLinkGraph freeze(String homepageUri) {
+
+        final int urlCount = urls.size();
+
+        // Number the pages in URI order.
+        final int[] pageUrlIds = sortByUrl(pages.keySet().stream().mapToInt(Integer::intValue));
+        final int[] pageIdOfUrl = idsOf(pageUrlIds, urlCount);
+        final int pageCount = pageUrlIds.length;
+        final PendingPage[] pending = new PendingPage[pageCount];
+        final String[] pageUris = new String[pageCount];
+        final String[] pageTitles = new String[pageCount];
+        final int[] pageDepths = new int[pageCount];
+        for (int page = 0; page < pageCount; page++) {
+            pending[page] = pages.get(pageUrlIds[page]);
+            pageUris[page] = urls.url(pageUrlIds[page]);
+            pageTitles[page] = pending[page].title;
+            pageDepths[page] = pending[page].depth;
+        }
+
+        // Links to pages which could not be read are dropped.
+        final int[] linkOffsets = new int[pageCount + 1];
+        final int[] linkTargets = toRows(pending, p -> p.links, pageIdOfUrl, linkOffsets);
+        final int[] pageReferences = new int[pageCount];
+        for (int target : linkTargets)
+            pageReferences[target]++;
+
+        final int[] externalUrlIds = sortByUrl(distinctIds(pending, p -> p.externalLinks));
+        final String[] externalUrls = Arrays.stream(externalUrlIds).mapToObj(urls::url).toArray(String[]::new);
+        final int[] externalOffsets = new int[pageCount + 1];
+        final int[] externalTargets = toRows(pending, p -> p.externalLinks, idsOf(externalUrlIds, urlCount), externalOffsets);
+
+        // Resources count every reference, including repeats on the same page.
+        final int[] resourceUrlIds = sortByUrl(distinctIds(pending, p -> p.resources));
+        final int[] resourceIdOfUrl = idsOf(resourceUrlIds, urlCount);
+        final ResourceScan[] resources = new ResourceScan[resourceUrlIds.length];
+        for (int resource = 0; resource < resources.length; resource++)
+            resources[resource] = new ResourceScan(urls.url(resourceUrlIds[resource]));
+        for (PendingPage page : pending)
+            for (int urlId : page.resources)
+                resources[resourceIdOfUrl[urlId]].incReferences();
+        final int[] resourceOffsets = new int[pageCount + 1];
+        final int[] resourceTargets = toRows(pending, p -> p.resources, resourceIdOfUrl, resourceOffsets);
+
+        final int homepageId = pageIdOfUrl[urls.idOf(homepageUri)];
+        assignDepths(homepageId, pageDepths, linkOffsets, linkTargets);
+
+        return new CompactLinkGraph(pageUris, pageTitles, pageDepths, pageReferences,
+                linkOffsets, linkTargets, externalUrls, externalOffsets, externalTargets,
+                resources, resourceOffsets, resourceTargets, homepageId);
+    }
+
+    /**
+     * Set the depth of each page reachable from the homepage to its shortest link distance from it.
+     * (See TreeSiteModelBuilder.assignDepths.)
+     */
+    private static void assignDepths(int homepageId, int[] depths, int[] linkOffsets, int[] linkTargets) {
+
+        final boolean[] reached = new boolean[depths.length];
+        final int[] queue = new int[depths.length];
+        int head = 0;
+        int tail = 0;
+        depths[homepageId] = 0;
+        reached[homepageId] = true;
+        queue[tail++] = homepageId;
+        while (head < tail) {
+            final int page = queue[head++];
+            for (int i = linkOffsets[page]; i < linkOffsets[page + 1]; i++) {
+                final int link = linkTargets[i];
+                if (!reached[link]) {
+                    reached[link] = true;
+                    depths[link] = depths[page] + 1;
+                    queue[tail++] = link;
+                }
+            }
+        }
+    }
+
+    /**
+     * Build one compressed sparse row array from a column of URL ids of each page.
+     *
+     * @param pending  The pages, in page id order.
+     * @param column   Selects the URL ids from a page.
+     * @param idOfUrl  Maps URL ids to the ids of the row targets, or NONE to drop the reference.
+     * @param offsets  Filled with the offset of each page's row, and the total length at the end.
+     * @return The targets of all rows, each row sorted and without repeats.
+     */
+    private static int[] toRows(PendingPage[] pending, Function<PendingPage, int[]> column,
+                                int[] idOfUrl, int[] offsets) {
+
+        final int[][] rows = new int[pending.length][];
+        for (int page = 0; page < pending.length; page++) {
+            rows[page] = Arrays.stream(column.apply(pending[page]))
+                    .map(urlId -> idOfUrl[urlId])
+                    .filter(id -> id != NONE)
+                    .sorted()
+                    .distinct()
+                    .toArray();
+            offsets[page + 1] = offsets[page] + rows[page].length;
+        }
+        final int[] targets = new int[offsets[pending.length]];
+        for (int page = 0; page < pending.length; page++)
+            System.arraycopy(rows[page], 0, targets, offsets[page], rows[page].length);
+        return targets;
+    }
+
+    /**
+     * @param urlIds   URL ids, in the order they are to be numbered.
+     * @param urlCount The number of URLs interned.
+     * @return An array mapping each URL id to its position in urlIds, or NONE.
+     */
+    private static int[] idsOf(int[] urlIds, int urlCount) {
+        final int[] idOfUrl = new int[urlCount];
+        Arrays.fill(idOfUrl, NONE);
+        for (int id = 0; id < urlIds.length; id++)
+            idOfUrl[urlIds[id]] = id;
+        return idOfUrl;
+    }
+
+    private static IntStream distinctIds(PendingPage[] pending, Function<PendingPage, int[]> column) {
+        return Arrays.stream(pending).flatMapToInt(page -> Arrays.stream(column.apply(page))).distinct();
+    }
+
+    private int[] sortByUrl(IntStream urlIds) {
+        return urlIds.boxed()
+                .sorted(Comparator.comparing(urls::url))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private int[] intern(List<String> uris) {
+        return uris.stream().mapToInt(urls::intern).toArray();
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+/**
+ * Read-only set view of a range of distinct ids in an array, mapping each id to an element as it is read.
+ * (Public so the report template can call its methods reflectively.)
+ *
+ * @param <E> The type of element.
+ */
+public class IdRangeSet<E> extends AbstractSet<E> {
+
+    private final int[] ids;
+    private final int from;
+    private final int to;
+    private final IntFunction<E> element;
+
+    /**
+     * Constructor.
+     *
+     * @param ids     The array holding the ids.
+     * @param from    The index of the first id in the set.
+     * @param to      The index after the last id in the set.
+     * @param element Maps an id to its element.
+     */
+    IdRangeSet(int[] ids, int from, int to, IntFunction<E> element) {
+        this.ids = ids;
+        this.from = from;
+        this.to = to;
+        this.element = element;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+
+            private int next = from;
+
+            @Override
+            public boolean hasNext() {
+                return next < to;
+            }
+
+            @Override
+            public E next() {
+                if (next >= to)
+                    throw new NoSuchElementException();
+                return element.apply(ids[next++]);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+}
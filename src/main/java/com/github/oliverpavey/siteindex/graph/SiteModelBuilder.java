@@ -0,0 +1,44 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import com.github.oliverpavey.siteindex.model.PageContent;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+
+/**
+ * Collects the pages found by a scan, and joins them into the model of the site once the scan is complete.
+ * <p>
+ * Pages may be added by concurrent worker threads; the model is built once, after all pages are added.
+ */
+public interface SiteModelBuilder {
+
+    /**
+     * Add a scanned page. A page already added is ignored.
+     *
+     * @param uri     The URI of the page.
+     * @param depth   The number of links between the homepage and the page, when it was queued.
+     * @param content The content extracted from the page.
+     */
+    void addPage(String uri, int depth, PageContent content);
+
+    /**
+     * Check whether a page has been added.
+     *
+     * @param uri The URI of the page.
+     * @return True if the page has been added.
+     */
+    boolean hasPage(String uri);
+
+    /**
+     * @return The number of pages added.
+     */
+    int pageCount();
+
+    /**
+     * Resolve the links between the pages added, count references, and set each page's depth to its
+     * shortest link distance from the homepage.
+     *
+     * @param domain      The domain of the site scanned.
+     * @param homepageUri The URI of the homepage, which must have been added.
+     * @return The model of the site.
+     */
+    SiteScan build(String domain, String homepageUri);
+}
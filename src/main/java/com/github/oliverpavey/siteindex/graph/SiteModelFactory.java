@@ -0,0 +1,46 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * Component creating the configured kind of SiteModelBuilder for each scan.
+ */
+@Component
+public class SiteModelFactory {
+
+    static final String TYPE_TREE = "tree";
+    static final String TYPE_COMPACT = "compact";
+    static final String TYPE_SPILL = "spill";
+
+    @Value("${siteindex.model.type}")
+    private String type;
+
+    @Value("${siteindex.model.spill.max-pages}")
+    private int spillMaxPages;
+
+    @Value("${siteindex.model.spill.max-heap-bytes}")
+    private long spillMaxHeapBytes;
+
+    @Value("${siteindex.model.spill.dir}")
+    private String spillDir;
+
+    /**
+     * @return A new, empty, SiteModelBuilder of the configured type.
+     */
+    public SiteModelBuilder create() {
+
+        switch (type) {
+            case TYPE_TREE:
+                return new TreeSiteModelBuilder();
+            case TYPE_COMPACT:
+                return new CompactSiteModelBuilder();
+            case TYPE_SPILL:
+                return new SpillingSiteModelBuilder(Paths.get(spillDir), spillMaxPages, spillMaxHeapBytes);
+            default:
+                throw new IllegalStateException(String.format("Unknown siteindex.model.type: '%s'", type));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Read-only map view of a sorted array of keys, with values found by the index of their key.
+ * Iterates in key order, and finds keys by binary search.
+ * (Public so the report template can call its methods reflectively.)
+ *
+ * @param <V> The type of value.
+ */
+public class SortedArrayMap<V> extends AbstractMap<String, V> {
+
+    private final String[] keys;
+    private final IntFunction<V> value;
+
+    /**
+     * Constructor.
+     *
+     * @param keys  The keys, sorted.
+     * @param value Maps the index of a key to its value.
+     */
+    SortedArrayMap(String[] keys, IntFunction<V> value) {
+        this.keys = keys;
+        this.value = value;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        final int index = indexOf(key);
+        return index < 0 ? null : value.apply(index);
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<>() {
+
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new Iterator<>() {
+
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, V> next() {
+                        if (next >= keys.length)
+                            throw new NoSuchElementException();
+                        final int index = next++;
+                        return new SimpleImmutableEntry<>(keys[index], value.apply(index));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof String))
+            return -1;
+        final int index = Arrays.binarySearch(keys, key);
+        return index < 0 ? -1 : index;
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import com.github.oliverpavey.siteindex.tools.DataStrings;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A scanned page as written to the spill files of a SpillingSiteModelBuilder: its URI, title and
+ * references, in the order they were found on the page. (The depth and reference count of each page
+ * are kept in memory, so they can be corrected without rewriting the files.)
+ */
+class SpilledPage {
+
+    // Approximate heap cost of a page and its lists, and of each String, excluding the characters.
+    static final long PAGE_OVERHEAD_BYTES = 128;
+    static final long STRING_OVERHEAD_BYTES = 48;
+
+    final String uri;
+    final String title;
+    final List<String> links;
+    final List<String> externalLinks;
+    final List<String> resources;
+
+    /**
+     * Constructor.
+     */
+    SpilledPage(String uri, String title, List<String> links, List<String> externalLinks, List<String> resources) {
+        this.uri = uri;
+        this.title = title;
+        this.links = links;
+        this.externalLinks = externalLinks;
+        this.resources = resources;
+    }
+
+    /**
+     * @return An estimate of the heap used by the page, while it is buffered.
+     */
+    long estimateBytes() {
+        return PAGE_OVERHEAD_BYTES + estimateBytes(uri) + estimateBytes(title)
+                + estimateBytes(links) + estimateBytes(externalLinks) + estimateBytes(resources);
+    }
+
+    /**
+     * Write the page to a spill file.
+     *
+     * @param out The stream to write.
+     * @throws IOException Any exception writing the stream.
+     */
+    void write(DataOutputStream out) throws IOException {
+        DataStrings.write(out, uri);
+        DataStrings.write(out, title);
+        writeList(links, out);
+        writeList(externalLinks, out);
+        writeList(resources, out);
+    }
+
+    /**
+     * Read a page from a spill file.
+     *
+     * @param in The stream to read.
+     * @return The page.
+     * @throws IOException Any exception reading the stream.
+     */
+    static SpilledPage read(DataInputStream in) throws IOException {
+        final String uri = DataStrings.read(in);
+        final String title = DataStrings.read(in);
+        return new SpilledPage(uri, title, readList(in), readList(in), readList(in));
+    }
+
+    private static long estimateBytes(String value) {
+        return STRING_OVERHEAD_BYTES + (long) value.length() * Character.BYTES;
+    }
+
+    private static long estimateBytes(List<String> values) {
+        long bytes = 0;
+        for (String value : values)
+            bytes += Long.BYTES + estimateBytes(value);
+        return bytes;
+    }
+
+    private static void writeList(List<String> values, DataOutputStream out) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values)
+            DataStrings.write(out, value);
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        final List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            values.add(DataStrings.read(in));
+        return values;
+    }
+}
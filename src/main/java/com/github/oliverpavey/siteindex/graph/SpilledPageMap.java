@@ -0,0 +1,234 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+import com.github.oliverpavey.siteindex.tools.LongIntHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only map view of the pages spilled to disk by a SpillingSiteModelBuilder, merged into a
+ * single file in URI order. Iterating the map reads the file from start to end, creating a PageScan
+ * for each page as it is reached, so only the page being read is held on the heap.
+ * Pages are found by key through an in-memory index of their hashes and positions in the file.
+ * (Public so the report template can call its methods reflectively.)
+ */
+public class SpilledPageMap extends AbstractMap<String, PageScan> {
+
+    static final int NONE = -1;
+    static final int READ_BUFFER_BYTES = 64 * 1024;
+    static final int RANDOM_READ_BUFFER_BYTES = 4 * 1024;
+
+    private final Path file;
+    private final LongIntHashMap index;
+    private final long[] offsets;
+    private final int[] depths;
+    private final int[] references;
+    private final Map<String, ResourceScan> uriToResourceScan;
+
+    /**
+     * Constructor.
+     *
+     * @param file              The merged file of pages, in URI order.
+     * @param index             Maps the hash of each page's URI to its id: its position in the file.
+     * @param offsets           The offset in the file of each page, by id.
+     * @param depths            The depth of each page, by id.
+     * @param references        The number of pages linking to each page, by id.
+     * @param uriToResourceScan The resources of the site.
+     */
+    SpilledPageMap(Path file, LongIntHashMap index, long[] offsets, int[] depths, int[] references,
+                   Map<String, ResourceScan> uriToResourceScan) {
+        this.file = file;
+        this.index = index;
+        this.offsets = offsets;
+        this.depths = depths;
+        this.references = references;
+        this.uriToResourceScan = uriToResourceScan;
+    }
+
+    @Override
+    public int size() {
+        return offsets.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public PageScan get(Object key) {
+
+        final int pageId = key instanceof String ? pageId((String) key) : NONE;
+        if (pageId == NONE)
+            return null;
+        try (FileChannel channel = open()) {
+            final SpilledPage page = read(channel, pageId);
+            return page.uri.equals(key) ? pageScan(pageId, page) : null; // a hash collision
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read spilled page", e);
+        }
+    }
+
+    @Override
+    public Set<Entry<String, PageScan>> entrySet() {
+        return new AbstractSet<>() {
+
+            @Override
+            public Iterator<Entry<String, PageScan>> iterator() {
+                final Iterator<SpilledPage> pages = pages();
+                return new Iterator<>() {
+
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return pages.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, PageScan> next() {
+                        final SpilledPage page = pages.next();
+                        return new SimpleImmutableEntry<>(page.uri, pageScan(next++, page));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return offsets.length;
+            }
+        };
+    }
+
+    /**
+     * @param uri The URI of a page.
+     * @return The id of the page, or NONE if it is not a page of the site.
+     */
+    int pageId(String uri) {
+        return index.get(SpillingSiteModelBuilder.hash(uri), NONE);
+    }
+
+    /**
+     * Read the pages of the file in order, from start to end. The file is closed once the last page is read.
+     *
+     * @return An iterator of the pages.
+     */
+    Iterator<SpilledPage> pages() {
+
+        final DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), READ_BUFFER_BYTES));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open spilled pages", e);
+        }
+        return new Iterator<>() {
+
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < offsets.length;
+            }
+
+            @Override
+            public SpilledPage next() {
+                if (next >= offsets.length)
+                    throw new NoSuchElementException();
+                try {
+                    final SpilledPage page = SpilledPage.read(in);
+                    if (++next == offsets.length)
+                        in.close();
+                    return page;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not read spilled pages", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The depth of the page.
+     */
+    int depth(int pageId) {
+        return depths[pageId];
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @param depth  The corrected depth of the page.
+     */
+    void setDepth(int pageId, int depth) {
+        depths[pageId] = depth;
+    }
+
+    /**
+     * Record a count of references to a page from another page.
+     *
+     * @param pageId The id of the page.
+     */
+    void addReference(int pageId) {
+        references[pageId]++;
+    }
+
+    /**
+     * @return A channel reading the file, for reading pages by id, which the caller must close.
+     * @throws IOException If the file cannot be opened.
+     */
+    FileChannel open() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /**
+     * Read a page by id.
+     *
+     * @param channel A channel reading the file.
+     * @param pageId  The id of the page.
+     * @return The page.
+     * @throws IOException If the file cannot be read.
+     */
+    SpilledPage read(FileChannel channel, int pageId) throws IOException {
+        channel.position(offsets[pageId]);
+        return SpilledPage.read(new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel), RANDOM_READ_BUFFER_BYTES)));
+    }
+
+    /**
+     * Create the model of a page read from the file. Links to pages which could not be read are dropped.
+     */
+    private PageScan pageScan(int pageId, SpilledPage page) {
+
+        final PageScan pageScan = new PageScan(page.uri);
+        pageScan.setTitle(page.title);
+        pageScan.setDepth(depths[pageId]);
+        pageScan.setReferences(references[pageId]);
+        for (String link : page.links) {
+            final int linkId = pageId(link);
+            if (linkId != NONE) {
+                final PageScan linkScan = new PageScan(link);
+                linkScan.setDepth(depths[linkId]);
+                linkScan.setReferences(references[linkId]);
+                pageScan.getLinks().add(linkScan);
+            }
+        }
+        pageScan.getExternalLinks().addAll(page.externalLinks);
+        for (String resource : page.resources)
+            pageScan.getResources().add(uriToResourceScan.get(resource));
+        return pageScan;
+    }
+}
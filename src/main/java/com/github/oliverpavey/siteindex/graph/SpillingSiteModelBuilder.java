@@ -0,0 +1,357 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import com.github.oliverpavey.siteindex.model.PageContent;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import com.github.oliverpavey.siteindex.tools.LongIntHashMap;
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * SiteModelBuilder keeping the heap used by a scan within a budget, for sites too large to hold in memory.
+ * <p>
+ * Scanned pages are buffered until the buffer reaches the configured number of pages or (estimated)
+ * heap size; the buffer is then sorted by URI and spilled to a run file. When the model is built the
+ * runs are merged into a single file in URI order, which the SiteScan returned reads a page at a time
+ * (see SpilledPageMap). Only an index of the pages (the hash, position, depth and reference count of
+ * each) and the resources of the site stay on the heap.
+ * <p>
+ * Pages are identified by a 64 bit hash of their URI, so a (vanishingly unlikely) collision would drop a page.
+ */
+@Slf4j
+public class SpillingSiteModelBuilder implements SiteModelBuilder {
+
+    static final int NONE = -1;
+    static final int WRITE_BUFFER_BYTES = 64 * 1024;
+    static final int EXPECTED_PAGES = 1024;
+    static final String RUN_FILE = "run-%d.spill";
+    static final String PAGES_FILE = "pages.spill";
+
+    private final Path spillDir;
+    private final int maxPages;
+    private final long maxHeapBytes;
+
+    // Maps the hash of each page's URI to its depth during the scan, and to its id once the pages are merged.
+    private final LongIntHashMap index = new LongIntHashMap(EXPECTED_PAGES);
+    private final Map<String, ResourceScan> uriToResourceScan = new ConcurrentSkipListMap<>();
+
+    private final Object bufferLock = new Object();
+    private List<SpilledPage> buffer = new ArrayList<>();
+    private long bufferBytes;
+
+    private final List<Path> runs = new ArrayList<>(); // guarded by this
+    private Path dir; // guarded by this
+
+    /**
+     * Constructor.
+     *
+     * @param spillDir     The directory in which each scan creates a temporary directory for its files.
+     * @param maxPages     The number of pages buffered before they are spilled (zero for no limit).
+     * @param maxHeapBytes The estimated heap used by buffered pages before they are spilled (zero for no limit).
+     */
+    public SpillingSiteModelBuilder(Path spillDir, int maxPages, long maxHeapBytes) {
+        this.spillDir = spillDir;
+        this.maxPages = maxPages;
+        this.maxHeapBytes = maxHeapBytes;
+    }
+
+    @Override
+    public void addPage(String uri, int depth, PageContent content) {
+
+        if (!index.putIfAbsent(hash(uri), depth))
+            return;
+        for (String resourceUri : content.getResources())
+            uriToResourceScan.computeIfAbsent(resourceUri, ResourceScan::new).incReferences();
+
+        final SpilledPage page = new SpilledPage(uri, content.getTitle(),
+                content.getLinks(), content.getExternalLinks(), content.getResources());
+        final List<SpilledPage> full;
+        synchronized (bufferLock) {
+            buffer.add(page);
+            bufferBytes += page.estimateBytes();
+            if ((maxPages <= 0 || buffer.size() < maxPages) && (maxHeapBytes <= 0 || bufferBytes < maxHeapBytes))
+                return;
+            full = buffer;
+            buffer = new ArrayList<>();
+            bufferBytes = 0;
+        }
+        try {
+            spill(full);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill pages to disk", e);
+        }
+    }
+
+    @Override
+    public boolean hasPage(String uri) {
+        return index.get(hash(uri), NONE) != NONE;
+    }
+
+    @Override
+    public int pageCount() {
+        return index.size();
+    }
+
+    @Override
+    public SiteScan build(String domain, String homepageUri) {
+
+        final SpilledPageMap pageMap;
+        try {
+            pageMap = merge();
+            countReferences(pageMap);
+            assignDepths(pageMap, homepageUri);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not merge spilled pages", e);
+        }
+
+        final SiteScan siteScan = new SiteScan();
+        siteScan.setDomain(domain);
+        siteScan.setHomepage(pageMap.get(homepageUri));
+        siteScan.setUriToPageScan(pageMap);
+        siteScan.setUriToResourceScan(uriToResourceScan);
+        return siteScan;
+    }
+
+    /**
+     * @param uri The URI of a page.
+     * @return A 64 bit hash of the URI.
+     */
+    static long hash(String uri) {
+        return Hashing.murmur3_128().hashString(uri, StandardCharsets.UTF_8).asLong();
+    }
+
+    /**
+     * Sort buffered pages by URI, and write them to a new run file.
+     */
+    private synchronized void spill(List<SpilledPage> pages) throws IOException {
+
+        pages.sort(Comparator.comparing(page -> page.uri));
+        final Path run = directory().resolve(String.format(RUN_FILE, runs.size()));
+        run.toFile().deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(run), WRITE_BUFFER_BYTES))) {
+            for (SpilledPage page : pages)
+                page.write(out);
+        }
+        runs.add(run);
+        log.debug("Spilled {} pages to: {}", pages.size(), run);
+    }
+
+    /**
+     * Merge the runs, and the pages still buffered, into a single file in URI order. Each page is
+     * numbered by its position in the file, and its depth moved from the index to an array.
+     *
+     * @return The map of the merged pages, with no references counted yet.
+     */
+    private synchronized SpilledPageMap merge() throws IOException {
+
+        final List<Iterator<SpilledPage>> sources = new ArrayList<>();
+        final List<InputStream> inputs = new ArrayList<>();
+        final Path pagesFile = directory().resolve(PAGES_FILE);
+        pagesFile.toFile().deleteOnExit();
+
+        final int pageCount = index.size();
+        final long[] offsets = new long[pageCount];
+        final int[] depths = new int[pageCount];
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(pagesFile), WRITE_BUFFER_BYTES))) {
+
+            for (Path run : runs) {
+                final InputStream in = new BufferedInputStream(Files.newInputStream(run), WRITE_BUFFER_BYTES);
+                inputs.add(in);
+                sources.add(runPages(new DataInputStream(in)));
+            }
+            synchronized (bufferLock) {
+                buffer.sort(Comparator.comparing(page -> page.uri));
+                sources.add(buffer.iterator());
+            }
+
+            // Take the least page of the sources each time; each source is already in URI order.
+            final PriorityQueue<PeekingSource> queue = new PriorityQueue<>(
+                    Math.max(1, sources.size()), Comparator.comparing(source -> source.head.uri));
+            for (Iterator<SpilledPage> source : sources) {
+                if (source.hasNext())
+                    queue.add(new PeekingSource(source));
+            }
+            final ByteArrayOutputStream record = new ByteArrayOutputStream();
+            long offset = 0;
+            int pageId = 0;
+            while (!queue.isEmpty()) {
+                final PeekingSource source = queue.remove();
+                final SpilledPage page = source.head;
+                final long hash = hash(page.uri);
+                offsets[pageId] = offset;
+                depths[pageId] = index.get(hash, NONE);
+                index.replace(hash, pageId);
+                pageId++;
+
+                record.reset();
+                page.write(new DataOutputStream(record));
+                record.writeTo(out);
+                offset += record.size();
+                if (source.advance())
+                    queue.add(source);
+            }
+
+        } finally {
+            for (InputStream in : inputs)
+                in.close();
+        }
+
+        for (Path run : runs)
+            Files.deleteIfExists(run);
+        log.debug("Merged {} pages from {} spilled runs to: {}", pageCount, runs.size(), pagesFile);
+        runs.clear();
+        synchronized (bufferLock) {
+            buffer = new ArrayList<>();
+            bufferBytes = 0;
+        }
+        return new SpilledPageMap(pagesFile, index, offsets, depths, new int[pageCount], uriToResourceScan);
+    }
+
+    /**
+     * Count the pages linking to each page, reading the merged pages in order.
+     * A page linking to another more than once counts once; links to pages which could not be read are dropped.
+     */
+    private static void countReferences(SpilledPageMap pageMap) {
+
+        final Iterator<SpilledPage> pages = pageMap.pages();
+        while (pages.hasNext()) {
+            for (int linkId : linkIds(pageMap, pages.next()))
+                pageMap.addReference(linkId);
+        }
+    }
+
+    /**
+     * Set the depth of each page to its shortest link distance from the homepage.
+     * (See TreeSiteModelBuilder.assignDepths.) The pages are read from the merged file as the walk reaches them.
+     */
+    private static void assignDepths(SpilledPageMap pageMap, String homepageUri) throws IOException {
+
+        final int homepageId = pageMap.pageId(homepageUri);
+        if (homepageId == NONE)
+            return;
+        final boolean[] reached = new boolean[pageMap.size()];
+        final int[] queue = new int[pageMap.size()];
+        int head = 0;
+        int tail = 0;
+        pageMap.setDepth(homepageId, 0);
+        reached[homepageId] = true;
+        queue[tail++] = homepageId;
+        try (FileChannel channel = pageMap.open()) {
+            while (head < tail) {
+                final int page = queue[head++];
+                for (int link : linkIds(pageMap, pageMap.read(channel, page))) {
+                    if (!reached[link]) {
+                        reached[link] = true;
+                        pageMap.setDepth(link, pageMap.depth(page) + 1);
+                        queue[tail++] = link;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The ids of the pages a page links to, in the order they were found, without repeats.
+     */
+    private static int[] linkIds(SpilledPageMap pageMap, SpilledPage page) {
+        return page.links.stream()
+                .mapToInt(pageMap::pageId)
+                .filter(id -> id != NONE)
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * @return The temporary directory of this scan's files, created when first needed.
+     */
+    private synchronized Path directory() throws IOException {
+        if (dir == null) {
+            Files.createDirectories(spillDir);
+            dir = Files.createTempDirectory(spillDir, "scan-");
+            dir.toFile().deleteOnExit(); // registered before its files, so it is deleted after them
+        }
+        return dir;
+    }
+
+    /**
+     * Read the pages of a run file in order. (The caller closes the stream.)
+     */
+    private static Iterator<SpilledPage> runPages(DataInputStream in) {
+        return new Iterator<>() {
+
+            private SpilledPage next = readNext();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public SpilledPage next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                final SpilledPage page = next;
+                next = readNext();
+                return page;
+            }
+
+            private SpilledPage readNext() {
+                try {
+                    return SpilledPage.read(in);
+                } catch (EOFException e) {
+                    return null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not read spilled run", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * A source of pages being merged, with its next page.
+     */
+    private static class PeekingSource {
+
+        private final Iterator<SpilledPage> pages;
+        private SpilledPage head;
+
+        PeekingSource(Iterator<SpilledPage> pages) {
+            this.pages = pages;
+            this.head = pages.next();
+        }
+
+        /**
+         * @return True if the source has another page, now its head.
+         */
+        boolean advance() {
+            if (!pages.hasNext())
+                return false;
+            head = pages.next();
+            return true;
+        }
+    }
+}
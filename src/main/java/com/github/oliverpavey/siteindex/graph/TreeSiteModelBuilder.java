@@ -0,0 +1,106 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import com.github.oliverpavey.siteindex.model.PageContent;
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SiteModelBuilder creating a PageScan object for every page, with sets of the objects it links to.
+ * Simple to navigate, but every link costs a tree set entry on the heap.
+ */
+public class TreeSiteModelBuilder implements SiteModelBuilder {
+
+    private final SiteScan siteScan = new SiteScan();
+    private final Map<String, List<String>> pageLinkUris = new ConcurrentHashMap<>();
+
+    @Override
+    public void addPage(String uri, int depth, PageContent content) {
+
+        final PageScan pageScan = new PageScan(uri);
+        pageScan.setDepth(depth);
+        pageScan.setTitle(content.getTitle());
+        pageScan.getExternalLinks().addAll(content.getExternalLinks());
+
+        for (String resourceUri : content.getResources()) {
+            final ResourceScan resourceScan = siteScan.getUriToResourceScan()
+                    .computeIfAbsent(resourceUri, ResourceScan::new);
+            pageScan.getResources().add(resourceScan);
+            resourceScan.incReferences();
+        }
+
+        if (siteScan.getUriToPageScan().putIfAbsent(uri, pageScan) == null)
+            pageLinkUris.put(uri, content.getLinks());
+    }
+
+    @Override
+    public boolean hasPage(String uri) {
+        return siteScan.getUriToPageScan().containsKey(uri);
+    }
+
+    @Override
+    public int pageCount() {
+        return siteScan.getUriToPageScan().size();
+    }
+
+    @Override
+    public SiteScan build(String domain, String homepageUri) {
+
+        siteScan.setDomain(domain);
+        siteScan.setHomepage(siteScan.getUriToPageScan().get(homepageUri));
+        linkPages();
+        assignDepths();
+        pageLinkUris.clear();
+        return siteScan;
+    }
+
+    /**
+     * Resolve the links recorded by each page to the models of the linked pages.
+     * Links to pages which could not be read are dropped.
+     */
+    private void linkPages() {
+
+        final Map<String, PageScan> uriToPageScan = siteScan.getUriToPageScan();
+        pageLinkUris.forEach((uri, linkUris) -> {
+            final PageScan pageScan = uriToPageScan.get(uri);
+            for (String link : linkUris) {
+                final PageScan linkScan = uriToPageScan.get(link);
+                if (linkScan != null && pageScan.getLinks().add(linkScan)) // null indicates an unreadable page
+                    linkScan.incReferences();
+            }
+        });
+    }
+
+    /**
+     * Set the depth of each page to its shortest link distance from the homepage.
+     * <p>
+     * Pages are queued breadth-first, so the depth found when queueing is normally already the
+     * shortest; but a worker which is slow to finish a shallow page can let a deeper route to a
+     * page be queued first. A breadth-first walk of the resolved links corrects this.
+     */
+    private void assignDepths() {
+
+        final Deque<PageScan> queue = new ArrayDeque<>();
+        final Set<String> reached = new HashSet<>();
+        siteScan.getHomepage().setDepth(0);
+        queue.add(siteScan.getHomepage());
+        reached.add(siteScan.getHomepage().getUri());
+        while (!queue.isEmpty()) {
+            final PageScan pageScan = queue.removeFirst();
+            for (PageScan linkScan : pageScan.getLinks()) {
+                if (reached.add(linkScan.getUri())) {
+                    linkScan.setDepth(pageScan.getDepth() + 1);
+                    queue.addLast(linkScan);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table assigning each distinct URL a small integer id, so that a URL found on many pages is held
+ * as a single String and referred to by its id. Ids are assigned in the order URLs are first seen.
+ * <p>
+ * Safe for use by concurrent worker threads.
+ */
+class UrlInternTable {
+
+    static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] urls = new String[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @param url The URL to intern.
+     * @return The id of the URL, assigning a new id if it has not been seen before.
+     */
+    int intern(String url) {
+        return ids.computeIfAbsent(url, this::append);
+    }
+
+    /**
+     * @param url The URL to look up.
+     * @return The id of the URL, or -1 if it has not been interned.
+     */
+    int idOf(String url) {
+        final Integer id = ids.get(url);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id The id of an interned URL.
+     * @return The URL.
+     */
+    String url(int id) {
+        return urls[id];
+    }
+
+    /**
+     * @return The number of URLs interned, which is also the next id to be assigned.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private synchronized int append(String url) {
+        if (size == urls.length)
+            urls = Arrays.copyOf(urls, size * 2);
+        urls[size] = url;
+        return size++;
+    }
+}
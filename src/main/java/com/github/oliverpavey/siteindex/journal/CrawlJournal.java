@@ -0,0 +1,292 @@
+package com.github.oliverpavey.siteindex.journal;
+
+import com.github.oliverpavey.siteindex.dedup.PageFingerprint;
+import com.github.oliverpavey.siteindex.model.PageContent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only journal of the state of one scan, so a crawl which is stopped part way through can be resumed.
+ * <p>
+ * The workers of the scan only add records to an in-memory queue. A background thread writes the
+ * queued records to the journal in batches, once per flush interval, and forces each batch to disk.
+ * Periodically the thread compacts the checkpoint and journal into a new checkpoint (replacing the
+ * old one atomically), and empties the journal.
+ * <p>
+ * A journal which is not enabled ignores every record.
+ */
+@Slf4j
+public class CrawlJournal {
+
+    static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final Path journalFile;
+    private final Path checkpointFile;
+    private final long flushIntervalMs;
+    private final long checkpointIntervalMs;
+
+    private final BlockingQueue<JournalRecord> queue = new LinkedBlockingQueue<>();
+    private final CountDownLatch closing = new CountDownLatch(1);
+    private volatile boolean open;
+    private Thread writer;
+    private CrawlState recovered;
+
+    private FileChannel channel;
+    private DataOutputStream out;
+    private long lastCheckpointMs;
+    private long recordsSinceCheckpoint;
+
+    /**
+     * Constructor.
+     *
+     * @param journalFile          The file to which records are appended.
+     * @param checkpointFile       The file holding the last compacted checkpoint.
+     * @param flushIntervalMs      The time between writes of the queued records.
+     * @param checkpointIntervalMs The time between checkpoints (zero for none).
+     */
+    CrawlJournal(Path journalFile, Path checkpointFile, long flushIntervalMs, long checkpointIntervalMs) {
+        this.journalFile = journalFile;
+        this.checkpointFile = checkpointFile;
+        this.flushIntervalMs = flushIntervalMs;
+        this.checkpointIntervalMs = checkpointIntervalMs;
+    }
+
+    /**
+     * @return A journal which ignores every record.
+     */
+    static CrawlJournal disabled() {
+        return new CrawlJournal(null, null, 0, 0);
+    }
+
+    /**
+     * Start the journal. When resuming, the state of the earlier crawl is recovered, and written
+     * as the new checkpoint; otherwise any earlier journal is discarded.
+     *
+     * @param resume True to recover the state of an earlier crawl.
+     * @throws IOException Any exception reading the earlier journal, or creating the new one.
+     */
+    void start(boolean resume) throws IOException {
+
+        if (resume && (Files.exists(checkpointFile) || Files.exists(journalFile))) {
+            recovered = CrawlState.read(checkpointFile, journalFile);
+            writeCheckpoint(recovered);
+        } else {
+            if (resume)
+                log.warn("No crawl journal to resume: {}", journalFile);
+            Files.deleteIfExists(checkpointFile);
+        }
+
+        channel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), OUTPUT_BUFFER_SIZE));
+        out.writeInt(CrawlState.FORMAT_VERSION);
+        lastCheckpointMs = System.currentTimeMillis();
+        open = true;
+
+        writer = new Thread(this::run, "crawl-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return The state of the earlier crawl, if the scan is resuming one.
+     */
+    public Optional<CrawlState> getRecovered() {
+        return Optional.ofNullable(recovered);
+    }
+
+    /**
+     * Record that a URL has been queued for scanning.
+     *
+     * @param url   The URL.
+     * @param depth The number of links between the homepage and the URL.
+     */
+    public void queued(String url, int depth) {
+        append(JournalRecord.queued(url, depth));
+    }
+
+    /**
+     * Record that a page has been scanned, which was not fingerprinted.
+     *
+     * @param url     The URL of the page.
+     * @param depth   The number of links between the homepage and the page.
+     * @param content The content extracted from the page.
+     */
+    public void pageScanned(String url, int depth, PageContent content) {
+        pageScanned(url, depth, content, PageFingerprint.NONE);
+    }
+
+    /**
+     * Record that a page has been scanned, with its fingerprint, so pages scanned after the crawl is
+     * resumed may be found to be duplicates of it.
+     *
+     * @param url         The URL of the page.
+     * @param depth       The number of links between the homepage and the page.
+     * @param content     The content extracted from the page.
+     * @param fingerprint The fingerprint of the page.
+     */
+    public void pageScanned(String url, int depth, PageContent content, PageFingerprint fingerprint) {
+        append(JournalRecord.page(new ScannedPage(url, depth, content, fingerprint, "")));
+    }
+
+    /**
+     * Record that a page has been scanned, and found to be a duplicate of another page.
+     *
+     * @param url         The URL of the page.
+     * @param depth       The number of links between the homepage and the page.
+     * @param fingerprint The fingerprint of the page.
+     * @param canonical   The URL of the canonical page of which the page is a duplicate.
+     */
+    public void duplicateScanned(String url, int depth, PageFingerprint fingerprint, String canonical) {
+        append(JournalRecord.page(new ScannedPage(url, depth, new PageContent(), fingerprint, canonical)));
+    }
+
+    /**
+     * Record that a URL could not be read as a page.
+     *
+     * @param url The URL.
+     */
+    public void unreadable(String url) {
+        append(JournalRecord.url(JournalRecord.TYPE_UNREADABLE, url));
+    }
+
+    /**
+     * Record that a URL was not queued as it is beyond the maximum depth.
+     *
+     * @param url The URL.
+     */
+    public void tooDeep(String url) {
+        append(JournalRecord.url(JournalRecord.TYPE_TOO_DEEP, url));
+    }
+
+    /**
+     * Record that a URL was not queued as robots.txt disallows it.
+     *
+     * @param url The URL.
+     */
+    public void disallowed(String url) {
+        append(JournalRecord.url(JournalRecord.TYPE_DISALLOWED, url));
+    }
+
+    private void append(JournalRecord record) {
+        if (open)
+            queue.add(record);
+    }
+
+    /**
+     * Write the records still queued, and stop the journal. The journal files are kept, so the
+     * crawl can be resumed.
+     */
+    public void close() {
+
+        if (writer == null)
+            return;
+        open = false;
+        closing.countDown();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop the journal and delete its files, as the crawl is complete.
+     */
+    public void discard() {
+
+        close();
+        if (journalFile == null)
+            return;
+        try {
+            Files.deleteIfExists(journalFile);
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            log.warn("Could not delete crawl journal '{}': {}", journalFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Writer loop. Write the queued records once per flush interval, and a checkpoint once per
+     * checkpoint interval, until the journal is closed.
+     */
+    private void run() {
+
+        final List<JournalRecord> batch = new ArrayList<>();
+        try (DataOutputStream ignored = out) {
+            boolean closed;
+            do {
+                closed = closing.await(flushIntervalMs, TimeUnit.MILLISECONDS);
+                queue.drainTo(batch);
+                if (!batch.isEmpty()) {
+                    for (JournalRecord record : batch)
+                        record.write(out);
+                    out.flush();
+                    channel.force(false);
+                    recordsSinceCheckpoint += batch.size();
+                    batch.clear();
+                }
+                if (!closed && checkpointIntervalMs > 0 && recordsSinceCheckpoint > 0
+                        && System.currentTimeMillis() - lastCheckpointMs >= checkpointIntervalMs)
+                    checkpoint();
+            } while (!closed);
+
+        } catch (IOException e) {
+            log.warn("Crawl journal stopped. Could not write '{}': {}", journalFile, e.getMessage());
+            open = false;
+            queue.clear();
+
+        } catch (InterruptedException e) {
+            log.warn("Crawl journal interrupted: {}", journalFile);
+            open = false;
+        }
+    }
+
+    /**
+     * Compact the checkpoint and the journal into a new checkpoint, and empty the journal.
+     */
+    private void checkpoint() throws IOException {
+
+        final CrawlState state = CrawlState.read(checkpointFile, journalFile);
+        writeCheckpoint(state);
+        channel.truncate(0);
+        out.writeInt(CrawlState.FORMAT_VERSION);
+        out.flush();
+        lastCheckpointMs = System.currentTimeMillis();
+        recordsSinceCheckpoint = 0;
+        log.info("Crawl checkpoint written: {} pages scanned, {} uris queued", state.getPages().size(),
+                state.getPending().size());
+    }
+
+    /**
+     * Write a checkpoint to a temporary file, and move it into place once it is on disk.
+     */
+    private void writeCheckpoint(CrawlState state) throws IOException {
+
+        final Path tempFile = Files.createTempFile(checkpointFile.toAbsolutePath().getParent(), "checkpoint", ".tmp");
+        try (FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            final DataOutputStream tempOut = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(tempChannel), OUTPUT_BUFFER_SIZE));
+            state.write(tempOut);
+            tempOut.flush();
+            tempChannel.force(true);
+        }
+        Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
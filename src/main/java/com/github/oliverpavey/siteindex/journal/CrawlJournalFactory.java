@@ -0,0 +1,83 @@
+package com.github.oliverpavey.siteindex.journal;
+
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Component creating the CrawlJournal of each scan.
+ * <p>
+ * Each site has its own journal and checkpoint files, named by a hash of the homepage URL, so a
+ * scan of the same homepage can resume from them.
+ */
+@Slf4j
+@Component
+public class CrawlJournalFactory {
+
+    static final String JOURNAL_SUFFIX = ".journal";
+    static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    @Value("${siteindex.journal.enabled}")
+    private boolean enabled;
+
+    @Value("${siteindex.journal.dir}")
+    private String journalDir;
+
+    @Value("${siteindex.journal.flush-interval-ms}")
+    private long flushIntervalMs;
+
+    @Value("${siteindex.journal.checkpoint-interval-ms}")
+    private long checkpointIntervalMs;
+
+    /**
+     * Create and start the journal of a scan.
+     *
+     * @param homepageUrl The homepage of the scan.
+     * @param resume      True to recover the state of an earlier crawl of the homepage from its journal.
+     * @return The journal. (If journals are not enabled, or the journal cannot be created, one which ignores every record.)
+     */
+    public CrawlJournal create(String homepageUrl, boolean resume) {
+
+        if (!enabled) {
+            if (resume)
+                log.warn("A crawl can only be resumed when siteindex.journal.enabled=true");
+            return CrawlJournal.disabled();
+        }
+        final Path directory = Paths.get(journalDir);
+        final String name = Hashing.sha256().hashString(homepageUrl, StandardCharsets.UTF_8).toString();
+        final CrawlJournal journal = new CrawlJournal(directory.resolve(name + JOURNAL_SUFFIX),
+                directory.resolve(name + CHECKPOINT_SUFFIX), Math.max(1, flushIntervalMs), checkpointIntervalMs);
+        try {
+            Files.createDirectories(directory);
+            journal.start(resume);
+            return journal;
+
+        } catch (IOException e) {
+            log.warn("Crawl journal disabled. Could not open journal in '{}': {}", journalDir, e.getMessage());
+            return CrawlJournal.disabled();
+        }
+    }
+
+    /**
+     * Create and start a journal in a given file, whether or not journals are enabled, without
+     * checkpoints. (e.g. The record of the pages scanned by one shard of a crawl.)
+     *
+     * @param journalFile The file to write. Any earlier content is discarded.
+     * @return The journal.
+     * @throws IOException Any exception creating the journal.
+     */
+    public CrawlJournal create(Path journalFile) throws IOException {
+
+        final CrawlJournal journal = new CrawlJournal(journalFile,
+                journalFile.resolveSibling(journalFile.getFileName() + CHECKPOINT_SUFFIX), Math.max(1, flushIntervalMs), 0);
+        journal.start(false);
+        return journal;
+    }
+}
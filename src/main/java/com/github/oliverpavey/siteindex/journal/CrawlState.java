@@ -0,0 +1,147 @@
+package com.github.oliverpavey.siteindex.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The state of a crawl, rebuilt by replaying its checkpoint and then its journal. (Or by replaying
+ * the journals of the shards of a crawl, to merge them.)
+ * <p>
+ * Replaying a record twice has no further effect, so a crash between writing a checkpoint and
+ * truncating the journal loses nothing. A record cut short by a crash ends the replay of its file.
+ */
+@Slf4j
+public class CrawlState {
+
+    static final int FORMAT_VERSION = 3;
+
+    private final Map<String, Integer> queued = new LinkedHashMap<>();
+    private final Map<String, ScannedPage> pages = new LinkedHashMap<>();
+    private final Set<String> unreadable = new LinkedHashSet<>();
+    private final Set<String> tooDeep = new LinkedHashSet<>();
+    private final Set<String> disallowed = new LinkedHashSet<>();
+
+    /**
+     * Rebuild the state of a crawl from its files. Files which do not exist are skipped.
+     *
+     * @param files The checkpoint, then the journal.
+     * @return The state.
+     * @throws IOException Any exception reading the files, other than a record cut short.
+     */
+    public static CrawlState read(Path... files) throws IOException {
+
+        final CrawlState state = new CrawlState();
+        for (Path file : files) {
+            if (!Files.exists(file) || Files.size(file) == 0)
+                continue;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != FORMAT_VERSION)
+                    throw new IOException(String.format("Unsupported journal format: %s", file));
+                while (true)
+                    state.apply(JournalRecord.read(in));
+            } catch (EOFException e) {
+                log.debug("Replayed: {}", file);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Apply a record to the state.
+     */
+    void apply(JournalRecord record) {
+        switch (record.type) {
+            case JournalRecord.TYPE_QUEUED:
+                queued.putIfAbsent(record.url, record.depth);
+                tooDeep.remove(record.url); // found again within the maximum depth
+                break;
+            case JournalRecord.TYPE_PAGE:
+                pages.putIfAbsent(record.url, record.page);
+                break;
+            case JournalRecord.TYPE_UNREADABLE:
+                unreadable.add(record.url);
+                break;
+            case JournalRecord.TYPE_TOO_DEEP:
+                if (!queued.containsKey(record.url))
+                    tooDeep.add(record.url);
+                break;
+            default:
+                disallowed.add(record.url);
+                break;
+        }
+    }
+
+    /**
+     * Write the state as a compacted checkpoint: one record per page and URL, and no record of
+     * URLs which were queued and have since been scanned.
+     *
+     * @param out The stream to write to.
+     * @throws IOException Any exception writing the stream.
+     */
+    void write(DataOutputStream out) throws IOException {
+
+        out.writeInt(FORMAT_VERSION);
+        for (ScannedPage page : pages.values())
+            JournalRecord.page(page).write(out);
+        for (Map.Entry<String, Integer> entry : getPending().entrySet())
+            JournalRecord.queued(entry.getKey(), entry.getValue()).write(out);
+        for (String url : unreadable)
+            JournalRecord.url(JournalRecord.TYPE_UNREADABLE, url).write(out);
+        for (String url : tooDeep)
+            JournalRecord.url(JournalRecord.TYPE_TOO_DEEP, url).write(out);
+        for (String url : disallowed)
+            JournalRecord.url(JournalRecord.TYPE_DISALLOWED, url).write(out);
+    }
+
+    /**
+     * @return The pages scanned, in the order they were scanned.
+     */
+    public Collection<ScannedPage> getPages() {
+        return pages.values();
+    }
+
+    /**
+     * @return The URLs queued but not yet scanned (nor found unreadable), with their depths.
+     */
+    public Map<String, Integer> getPending() {
+        final Map<String, Integer> pending = new LinkedHashMap<>();
+        queued.forEach((url, depth) -> {
+            if (!pages.containsKey(url) && !unreadable.contains(url))
+                pending.put(url, depth);
+        });
+        return pending;
+    }
+
+    /**
+     * @return The URLs which could not be read as pages.
+     */
+    public Set<String> getUnreadable() {
+        return unreadable;
+    }
+
+    /**
+     * @return The URLs not queued as they were beyond the maximum depth. (Not those later queued from a shallower page.)
+     */
+    public Set<String> getTooDeep() {
+        return tooDeep;
+    }
+
+    /**
+     * @return The URLs not queued as robots.txt disallowed them.
+     */
+    public Set<String> getDisallowed() {
+        return disallowed;
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.oliverpavey.siteindex.journal;
+
+import com.github.oliverpavey.siteindex.dedup.PageFingerprint;
+import com.github.oliverpavey.siteindex.model.PageContent;
+import com.github.oliverpavey.siteindex.tools.DataStrings;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A single change to the state of a crawl, as written to its journal.
+ */
+class JournalRecord {
+
+    static final byte TYPE_QUEUED = 'Q';
+    static final byte TYPE_PAGE = 'P';
+    static final byte TYPE_UNREADABLE = 'U';
+    static final byte TYPE_TOO_DEEP = 'T';
+    static final byte TYPE_DISALLOWED = 'R';
+
+    final byte type;
+    final String url;
+    final int depth;
+    final ScannedPage page;
+
+    private JournalRecord(byte type, String url, int depth, ScannedPage page) {
+        this.type = type;
+        this.url = url;
+        this.depth = depth;
+        this.page = page;
+    }
+
+    static JournalRecord queued(String url, int depth) {
+        return new JournalRecord(TYPE_QUEUED, url, depth, null);
+    }
+
+    static JournalRecord page(ScannedPage page) {
+        return new JournalRecord(TYPE_PAGE, page.getUrl(), page.getDepth(), page);
+    }
+
+    static JournalRecord url(byte type, String url) {
+        return new JournalRecord(type, url, 0, null);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+
+        out.writeByte(type);
+        DataStrings.write(out, url);
+        if (type == TYPE_QUEUED || type == TYPE_PAGE)
+            out.writeInt(depth);
+        if (type == TYPE_PAGE) {
+            final PageContent content = page.getContent();
+            final PageFingerprint fingerprint = page.getFingerprint();
+            DataStrings.write(out, content.getTitle());
+            writeList(content.getLinks(), out);
+            writeList(content.getExternalLinks(), out);
+            writeList(content.getResources(), out);
+            DataStrings.write(out, fingerprint.getExact());
+            out.writeBoolean(fingerprint.isSimHashed());
+            out.writeLong(fingerprint.getSimHash());
+            DataStrings.write(out, page.getDuplicateOf());
+        }
+    }
+
+    static JournalRecord read(DataInputStream in) throws IOException {
+
+        final byte type = in.readByte();
+        final String url = DataStrings.read(in);
+        switch (type) {
+            case TYPE_QUEUED:
+                return queued(url, in.readInt());
+            case TYPE_PAGE:
+                final int depth = in.readInt();
+                final PageContent content = new PageContent();
+                content.setTitle(DataStrings.read(in));
+                readList(content.getLinks(), in);
+                readList(content.getExternalLinks(), in);
+                readList(content.getResources(), in);
+                final PageFingerprint fingerprint = new PageFingerprint(DataStrings.read(in), in.readBoolean(), in.readLong());
+                return page(new ScannedPage(url, depth, content, fingerprint, DataStrings.read(in)));
+            case TYPE_UNREADABLE:
+            case TYPE_TOO_DEEP:
+            case TYPE_DISALLOWED:
+                return url(type, url);
+            default:
+                throw new IOException(String.format("Unknown journal record type: %d", type));
+        }
+    }
+
+    private static void writeList(List<String> values, DataOutputStream out) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values)
+            DataStrings.write(out, value);
+    }
+
+    private static void readList(List<String> values, DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++)
+            values.add(DataStrings.read(in));
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.oliverpavey.siteindex.journal;
+
+import com.github.oliverpavey.siteindex.dedup.PageFingerprint;
+import com.github.oliverpavey.siteindex.model.PageContent;
+import lombok.Data;
+
+/**
+ * A page scanned before a crawl was interrupted, as recovered from its journal.
+ */
+@Data
+public class ScannedPage {
+
+    private final String url;
+    private final int depth;
+    private final PageContent content;
+    private final PageFingerprint fingerprint;
+    private final String duplicateOf;
+
+    /**
+     * Constructor.
+     *
+     * @param url         The URL of the page.
+     * @param depth       The number of links between the homepage and the page.
+     * @param content     The content extracted from the page. (Empty for a duplicate.)
+     * @param fingerprint The fingerprint of the page, or PageFingerprint.NONE if it was not fingerprinted.
+     * @param duplicateOf The URL of the canonical page of which the page is a duplicate, or an empty string.
+     */
+    public ScannedPage(String url, int depth, PageContent content, PageFingerprint fingerprint, String duplicateOf) {
+        this.url = url;
+        this.depth = depth;
+        this.content = content;
+        this.fingerprint = fingerprint;
+        this.duplicateOf = duplicateOf;
+    }
+
+    /**
+     * @return True if the page was a duplicate of another page.
+     */
+    public boolean isDuplicate() {
+        return !duplicateOf.isEmpty();
+    }
+}
@@ -0,0 +1,347 @@
+package com.github.oliverpavey.siteindex.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * The metrics of a single scan: how long pages take to fetch, parse and extract, how many bytes are
+ * downloaded, how many pages are scanned (and with what outcome), and how many URLs are waiting in
+ * the frontier.
+ * <p>
+ * Meters are held in a Micrometer registry of the scan, and also published to any registries passed
+ * in (e.g. JMX) until the scan ends, when they are removed from them. (Those registries outlive the
+ * scan, and the frontier gauges would otherwise keep the scan's frontier reachable.) While the scan
+ * runs a progress line is logged periodically; when it ends a summary is logged and, if configured,
+ * every meter is written to a file.
+ * <p>
+ * The percentiles of the timers are over the whole scan, rather than Micrometer's default window of
+ * the last two minutes or so, so those in the summary describe every page.
+ * <p>
+ * In fast extraction mode pages are not parsed to a document, so parse time only covers decoding the
+ * page, and the tokenizer is counted as extraction.
+ */
+@Slf4j
+public class CrawlMetrics implements AutoCloseable {
+
+    static final String FETCH = "siteindex.fetch";
+    static final String FETCH_BYTES = "siteindex.fetch.bytes";
+    static final String PARSE = "siteindex.parse";
+    static final String EXTRACT = "siteindex.extract";
+    static final String PAGES = "siteindex.pages";
+    static final String FRONTIER_QUEUED = "siteindex.frontier.queued";
+    static final String FRONTIER_IN_FLIGHT = "siteindex.frontier.in-flight";
+    static final String TAG_SITE = "site";
+    static final String TAG_OUTCOME = "outcome";
+    static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+    static final Duration PERCENTILE_WINDOW = Duration.ofDays(365); // longer than any scan, so never rotated
+
+    private final SimpleMeterRegistry scanRegistry = new SimpleMeterRegistry();
+    private final CompositeMeterRegistry registry = new CompositeMeterRegistry();
+    private final String site;
+    private final long sampleIntervalMs;
+    private final Path exportFile;
+    private final MeterRegistry[] publishTo;
+
+    private final Timer fetchTimer;
+    private final DistributionSummary fetchBytes;
+    private final Timer parseTimer;
+    private final Timer extractTimer;
+    private final Counter scannedPages;
+    private final Counter notModifiedPages;
+    private final Counter duplicatePages;
+    private final Counter unreadablePages;
+    private final Counter failedPages;
+    private Gauge frontierQueued;
+    private Gauge frontierInFlight;
+
+    private ScheduledExecutorService sampler;
+    private long startNanos;
+    private long lastSampleNanos;
+    private double lastSamplePages;
+
+    /**
+     * Constructor. Creates the meters of the scan.
+     *
+     * @param site             The homepage of the scan, used to tag its meters.
+     * @param sampleIntervalMs Time between progress lines logged while the scan runs (zero for none).
+     * @param exportFile       File to which the meters are written when the scan ends, or null for none.
+     * @param publishTo        Further registries to which the meters are published.
+     */
+    public CrawlMetrics(String site, long sampleIntervalMs, Path exportFile, MeterRegistry... publishTo) {
+
+        this.site = site;
+        this.sampleIntervalMs = sampleIntervalMs;
+        this.exportFile = exportFile;
+        this.publishTo = publishTo;
+
+        registry.add(scanRegistry);
+        for (MeterRegistry other : publishTo)
+            registry.add(other);
+        registry.config().commonTags(TAG_SITE, site);
+
+        fetchTimer = timer(FETCH, "Time to retrieve each page");
+        fetchBytes = DistributionSummary.builder(FETCH_BYTES)
+                .description("Size of each page retrieved")
+                .baseUnit("bytes")
+                .register(registry);
+        parseTimer = timer(PARSE, "Time to parse each page");
+        extractTimer = timer(EXTRACT, "Time to extract the title and references of each page");
+        scannedPages = pageCounter("scanned");
+        notModifiedPages = pageCounter("not-modified");
+        duplicatePages = pageCounter("duplicate");
+        unreadablePages = pageCounter("unreadable");
+        failedPages = pageCounter("failed");
+    }
+
+    private Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(PERCENTILES)
+                .distributionStatisticExpiry(PERCENTILE_WINDOW)
+                .distributionStatisticBufferLength(1)
+                .register(registry);
+    }
+
+    private Counter pageCounter(String outcome) {
+        return Counter.builder(PAGES)
+                .description("Pages requested, by outcome")
+                .tag(TAG_OUTCOME, outcome)
+                .register(registry);
+    }
+
+    /**
+     * Monitor the size of the frontier of the scan.
+     *
+     * @param queued   The number of URLs waiting to be scanned.
+     * @param inFlight The number of URLs being scanned.
+     */
+    public void monitorFrontier(Supplier<Number> queued, Supplier<Number> inFlight) {
+        frontierQueued = Gauge.builder(FRONTIER_QUEUED, queued)
+                .description("URLs waiting to be scanned")
+                .register(registry);
+        frontierInFlight = Gauge.builder(FRONTIER_IN_FLIGHT, inFlight)
+                .description("URLs being scanned")
+                .register(registry);
+    }
+
+    /**
+     * Record the start of the scan, and start logging progress periodically.
+     */
+    public void start() {
+
+        startNanos = System.nanoTime();
+        lastSampleNanos = startNanos;
+        if (sampleIntervalMs <= 0)
+            return;
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "crawl-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> log.info("Crawl progress: {}", sample()),
+                sampleIntervalMs, sampleIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record the retrieval of a page.
+     *
+     * @param startNanos The System.nanoTime() at which the request started.
+     * @param bytes      The size of the response body.
+     */
+    public void recordFetch(long startNanos, long bytes) {
+        recordFetch(startNanos, System.nanoTime(), bytes);
+    }
+
+    /**
+     * Record the retrieval of a page, which ended at a given time.
+     *
+     * @param startNanos The System.nanoTime() at which the request started.
+     * @param endNanos   The System.nanoTime() at which the response was received.
+     * @param bytes      The size of the response body.
+     */
+    public void recordFetch(long startNanos, long endNanos, long bytes) {
+        fetchTimer.record(endNanos - startNanos, TimeUnit.NANOSECONDS);
+        fetchBytes.record(bytes);
+    }
+
+    /**
+     * Record the parsing of a page.
+     *
+     * @param startNanos The System.nanoTime() at which parsing started.
+     */
+    public void recordParse(long startNanos) {
+        parseTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record the extraction of the title and references of a page.
+     *
+     * @param startNanos The System.nanoTime() at which extraction started.
+     */
+    public void recordExtract(long startNanos) {
+        extractTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Count a page which was retrieved and scanned.
+     */
+    public void pageScanned() {
+        scannedPages.increment();
+    }
+
+    /**
+     * Count a page which had not been modified since it was cached.
+     */
+    public void pageNotModified() {
+        notModifiedPages.increment();
+    }
+
+    /**
+     * Count a page which was retrieved, but was a duplicate of a page already scanned.
+     */
+    public void pageDuplicate() {
+        duplicatePages.increment();
+    }
+
+    /**
+     * Count a URL which could not be read as a page (an error status, or not HTML).
+     */
+    public void pageUnreadable() {
+        unreadablePages.increment();
+    }
+
+    /**
+     * Count a URL which could not be retrieved (an exception).
+     */
+    public void pageFailed() {
+        failedPages.increment();
+    }
+
+    /**
+     * Stop logging progress, log a summary of the scan, write the meters to the export file (if any),
+     * and remove them from the registries to which they were published.
+     */
+    @Override
+    public void close() {
+
+        if (sampler != null)
+            sampler.shutdownNow();
+        log.info("Crawl metrics: {}", summary());
+
+        if (exportFile != null) {
+            try (Writer writer = Files.newBufferedWriter(exportFile, StandardCharsets.UTF_8)) {
+                export(writer);
+                log.info("Crawl metrics written to: {}", exportFile);
+            } catch (IOException e) {
+                log.warn("Could not write crawl metrics to '{}': {}", exportFile, e.getMessage());
+            }
+        }
+
+        for (MeterRegistry other : publishTo) {
+            for (Meter meter : scanRegistry.getMeters())
+                other.remove(meter.getId());
+        }
+    }
+
+    /**
+     * Describe the progress of the scan since the last sample.
+     *
+     * @return e.g. '120 pages (12.0 pages/s), 340 queued, 4 in flight, fetch p99 230 ms, 5.21 MB downloaded'
+     */
+    synchronized String sample() {
+
+        final long now = System.nanoTime();
+        final double pages = pagesRead();
+        final double seconds = (now - lastSampleNanos) / 1e9;
+        final double rate = seconds > 0 ? (pages - lastSamplePages) / seconds : 0;
+        lastSampleNanos = now;
+        lastSamplePages = pages;
+
+        return String.format("%.0f pages (%.1f pages/s), %.0f queued, %.0f in flight, fetch p99 %.0f ms, %.2f MB downloaded",
+                pages, rate,
+                frontierQueued == null ? 0 : frontierQueued.value(),
+                frontierInFlight == null ? 0 : frontierInFlight.value(),
+                percentileMs(fetchTimer, 0.99),
+                fetchBytes.totalAmount() / 1e6);
+    }
+
+    /**
+     * Describe the scan as a whole.
+     *
+     * @return e.g. '1200 pages in 98.1 s (12.2 pages/s), 0 duplicate, 3 unreadable, 0 failed; fetch p50/p99 80/230 ms;
+     * time in fetch/parse/extract 380.2/21.5/9.8 s; 52.04 MB downloaded'
+     */
+    String summary() {
+
+        final double seconds = (System.nanoTime() - startNanos) / 1e9;
+        final double pages = pagesRead();
+        return String.format("%.0f pages in %.1f s (%.1f pages/s), %.0f duplicate, %.0f unreadable, %.0f failed; "
+                        + "fetch p50/p99 %.0f/%.0f ms; time in fetch/parse/extract %.1f/%.1f/%.1f s; %.2f MB downloaded",
+                pages, seconds, seconds > 0 ? pages / seconds : 0,
+                duplicatePages.count(), unreadablePages.count(), failedPages.count(),
+                percentileMs(fetchTimer, 0.5), percentileMs(fetchTimer, 0.99),
+                fetchTimer.totalTime(TimeUnit.SECONDS), parseTimer.totalTime(TimeUnit.SECONDS),
+                extractTimer.totalTime(TimeUnit.SECONDS),
+                fetchBytes.totalAmount() / 1e6);
+    }
+
+    /**
+     * Write every meter of the scan, one per line, sorted by name, e.g.
+     * 'siteindex.fetch{site=http://mysite.com/} count=12 total_time=1.52 max=0.31'
+     *
+     * @param writer The destination.
+     * @throws IOException Any exception thrown by the writer.
+     */
+    void export(Writer writer) throws IOException {
+
+        final List<Meter> meters = scanRegistry.getMeters().stream()
+                .sorted(Comparator.comparing((Meter meter) -> meter.getId().getName())
+                        .thenComparing(meter -> meter.getId().getTags().toString()))
+                .collect(Collectors.toList());
+        for (Meter meter : meters) {
+            writer.write(meter.getId().getName());
+            writer.write(meter.getId().getTags().stream()
+                    .map(tag -> tag.getKey() + "=" + tag.getValue())
+                    .collect(Collectors.joining(",", "{", "}")));
+            for (Measurement measurement : meter.measure())
+                writer.write(String.format(" %s=%s", measurement.getStatistic().getTagValueRepresentation(),
+                        measurement.getValue()));
+            writer.write(System.lineSeparator());
+        }
+    }
+
+    private double pagesRead() {
+        return scannedPages.count() + notModifiedPages.count() + duplicatePages.count();
+    }
+
+    private static double percentileMs(Timer timer, double percentile) {
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            if (value.percentile() == percentile)
+                return value.value(TimeUnit.MILLISECONDS);
+        }
+        return 0;
+    }
+}
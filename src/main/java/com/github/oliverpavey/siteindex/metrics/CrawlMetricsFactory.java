@@ -0,0 +1,95 @@
+package com.github.oliverpavey.siteindex.metrics;
+
+import com.github.oliverpavey.siteindex.shard.CrawlSharding;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.jmx.JmxConfig;
+import io.micrometer.jmx.JmxMeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static com.github.oliverpavey.siteindex.tools.TextUtils.addToFileName;
+
+/**
+ * Component creating the CrawlMetrics of each scan.
+ * <p>
+ * When JMX export is enabled, the meters of every scan are also published to a JMX registry, which
+ * lives as long as the application (so they remain readable, e.g. with JConsole, after a scan ends).
+ * <p>
+ * In batch mode, when several sites are scanned at once, each site's metrics are written to a file
+ * of its own, named after the site, so the scans do not overwrite each other's files. Likewise each
+ * shard of a sharded crawl writes a file of its own.
+ */
+@Component
+public class CrawlMetricsFactory {
+
+    @Value("${siteindex.metrics.sample-interval-ms}")
+    private long sampleIntervalMs;
+
+    @Value("${siteindex.metrics.file}")
+    private String file;
+
+    @Value("${siteindex.metrics.jmx}")
+    private boolean jmx;
+
+    @Value("#{environment.BATCH_FILE}")
+    private String batchFile;
+
+    private final CrawlSharding crawlSharding;
+
+    private MeterRegistry jmxRegistry;
+
+    /**
+     * Constructor.
+     *
+     * @param crawlSharding Decides which shard of a sharded crawl this process is.
+     */
+    public CrawlMetricsFactory(CrawlSharding crawlSharding) {
+        this.crawlSharding = crawlSharding;
+    }
+
+    /**
+     * Create the JMX registry, if enabled.
+     */
+    @PostConstruct
+    void init() {
+        if (jmx)
+            jmxRegistry = new JmxMeterRegistry(JmxConfig.DEFAULT, Clock.SYSTEM);
+    }
+
+    /**
+     * Close the JMX registry, if enabled.
+     */
+    @PreDestroy
+    void close() {
+        if (jmxRegistry != null)
+            jmxRegistry.close();
+    }
+
+    /**
+     * @param site The homepage of the scan.
+     * @return New metrics for the scan.
+     */
+    public CrawlMetrics create(String site) {
+        final MeterRegistry[] publishTo = jmxRegistry == null ? new MeterRegistry[0] : new MeterRegistry[]{jmxRegistry};
+        final Path exportFile = file.isBlank() ? null
+                : crawlSharding.shardFile(batchFile != null ? perSiteFile(Paths.get(file), site) : Paths.get(file));
+        return new CrawlMetrics(site, sampleIntervalMs, exportFile, publishTo);
+    }
+
+    /**
+     * @param file The configured metrics file, e.g. 'metrics.txt'.
+     * @param site The homepage of a scan, e.g. 'https://example.com/index.html'.
+     * @return The metrics file of the site, e.g. 'metrics-https_example.com_index.html.txt'.
+     */
+    static Path perSiteFile(Path file, String site) {
+
+        final String siteName = site.replaceAll("[^A-Za-z0-9.-]+", "_");
+        return file.resolveSibling(addToFileName(file.getFileName().toString(), siteName));
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.oliverpavey.siteindex.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data model class for the content extracted from a single web page, before it is joined to the
+ * rest of the site. All references are absolute, in the order they were found on the page.
+ */
+@Data
+public class PageContent {
+
+    private String title;
+    private List<String> links;
+    private List<String> externalLinks;
+    private List<String> resources;
+
+    /**
+     * Constructor, creating empty collections.
+     */
+    public PageContent() {
+        title = "";
+        links = new ArrayList<>();
+        externalLinks = new ArrayList<>();
+        resources = new ArrayList<>();
+    }
+}
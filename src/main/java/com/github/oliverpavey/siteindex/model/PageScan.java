@@ -14,7 +14,9 @@ import java.util.TreeSet; // a sorted set
 public class PageScan implements Comparable<PageScan> {
 
     private String uri;
+    private String title;
     private int references;
+    private int depth;
     private Set<PageScan> links;
     private Set<String> externalLinks;
     private Set<ResourceScan> resources;
@@ -26,11 +28,18 @@ public class PageScan implements Comparable<PageScan> {
      */
     public PageScan(String uri) {
         this.uri = uri;
+        title = "";
         links = new TreeSet<>();
         externalLinks = new TreeSet<>();
         resources = new TreeSet<>();
     }
 
+    /**
+     * Constructor for subclasses which provide the page data themselves, creating no collections.
+     */
+    protected PageScan() {
+    }
+
     /**
      * Record a count of references to this web page from the site being scanned.
      */
@@ -46,6 +55,6 @@ public class PageScan implements Comparable<PageScan> {
      */
     @Override
     public int compareTo(PageScan other) {
-        return uri.compareTo(other.uri);
+        return getUri().compareTo(other.getUri());
     }
 }
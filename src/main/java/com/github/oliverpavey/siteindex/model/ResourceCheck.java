@@ -0,0 +1,58 @@
+package com.github.oliverpavey.siteindex.model;
+
+import lombok.Data;
+
+/**
+ * Data model class for the result of checking that a resource (or an external link) exists: the
+ * response to a HEAD request (or a ranged GET, where HEAD is not allowed) for its URL.
+ */
+@Data
+public class ResourceCheck {
+
+    private final String method;
+    private final int status;
+    private final long contentLength;
+    private final String contentType;
+    private final long latencyMs;
+    private final String error;
+
+    /**
+     * Constructor.
+     *
+     * @param method        The HTTP method of the request which answered, "HEAD" or "GET".
+     * @param status        The HTTP status of the response, or zero if there was no response.
+     * @param contentLength The size of the resource, or -1 if not known.
+     * @param contentType   The mime type of the resource, or an empty string if not known.
+     * @param latencyMs     The time taken to receive the response headers.
+     * @param error         The reason there was no response, or an empty string.
+     */
+    public ResourceCheck(String method, int status, long contentLength, String contentType, long latencyMs, String error) {
+        this.method = method;
+        this.status = status;
+        this.contentLength = contentLength;
+        this.contentType = contentType;
+        this.latencyMs = latencyMs;
+        this.error = error;
+    }
+
+    /**
+     * @return True if the resource was found. (A 2xx status.)
+     */
+    public boolean isOk() {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * @return A short description of the result, for the report, e.g. '200, image/jpeg, 10240 bytes, 35 ms'
+     */
+    public String describe() {
+        if (status == 0)
+            return String.format("error: %s", error);
+        final StringBuilder description = new StringBuilder().append(status);
+        if (!contentType.isEmpty())
+            description.append(", ").append(contentType);
+        if (contentLength >= 0)
+            description.append(", ").append(contentLength).append(" bytes");
+        return description.append(", ").append(latencyMs).append(" ms").toString();
+    }
+}
@@ -19,11 +19,13 @@ public class ResourceScan implements Comparable<ResourceScan> {
 
     private String uri;
     private int references;
+    private ResourceCheck check; // null unless resources are verified
 
     /**
      * Record a count of references to this resource from the site being scanned.
+     * (Synchronized as pages referencing the resource may be scanned concurrently.)
      */
-    public void incReferences() {
+    public synchronized void incReferences() {
         references = references + 1;
     }
 
@@ -3,7 +3,11 @@ package com.github.oliverpavey.siteindex.model;
 import lombok.Data;
 
 import java.util.Map;
-import java.util.TreeMap; // a sorted map
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap; // a sorted, thread-safe map
 
 /**
  * Data model class for scan of a website from a given homepage.
@@ -15,14 +19,23 @@ public class SiteScan {
      * Constructor. Initialize collections.
      */
     public SiteScan() {
-        uriToPageScan = new TreeMap<>();
-        uriToResourceScan = new TreeMap<>();
+        uriToPageScan = new ConcurrentSkipListMap<>();
+        uriToResourceScan = new ConcurrentSkipListMap<>();
+        externalLinkChecks = new ConcurrentSkipListMap<>();
+        sitemapOrphans = new TreeSet<>();
+        sitemapMissing = new TreeSet<>();
+        duplicateClusters = new TreeMap<>();
     }
 
     private String domain;
     private PageScan homepage;
     private Map<String, PageScan> uriToPageScan;
     private Map<String, ResourceScan> uriToResourceScan;
+    private Map<String, ResourceCheck> externalLinkChecks; // empty unless external links are checked
+    private int sitemapSize; // zero unless the scan was seeded from a sitemap
+    private SortedSet<String> sitemapOrphans; // listed by the sitemap, but not linked from any page
+    private SortedSet<String> sitemapMissing; // found by the scan, but not listed by the sitemap
+    private SortedMap<String, SortedSet<String>> duplicateClusters; // the duplicates of each canonical page, if detected
 
     /**
      * Clear out the scan, and its collections.
@@ -31,5 +44,10 @@ public class SiteScan {
         homepage = null;
         uriToPageScan.clear();
         uriToResourceScan.clear();
+        externalLinkChecks.clear();
+        sitemapSize = 0;
+        sitemapOrphans.clear();
+        sitemapMissing.clear();
+        duplicateClusters.clear();
     }
 }
@@ -0,0 +1,84 @@
+package com.github.oliverpavey.siteindex.politeness;
+
+/**
+ * The request allowance of a single host: a token bucket limiting the request rate, a cap on the
+ * number of requests in-flight, and an optional minimum delay between requests (crawl-delay).
+ * <p>
+ * Methods never block. When a request may not start yet they report how long to wait instead,
+ * so a caller can get on with requests to other hosts in the meantime.
+ */
+class HostBucket {
+
+    static final long NANOS_PER_SECOND = 1_000_000_000L;
+    static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final double requestsPerSecond;
+    private final int maxInFlight;
+    private long crawlDelayNanos;
+
+    private double tokens;
+    private long lastRefillNanos;
+    private long nextStartNanos;
+    private int inFlight;
+
+    /**
+     * Constructor.
+     *
+     * @param requestsPerSecond The sustained request rate allowed (zero or less for no limit).
+     * @param maxInFlight       The maximum number of requests in-flight at once (zero or less for no limit).
+     * @param crawlDelayMs      The minimum time between the start of requests.
+     * @param nowNanos          The current time, from System.nanoTime().
+     */
+    HostBucket(double requestsPerSecond, int maxInFlight, long crawlDelayMs, long nowNanos) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.maxInFlight = maxInFlight;
+        this.crawlDelayNanos = crawlDelayMs * NANOS_PER_MILLI;
+        this.tokens = 1;
+        this.lastRefillNanos = nowNanos;
+        this.nextStartNanos = nowNanos;
+    }
+
+    /**
+     * Try to start a request. A successful call must be matched by a call to release().
+     *
+     * @param nowNanos The current time, from System.nanoTime().
+     * @return Zero if the request may start now; otherwise the nanoseconds to wait before trying again,
+     * or Long.MAX_VALUE if the host is at its in-flight limit (wait for a release).
+     */
+    synchronized long tryAcquire(long nowNanos) {
+
+        if (maxInFlight > 0 && inFlight >= maxInFlight)
+            return Long.MAX_VALUE;
+        if (nowNanos < nextStartNanos)
+            return nextStartNanos - nowNanos;
+
+        if (requestsPerSecond > 0) {
+            // A bucket of one token gives an evenly spaced request rate, without bursts.
+            tokens = Math.min(1, tokens + (nowNanos - lastRefillNanos) * requestsPerSecond / NANOS_PER_SECOND);
+            lastRefillNanos = nowNanos;
+            if (tokens < 1)
+                return Math.max(1, (long) ((1 - tokens) * NANOS_PER_SECOND / requestsPerSecond));
+            tokens -= 1;
+        }
+
+        inFlight++;
+        nextStartNanos = nowNanos + crawlDelayNanos;
+        return 0;
+    }
+
+    /**
+     * Record that a request (started by tryAcquire) has finished.
+     */
+    synchronized void release() {
+        inFlight--;
+    }
+
+    /**
+     * Change the minimum time between the start of requests, e.g. as requested by the host.
+     *
+     * @param crawlDelayMs The minimum time between the start of requests.
+     */
+    synchronized void setCrawlDelayMs(long crawlDelayMs) {
+        crawlDelayNanos = crawlDelayMs * NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.oliverpavey.siteindex.politeness;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Component limiting the load a scan places on each host. It sits between the frontier and the
+ * page fetcher: the frontier asks permission before handing out a URL, and releases the permission
+ * once the URL has been scanned.
+ * <p>
+ * Each host has its own (non-blocking) token bucket, so a host at its limit never holds up
+ * requests to other hosts. The buckets are shared by all scans run by the application.
+ */
+@Component
+public class PolitenessScheduler {
+
+    @Value("${siteindex.politeness.requests-per-second}")
+    private double requestsPerSecond;
+
+    @Value("${siteindex.politeness.max-in-flight-per-host}")
+    private int maxInFlightPerHost;
+
+    @Value("${siteindex.politeness.crawl-delay-ms}")
+    private long crawlDelayMs;
+
+    private final Map<String, HostBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Try to start a request to a host. A successful call must be matched by a call to release().
+     *
+     * @param host The host (or other key identifying the server) to request from.
+     * @return Zero if the request may start now; otherwise the nanoseconds to wait before trying again,
+     * or Long.MAX_VALUE if the host is at its in-flight limit (wait for a release).
+     */
+    public long tryAcquire(String host) {
+        final long now = System.nanoTime();
+        return bucket(host, now).tryAcquire(now);
+    }
+
+    /**
+     * Record that a request to a host (started by tryAcquire) has finished.
+     *
+     * @param host The host requested from.
+     */
+    public void release(String host) {
+        bucket(host, System.nanoTime()).release();
+    }
+
+    /**
+     * Set a host's crawl delay, if longer than the configured default. (e.g. from robots.txt.)
+     *
+     * @param host         The host.
+     * @param crawlDelayMs The minimum time between the start of requests to the host.
+     */
+    public void setCrawlDelayMs(String host, long crawlDelayMs) {
+        bucket(host, System.nanoTime()).setCrawlDelayMs(Math.max(this.crawlDelayMs, crawlDelayMs));
+    }
+
+    private HostBucket bucket(String host, long now) {
+        return buckets.computeIfAbsent(host,
+                key -> new HostBucket(requestsPerSecond, maxInFlightPerHost, crawlDelayMs, now));
+    }
+}
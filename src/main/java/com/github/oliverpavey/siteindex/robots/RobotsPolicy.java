@@ -0,0 +1,122 @@
+package com.github.oliverpavey.siteindex.robots;
+
+import com.github.oliverpavey.siteindex.fetch.FetchResult;
+import com.github.oliverpavey.siteindex.fetch.PageFetcher;
+import com.github.oliverpavey.siteindex.politeness.PolitenessScheduler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.github.oliverpavey.siteindex.tools.TextUtils.extractDomain;
+
+/**
+ * Component deciding whether the robots.txt of a host allows a URL to be crawled.
+ * <p>
+ * The robots.txt of each host is fetched once (by the first scan to need it), compiled into
+ * RobotsRules, and kept for the life of the application. A Crawl-delay is passed to the politeness
+ * scheduler, up to a maximum.
+ * <p>
+ * As RFC 9309 asks, a robots.txt which is missing (4xx) allows everything, and one which cannot be
+ * read (5xx, or no response) disallows everything.
+ */
+@Slf4j
+@Component
+public class RobotsPolicy {
+
+    static final String ROBOTS_TXT = "robots.txt";
+
+    @Value("${siteindex.robots.enabled}")
+    private boolean enabled;
+
+    @Value("${siteindex.robots.max-crawl-delay-ms}")
+    private long maxCrawlDelayMs;
+
+    @Value("${siteindex.fetcher.user-agent}")
+    private String userAgent;
+
+    final PageFetcher pageFetcher;
+
+    final PolitenessScheduler politenessScheduler;
+
+    private final Map<String, CompletableFuture<RobotsRules>> hostRules = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param pageFetcher         Retrieves the robots.txt files.
+     * @param politenessScheduler Is told the crawl delay of each host.
+     */
+    public RobotsPolicy(PageFetcher pageFetcher, PolitenessScheduler politenessScheduler) {
+        this.pageFetcher = pageFetcher;
+        this.politenessScheduler = politenessScheduler;
+    }
+
+    /**
+     * Check whether a URL may be crawled. The first check of a host waits while its robots.txt is retrieved.
+     *
+     * @param url An absolute URL.
+     * @return True if robots.txt allows the URL to be crawled (or robots.txt is disabled).
+     */
+    public boolean isAllowed(String url) {
+
+        final String domain = extractDomain(url);
+        if (!enabled || domain.isEmpty())
+            return true;
+        final String path = url.length() > domain.length() ? url.substring(domain.length() - 1) : "/";
+        return rules(domain).isAllowed(path);
+    }
+
+    /**
+     * @return The rules of a host, retrieving its robots.txt if this is the first check of the host.
+     */
+    private RobotsRules rules(String domain) {
+
+        final CompletableFuture<RobotsRules> future = new CompletableFuture<>();
+        final CompletableFuture<RobotsRules> existing = hostRules.putIfAbsent(domain, future);
+        if (existing != null)
+            return existing.join();
+
+        // The future is completed whatever happens, or later checks of the host would wait for it forever.
+        RobotsRules rules = RobotsRules.disallowAll();
+        try {
+            rules = load(domain);
+            if (rules.getCrawlDelayMs() > 0)
+                politenessScheduler.setCrawlDelayMs(domain, Math.min(rules.getCrawlDelayMs(), maxCrawlDelayMs));
+            return rules;
+        } finally {
+            future.complete(rules);
+        }
+    }
+
+    private RobotsRules load(String domain) {
+
+        final String robotsUrl = domain + ROBOTS_TXT;
+        try {
+            final FetchResult response = pageFetcher.fetch(robotsUrl);
+            if (response.isOk()) {
+                log.info("Read robots.txt: {}", robotsUrl);
+                return RobotsRules.parse(new String(response.getBody(), StandardCharsets.UTF_8), userAgent);
+            }
+            if (response.getStatus() >= 400 && response.getStatus() < 500) {
+                log.debug("No robots.txt: {} (status {})", robotsUrl, response.getStatus());
+                return RobotsRules.allowAll();
+            }
+            log.warn("Could not read robots.txt '{}' (status {}): crawling of the host is disallowed",
+                    robotsUrl, response.getStatus());
+            return RobotsRules.disallowAll();
+
+        } catch (IOException e) {
+            log.warn("Could not read robots.txt '{}' ({}): crawling of the host is disallowed", robotsUrl, e.getMessage());
+            return RobotsRules.disallowAll();
+        } catch (RuntimeException e) {
+            log.warn("Could not read robots.txt '{}': crawling of the host is disallowed", robotsUrl, e);
+            return RobotsRules.disallowAll();
+        }
+    }
+}
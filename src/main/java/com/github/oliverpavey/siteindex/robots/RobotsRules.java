@@ -0,0 +1,294 @@
+package com.github.oliverpavey.siteindex.robots;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The rules of a robots.txt file which apply to this crawler, compiled for fast matching.
+ * <p>
+ * As in RFC 9309, the most specific (longest) matching rule decides whether a path may be crawled,
+ * and an allow rule wins a tie with a disallow rule. A path which matches no rule may be crawled.
+ * Rules may use '*' to match any characters, and end with '$' to match the end of the path.
+ * <p>
+ * Rules without a '*' (nearly all of them, in practice) are held in a trie of path characters, so a
+ * path is matched against all of them in a single walk along the path. Rules with a '*' are checked
+ * one by one, longest first, and only while they could beat the best match found so far.
+ */
+class RobotsRules {
+
+    static final char WILDCARD = '*';
+    static final char END_ANCHOR = '$';
+
+    private final Node root = new Node();
+    private final List<Rule> wildcardRules = new ArrayList<>();
+    private final long crawlDelayMs;
+
+    /**
+     * A single allow or disallow rule.
+     */
+    private static class Rule {
+
+        final String pattern; // without any '$'
+        final boolean anchored;
+        final boolean allow;
+        final int length;
+
+        Rule(String pattern, boolean anchored, boolean allow, int length) {
+            this.pattern = pattern;
+            this.anchored = anchored;
+            this.allow = allow;
+            this.length = length;
+        }
+
+        /**
+         * @return True if this rule should decide, rather than the best rule found so far.
+         */
+        boolean beats(Rule best) {
+            return best == null || length > best.length || (length == best.length && allow && !best.allow);
+        }
+    }
+
+    /**
+     * A node of the trie: the rules ending at this point of a path, and the nodes for the next characters.
+     */
+    private static class Node {
+
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        Rule prefixRule;
+        Rule anchoredRule;
+
+        Node child(char ch) {
+            final int index = Arrays.binarySearch(keys, ch);
+            return index < 0 ? null : children[index];
+        }
+
+        Node addChild(char ch) {
+            final int index = Arrays.binarySearch(keys, ch);
+            if (index >= 0)
+                return children[index];
+            final int insert = -index - 1;
+            final Node child = new Node();
+            keys = insert(keys, insert, ch);
+            final Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            newChildren[insert] = child;
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            children = newChildren;
+            return child;
+        }
+
+        private static char[] insert(char[] array, int index, char ch) {
+            final char[] result = new char[array.length + 1];
+            System.arraycopy(array, 0, result, 0, index);
+            result[index] = ch;
+            System.arraycopy(array, index, result, index + 1, array.length - index);
+            return result;
+        }
+    }
+
+    /**
+     * Constructor, for rules built by the parser.
+     *
+     * @param allowPatterns    The patterns of the allow rules.
+     * @param disallowPatterns The patterns of the disallow rules.
+     * @param crawlDelayMs     The crawl delay asked for, or zero.
+     */
+    private RobotsRules(List<String> allowPatterns, List<String> disallowPatterns, long crawlDelayMs) {
+
+        this.crawlDelayMs = crawlDelayMs;
+        allowPatterns.forEach(pattern -> add(pattern, true));
+        disallowPatterns.forEach(pattern -> add(pattern, false));
+        wildcardRules.sort(Comparator.comparingInt((Rule rule) -> rule.length).reversed());
+    }
+
+    /**
+     * @return Rules allowing every path. (For a site without a robots.txt.)
+     */
+    static RobotsRules allowAll() {
+        return new RobotsRules(List.of(), List.of(), 0);
+    }
+
+    /**
+     * @return Rules disallowing every path. (For a site whose robots.txt could not be read.)
+     */
+    static RobotsRules disallowAll() {
+        return new RobotsRules(List.of(), List.of("/"), 0);
+    }
+
+    /**
+     * Parse a robots.txt file, and compile the rules of the group which applies to a crawler: the
+     * groups naming the crawler's product token, or if there are none, the groups for '*'.
+     *
+     * @param robotsTxt The content of the robots.txt file.
+     * @param userAgent The User-Agent of the crawler, e.g. 'siteindex/1.0'
+     * @return The rules.
+     */
+    static RobotsRules parse(String robotsTxt, String userAgent) {
+
+        final String productToken = userAgent.split("[/\\s]", 2)[0].toLowerCase(Locale.ROOT);
+
+        final Group specific = new Group();
+        final Group wildcard = new Group();
+        final List<Group> groupsOfLine = new ArrayList<>(); // the groups the current group's rules belong to
+        boolean readingAgents = false;
+        for (String rawLine : robotsTxt.split("\\r\\n|\\r|\\n")) {
+            final int hash = rawLine.indexOf('#');
+            final String line = (hash < 0 ? rawLine : rawLine.substring(0, hash)).trim();
+            final int colon = line.indexOf(':');
+            if (colon < 0)
+                continue;
+            final String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            final String value = line.substring(colon + 1).trim();
+
+            if (field.equals("user-agent")) {
+                if (!readingAgents)
+                    groupsOfLine.clear(); // a new group starts
+                readingAgents = true;
+                final String agent = value.toLowerCase(Locale.ROOT);
+                if (agent.equals("*"))
+                    groupsOfLine.add(wildcard);
+                else if (!agent.isEmpty() && agent.equals(productToken)) {
+                    groupsOfLine.add(specific);
+                    specific.matched = true;
+                }
+                continue;
+            }
+            readingAgents = false;
+            for (Group group : groupsOfLine)
+                group.add(field, value);
+        }
+
+        final Group group = specific.matched ? specific : wildcard;
+        return new RobotsRules(group.allow, group.disallow, group.crawlDelayMs);
+    }
+
+    /**
+     * The rules of the robots.txt groups for one user agent.
+     */
+    private static class Group {
+
+        final List<String> allow = new ArrayList<>();
+        final List<String> disallow = new ArrayList<>();
+        long crawlDelayMs;
+        boolean matched;
+
+        void add(String field, String value) {
+            switch (field) {
+                case "allow":
+                    if (!value.isEmpty())
+                        allow.add(value);
+                    break;
+                case "disallow":
+                    if (!value.isEmpty()) // an empty disallow allows everything
+                        disallow.add(value);
+                    break;
+                case "crawl-delay":
+                    try {
+                        crawlDelayMs = Math.max(crawlDelayMs, (long) (Double.parseDouble(value) * 1000));
+                    } catch (NumberFormatException e) {
+                        // ignored, as other crawlers do
+                    }
+                    break;
+                default:
+                    // e.g. sitemap, which is not part of a group
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Add a rule to the trie, or to the wildcard rules.
+     */
+    private void add(String rawPattern, boolean allow) {
+
+        final String normalised = rawPattern.charAt(0) == '/' || rawPattern.charAt(0) == WILDCARD
+                ? rawPattern
+                : "/" + rawPattern;
+        final boolean anchored = normalised.charAt(normalised.length() - 1) == END_ANCHOR;
+        final String pattern = anchored ? normalised.substring(0, normalised.length() - 1) : normalised;
+        final Rule rule = new Rule(pattern, anchored, allow, normalised.length());
+
+        if (pattern.indexOf(WILDCARD) >= 0) {
+            wildcardRules.add(rule);
+            return;
+        }
+        Node node = root;
+        for (int i = 0; i < pattern.length(); i++)
+            node = node.addChild(pattern.charAt(i));
+        if (anchored) {
+            if (rule.beats(node.anchoredRule))
+                node.anchoredRule = rule;
+        } else if (rule.beats(node.prefixRule)) {
+            node.prefixRule = rule;
+        }
+    }
+
+    /**
+     * @param path The path of a URL, with its query, e.g. '/search?q=garden'
+     * @return True if the rules allow the path to be crawled.
+     */
+    boolean isAllowed(String path) {
+
+        Rule best = null;
+        Node node = root;
+        for (int i = 0; i < path.length() && node != null; i++) {
+            node = node.child(path.charAt(i));
+            if (node == null)
+                break;
+            if (node.prefixRule != null && node.prefixRule.beats(best))
+                best = node.prefixRule;
+            if (i == path.length() - 1 && node.anchoredRule != null && node.anchoredRule.beats(best))
+                best = node.anchoredRule;
+        }
+
+        for (Rule rule : wildcardRules) {
+            if (best != null && rule.length < best.length)
+                break; // sorted longest first, so no later rule could win
+            if (rule.beats(best) && matches(rule, path))
+                best = rule;
+        }
+        return best == null || best.allow;
+    }
+
+    /**
+     * @return The crawl delay asked for, or zero.
+     */
+    long getCrawlDelayMs() {
+        return crawlDelayMs;
+    }
+
+    /**
+     * Match a wildcard rule against a path: the whole path if the rule is anchored, else a prefix of it.
+     */
+    private static boolean matches(Rule rule, String path) {
+
+        final String pattern = rule.pattern;
+        int p = 0;
+        int s = 0;
+        int star = -1;
+        int mark = 0;
+        while (s < path.length()) {
+            if (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+                star = p++;
+                mark = s;
+            } else if (p < pattern.length() && pattern.charAt(p) == path.charAt(s)) {
+                p++;
+                s++;
+            } else if (p == pattern.length() && !rule.anchored) {
+                return true;
+            } else if (star >= 0) {
+                p = star + 1;
+                s = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == WILDCARD)
+            p++;
+        return p == pattern.length();
+    }
+}
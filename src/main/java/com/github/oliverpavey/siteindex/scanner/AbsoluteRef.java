@@ -2,50 +2,47 @@ package com.github.oliverpavey.siteindex.scanner;
 
 import lombok.Data;
 
-import static com.github.oliverpavey.siteindex.tools.TextUtils.extractDomain;
-import static com.github.oliverpavey.siteindex.tools.TextUtils.joinUrl;
-
 /**
  * Construct an absolute reference from a page's URL and the value in the link.
  * (Typically the value from 'a.href'.)
  * <p>
- * This encapsulates the joining of the two parts, ensuring exactly one path
- * divider is used in the join; removing bookmarks from the URL; and determining
- * whether the link is to the site being scanned or an external site.
+ * This encapsulates resolving the link against the page's URL (see UrlBase); removing
+ * bookmarks from the URL; and determining whether the link is to the site being scanned
+ * or an external site.
  */
 @Data
 public class AbsoluteRef {
 
+    static final String HTTP_PREFIX = "http://";
+    static final String HTTPS_PREFIX = "https://";
+
     final boolean refIsAbsolute;
     final String absoluteRef;
     final boolean siteReference;
 
     /**
-     * Constructor.  Joins the two URL parts to form a whole.
+     * Constructor.  Resolves the link against the URL of the page.
      *
      * @param base The URL of the page being scanned.
      * @param ref  The text from the link on the page.
      */
     public AbsoluteRef(String base, String ref) {
-
-        final String ABSOLUTE_REFERENCE_REGEX = "^http(s?)://.*$";
-        refIsAbsolute = ref.matches(ABSOLUTE_REFERENCE_REGEX);
-        absoluteRef = withoutBookmark(refIsAbsolute ? ref : joinUrl(base, ref));
-        siteReference = absoluteRef.startsWith(extractDomain(base));
+        this(UrlBase.parse(base), ref);
     }
 
     /**
-     * Strips a bookmark from the URL.
+     * Constructor.  Resolves the link against the URL of the page, parsed once for all the links on the page.
      *
-     * @param url A URL which may (or may not) include a bookmark.
-     * @return The URL without the bookmark.
+     * @param base The parsed URL of the page being scanned.
+     * @param ref  The text from the link on the page.
      */
-    private String withoutBookmark(String url) {
+    public AbsoluteRef(UrlBase base, String ref) {
 
-        final String BOOKMARK_START = "#";
-        if (!url.contains(BOOKMARK_START))
-            return url;
-        return url.substring(0, url.indexOf(BOOKMARK_START));
+        final String trimmed = ref.strip();
+        refIsAbsolute = trimmed.regionMatches(true, 0, HTTP_PREFIX, 0, HTTP_PREFIX.length())
+                || trimmed.regionMatches(true, 0, HTTPS_PREFIX, 0, HTTPS_PREFIX.length());
+        absoluteRef = base.resolve(ref);
+        siteReference = absoluteRef.startsWith(base.getDomain());
     }
 
     /**
@@ -0,0 +1,176 @@
+package com.github.oliverpavey.siteindex.scanner;
+
+import com.github.oliverpavey.siteindex.politeness.PolitenessScheduler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.oliverpavey.siteindex.tools.TextUtils.extractDomain;
+
+/**
+ * The queue of URLs waiting to be scanned, shared by the worker threads of a scan.
+ * <p>
+ * URLs are taken in the order they were offered, so the site is scanned breadth-first: the
+ * homepage, then the pages it links to, then the pages they link to, and so on. Memory use is
+ * proportional to the number of URLs waiting, not to the depth of the site.
+ * <p>
+ * URLs are queued per host, and a URL is only handed out once the politeness scheduler allows
+ * a request to its host. Hosts are visited in turn, so a host which must wait does not hold up
+ * URLs of other hosts. The scheduler is shared with other scans (and resource checks), whose
+ * requests release a host without waking this frontier, so a host at its in-flight limit is
+ * tried again after a short interval.
+ * <p>
+ * Workers take a URL, scan it, and then mark it complete. The frontier tracks how many URLs
+ * are in-flight so that it can tell the difference between "nothing to do yet" (another worker
+ * may still discover links) and "the scan is finished" (nothing queued and nothing in-flight).
+ * The scan can also be held open while URLs may still arrive from elsewhere (e.g. other shards).
+ */
+class CrawlFrontier {
+
+    static final long IN_FLIGHT_RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final PolitenessScheduler politenessScheduler;
+
+    private final Map<String, Deque<FrontierEntry>> hostQueues = new HashMap<>();
+    private final Deque<String> hosts = new ArrayDeque<>();
+    private int size;
+    private int inFlight;
+    private int holds;
+
+    /**
+     * Constructor.
+     *
+     * @param politenessScheduler Decides when a request may be made to each host.
+     */
+    CrawlFrontier(PolitenessScheduler politenessScheduler) {
+        this.politenessScheduler = politenessScheduler;
+    }
+
+    /**
+     * Add a URL to the end of its host's queue, and wake any worker waiting for work.
+     *
+     * @param entry The URL to scan, with its depth.
+     */
+    public synchronized void offer(FrontierEntry entry) {
+        final String host = extractDomain(entry.getUrl());
+        hostQueues.computeIfAbsent(host, key -> {
+            hosts.addLast(key);
+            return new ArrayDeque<>();
+        }).addLast(entry);
+        size++;
+        notifyAll();
+    }
+
+    /**
+     * Wait until a URL is queued, without taking it, or the scan is finished. (Workers wait here
+     * before waiting for anything else they need to scan a page, so an idle worker holds nothing
+     * while other workers may still discover links.)
+     *
+     * @return True if a URL is queued (though another worker may take it first), or false when the scan is finished.
+     * @throws InterruptedException If the worker is interrupted whilst waiting.
+     */
+    public synchronized boolean awaitWork() throws InterruptedException {
+        while (size == 0) {
+            if (inFlight == 0 && holds == 0)
+                return false;
+            wait();
+        }
+        return true;
+    }
+
+    /**
+     * Take the next URL to scan, waiting while the queue is empty but other workers are still busy,
+     * or while every host with URLs queued is at its politeness limit. (A host at its in-flight limit is
+     * tried again after IN_FLIGHT_RECHECK_NANOS, as other scans release hosts without notifying this frontier.)
+     * Every URL taken must be matched by a call to complete().
+     *
+     * @return The next URL to scan, or an empty optional when the scan is finished.
+     * @throws InterruptedException If the worker is interrupted whilst waiting.
+     */
+    public synchronized Optional<FrontierEntry> take() throws InterruptedException {
+        while (true) {
+            if (size == 0) {
+                if (inFlight == 0 && holds == 0)
+                    return Optional.empty();
+                wait();
+                continue;
+            }
+
+            long waitNanos = Long.MAX_VALUE;
+            for (int i = 0; i < hosts.size(); i++) {
+                final String host = hosts.removeFirst();
+                hosts.addLast(host);
+                final long delay = politenessScheduler.tryAcquire(host);
+                if (delay == 0)
+                    return Optional.of(removeFirst(host));
+                waitNanos = Math.min(waitNanos, delay);
+            }
+
+            TimeUnit.NANOSECONDS.timedWait(this, waitNanos == Long.MAX_VALUE ? IN_FLIGHT_RECHECK_NANOS : waitNanos);
+        }
+    }
+
+    /**
+     * Mark a URL (previously taken) as complete.
+     *
+     * @param entry The URL taken.
+     */
+    public synchronized void complete(FrontierEntry entry) {
+        politenessScheduler.release(extractDomain(entry.getUrl()));
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Keep the scan open, even when nothing is queued or in-flight. Workers wait for more URLs
+     * until the hold is released.
+     */
+    public synchronized void hold() {
+        holds++;
+    }
+
+    /**
+     * Release a hold (previously made by hold()).
+     */
+    public synchronized void releaseHold() {
+        holds--;
+        notifyAll();
+    }
+
+    /**
+     * @return True if no URLs are queued or in-flight. (The scan may still be held open.)
+     */
+    public synchronized boolean isIdle() {
+        return size == 0 && inFlight == 0;
+    }
+
+    /**
+     * @return The number of URLs waiting to be scanned.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of URLs taken, but not yet complete.
+     */
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    private FrontierEntry removeFirst(String host) {
+        final Deque<FrontierEntry> queue = hostQueues.get(host);
+        final FrontierEntry entry = queue.removeFirst();
+        if (queue.isEmpty()) {
+            hostQueues.remove(host);
+            hosts.remove(host);
+        }
+        size--;
+        inFlight++;
+        return entry;
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.oliverpavey.siteindex.scanner;
+
+import lombok.Data;
+
+/**
+ * A URL waiting in the frontier, with the number of links followed from the homepage to find it.
+ */
+@Data
+class FrontierEntry {
+
+    private final String url;
+    private final int depth;
+
+    /**
+     * Constructor.
+     *
+     * @param url   The URL to scan.
+     * @param depth The number of links between the homepage and this URL. (The homepage has depth 0.)
+     */
+    FrontierEntry(String url, int depth) {
+        this.url = url;
+        this.depth = depth;
+    }
+}
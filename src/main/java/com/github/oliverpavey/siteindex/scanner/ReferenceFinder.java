@@ -0,0 +1,190 @@
+package com.github.oliverpavey.siteindex.scanner;
+
+import com.github.oliverpavey.siteindex.function.TriStringConsumer;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Finds the links and resource references in a page, from finder templates compiled once into a
+ * lookup table from tag name to the attributes to read. Each page is then read with a single walk
+ * of its elements, whatever the number of templates: either of a JSoup document, or of the start
+ * tags read by a TagTokenizer.
+ * <p>
+ * Templates are comma separated lists of dot separated pairs of tag and attribute names, e.g.
+ * {@code a.href,img.src}. Attributes named {@code srcset} (or ending {@code -srcset}, such as
+ * {@code data-srcset}) hold a list of image candidates, and each URL in the list is reported.
+ */
+class ReferenceFinder {
+
+    static final String REGEX_COMMA = ",";
+    static final String REGEX_DOT = "\\.";
+    static final String SRCSET = "srcset";
+    static final String SRCSET_SUFFIX = "-srcset";
+    static final String TITLE = "title";
+
+    /**
+     * An attribute to read from a tag, and what it references.
+     */
+    private static class Finder {
+
+        final String attrName;
+        final boolean link;
+        final boolean srcset;
+
+        Finder(String attrName, boolean link) {
+            this.attrName = attrName;
+            this.link = link;
+            this.srcset = attrName.equals(SRCSET) || attrName.endsWith(SRCSET_SUFFIX);
+        }
+    }
+
+    private final Map<String, Finder[]> tagFinders;
+
+    private ReferenceFinder(Map<String, Finder[]> tagFinders) {
+        this.tagFinders = tagFinders;
+    }
+
+    /**
+     * Compile the finder templates.
+     *
+     * @param linkTemplates     Templates of the tags and attributes which link to other pages.
+     * @param resourceTemplates Templates of the tags and attributes which reference resources.
+     * @return The compiled finder.
+     */
+    static ReferenceFinder compile(String linkTemplates, String resourceTemplates) {
+
+        final Map<String, List<Finder>> finders = new HashMap<>();
+        addTemplates(finders, linkTemplates, true);
+        addTemplates(finders, resourceTemplates, false);
+
+        final Map<String, Finder[]> tagFinders = new HashMap<>();
+        finders.forEach((tagName, tagList) -> tagFinders.put(tagName, tagList.toArray(new Finder[0])));
+        return new ReferenceFinder(tagFinders);
+    }
+
+    private static void addTemplates(Map<String, List<Finder>> finders, String templates, boolean link) {
+
+        for (String template : templates.split(REGEX_COMMA)) {
+            if (template.isBlank())
+                continue;
+            final String[] split = template.trim().toLowerCase(Locale.ROOT).split(REGEX_DOT);
+            if (split.length != 2)
+                throw new IllegalArgumentException(String.format("Finder template is not tag.attribute: '%s'", template));
+            finders.computeIfAbsent(split[0], tagName -> new ArrayList<>()).add(new Finder(split[1], link));
+        }
+    }
+
+    /**
+     * Walk the elements of a page once, passing each link and resource reference found to a consumer.
+     * Elements without the attribute named by a template are skipped.
+     *
+     * @param root              The page, or part of a page, to search.
+     * @param linkConsumer      Receives the tag name, attribute name and value of each link.
+     * @param resourceConsumer  Receives the tag name, attribute name and value of each resource reference.
+     */
+    void find(Node root, TriStringConsumer linkConsumer, TriStringConsumer resourceConsumer) {
+
+        NodeTraversor.traverse(new NodeVisitor() {
+
+            @Override
+            public void head(Node node, int depth) {
+                if (!(node instanceof Element))
+                    return;
+                final Element element = (Element) node;
+                final Finder[] finders = tagFinders.get(element.normalName());
+                if (finders != null)
+                    report(element.normalName(), finders,
+                            attrName -> element.hasAttr(attrName) ? element.attr(attrName) : null,
+                            linkConsumer, resourceConsumer);
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+            }
+        }, root);
+    }
+
+    /**
+     * Read the start tags of a page in order, without building a document, passing each link and
+     * resource reference found to a consumer.
+     *
+     * @param tokenizer         The tokenizer reading the page.
+     * @param linkConsumer      Receives the tag name, attribute name and value of each link.
+     * @param resourceConsumer  Receives the tag name, attribute name and value of each resource reference.
+     * @return The title of the page, or an empty string if it has none.
+     */
+    String find(TagTokenizer tokenizer, TriStringConsumer linkConsumer, TriStringConsumer resourceConsumer) {
+
+        String title = null;
+        while (tokenizer.nextTag()) {
+            final String tagName = tokenizer.tagName();
+            final Finder[] finders = tagFinders.get(tagName);
+            if (finders != null)
+                report(tagName, finders, tokenizer::attr, linkConsumer, resourceConsumer);
+            if (title == null && tagName.equals(TITLE))
+                title = tokenizer.text();
+        }
+        return title == null ? "" : title;
+    }
+
+    private void report(String tagName, Finder[] finders, Function<String, String> attributes,
+                        TriStringConsumer linkConsumer, TriStringConsumer resourceConsumer) {
+
+        for (Finder finder : finders) {
+            final String value = attributes.apply(finder.attrName);
+            if (value == null)
+                continue;
+            final TriStringConsumer consumer = finder.link ? linkConsumer : resourceConsumer;
+            if (finder.srcset) {
+                for (String url : srcsetUrls(value))
+                    consumer.accept(tagName, finder.attrName, url);
+            } else {
+                consumer.accept(tagName, finder.attrName, value);
+            }
+        }
+    }
+
+    /**
+     * Split a srcset attribute into its URLs, dropping the width and density descriptors.
+     * (e.g. "small.jpg 480w, large.jpg 1080w" gives small.jpg and large.jpg.)
+     *
+     * @param srcset The value of the attribute.
+     * @return The URLs of the image candidates.
+     */
+    static List<String> srcsetUrls(String srcset) {
+
+        final List<String> urls = new ArrayList<>();
+        final int length = srcset.length();
+        int i = 0;
+        while (i < length) {
+            // Skip separators, then read the URL up to whitespace.
+            while (i < length && (Character.isWhitespace(srcset.charAt(i)) || srcset.charAt(i) == ','))
+                i++;
+            final int start = i;
+            while (i < length && !Character.isWhitespace(srcset.charAt(i)))
+                i++;
+            int end = i;
+            final boolean urlEndsCandidate = end > start && srcset.charAt(end - 1) == ',';
+            while (end > start && srcset.charAt(end - 1) == ',')
+                end--;
+            if (end > start)
+                urls.add(srcset.substring(start, end));
+
+            // Skip the descriptors, to the comma ending the candidate.
+            if (!urlEndsCandidate) {
+                while (i < length && srcset.charAt(i) != ',')
+                    i++;
+            }
+        }
+        return urls;
+    }
+}
@@ -1,23 +1,62 @@
 package com.github.oliverpavey.siteindex.scanner;
 
+import com.github.oliverpavey.siteindex.batch.CrawlBudget;
+import com.github.oliverpavey.siteindex.cache.CachedPage;
+import com.github.oliverpavey.siteindex.cache.ResponseCache;
+import com.github.oliverpavey.siteindex.dedup.DuplicateDetection;
+import com.github.oliverpavey.siteindex.dedup.DuplicateDetector;
+import com.github.oliverpavey.siteindex.dedup.PageFingerprint;
+import com.github.oliverpavey.siteindex.export.ExportedPage;
+import com.github.oliverpavey.siteindex.export.PageExport;
+import com.github.oliverpavey.siteindex.export.PageExporter;
+import com.github.oliverpavey.siteindex.fetch.FetchResult;
+import com.github.oliverpavey.siteindex.fetch.PageFetcher;
 import com.github.oliverpavey.siteindex.function.TriStringConsumer;
-import com.github.oliverpavey.siteindex.model.PageScan;
-import com.github.oliverpavey.siteindex.model.ResourceScan;
+import com.github.oliverpavey.siteindex.graph.SiteModelBuilder;
+import com.github.oliverpavey.siteindex.graph.SiteModelFactory;
+import com.github.oliverpavey.siteindex.journal.CrawlJournal;
+import com.github.oliverpavey.siteindex.journal.CrawlJournalFactory;
+import com.github.oliverpavey.siteindex.journal.CrawlState;
+import com.github.oliverpavey.siteindex.journal.ScannedPage;
+import com.github.oliverpavey.siteindex.metrics.CrawlMetrics;
+import com.github.oliverpavey.siteindex.metrics.CrawlMetricsFactory;
+import com.github.oliverpavey.siteindex.model.PageContent;
 import com.github.oliverpavey.siteindex.model.SiteScan;
+import com.github.oliverpavey.siteindex.politeness.PolitenessScheduler;
+import com.github.oliverpavey.siteindex.robots.RobotsPolicy;
+import com.github.oliverpavey.siteindex.shard.CrawlSharding;
+import com.github.oliverpavey.siteindex.shard.ShardExchange;
+import com.github.oliverpavey.siteindex.sitemap.SitemapSeeder;
+import com.github.oliverpavey.siteindex.urlstore.UrlStore;
+import com.github.oliverpavey.siteindex.urlstore.UrlStoreFactory;
+import com.github.oliverpavey.siteindex.verify.ExternalLinkChecker;
+import com.github.oliverpavey.siteindex.verify.ResourceVerification;
+import com.github.oliverpavey.siteindex.verify.ResourceVerifier;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
-import org.jsoup.UnsupportedMimeTypeException;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.github.oliverpavey.siteindex.tools.TextUtils.extractDomain;
 
@@ -28,12 +67,111 @@ import static com.github.oliverpavey.siteindex.tools.TextUtils.extractDomain;
 @Component
 public class SiteScanner {
 
+    static final int HTTP_STATUS_NOT_MODIFIED = 304;
+    static final String HEADER_ETAG = "ETag";
+    static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
     @Value("${siteindex.sitescanner.links}")
     private String linkFinderTemplates;
 
     @Value("${siteindex.sitescanner.resources}")
     private String resourceFinderTemplates;
 
+    @Value("${siteindex.sitescanner.threads}")
+    private int threads;
+
+    @Value("${siteindex.sitescanner.max-depth}")
+    private int maxDepth;
+
+    @Value("${siteindex.sitescanner.fast-extraction}")
+    private boolean fastExtraction;
+
+    final UrlStoreFactory urlStoreFactory;
+
+    final PageFetcher pageFetcher;
+
+    final PolitenessScheduler politenessScheduler;
+
+    final ResponseCache responseCache;
+
+    final SiteModelFactory siteModelFactory;
+
+    final CrawlMetricsFactory crawlMetricsFactory;
+
+    final ResourceVerifier resourceVerifier;
+
+    final ExternalLinkChecker externalLinkChecker;
+
+    final SitemapSeeder sitemapSeeder;
+
+    final RobotsPolicy robotsPolicy;
+
+    final CrawlJournalFactory crawlJournalFactory;
+
+    final CrawlBudget crawlBudget;
+
+    final CrawlSharding crawlSharding;
+
+    final DuplicateDetector duplicateDetector;
+
+    final PageExporter pageExporter;
+
+    private ReferenceFinder referenceFinder;
+
+    /**
+     * Constructor
+     *
+     * @param urlStoreFactory     Creates the stores of URLs seen by each scan.
+     * @param pageFetcher         Retrieves the pages to scan.
+     * @param politenessScheduler Limits the rate of requests to each host.
+     * @param responseCache       Holds pages retrieved by earlier scans.
+     * @param siteModelFactory    Creates the builder of the model of each scan.
+     * @param crawlMetricsFactory Creates the metrics of each scan.
+     * @param resourceVerifier    Checks the resources referenced by each scan.
+     * @param externalLinkChecker Checks the external links of each scan.
+     * @param sitemapSeeder       Reads the sitemap of each site scanned.
+     * @param robotsPolicy        Decides which URLs robots.txt allows to be scanned.
+     * @param crawlJournalFactory Creates the journal of each scan.
+     * @param crawlBudget         Limits the pages scanned at once across all scans.
+     * @param crawlSharding       Decides which URLs this process scans, in a sharded crawl.
+     * @param duplicateDetector   Detects pages with the same content as another page of each scan.
+     * @param pageExporter        Exports the record of each page as it is scanned.
+     */
+    public SiteScanner(UrlStoreFactory urlStoreFactory, PageFetcher pageFetcher,
+                       PolitenessScheduler politenessScheduler, ResponseCache responseCache,
+                       SiteModelFactory siteModelFactory, CrawlMetricsFactory crawlMetricsFactory,
+                       ResourceVerifier resourceVerifier, ExternalLinkChecker externalLinkChecker,
+                       SitemapSeeder sitemapSeeder, RobotsPolicy robotsPolicy,
+                       CrawlJournalFactory crawlJournalFactory, CrawlBudget crawlBudget,
+                       CrawlSharding crawlSharding, DuplicateDetector duplicateDetector,
+                       PageExporter pageExporter) {
+        this.urlStoreFactory = urlStoreFactory;
+        this.pageFetcher = pageFetcher;
+        this.politenessScheduler = politenessScheduler;
+        this.responseCache = responseCache;
+        this.siteModelFactory = siteModelFactory;
+        this.crawlMetricsFactory = crawlMetricsFactory;
+        this.resourceVerifier = resourceVerifier;
+        this.externalLinkChecker = externalLinkChecker;
+        this.sitemapSeeder = sitemapSeeder;
+        this.robotsPolicy = robotsPolicy;
+        this.crawlJournalFactory = crawlJournalFactory;
+        this.crawlBudget = crawlBudget;
+        this.crawlSharding = crawlSharding;
+        this.duplicateDetector = duplicateDetector;
+        this.pageExporter = pageExporter;
+    }
+
+    /**
+     * Compile the finder templates once, for use by every page of every scan.
+     */
+    @PostConstruct
+    void init() {
+        referenceFinder = ReferenceFinder.compile(linkFinderTemplates, resourceFinderTemplates);
+    }
+
     /**
      * Launch a scan.
      *
@@ -41,36 +179,92 @@ public class SiteScanner {
      * @return An optional containing the site scan (or an empty optional).
      */
     public Optional<SiteScan> scan(String homepageUrl) {
+        return scan(homepageUrl, false);
+    }
+
+    /**
+     * Launch a scan, optionally resuming an earlier crawl of the site which did not complete.
+     *
+     * @param homepageUrl The page from which the scan should commence, on the site to scan.
+     * @param resume      True to resume from the crawl journal of the site, if there is one.
+     * @return An optional containing the site scan (or an empty optional).
+     */
+    public Optional<SiteScan> scan(String homepageUrl, boolean resume) {
 
-        final SiteScannerTask scanner = new SiteScannerTask(homepageUrl);
+        final SiteScannerTask scanner = new SiteScannerTask(homepageUrl, resume);
         return scanner.scan();
     }
 
     /**
      * Inner class which orchestrates the scan of a site.
+     * <p>
+     * Pages are scanned concurrently by a pool of worker threads which share a frontier of URLs
+     * waiting to be scanned. Each page is added to a SiteModelBuilder, and once the frontier is
+     * exhausted the builder resolves the links between the pages which could be read.
+     * <p>
+     * Links are only followed to a depth of maxDepth from the homepage (when maxDepth is not negative).
+     * The depth of a page is that of the first link to it which is queued, and with several workers
+     * (or shards) that is not always the shortest path, so the limit is approximate. (See enqueue().)
+     * If the site's sitemap is read, the pages it lists are queued as though linked from the homepage,
+     * so deep and orphaned pages are scanned too.
+     * <p>
+     * The time spent fetching, parsing and extracting each page is recorded in the CrawlMetrics of the scan.
+     * Resources are submitted for verification as they are found, so they are checked while the crawl runs.
+     * External links are checked once the crawl is complete, so that each is checked once for the whole site.
+     * <p>
+     * A page with the same content as a page already scanned is recorded as a page with no references,
+     * and its links are not extracted; the clusters of duplicates are recorded in the model.
+     * <p>
+     * A record of each URL scanned (its outcome, status, timings and content) is exported as soon as
+     * the URL is processed, so the export can be read while the crawl runs.
+     * <p>
+     * Changes to the state of the crawl are recorded in a CrawlJournal, from which a crawl which does
+     * not complete can be resumed.
+     * <p>
+     * In a sharded crawl the task scans only the URLs its shard owns, forwarding the others through a
+     * ShardExchange, and its journal records the pages it scans. Once every shard has finished, the
+     * coordinator merges the journals of the other shards into its model and reports the whole site.
      */
     class SiteScannerTask {
 
-        final static String REGEX_COMMA = ",";
-        final static String REGEX_DOT = "\\.";
-
-        private final List<String> knownNonPageUris;
+        private final UrlStore queuedUris;
+        private final UrlStore knownNonPageUris;
+        private final UrlStore tooDeepUris;
+        private final UrlStore robotsDisallowedUris;
+        private final LongAdder readmittedUris = new LongAdder();
+        private final SiteModelBuilder model;
+        private final CrawlFrontier frontier;
+        private final CrawlMetrics metrics;
+        private final ResourceVerification verification;
+        private final DuplicateDetection duplicates;
+        private final PageExport pageExport;
+        private CrawlJournal journal;
+        private ShardExchange exchange;
 
         private final String homepageUrl;
-        private final SiteScan siteScan;
+        private final boolean resume;
 
         /**
-         * Constructor. Initializes collections and determines site domain.
+         * Constructor. Initializes collections.
          *
          * @param homepageUrl The page from which the scan should commence, on the site to scan.
+         * @param resume      True to resume from the crawl journal of the site, if there is one.
          */
-        public SiteScannerTask(String homepageUrl) {
-
-            knownNonPageUris = new ArrayList<>();
+        public SiteScannerTask(String homepageUrl, boolean resume) {
+
+            queuedUris = urlStoreFactory.create();
+            knownNonPageUris = urlStoreFactory.create();
+            tooDeepUris = urlStoreFactory.create();
+            robotsDisallowedUris = urlStoreFactory.create();
+            model = siteModelFactory.create();
+            frontier = new CrawlFrontier(politenessScheduler);
+            metrics = crawlMetricsFactory.create(homepageUrl);
+            verification = resourceVerifier.start(crawlSharding.isCoordinator());
+            duplicates = duplicateDetector.start(!crawlSharding.isEnabled());
+            pageExport = pageExporter.start(resume);
 
             this.homepageUrl = homepageUrl;
-            siteScan = new SiteScan();
-            siteScan.setDomain(extractDomain(homepageUrl));
+            this.resume = resume;
         }
 
         /**
@@ -80,140 +274,487 @@ public class SiteScanner {
          */
         public Optional<SiteScan> scan() {
 
+            log.info("Scan commenced: {} ({} threads)", homepageUrl, threads);
+            if (crawlSharding.isEnabled()) {
+                try {
+                    startShard();
+                } catch (IOException e) {
+                    log.warn("Could not start shard {} of {}: {}", crawlSharding.getIndex(), crawlSharding.getCount(),
+                            e.getMessage());
+                    return Optional.empty();
+                }
+            } else {
+                journal = crawlJournalFactory.create(homepageUrl, resume);
+                journal.getRecovered().ifPresent(state -> {
+                    restore(state);
+                    log.info("Scan resumed: {} ({} pages already scanned, {} uris queued)", homepageUrl,
+                            state.getPages().size(), state.getPending().size());
+                });
+            }
+            enqueue(homepageUrl, 0);
+            final Set<String> sitemapPages = crawlSharding.isCoordinator() ? sitemapSeeder.load(homepageUrl) : Set.of();
+            for (String page : sitemapPages)
+                enqueue(page, 1);
+            if (exchange != null) {
+                try {
+                    exchange.start();
+                } catch (IOException e) {
+                    log.warn("Could not start shard {} of {}: {}", crawlSharding.getIndex(), crawlSharding.getCount(),
+                            e.getMessage());
+                    exchange.markFailed();
+                    journal.close();
+                    return Optional.empty();
+                }
+            }
+            metrics.monitorFrontier(frontier::size, frontier::inFlight);
+            metrics.start();
+
+            final ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, threads));
+            boolean crawled = false;
             try {
-                siteScan.clear();
-                log.info("Scan commenced: {}", homepageUrl);
-                final PageScan homePageScan = scan(homepageUrl);
-                siteScan.setHomepage(homePageScan);
-                log.info("Scan completed: {}", homepageUrl);
-                return Optional.of(siteScan);
+                final List<Future<Void>> results = new ArrayList<>();
+                for (int i = 0; i < Math.max(1, threads); i++) {
+                    results.add(workers.submit(() -> {
+                        crawl();
+                        return null;
+                    }));
+                }
+                for (Future<Void> result : results)
+                    result.get();
+                crawled = true;
 
-            } catch (IOException e) {
-                log.warn("Problem running JSoup: {}", e.getMessage(), e);
+            } catch (InterruptedException e) {
+                log.warn("Scan interrupted: {}", homepageUrl);
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+
+            } catch (ExecutionException e) {
+                log.warn("Problem scanning site: {}", e.getCause().getMessage(), e.getCause());
+                return Optional.empty();
+
+            } finally {
+                workers.shutdownNow();
+                metrics.close();
+                journal.close();
+                if (exchange != null) {
+                    exchange.stop();
+                    if (!crawled)
+                        exchange.markFailed();
+                }
+            }
+
+            if (exchange != null && exchange.isFailed()) {
+                log.warn("Shard {} of {} gave up, as the sharded crawl failed: {}", crawlSharding.getIndex(),
+                        crawlSharding.getCount(), homepageUrl);
                 return Optional.empty();
             }
+            if (exchange != null && !mergeShards())
+                return Optional.empty();
+            if (!model.hasPage(homepageUrl)) {
+                log.warn("Could not retrieve homepage: {}", homepageUrl);
+                return Optional.empty();
+            }
+            final SiteScan siteScan;
+            try {
+                siteScan = model.build(extractDomain(homepageUrl), homepageUrl);
+            } catch (UncheckedIOException e) {
+                log.warn("Could not build the model of site: {}: {}", homepageUrl, e.getCause().getMessage());
+                return Optional.empty();
+            }
+            journal.discard();
+            sitemapSeeder.audit(siteScan, sitemapPages);
+            duplicates.apply(siteScan);
+            try {
+                verification.apply(siteScan);
+                externalLinkChecker.check(siteScan);
+            } catch (InterruptedException e) {
+                log.warn("Verification interrupted: {}", homepageUrl);
+                Thread.currentThread().interrupt();
+            }
+
+            log.info("Scan completed: {} ({} pages, {} unreadable uris, {} uris beyond max depth, "
+                            + "{} uris disallowed by robots.txt)", homepageUrl, siteScan.getUriToPageScan().size(),
+                    knownNonPageUris.size(), tooDeepCount(), robotsDisallowedUris.size());
+            log.info("Queued uri store: {}", queuedUris.stats());
+            log.info("Unreadable uri store: {}", knownNonPageUris.stats());
+            return Optional.of(siteScan);
+        }
+
+        /**
+         * Worker loop. Take URLs from the frontier and scan them until the frontier is exhausted.
+         * Each page is scanned within the crawl budget shared by all scans. The budget is acquired
+         * before a URL is taken, as taking it holds a politeness slot of its host, which must not be
+         * left idle while the worker waits for the budget. A page which cannot be scanned is
+         * recorded as failed, and the crawl carries on.
+         *
+         * @throws InterruptedException If the worker is interrupted whilst waiting for work.
+         */
+        private void crawl() throws InterruptedException {
+
+            while (frontier.awaitWork()) {
+                crawlBudget.acquire();
+                try {
+                    final Optional<FrontierEntry> next = frontier.take();
+                    if (next.isEmpty())
+                        return;
+                    final String url = next.get().getUrl();
+                    try {
+                        scan(url, next.get().getDepth());
+                    } catch (IOException e) {
+                        log.warn("Problem retrieving page '{}': {}", url, e.getMessage());
+                        pageFailed(url, next.get().getDepth());
+                    } catch (RuntimeException e) {
+                        log.warn("Problem scanning page '{}': {}", url, e.toString(), e);
+                        pageFailed(url, next.get().getDepth());
+                    } finally {
+                        frontier.complete(next.get());
+                    }
+                } finally {
+                    crawlBudget.release();
+                }
+            }
         }
 
         /**
-         * Scan a single page within a website, and recursively scan any new pages found.
+         * Queue a URL for scanning, unless it has been queued before, is beyond the maximum depth,
+         * or is disallowed by the site's robots.txt. In a sharded crawl, a URL owned by another shard
+         * is forwarded to it instead.
+         * <p>
+         * Workers do not take pages in strict depth order, so a URL found beyond the maximum depth may
+         * later be found again within it, from a shallower page; it is then queued after all.
+         * <p>
+         * For the same reason a URL may first be queued from a deeper page than the shallowest which
+         * links to it. It is scanned once, at the depth at which it was first queued, and is not
+         * expanded again when a shallower link is found; so near the maximum depth, links which a
+         * strictly breadth-first crawl would follow may be cut off. With one worker, scanning one
+         * host without shards, pages are taken in depth order and the depths are exact. (Keeping the
+         * shortest depth of every URL queued would need a map of every URL beside the URL stores.)
          *
-         * @param url The URL of the page to scan.
-         * @return A model representing the page, which may include links to models of other pages.
-         * @throws IOException Any exception thrown when JSoup attempts to retrieve the page.
+         * @param url   The URL to scan.
+         * @param depth The number of links between the homepage and the URL.
          */
-        private PageScan scan(String url) throws IOException {
+        private void enqueue(String url, int depth) {
+            if (queuedUris.contains(url))
+                return;
+            if (maxDepth >= 0 && depth > maxDepth) {
+                if (tooDeepUris.add(url))
+                    journal.tooDeep(url);
+                return;
+            }
+            if (!queuedUris.add(url))
+                return;
+            if (tooDeepUris.contains(url))
+                readmittedUris.increment();
+            if (!crawlSharding.owns(url)) {
+                exchange.forward(url, depth);
+                return;
+            }
+            if (robotsPolicy.isAllowed(url)) {
+                journal.queued(url, depth);
+                frontier.offer(new FrontierEntry(url, depth));
+            } else {
+                robotsDisallowedUris.add(url);
+                journal.disallowed(url);
+            }
+        }
 
-            // Checking a URL which does not respond can be time consuming - avoid checking a URL twice.
-            if (knownNonPageUris.contains(url)) {
-                log.debug("Cannot retrieve page '{}'. Uri known not to contain HTML page.", url);
-                return null;
+        /**
+         * Restore the state of an earlier crawl of the site: the pages it scanned are added to the
+         * model (and registered for the detection of duplicates), and the URLs it had queued but not
+         * scanned are queued again.
+         *
+         * @param state The state recovered from the crawl journal.
+         */
+        private void restore(CrawlState state) {
+
+            for (ScannedPage page : state.getPages()) {
+                queuedUris.add(page.getUrl());
+                model.addPage(page.getUrl(), page.getDepth(), page.getContent());
+                duplicates.restore(page.getUrl(), page.getFingerprint(), page.getDuplicateOf());
+                page.getContent().getResources().forEach(verification::submit);
             }
+            state.getUnreadable().forEach(url -> {
+                queuedUris.add(url);
+                knownNonPageUris.add(url);
+            });
+            state.getTooDeep().forEach(tooDeepUris::add);
+            state.getDisallowed().forEach(url -> {
+                queuedUris.add(url);
+                robotsDisallowedUris.add(url);
+            });
+            state.getPending().forEach((url, depth) -> {
+                queuedUris.add(url);
+                frontier.offer(new FrontierEntry(url, depth));
+            });
+        }
 
-            // If the page has already been scanned then we also don't need to scan it again. Return existing scan.
-            final PageScan existingPage = siteScan.getUriToPageScan().get(url);
-            if (existingPage != null) {
-                existingPage.incReferences();
-                return existingPage;
+        /**
+         * Join a sharded crawl: record the pages scanned in the shard's journal, and exchange URLs
+         * with the other shards. The frontier is held open until every shard has finished. The exchange
+         * is started once the scan is seeded, so the shard is not seen as idle before it has begun, and
+         * after the journal is opened, as the URLs received from other shards are recorded in it.
+         *
+         * @throws IOException Any exception creating the files of the shard. (The shard is then recorded as failed.)
+         */
+        private void startShard() throws IOException {
+
+            if (resume)
+                log.warn("A sharded crawl cannot be resumed. Scanning afresh: {}", homepageUrl);
+            frontier.hold();
+            exchange = crawlSharding.create(this::enqueue, frontier::isIdle, frontier::releaseHold);
+            try {
+                journal = crawlJournalFactory.create(exchange.getPagesFile());
+            } catch (IOException e) {
+                exchange.markFailed();
+                throw e;
             }
+            log.info("Shard {} of {} started: {}", crawlSharding.getIndex(), crawlSharding.getCount(), homepageUrl);
+        }
+
+        /**
+         * Finish this shard of a sharded crawl. The coordinator waits for the other shards, and adds
+         * the pages they scanned to its model.
+         *
+         * @return True if this shard should report the whole site. (i.e. It is the coordinator, and the merge succeeded.)
+         */
+        private boolean mergeShards() {
 
-            // Use JSoup to retrieve the document for processing.
-            final Document doc;
             try {
-                doc = Jsoup.connect(url).followRedirects(true).get();
-            } catch (HttpStatusException se) {
-                log.debug("Could not retrieve page '{}'. Status Code: {}", url, se.getStatusCode());
-                knownNonPageUris.add(url);
-                return null;
-            } catch (UnsupportedMimeTypeException mte) {
-                log.debug("Could not retrieve page '{}'. with mimetype: {}", url, mte.getMimeType());
-                knownNonPageUris.add(url);
-                return null;
+                exchange.markDone();
+                if (!crawlSharding.isCoordinator()) {
+                    log.info("Shard {} of {} completed: {} ({} unreadable uris, {} uris beyond max depth)",
+                            crawlSharding.getIndex(), crawlSharding.getCount(), homepageUrl, knownNonPageUris.size(),
+                            tooDeepCount());
+                    return false;
+                }
+                final List<Path> pagesFiles = exchange.awaitShards();
+                final CrawlState merged = CrawlState.read(pagesFiles.toArray(new Path[0]));
+                restore(merged);
+                exchange.cleanUp();
+                log.info("Shards merged: {} ({} pages from {} other shards)", homepageUrl, merged.getPages().size(),
+                        pagesFiles.size());
+                return true;
+
+            } catch (IOException e) {
+                log.warn("Could not merge shards: {}", e.getMessage());
+                exchange.markFailed();
+                return false;
+
+            } catch (InterruptedException e) {
+                log.warn("Scan interrupted whilst merging shards: {}", homepageUrl);
+                Thread.currentThread().interrupt();
+                exchange.markFailed();
+                return false;
             }
+        }
+
+        /**
+         * @return The number of URLs found only beyond the maximum depth. (Not those later queued from a shallower page.)
+         */
+        private long tooDeepCount() {
+            return tooDeepUris.size() - readmittedUris.sum();
+        }
+
+        /**
+         * Record that a page could not be scanned, and carry on with the rest of the crawl.
+         *
+         * @param url   The URL of the page.
+         * @param depth The number of links between the homepage and the page.
+         */
+        private void pageFailed(String url, int depth) {
+            metrics.pageFailed();
+            markUnreadable(url);
+            final ExportedPage failed = new ExportedPage(homepageUrl, url, depth);
+            failed.setOutcome(ExportedPage.OUTCOME_FAILED);
+            pageExport.page(failed);
+        }
 
-            // Create a new model object to populate with the data of the page retrieved.
-            final PageScan pageScan = new PageScan(url);
+        /**
+         * Record that a URL could not be read as a page.
+         *
+         * @param url The URL.
+         */
+        private void markUnreadable(String url) {
+            knownNonPageUris.add(url);
+            journal.unreadable(url);
+        }
 
-            log.info("Scanning page: {}", url);
+        /**
+         * Scan a single page within a website, and queue any new pages found.
+         * <p>
+         * If the page is in the response cache it is requested conditionally, and when the site
+         * reports that it has not been modified the cached content is used without parsing. (Its
+         * cached fingerprint is still compared with the other pages, so it may be a duplicate.)
+         *
+         * @param url   The URL of the page to scan.
+         * @param depth The number of links between the homepage and the page.
+         * @throws IOException Any exception thrown when the page fetcher attempts to retrieve the page.
+         */
+        private void scan(String url, int depth) throws IOException {
+
+            // Retrieve the page, conditionally if we hold a cached copy.
+            final Optional<CachedPage> cachedPage = responseCache.get(url);
+            final Map<String, String> requestHeaders = new HashMap<>();
+            cachedPage.ifPresent(cached -> {
+                if (!cached.getEtag().isEmpty())
+                    requestHeaders.put(HEADER_IF_NONE_MATCH, cached.getEtag());
+                if (!cached.getLastModified().isEmpty())
+                    requestHeaders.put(HEADER_IF_MODIFIED_SINCE, cached.getLastModified());
+            });
+            final long fetchStart = System.nanoTime();
+            final FetchResult response = pageFetcher.fetchPage(url, requestHeaders);
+            final long fetchEnd = System.nanoTime();
+            metrics.recordFetch(fetchStart, fetchEnd, response.getBody().length);
+            final ExportedPage exported = new ExportedPage(homepageUrl, url, depth);
+            exported.setStatus(response.getStatus());
+            exported.setFetchMs(TimeUnit.NANOSECONDS.toMillis(fetchEnd - fetchStart));
+
+            // Fingerprint the page (or use the fingerprint cached with it), and skip it if it is a duplicate.
+            final boolean notModified = response.getStatus() == HTTP_STATUS_NOT_MODIFIED && cachedPage.isPresent();
+            final PageFingerprint fingerprint;
+            if (notModified) {
+                fingerprint = cachedPage.get().getFingerprint();
+            } else {
+                if (!response.isOk()) {
+                    log.debug("Could not retrieve page '{}'. Status Code: {}", url, response.getStatus());
+                    markUnreadable(url);
+                    metrics.pageUnreadable();
+                    export(exported, ExportedPage.OUTCOME_UNREADABLE, fetchEnd);
+                    return;
+                }
+                if (!response.isPage()) {
+                    log.debug("Could not retrieve page '{}'. with mimetype: {}", url, response.getMimeType());
+                    markUnreadable(url);
+                    metrics.pageUnreadable();
+                    export(exported, ExportedPage.OUTCOME_UNREADABLE, fetchEnd);
+                    return;
+                }
+                fingerprint = duplicates.fingerprint(response.getBody(), response.getCharset());
+            }
+            final Optional<String> canonical = duplicates.register(url, fingerprint);
+            if (canonical.isPresent()) {
+                log.info("Scanning page: {} (depth {}, duplicate of {})", url, depth, canonical.get());
+                metrics.pageDuplicate();
+                journal.duplicateScanned(url, depth, fingerprint, canonical.get());
+                record(url, depth, new PageContent());
+                exported.setDuplicateOf(canonical.get());
+                export(exported, ExportedPage.OUTCOME_DUPLICATE, fetchEnd);
+                return;
+            }
 
-            // Create an array of links to scan later.
-            List<String> linksToScan = new ArrayList<>();
+            final PageContent content;
+            final String outcome;
+            if (notModified) {
+                log.info("Scanning page: {} (depth {}, not modified)", url, depth);
+                content = cachedPage.get().getContent();
+                metrics.pageNotModified();
+                outcome = ExportedPage.OUTCOME_NOT_MODIFIED;
+
+            } else {
+                log.info("Scanning page: {} (depth {})", url, depth);
+                content = extract(url, response);
+                metrics.pageScanned();
+                outcome = ExportedPage.OUTCOME_SCANNED;
+                responseCache.put(new CachedPage(url,
+                        response.header(HEADER_ETAG).orElse(""),
+                        response.header(HEADER_LAST_MODIFIED).orElse(""),
+                        content,
+                        fingerprint));
+            }
 
-            final String docUri = doc.baseUri();
-            log.debug("doc uri: {}", docUri);
+            journal.pageScanned(url, depth, content, fingerprint);
+            record(url, depth, content);
+            exported.setContent(content);
+            export(exported, outcome, fetchEnd);
+        }
 
-            final String base = url.substring(0, url.lastIndexOf('/') + 1);
-            log.debug("base: {}", base);
+        /**
+         * Extract the title and references of a retrieved page.
+         * <p>
+         * In fast extraction mode the page is read with a TagTokenizer, unless its character set
+         * cannot be decided without a full parse; otherwise JSoup builds a document of the page.
+         *
+         * @param url      The URL of the page.
+         * @param response The response retrieving the page.
+         * @return The content of the page.
+         * @throws IOException Any exception thrown when JSoup reads the page.
+         */
+        private PageContent extract(String url, FetchResult response) throws IOException {
 
-            final String title = doc.title();
-            log.debug("title: {}", title);
+            final PageContent content = new PageContent();
 
-            // Build list of external links, and internal links to scan later.
-            final AbsoluteRef uriRef = new AbsoluteRef(url, "");
-            forEachTagWithAttribute(doc, linkFinderTemplates, (tagName, attrName, attrValue) -> {
+            final UrlBase base = UrlBase.parse(url);
+
+            // Build lists of external links, internal links to scan later, and resource references.
+            final TriStringConsumer linkConsumer = (tagName, attrName, attrValue) -> {
                 final AbsoluteRef ref = new AbsoluteRef(base, attrValue);
                 log.debug("{}.{}: {} {}", tagName, attrName, ref.siteReferenceDescription(), ref.getAbsoluteRef());
                 if (!ref.isSiteReference()) {
-                    pageScan.getExternalLinks().add(ref.getAbsoluteRef());
+                    content.getExternalLinks().add(ref.getAbsoluteRef());
                 } else {
-                    if (!uriRef.equals(ref))
-                        linksToScan.add(ref.getAbsoluteRef());
+                    content.getLinks().add(ref.getAbsoluteRef());
                 }
-            });
-
-            // Build list of resource references.
-            forEachTagWithAttribute(doc, resourceFinderTemplates, (tagName, attrName, attrValue) -> {
+            };
+            final TriStringConsumer resourceConsumer = (tagName, attrName, attrValue) -> {
                 final AbsoluteRef ref = new AbsoluteRef(base, attrValue);
                 log.debug("{}.{}: {} {}", tagName, attrName, ref.siteReferenceDescription(), ref.getAbsoluteRef());
-
-                final String resourceUri = ref.getAbsoluteRef();
-                final ResourceScan resourceScan = siteScan.getUriToResourceScan()
-                        .getOrDefault(resourceUri, new ResourceScan(resourceUri));
-                siteScan.getUriToResourceScan().putIfAbsent(resourceUri, resourceScan);
-                pageScan.getResources().add(resourceScan);
-                resourceScan.incReferences();
-            });
-
-            // Scan internal links found earlier (in this method) and build list of associated models.
-            siteScan.getUriToPageScan().putIfAbsent(url, pageScan);
-            for (String link : linksToScan) {
-                if (!link.isBlank()) {
-                    final PageScan existingLinkScan = siteScan.getUriToPageScan().get(link);
-                    if (existingLinkScan != null) {
-                        pageScan.getLinks().add(existingLinkScan);
-                    } else {
-                        final PageScan linkScan = scan(link); // Recursive call to this method.
-                        if (linkScan != null) // linkScan==null indicates an unreadable page
-                            pageScan.getLinks().add(linkScan);
-                    }
-                }
+                content.getResources().add(ref.getAbsoluteRef());
+            };
+
+            final long parseStart = System.nanoTime();
+            final Optional<Charset> charset = fastExtraction
+                    ? TagTokenizer.detectCharset(response.getBody(), response.getCharset())
+                    : Optional.empty();
+            if (charset.isPresent()) {
+                final TagTokenizer tokenizer = new TagTokenizer(new String(response.getBody(), charset.get()));
+                metrics.recordParse(parseStart);
+                final long extractStart = System.nanoTime();
+                content.setTitle(referenceFinder.find(tokenizer, linkConsumer, resourceConsumer));
+                metrics.recordExtract(extractStart);
+
+            } else {
+                final Document doc = Jsoup.parse(new ByteArrayInputStream(response.getBody()), response.getCharset(), url);
+                log.debug("doc uri: {}", doc.baseUri());
+                metrics.recordParse(parseStart);
+                final long extractStart = System.nanoTime();
+                content.setTitle(doc.title());
+                referenceFinder.find(doc, linkConsumer, resourceConsumer);
+                metrics.recordExtract(extractStart);
             }
+            log.debug("title: {}", content.getTitle());
 
-            // Return the model constructed.
-            return pageScan;
+            return content;
         }
 
         /**
-         * Simplify the iteration of all instances of (sets of) tag and attribute with found
-         * values.  This method may be called with a lambda which will be invoked for each
-         * found tag and attribute.
+         * Add a scanned page to the model, and queue the internal links it contains.
          *
-         * @param doc                     The document to process.
-         * @param resourceFinderTemplates A comma separated list, of dot separated pairs, of tag and attribute names.
-         * @param tagProcessor            The lambda (or class) to process each found tag, attribute and value.
+         * @param url     The URL of the page.
+         * @param depth   The number of links between the homepage and the page.
+         * @param content The content of the page.
          */
-        private void forEachTagWithAttribute(Document doc, String resourceFinderTemplates,
-                                             TriStringConsumer tagProcessor) {
-
-            for (String resourceFinder : resourceFinderTemplates.split(REGEX_COMMA)) {
-                final String[] split = resourceFinder.split(REGEX_DOT);
-                final String tagName = split[0];
-                final String attrName = split[1];
-                final Elements tags = doc.select(tagName);
-                for (Element tag : tags) {
-                    final String attrValue = tag.attr(attrName);
-                    tagProcessor.accept(tagName, attrName, attrValue);
-                }
+        private void record(String url, int depth, PageContent content) {
+
+            // Publish the page, then queue the internal links found on it.
+            model.addPage(url, depth, content);
+            content.getResources().forEach(verification::submit);
+            for (String link : content.getLinks()) {
+                if (!link.isBlank())
+                    enqueue(link, depth + 1);
             }
         }
+
+        /**
+         * Export the record of a URL scanned.
+         *
+         * @param exported     The record, to which the outcome and processing time are added.
+         * @param outcome      How the URL was processed. (One of the ExportedPage outcomes.)
+         * @param processStart The time processing of the response started, from System.nanoTime().
+         */
+        private void export(ExportedPage exported, String outcome, long processStart) {
+            exported.setOutcome(outcome);
+            exported.setProcessMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - processStart));
+            pageExport.page(exported);
+        }
     }
 }
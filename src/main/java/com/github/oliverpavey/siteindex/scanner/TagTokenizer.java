@@ -0,0 +1,349 @@
+package com.github.oliverpavey.siteindex.scanner;
+
+import org.jsoup.parser.Parser;
+
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Lightweight tokenizer reading the start tags of an HTML page, and their attributes, without
+ * building a document tree. Comments, end tags and declarations are skipped, as is the content
+ * of elements whose content is not markup (such as script and style).
+ * <p>
+ * Attributes of a tag are only parsed when asked for, so tags of no interest cost no allocation
+ * beyond their name.
+ */
+class TagTokenizer {
+
+    static final int CHARSET_PRESCAN_BYTES = 1024;
+    static final String CHARSET_PARAMETER = "charset=";
+    static final char NON_BREAKING_SPACE = '\u00a0';
+    static final String[] RAW_TEXT_TAGS = {"script", "style", "textarea", "title", "xmp", "iframe", "noembed", "noframes"};
+
+    private final CharSequence html;
+    private final int length;
+    private int pos;
+
+    private String tagName;
+    private int attributesStart;
+    private boolean attributesParsed;
+    private int attributeCount;
+    private String[] names = new String[8];
+    private String[] values = new String[8];
+
+    /**
+     * Constructor.
+     *
+     * @param html The page to read.
+     */
+    TagTokenizer(CharSequence html) {
+        this.html = html;
+        this.length = html.length();
+    }
+
+    /**
+     * Advance to the next start tag.
+     *
+     * @return True if a start tag was found, false at the end of the page.
+     */
+    boolean nextTag() {
+
+        if (tagName != null) {
+            if (!attributesParsed)
+                parseAttributes(false);
+            if (isRawText(tagName))
+                pos = afterEndTag(indexOfEndTag(tagName, pos));
+            tagName = null;
+        }
+
+        while (true) {
+            final int lt = indexOf('<', pos);
+            if (lt < 0 || lt + 1 >= length) {
+                pos = length;
+                return false;
+            }
+            final char next = html.charAt(lt + 1);
+            if (isAsciiLetter(next)) {
+                int end = lt + 2;
+                while (end < length && !isTagNameEnd(html.charAt(end)))
+                    end++;
+                tagName = html.subSequence(lt + 1, end).toString().toLowerCase(Locale.ROOT);
+                attributesStart = end;
+                attributesParsed = false;
+                attributeCount = 0;
+                pos = end;
+                return true;
+            }
+            if (startsWith("<!--", lt)) {
+                final int close = indexOf("-->", lt + 4);
+                pos = close < 0 ? length : close + 3;
+            } else if (next == '!' || next == '?' || next == '/') {
+                final int close = indexOf('>', lt + 2);
+                pos = close < 0 ? length : close + 1;
+            } else {
+                pos = lt + 1; // a '<' which is just text
+            }
+        }
+    }
+
+    /**
+     * @return The name of the current start tag, in lower case.
+     */
+    String tagName() {
+        return tagName;
+    }
+
+    /**
+     * @param name The name of an attribute, in lower case.
+     * @return The value of the attribute of the current start tag, with character references
+     * decoded, or null if the tag does not have the attribute.
+     */
+    String attr(String name) {
+
+        if (!attributesParsed)
+            parseAttributes(true);
+        for (int i = 0; i < attributeCount; i++) {
+            if (names[i].equals(name))
+                return values[i];
+        }
+        return null;
+    }
+
+    /**
+     * Read the text content of the current start tag, which must be one whose content is not markup
+     * (such as title), with character references decoded and whitespace normalised.
+     *
+     * @return The text.
+     */
+    String text() {
+
+        if (!attributesParsed)
+            parseAttributes(false);
+        final int endTag = indexOfEndTag(tagName, pos);
+        String text = html.subSequence(pos, endTag).toString();
+        if (text.indexOf('&') >= 0)
+            text = Parser.unescapeEntities(text, false);
+        pos = afterEndTag(endTag);
+        tagName = null;
+        return normaliseWhitespace(text);
+    }
+
+    /**
+     * Decide the character set in which to read a page, as JSoup would: from the Content-Type
+     * header, else from a meta tag near the start of the page, else UTF-8.
+     *
+     * @param body            The bytes of the page.
+     * @param declaredCharset The character set named in the Content-Type header, or null.
+     * @return The character set, or an empty optional if the page needs a full parse to decide
+     * (e.g. it starts with a byte order mark, or names a character set which is not supported).
+     */
+    static Optional<Charset> detectCharset(byte[] body, String declaredCharset) {
+
+        if (hasByteOrderMark(body))
+            return Optional.empty();
+        if (declaredCharset != null)
+            return charsetForName(declaredCharset);
+
+        final String prescan = new String(body, 0, Math.min(body.length, CHARSET_PRESCAN_BYTES), StandardCharsets.ISO_8859_1);
+        final TagTokenizer tokenizer = new TagTokenizer(prescan);
+        while (tokenizer.nextTag()) {
+            if (!tokenizer.tagName().equals("meta"))
+                continue;
+            final String charset = tokenizer.attr("charset");
+            if (charset != null)
+                return charsetForName(charset);
+            final String content = tokenizer.attr("content");
+            final String httpEquiv = tokenizer.attr("http-equiv");
+            if (content != null && httpEquiv != null && httpEquiv.equalsIgnoreCase("content-type")) {
+                final int index = content.toLowerCase(Locale.ROOT).indexOf(CHARSET_PARAMETER);
+                if (index >= 0)
+                    return charsetForName(content.substring(index + CHARSET_PARAMETER.length()).split(";")[0]);
+            }
+        }
+        return Optional.of(StandardCharsets.UTF_8);
+    }
+
+    private static boolean hasByteOrderMark(byte[] body) {
+        if (body.length >= 3 && (body[0] & 0xff) == 0xef && (body[1] & 0xff) == 0xbb && (body[2] & 0xff) == 0xbf)
+            return true;
+        return body.length >= 2 && (((body[0] & 0xff) == 0xfe && (body[1] & 0xff) == 0xff)
+                || ((body[0] & 0xff) == 0xff && (body[1] & 0xff) == 0xfe));
+    }
+
+    private static Optional<Charset> charsetForName(String name) {
+        try {
+            final String trimmed = name.replace("\"", "").replace("'", "").trim();
+            return Charset.isSupported(trimmed) ? Optional.of(Charset.forName(trimmed)) : Optional.empty();
+        } catch (IllegalCharsetNameException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Read the attributes of the current start tag, to the end of the tag.
+     *
+     * @param store True to keep the attributes, false just to skip them.
+     */
+    private void parseAttributes(boolean store) {
+
+        int i = attributesStart;
+        while (i < length) {
+            char ch = html.charAt(i);
+            if (ch == '>') {
+                i++;
+                break;
+            }
+            if (Character.isWhitespace(ch) || ch == '/') {
+                i++;
+                continue;
+            }
+
+            // Attribute name. (A leading '=' is part of the name.)
+            final int nameStart = i++;
+            while (i < length && !isAttributeNameEnd(html.charAt(i)))
+                i++;
+            final int nameEnd = i;
+            while (i < length && Character.isWhitespace(html.charAt(i)))
+                i++;
+
+            // Optional value: quoted, or unquoted up to whitespace or the end of the tag.
+            int valueStart = i;
+            int valueEnd = i;
+            if (i < length && html.charAt(i) == '=') {
+                i++;
+                while (i < length && Character.isWhitespace(html.charAt(i)))
+                    i++;
+                if (i < length && (html.charAt(i) == '"' || html.charAt(i) == '\'')) {
+                    final char quote = html.charAt(i);
+                    valueStart = i + 1;
+                    final int close = indexOf(quote, valueStart);
+                    valueEnd = close < 0 ? length : close;
+                    i = close < 0 ? length : close + 1;
+                } else {
+                    valueStart = i;
+                    while (i < length && !Character.isWhitespace(ch = html.charAt(i)) && ch != '>')
+                        i++;
+                    valueEnd = i;
+                }
+            }
+
+            if (store)
+                addAttribute(html.subSequence(nameStart, nameEnd).toString().toLowerCase(Locale.ROOT),
+                        html.subSequence(valueStart, valueEnd).toString());
+        }
+        pos = i;
+        attributesParsed = true;
+    }
+
+    private void addAttribute(String name, String value) {
+
+        for (int i = 0; i < attributeCount; i++) {
+            if (names[i].equals(name))
+                return; // the first of a repeated attribute is kept
+        }
+        if (attributeCount == names.length) {
+            names = Arrays.copyOf(names, attributeCount * 2);
+            values = Arrays.copyOf(values, attributeCount * 2);
+        }
+        names[attributeCount] = name;
+        values[attributeCount] = value.indexOf('&') >= 0 ? Parser.unescapeEntities(value, true) : value;
+        attributeCount++;
+    }
+
+    /**
+     * @return The position after an end tag, found by indexOfEndTag.
+     */
+    private int afterEndTag(int endTag) {
+        if (endTag >= length)
+            return length;
+        final int close = indexOf('>', endTag);
+        return close < 0 ? length : close + 1;
+    }
+
+    /**
+     * @return The position of the end tag of the named element, from a position, or the length of the page.
+     */
+    private int indexOfEndTag(String name, int from) {
+        int i = from;
+        while ((i = indexOf("</", i)) >= 0) {
+            final int nameEnd = i + 2 + name.length();
+            if (nameEnd <= length
+                    && html.subSequence(i + 2, nameEnd).toString().equalsIgnoreCase(name)
+                    && (nameEnd == length || isTagNameEnd(html.charAt(nameEnd))))
+                return i;
+            i += 2;
+        }
+        return length;
+    }
+
+    private int indexOf(char ch, int from) {
+        for (int i = from; i < length; i++) {
+            if (html.charAt(i) == ch)
+                return i;
+        }
+        return -1;
+    }
+
+    private int indexOf(String str, int from) {
+        final char first = str.charAt(0);
+        for (int i = indexOf(first, from); i >= 0; i = indexOf(first, i + 1)) {
+            if (startsWith(str, i))
+                return i;
+        }
+        return -1;
+    }
+
+    private boolean startsWith(String str, int at) {
+        if (at + str.length() > length)
+            return false;
+        for (int i = 0; i < str.length(); i++) {
+            if (html.charAt(at + i) != str.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isRawText(String name) {
+        for (String rawTextTag : RAW_TEXT_TAGS) {
+            if (rawTextTag.equals(name))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isAsciiLetter(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    private static boolean isTagNameEnd(char ch) {
+        return Character.isWhitespace(ch) || ch == '/' || ch == '>';
+    }
+
+    private static boolean isAttributeNameEnd(char ch) {
+        return Character.isWhitespace(ch) || ch == '/' || ch == '>' || ch == '=';
+    }
+
+    /**
+     * Collapse runs of whitespace (including non-breaking spaces) to a single space, and trim, as JSoup does for titles.
+     */
+    private static String normaliseWhitespace(String text) {
+        final StringBuilder normalised = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            if (ch == ' ' || ch == '\t' || ch == '\n' || ch == '\f' || ch == '\r' || ch == NON_BREAKING_SPACE) {
+                space = normalised.length() > 0;
+            } else {
+                if (space)
+                    normalised.append(' ');
+                normalised.append(ch);
+                space = false;
+            }
+        }
+        return normalised.toString();
+    }
+}
@@ -0,0 +1,257 @@
+package com.github.oliverpavey.siteindex.scanner;
+
+/**
+ * The URL of a page, parsed once so that each reference found on the page can be resolved against it
+ * cheaply. Resolution follows RFC 3986 section 5: references may be absolute, protocol-relative
+ * ({@code //host/path}), root-relative ({@code /path}), relative (including {@code ../} segments),
+ * query-only ({@code ?query}) or empty. Fragments are removed, as they name a part of a page rather
+ * than a different page.
+ * <p>
+ * Scheme and host are kept as written, so URLs found on the site compare equal to the URL the scan
+ * started from.
+ */
+public class UrlBase {
+
+    private final String scheme;
+    private final String authority;
+    private final String path;
+    private final String query;
+
+    private final String domain;
+    private final String directory;
+
+    /**
+     * Constructor, from the parts of an absolute URL.
+     */
+    private UrlBase(String scheme, String authority, String path, String query) {
+        this.scheme = scheme;
+        this.authority = authority;
+        this.path = path;
+        this.query = query;
+
+        final String origin = scheme + ':' + (authority == null ? "" : "//" + authority);
+        domain = origin + '/';
+        directory = origin + path.substring(0, path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Parse the URL of a page.
+     *
+     * @param url An absolute URL, e.g. 'http://mysite.com/section/page.html'
+     * @return The parsed URL.
+     * @throws IllegalArgumentException If the URL is not absolute.
+     */
+    public static UrlBase parse(String url) {
+
+        final Parts parts = Parts.of(trimWhitespace(url));
+        if (parts.scheme == null)
+            throw new IllegalArgumentException(String.format("Not an absolute URL: '%s'", url));
+        final String path = parts.authority != null && parts.path.isEmpty()
+                ? "/"
+                : removeDotSegments(parts.path);
+        return new UrlBase(parts.scheme, parts.authority, path, parts.query);
+    }
+
+    /**
+     * @return The domain of the URL, e.g. 'http://mysite.com/'
+     */
+    public String getDomain() {
+        return domain;
+    }
+
+    /**
+     * Resolve a reference found on the page to an absolute URL, without its fragment.
+     *
+     * @param ref The reference, e.g. the value of an 'a.href' attribute.
+     * @return The absolute URL.
+     */
+    public String resolve(String ref) {
+
+        final String trimmed = trimWhitespace(ref);
+        final int hash = trimmed.indexOf('#');
+        final String target = hash < 0 ? trimmed : trimmed.substring(0, hash);
+
+        // Fast path for the commonest reference: a plain relative path, e.g. 'page.html' or 'images/logo.svg'.
+        if (isPlainRelativePath(target))
+            return directory + target;
+
+        final Parts parts = Parts.of(target);
+        if (parts.scheme != null)
+            return recompose(parts.scheme, parts.authority, removeDotSegments(parts.path), parts.query);
+        if (parts.authority != null)
+            return recompose(scheme, parts.authority, removeDotSegments(parts.path), parts.query);
+        if (parts.path.isEmpty())
+            return recompose(scheme, authority, path, parts.query != null ? parts.query : query);
+        if (parts.path.charAt(0) == '/')
+            return recompose(scheme, authority, removeDotSegments(parts.path), parts.query);
+        return recompose(scheme, authority, removeDotSegments(merge(parts.path)), parts.query);
+    }
+
+    /**
+     * Merge a relative path with the path of this URL. (RFC 3986 section 5.2.3.)
+     */
+    private String merge(String relativePath) {
+        if (authority != null && path.isEmpty())
+            return '/' + relativePath;
+        return path.substring(0, path.lastIndexOf('/') + 1) + relativePath;
+    }
+
+    private static String recompose(String scheme, String authority, String path, String query) {
+        final StringBuilder url = new StringBuilder(scheme.length() + path.length() + 32);
+        url.append(scheme).append(':');
+        if (authority != null)
+            url.append("//").append(authority);
+        url.append(path);
+        if (query != null)
+            url.append('?').append(query);
+        return url.toString();
+    }
+
+    /**
+     * Remove '.' and '..' segments from a path. (RFC 3986 section 5.2.4.)
+     *
+     * @param path The path.
+     * @return The path without dot segments.
+     */
+    static String removeDotSegments(String path) {
+
+        if (!hasDotSegment(path))
+            return path;
+
+        final StringBuilder output = new StringBuilder(path.length());
+        int i = 0;
+        final int length = path.length();
+        while (i < length) {
+            if (path.startsWith("../", i)) {
+                i += 3;
+            } else if (path.startsWith("./", i)) {
+                i += 2;
+            } else if (path.startsWith("/./", i)) {
+                i += 2;
+            } else if (i + 2 == length && path.startsWith("/.", i)) {
+                output.append('/');
+                i = length;
+            } else if (path.startsWith("/../", i)) {
+                i += 3;
+                removeLastSegment(output);
+            } else if (i + 3 == length && path.startsWith("/..", i)) {
+                removeLastSegment(output);
+                output.append('/');
+                i = length;
+            } else if ((i + 1 == length && path.charAt(i) == '.') || (i + 2 == length && path.startsWith("..", i))) {
+                i = length;
+            } else {
+                // Move the first segment, with its leading slash if any, to the output.
+                int next = path.indexOf('/', i + 1);
+                if (next < 0)
+                    next = length;
+                output.append(path, i, next);
+                i = next;
+            }
+        }
+        return output.toString();
+    }
+
+    private static void removeLastSegment(StringBuilder output) {
+        final int slash = output.lastIndexOf("/");
+        output.setLength(Math.max(slash, 0));
+    }
+
+    /**
+     * @return True if the path has a segment which is '.' or '..'.
+     */
+    private static boolean hasDotSegment(String path) {
+        int dot = path.indexOf('.');
+        while (dot >= 0) {
+            final boolean segmentStart = dot == 0 || path.charAt(dot - 1) == '/';
+            int end = dot + 1;
+            if (end < path.length() && path.charAt(end) == '.')
+                end++;
+            if (segmentStart && (end == path.length() || path.charAt(end) == '/'))
+                return true;
+            dot = path.indexOf('.', dot + 1);
+        }
+        return false;
+    }
+
+    /**
+     * @return True if the reference is a relative path with no scheme, query or dot segment.
+     */
+    private static boolean isPlainRelativePath(String ref) {
+        if (ref.isEmpty() || ref.charAt(0) == '/')
+            return false;
+        for (int i = 0; i < ref.length(); i++) {
+            final char ch = ref.charAt(i);
+            if (ch == ':' || ch == '?')
+                return false;
+        }
+        return !hasDotSegment(ref);
+    }
+
+    /**
+     * Remove leading and trailing ASCII whitespace and control characters, as browsers do.
+     */
+    private static String trimWhitespace(String str) {
+        int start = 0;
+        int end = str.length();
+        while (start < end && str.charAt(start) <= ' ')
+            start++;
+        while (end > start && str.charAt(end - 1) <= ' ')
+            end--;
+        return start == 0 && end == str.length() ? str : str.substring(start, end);
+    }
+
+    /**
+     * The parts of a URI reference, without its fragment. (RFC 3986 appendix B.)
+     * Parts which are not present are null; the path is always present, but may be empty.
+     */
+    private static class Parts {
+
+        String scheme;
+        String authority;
+        String path;
+        String query;
+
+        static Parts of(String ref) {
+
+            final Parts parts = new Parts();
+            final int hash = ref.indexOf('#');
+            final int end = hash < 0 ? ref.length() : hash;
+            int i = 0;
+
+            final int colon = schemeEnd(ref, end);
+            if (colon > 0) {
+                parts.scheme = ref.substring(0, colon);
+                i = colon + 1;
+            }
+            if (ref.startsWith("//", i)) {
+                int authorityEnd = i + 2;
+                while (authorityEnd < end && "/?".indexOf(ref.charAt(authorityEnd)) < 0)
+                    authorityEnd++;
+                parts.authority = ref.substring(i + 2, authorityEnd);
+                i = authorityEnd;
+            }
+            final int question = ref.indexOf('?', i);
+            final int pathEnd = question < 0 || question > end ? end : question;
+            parts.path = ref.substring(i, pathEnd);
+            if (pathEnd < end)
+                parts.query = ref.substring(pathEnd + 1, end);
+            return parts;
+        }
+
+        /**
+         * @return The index of the colon ending the scheme, or -1 if the reference has no scheme.
+         */
+        private static int schemeEnd(String ref, int end) {
+            for (int i = 0; i < end; i++) {
+                final char ch = ref.charAt(i);
+                if (ch == ':')
+                    return i;
+                final boolean letter = (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+                if (!letter && (i == 0 || !((ch >= '0' && ch <= '9') || ch == '+' || ch == '-' || ch == '.')))
+                    return -1;
+            }
+            return -1;
+        }
+    }
+}
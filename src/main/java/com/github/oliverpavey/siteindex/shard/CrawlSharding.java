@@ -0,0 +1,119 @@
+package com.github.oliverpavey.siteindex.shard;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+import static com.github.oliverpavey.siteindex.tools.TextUtils.addToFileName;
+
+/**
+ * Component deciding which shard of a sharded crawl owns each URL.
+ * <p>
+ * In a sharded crawl, several processes (the shards) scan one site together. Each URL is owned by
+ * one shard, chosen by a hash of the URL; a shard scans only the URLs it owns, and forwards the
+ * others to their owners through a ShardExchange. Shard 0 is the coordinator: it merges the pages
+ * scanned by the other shards into its own model, and reports the whole site.
+ * <p>
+ * With a shard count of 1 (the default) the crawl is not sharded, and every URL is owned.
+ */
+@Component
+public class CrawlSharding {
+
+    static final int HASH_MULTIPLIER = 0x9E3779B1; // spreads the bits of similar URLs
+
+    @Value("${siteindex.shard.count}")
+    private int count;
+
+    @Value("${siteindex.shard.index}")
+    private int index;
+
+    @Value("${siteindex.shard.dir}")
+    private String shardDir;
+
+    @Value("${siteindex.shard.poll-interval-ms}")
+    private long pollIntervalMs;
+
+    @Value("${siteindex.shard.timeout-ms}")
+    private long timeoutMs;
+
+    /**
+     * @return True if the crawl is sharded.
+     */
+    public boolean isEnabled() {
+        return count > 1;
+    }
+
+    /**
+     * @return True if this process reports the crawl. (Shard 0, or the only process if the crawl is not sharded.)
+     */
+    public boolean isCoordinator() {
+        return !isEnabled() || index == 0;
+    }
+
+    /**
+     * @return The number of this shard.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The number of shards.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param url An absolute URL.
+     * @return True if this shard scans the URL.
+     */
+    public boolean owns(String url) {
+        return !isEnabled() || shardOf(url, count) == index;
+    }
+
+    /**
+     * @param file A file written by a scan, e.g. 'export.ndjson'.
+     * @return The file for this shard to write, e.g. 'export-shard1.ndjson', so the shards do not
+     * overwrite each other's files. (The file itself, if the crawl is not sharded.)
+     */
+    public Path shardFile(Path file) {
+        return isEnabled() ? file.resolveSibling(addToFileName(file.getFileName().toString(), "shard" + index)) : file;
+    }
+
+    /**
+     * @return The shard which owns a URL.
+     */
+    static int shardOf(String url, int count) {
+        int hash = url.hashCode() * HASH_MULTIPLIER;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, count);
+    }
+
+    /**
+     * Create the exchange of URLs with the other shards of the crawl, ready to be started. If the
+     * files of the exchange cannot be created, the shard is recorded as failed (if it can be).
+     *
+     * @param receiver Queues a URL (with its depth) forwarded by another shard.
+     * @param idle     Reports whether this shard has nothing queued and nothing in-flight.
+     * @param finished Called (once) when every shard has finished, or the exchange fails.
+     * @return The exchange.
+     * @throws IOException Any exception creating the files of the exchange.
+     */
+    public ShardExchange create(BiConsumer<String, Integer> receiver, BooleanSupplier idle, Runnable finished) throws IOException {
+        final ShardExchange exchange = new ShardExchange(Paths.get(shardDir), index, count, Math.max(1, pollIntervalMs),
+                timeoutMs, receiver, idle, finished);
+        try {
+            exchange.open();
+        } catch (IOException e) {
+            exchange.markFailed();
+            throw e;
+        }
+        return exchange;
+    }
+}
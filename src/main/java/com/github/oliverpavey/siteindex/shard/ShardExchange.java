@@ -0,0 +1,451 @@
+package com.github.oliverpavey.siteindex.shard;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Exchanges URLs between the shards of a sharded crawl, through files in a directory shared by the
+ * shards, and decides when the whole crawl has finished.
+ * <p>
+ * URLs found by a shard but owned by another are collected in an outbox per shard. Once per poll
+ * interval a background thread writes each outbox as a file, moved atomically into the inbox
+ * directory of its shard, and reads (then deletes) the files in this shard's inbox. An outbox is
+ * kept until its shard has started (has written a status file), and kept again if it cannot be
+ * sent, to be sent at the next poll.
+ * <p>
+ * Each shard also writes a status file: whether it is idle, and how many URLs it has sent and
+ * received. The crawl has finished when every shard is idle and the URLs sent equal the URLs
+ * received, in two successive readings of the status files which are identical. (As the counts
+ * only grow, an unchanged reading shows no URL was in transit or being scanned in between.)
+ * <p>
+ * A shard which fails writes a failed marker, and every other shard then gives up. The status file
+ * also holds a heartbeat, counted once per poll; a shard whose heartbeat has not changed within the
+ * timeout (or which has not started within it) is taken to have failed too, as it may have stopped
+ * without writing its marker.
+ * <p>
+ * The directory should be empty when a crawl starts. The coordinator removes the files once it
+ * has merged the pages of the other shards.
+ */
+@Slf4j
+public class ShardExchange {
+
+    static final String INBOX_PREFIX = "inbox-";
+    static final String STATUS_PREFIX = "status-";
+    static final String SHARD_PREFIX = "shard-";
+    static final String PAGES_SUFFIX = ".pages";
+    static final String DONE_SUFFIX = ".done";
+    static final String FAILED_SUFFIX = ".failed";
+    static final String LINKS_SUFFIX = ".links";
+    static final String STATUS_IDLE = "idle";
+    static final String STATUS_BUSY = "busy";
+    static final char FIELD_SEPARATOR = '\t';
+
+    private final Path directory;
+    private final int index;
+    private final int count;
+    private final long pollIntervalMs;
+    private final long timeoutMs;
+    private final BiConsumer<String, Integer> receiver;
+    private final BooleanSupplier idle;
+    private final Runnable finished;
+
+    private final List<List<String>> outboxes = new ArrayList<>();
+    private final long[] heartbeats;
+    private final long[] heartbeatTimesMs;
+    private long sent;
+    private long received;
+    private long sequence;
+    private long heartbeat;
+    private String lastReading;
+    private volatile boolean failed;
+    private Thread thread;
+
+    /**
+     * Constructor.
+     *
+     * @param directory      The directory shared by the shards.
+     * @param index          The number of this shard.
+     * @param count          The number of shards.
+     * @param pollIntervalMs The time between exchanges of URLs.
+     * @param timeoutMs      The time after which a shard which has not started, or has not reported its status, has failed (zero for none).
+     * @param receiver       Queues a URL (with its depth) forwarded by another shard.
+     * @param idle           Reports whether this shard has nothing queued and nothing in-flight.
+     * @param finished       Called (once) when every shard has finished, or the exchange fails.
+     */
+    ShardExchange(Path directory, int index, int count, long pollIntervalMs, long timeoutMs,
+                  BiConsumer<String, Integer> receiver, BooleanSupplier idle, Runnable finished) {
+        this.directory = directory;
+        this.index = index;
+        this.count = count;
+        this.pollIntervalMs = pollIntervalMs;
+        this.timeoutMs = timeoutMs;
+        this.receiver = receiver;
+        this.idle = idle;
+        this.finished = finished;
+        for (int i = 0; i < count; i++)
+            outboxes.add(new ArrayList<>());
+        heartbeats = new long[count];
+        heartbeatTimesMs = new long[count];
+    }
+
+    /**
+     * Create this shard's inbox, and remove any files left by an earlier run of this shard.
+     *
+     * @throws IOException Any exception creating or removing the files.
+     */
+    void open() throws IOException {
+
+        Files.createDirectories(inbox(index));
+        Files.deleteIfExists(status(index));
+        Files.deleteIfExists(done(index));
+        Files.deleteIfExists(failed(index));
+        try (Stream<Path> files = Files.list(inbox(index))) {
+            for (Path file : files.filter(ShardExchange::isLinks).collect(Collectors.toList()))
+                Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Start exchanging URLs. The other shards send URLs to this shard from now on.
+     *
+     * @throws IOException Any exception writing the status of this shard.
+     */
+    public void start() throws IOException {
+
+        writeStatus(STATUS_BUSY, 0, 0);
+        Arrays.fill(heartbeats, -1);
+        Arrays.fill(heartbeatTimesMs, System.currentTimeMillis());
+        thread = new Thread(this::run, "shard-exchange");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The file in which this shard records the pages it scans.
+     */
+    public Path getPagesFile() {
+        return pages(index);
+    }
+
+    /**
+     * Forward a URL to the shard which owns it.
+     *
+     * @param url   The URL.
+     * @param depth The number of links between the homepage and the URL.
+     */
+    public void forward(String url, int depth) {
+        synchronized (outboxes) {
+            outboxes.get(CrawlSharding.shardOf(url, count)).add(String.valueOf(depth) + FIELD_SEPARATOR + url);
+        }
+    }
+
+    /**
+     * Stop exchanging URLs, if the exchange has not finished.
+     */
+    public void stop() {
+        if (thread == null)
+            return;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Record that this shard has written all the pages it scanned.
+     *
+     * @throws IOException Any exception writing the record.
+     */
+    public void markDone() throws IOException {
+        Files.write(done(index), new byte[0]);
+    }
+
+    /**
+     * Record that this shard has failed, so the other shards stop waiting for it. A failure to write
+     * the record is logged; the other shards then give up once the timeout has passed.
+     */
+    public void markFailed() {
+        failed = true;
+        try {
+            Files.write(failed(index), new byte[0]);
+        } catch (IOException e) {
+            log.warn("Shard {} of {} could not record its failure: {}", index, count, e.getMessage());
+        }
+    }
+
+    /**
+     * @return True if this shard, or another shard of the crawl, has failed. (So the crawl is incomplete.)
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Wait until every other shard has written all the pages it scanned. (For the coordinator.)
+     *
+     * @return The files recording the pages scanned by the other shards.
+     * @throws IOException          If a shard has failed, or has not finished within the timeout.
+     * @throws InterruptedException If interrupted whilst waiting.
+     */
+    public List<Path> awaitShards() throws IOException, InterruptedException {
+
+        final long startMs = System.currentTimeMillis();
+        final List<Path> pagesFiles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (i == index)
+                continue;
+            while (!Files.exists(done(i))) {
+                if (Files.exists(failed(i)))
+                    throw new IOException(String.format("shard %d failed", i));
+                if (timeoutMs > 0 && System.currentTimeMillis() - startMs > timeoutMs)
+                    throw new IOException(String.format("shard %d did not finish within %d ms", i, timeoutMs));
+                Thread.sleep(pollIntervalMs);
+            }
+            pagesFiles.add(pages(i));
+        }
+        return pagesFiles;
+    }
+
+    /**
+     * Delete the files of the crawl. (For the coordinator, once every shard has finished.)
+     */
+    public void cleanUp() {
+
+        try {
+            for (int i = 0; i < count; i++) {
+                if (Files.isDirectory(inbox(i))) {
+                    try (Stream<Path> files = Files.list(inbox(i))) {
+                        for (Path file : files.collect(Collectors.toList()))
+                            Files.deleteIfExists(file);
+                    }
+                }
+                Files.deleteIfExists(inbox(i));
+                Files.deleteIfExists(status(i));
+                Files.deleteIfExists(pages(i));
+                Files.deleteIfExists(done(i));
+                Files.deleteIfExists(failed(i));
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete shard files in '{}': {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Exchange loop. Send and receive URLs, once per poll interval, until every shard has finished,
+     * or a shard has failed.
+     */
+    private void run() {
+
+        try {
+            do {
+                send();
+                receive();
+                if (finished())
+                    break;
+                Thread.sleep(pollIntervalMs);
+            } while (true);
+            log.info("Shard {} of {}: all shards finished ({} uris sent, {} received)", index, count, sent, received);
+
+        } catch (IOException e) {
+            log.warn("Shard {} of {} stopped exchanging uris: {}", index, count, e.getMessage());
+            markFailed();
+
+        } catch (InterruptedException e) {
+            log.debug("Shard exchange interrupted");
+
+        } finally {
+            finished.run();
+        }
+    }
+
+    /**
+     * Write each outbox which is not empty to the inbox of its shard, keeping it if the shard has not
+     * started or the file cannot be written.
+     */
+    private void send() {
+
+        final List<List<String>> batches = new ArrayList<>();
+        synchronized (outboxes) {
+            for (int i = 0; i < count; i++) {
+                batches.add(outboxes.get(i));
+                outboxes.set(i, new ArrayList<>());
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            final List<String> batch = batches.get(i);
+            if (batch.isEmpty())
+                continue;
+            if (!Files.exists(status(i)) || !sendBatch(i, batch)) {
+                synchronized (outboxes) {
+                    outboxes.get(i).addAll(0, batch);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write URLs to the inbox of a shard.
+     *
+     * @return True if the URLs were sent.
+     */
+    private boolean sendBatch(int shard, List<String> batch) {
+
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(directory, "links", ".tmp");
+            Files.write(tempFile, batch, StandardCharsets.UTF_8);
+            final String name = String.format("%s%d-%09d%s", SHARD_PREFIX, index, sequence++, LINKS_SUFFIX);
+            Files.move(tempFile, inbox(shard).resolve(name), StandardCopyOption.ATOMIC_MOVE);
+            sent += batch.size();
+            return true;
+
+        } catch (IOException e) {
+            log.warn("Shard {} of {} could not send {} uris to shard {} (will retry): {}", index, count,
+                    batch.size(), shard, e.getMessage());
+            try {
+                if (tempFile != null)
+                    Files.deleteIfExists(tempFile);
+            } catch (IOException ignored) {
+                // the file is removed with the directory, once the crawl has finished
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Read, and delete, the files in this shard's inbox, queueing the URLs they hold.
+     */
+    private void receive() throws IOException {
+
+        final List<Path> files;
+        try (Stream<Path> list = Files.list(inbox(index))) {
+            files = list.filter(ShardExchange::isLinks)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            Files.delete(file);
+            for (String line : lines) {
+                final int separator = line.indexOf(FIELD_SEPARATOR);
+                receiver.accept(line.substring(separator + 1), Integer.parseInt(line.substring(0, separator)));
+            }
+            received += lines.size();
+        }
+    }
+
+    /**
+     * Write this shard's status, and read the status of every shard.
+     *
+     * @return True if the crawl has finished.
+     * @throws IOException If a shard has failed, or any exception reading or writing the status files.
+     */
+    private boolean finished() throws IOException {
+
+        // Check the frontier before the outboxes: URLs are only forwarded while a page is in-flight.
+        final boolean localIdle = idle.getAsBoolean();
+        final boolean outboxesEmpty;
+        synchronized (outboxes) {
+            outboxesEmpty = outboxes.stream().allMatch(List::isEmpty);
+        }
+        writeStatus(localIdle && outboxesEmpty ? STATUS_IDLE : STATUS_BUSY, sent, received);
+
+        final long now = System.currentTimeMillis();
+        final StringBuilder reading = new StringBuilder();
+        long totalSent = 0;
+        long totalReceived = 0;
+        boolean allStarted = true;
+        boolean allIdle = true;
+        for (int i = 0; i < count; i++) {
+            if (i != index && Files.exists(failed(i)))
+                throw new IOException(String.format("shard %d failed", i));
+            final Optional<String> status = readStatus(i);
+            final String[] fields = status.map(value -> value.split(String.valueOf(FIELD_SEPARATOR))).orElse(null);
+            final long shardHeartbeat = fields == null ? -1 : Long.parseLong(fields[3]);
+            if (shardHeartbeat != heartbeats[i]) {
+                heartbeats[i] = shardHeartbeat;
+                heartbeatTimesMs[i] = now;
+            } else if (i != index && timeoutMs > 0 && now - heartbeatTimesMs[i] > timeoutMs) {
+                throw new IOException(String.format("shard %d has not %s within %d ms", i,
+                        fields == null ? "started" : "reported its status", timeoutMs));
+            }
+            if (fields == null) {
+                allStarted = false; // the shard has not started
+                continue;
+            }
+            allIdle &= fields[0].equals(STATUS_IDLE);
+            totalSent += Long.parseLong(fields[1]);
+            totalReceived += Long.parseLong(fields[2]);
+            reading.append(fields[0]).append(FIELD_SEPARATOR).append(fields[1]).append(FIELD_SEPARATOR)
+                    .append(fields[2]).append('\n');
+        }
+        if (!allStarted) {
+            lastReading = null;
+            return false;
+        }
+
+        final boolean quiet = allIdle && totalSent == totalReceived;
+        final boolean confirmed = quiet && reading.toString().equals(lastReading);
+        lastReading = quiet ? reading.toString() : null;
+        return confirmed;
+    }
+
+    /**
+     * Write this shard's status, with the next heartbeat. (The heartbeat is not part of a reading, so
+     * an unchanged reading still shows the crawl has finished.)
+     */
+    private void writeStatus(String state, long sent, long received) throws IOException {
+        final String status = state + FIELD_SEPARATOR + sent + FIELD_SEPARATOR + received + FIELD_SEPARATOR + heartbeat++;
+        final Path tempFile = Files.createTempFile(directory, "status", ".tmp");
+        Files.writeString(tempFile, status, StandardCharsets.UTF_8);
+        Files.move(tempFile, status(index), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Optional<String> readStatus(int shard) throws IOException {
+        try {
+            return Optional.of(Files.readString(status(shard), StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static boolean isLinks(Path file) {
+        return file.getFileName().toString().endsWith(LINKS_SUFFIX);
+    }
+
+    private Path inbox(int shard) {
+        return directory.resolve(INBOX_PREFIX + shard);
+    }
+
+    private Path status(int shard) {
+        return directory.resolve(STATUS_PREFIX + shard);
+    }
+
+    private Path pages(int shard) {
+        return directory.resolve(SHARD_PREFIX + shard + PAGES_SUFFIX);
+    }
+
+    private Path done(int shard) {
+        return directory.resolve(SHARD_PREFIX + shard + DONE_SUFFIX);
+    }
+
+    private Path failed(int shard) {
+        return directory.resolve(SHARD_PREFIX + shard + FAILED_SUFFIX);
+    }
+}
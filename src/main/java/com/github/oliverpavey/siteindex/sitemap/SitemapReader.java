@@ -0,0 +1,75 @@
+package com.github.oliverpavey.siteindex.sitemap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader of sitemap files (sitemaps.org protocol), using StAX so that a large sitemap is
+ * never held in memory as a document.
+ * <p>
+ * A sitemap ('urlset') lists the pages of a site, each in a 'url' element; a sitemap index
+ * ('sitemapindex') lists further sitemaps, each in a 'sitemap' element. In both the address is the
+ * content of a 'loc' element. Other elements (lastmod, priority...) are ignored.
+ */
+class SitemapReader {
+
+    static final String ELEMENT_URL = "url";
+    static final String ELEMENT_SITEMAP = "sitemap";
+    static final String ELEMENT_LOC = "loc";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private SitemapReader() {
+    }
+
+    /**
+     * Read a sitemap, or a sitemap index.
+     *
+     * @param in              The (uncompressed) sitemap.
+     * @param pageConsumer    Receives the address of each page listed.
+     * @param sitemapConsumer Receives the address of each sitemap listed (by a sitemap index).
+     * @throws XMLStreamException If the sitemap is not well-formed XML.
+     */
+    static void read(InputStream in, Consumer<String> pageConsumer, Consumer<String> sitemapConsumer)
+            throws XMLStreamException {
+
+        final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            String entry = null; // the element (url or sitemap) whose loc is being read
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    final String name = reader.getLocalName();
+                    if (name.equals(ELEMENT_URL) || name.equals(ELEMENT_SITEMAP)) {
+                        entry = name;
+                    } else if (name.equals(ELEMENT_LOC) && entry != null) {
+                        final String loc = reader.getElementText().trim();
+                        if (!loc.isEmpty())
+                            (entry.equals(ELEMENT_URL) ? pageConsumer : sitemapConsumer).accept(loc);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    final String name = reader.getLocalName();
+                    if (name.equals(ELEMENT_URL) || name.equals(ELEMENT_SITEMAP))
+                        entry = null;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return A factory which does not read DTDs or external entities, as sitemaps come from the network.
+     */
+    private static XMLInputFactory createInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.oliverpavey.siteindex.sitemap;
+
+import com.github.oliverpavey.siteindex.fetch.FetchResult;
+import com.github.oliverpavey.siteindex.fetch.PageFetcher;
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import com.github.oliverpavey.siteindex.scanner.UrlBase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static com.github.oliverpavey.siteindex.tools.TextUtils.extractDomain;
+
+/**
+ * Component reading the sitemap of a site, to seed the frontier of a scan with the pages it lists,
+ * and to compare the pages listed with the pages found by following links.
+ * <p>
+ * The sitemap may be a sitemap index, listing further sitemaps, and any sitemap may be gzipped.
+ * Only pages on the site scanned are used. The number of sitemaps read, and of pages listed, are
+ * limited, so a broken or hostile sitemap cannot run away with the scan.
+ */
+@Slf4j
+@Component
+public class SitemapSeeder {
+
+    static final int GZIP_MAGIC_0 = 0x1f;
+    static final int GZIP_MAGIC_1 = 0x8b;
+
+    @Value("${siteindex.sitemap.enabled}")
+    private boolean enabled;
+
+    @Value("${siteindex.sitemap.path}")
+    private String path;
+
+    @Value("${siteindex.sitemap.max-sitemaps}")
+    private int maxSitemaps;
+
+    @Value("${siteindex.sitemap.max-urls}")
+    private int maxUrls;
+
+    final PageFetcher pageFetcher;
+
+    /**
+     * Constructor
+     *
+     * @param pageFetcher Retrieves the sitemaps.
+     */
+    public SitemapSeeder(PageFetcher pageFetcher) {
+        this.pageFetcher = pageFetcher;
+    }
+
+    /**
+     * Read the pages listed by the sitemap of a site. (None if sitemaps are disabled, or the site has no sitemap.)
+     *
+     * @param homepageUrl The homepage of the site.
+     * @return The URLs of the pages listed, on the site, in the order listed.
+     */
+    public Set<String> load(String homepageUrl) {
+
+        final Set<String> pages = new LinkedHashSet<>();
+        if (!enabled)
+            return pages;
+
+        final String domain = extractDomain(homepageUrl);
+        final Deque<String> sitemaps = new ArrayDeque<>();
+        final Set<String> seenSitemaps = new HashSet<>();
+        sitemaps.add(UrlBase.parse(domain).resolve(path));
+        while (!sitemaps.isEmpty() && seenSitemaps.size() < maxSitemaps && pages.size() < maxUrls) {
+            final String sitemapUrl = sitemaps.removeFirst();
+            if (!seenSitemaps.add(sitemapUrl))
+                continue;
+            final UrlBase base = UrlBase.parse(sitemapUrl);
+            try {
+                final FetchResult response = pageFetcher.fetch(sitemapUrl);
+                if (!response.isOk()) {
+                    log.info("Sitemap not found: {} (status {})", sitemapUrl, response.getStatus());
+                    continue;
+                }
+                try (InputStream in = uncompressed(response.getBody())) {
+                    SitemapReader.read(in,
+                            loc -> {
+                                final String url = base.resolve(loc);
+                                if (url.startsWith(domain) && pages.size() < maxUrls)
+                                    pages.add(url);
+                            },
+                            loc -> sitemaps.addLast(base.resolve(loc)));
+                }
+                log.info("Sitemap read: {} ({} pages listed so far)", sitemapUrl, pages.size());
+
+            } catch (IOException | XMLStreamException e) {
+                log.warn("Problem reading sitemap '{}': {}", sitemapUrl, e.getMessage());
+            }
+        }
+        if (!sitemaps.isEmpty() || pages.size() >= maxUrls)
+            log.warn("Sitemap limits reached ({} sitemaps, {} pages): the rest of the sitemap is ignored", maxSitemaps, maxUrls);
+        return pages;
+    }
+
+    /**
+     * Compare the pages listed by the sitemap with the pages found by the scan, and record the
+     * differences in the model: sitemap pages which no other page links to, and pages found which
+     * the sitemap does not list.
+     *
+     * @param siteScan     The model built by the scan.
+     * @param sitemapPages The pages listed by the sitemap. (If none, nothing is recorded.)
+     */
+    public void audit(SiteScan siteScan, Collection<String> sitemapPages) {
+
+        if (sitemapPages.isEmpty())
+            return;
+
+        final Set<String> linked = new HashSet<>();
+        for (PageScan pageScan : siteScan.getUriToPageScan().values()) {
+            for (PageScan link : pageScan.getLinks()) {
+                if (!link.getUri().equals(pageScan.getUri()))
+                    linked.add(link.getUri());
+            }
+        }
+        final String homepageUri = siteScan.getHomepage().getUri();
+        for (String uri : sitemapPages) {
+            if (!linked.contains(uri) && !uri.equals(homepageUri))
+                siteScan.getSitemapOrphans().add(uri);
+        }
+        final Set<String> listed = new HashSet<>(sitemapPages);
+        for (String uri : siteScan.getUriToPageScan().keySet()) {
+            if (!listed.contains(uri))
+                siteScan.getSitemapMissing().add(uri);
+        }
+        siteScan.setSitemapSize(sitemapPages.size());
+
+        log.info("Sitemap compared: {} pages listed, {} not linked from any page, {} pages not listed",
+                sitemapPages.size(), siteScan.getSitemapOrphans().size(), siteScan.getSitemapMissing().size());
+    }
+
+    /**
+     * @return The sitemap, decompressed if it is gzipped. (Detected by its content, as servers
+     * label .gz files inconsistently.)
+     */
+    private static InputStream uncompressed(byte[] body) throws IOException {
+        final InputStream in = new ByteArrayInputStream(body);
+        if (body.length >= 2 && (body[0] & 0xff) == GZIP_MAGIC_0 && (body[1] & 0xff) == GZIP_MAGIC_1)
+            return new GZIPInputStream(in);
+        return in;
+    }
+}
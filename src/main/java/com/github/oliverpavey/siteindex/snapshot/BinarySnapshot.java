@@ -0,0 +1,297 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+import static com.github.oliverpavey.siteindex.snapshot.BinarySnapshotFormat.*;
+
+/**
+ * A binary snapshot (see BinarySnapshotFormat) opened as a memory mapped file.
+ * <p>
+ * Pages and resources are identified by their integer id (their position in URI order), and can
+ * be queried directly from the mapped file, without building the model of the whole site. Only the
+ * parts of the file which are used are read from disk (by the operating system).
+ * <p>
+ * Instances are safe for use by concurrent threads.
+ */
+public class BinarySnapshot implements Closeable {
+
+    private final MappedByteBuffer buffer;
+
+    @Getter
+    private final int urlCount;
+    @Getter
+    private final int pageCount;
+    @Getter
+    private final int resourceCount;
+    private final int homepagePageId;
+    private final int domainUrlId;
+    private final int dictOffsetsPos;
+    private final int dictDataPos;
+    private final int titlesPos;
+    private final int adjacencyPos;
+    private final int pageTablePos;
+    private final int resourceTablePos;
+
+    private BinarySnapshot(MappedByteBuffer buffer) throws IOException {
+
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException("Not a binary snapshot file");
+        urlCount = buffer.getInt(8);
+        pageCount = buffer.getInt(12);
+        resourceCount = buffer.getInt(16);
+        homepagePageId = buffer.getInt(20);
+        domainUrlId = buffer.getInt(24);
+        dictOffsetsPos = (int) buffer.getLong(28);
+        dictDataPos = (int) buffer.getLong(36);
+        titlesPos = (int) buffer.getLong(44);
+        adjacencyPos = (int) buffer.getLong(52);
+        pageTablePos = (int) buffer.getLong(60);
+        resourceTablePos = (int) buffer.getLong(68);
+    }
+
+    /**
+     * Open a binary snapshot file.
+     *
+     * @param file The snapshot file.
+     * @return The opened snapshot.
+     * @throws IOException If the file cannot be read, or is not a binary snapshot.
+     */
+    public static BinarySnapshot open(Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(String.format("Binary snapshot too large to map: %s", file));
+            // The mapping remains valid once the channel is closed.
+            return new BinarySnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return The domain of the site scanned.
+     */
+    public String getDomain() {
+        return url(domainUrlId);
+    }
+
+    /**
+     * @return The page id of the homepage, or -1 if the scan had no homepage.
+     */
+    public int getHomepageId() {
+        return homepagePageId;
+    }
+
+    /**
+     * @param urlId The id of a URL in the dictionary.
+     * @return The URL.
+     */
+    public String url(int urlId) {
+        final int start = buffer.getInt(dictOffsetsPos + urlId * Integer.BYTES);
+        final int end = buffer.getInt(dictOffsetsPos + (urlId + 1) * Integer.BYTES);
+        return string(dictDataPos + start, end - start);
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The URI of the page.
+     */
+    public String pageUri(int pageId) {
+        return url(buffer.getInt(pageRecord(pageId)));
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The title of the page.
+     */
+    public String pageTitle(int pageId) {
+        final int record = pageRecord(pageId);
+        return string(titlesPos + buffer.getInt(record + 12), buffer.getInt(record + 16));
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The number of links between the homepage and the page.
+     */
+    public int pageDepth(int pageId) {
+        return buffer.getInt(pageRecord(pageId) + 4);
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The number of pages linking to the page.
+     */
+    public int pageReferences(int pageId) {
+        return buffer.getInt(pageRecord(pageId) + 8);
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The ids of the pages linked to, in URI order.
+     */
+    public int[] links(int pageId) {
+        return Varint.readSortedIds(adjacency(pageId));
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The URL ids of the external links, in URI order. (See url().)
+     */
+    public int[] externalLinks(int pageId) {
+        final ByteBuffer adjacency = adjacency(pageId);
+        Varint.readSortedIds(adjacency);
+        return Varint.readSortedIds(adjacency);
+    }
+
+    /**
+     * @param pageId The id of a page.
+     * @return The ids of the resources used, in URI order.
+     */
+    public int[] resources(int pageId) {
+        final ByteBuffer adjacency = adjacency(pageId);
+        Varint.readSortedIds(adjacency);
+        Varint.readSortedIds(adjacency);
+        return Varint.readSortedIds(adjacency);
+    }
+
+    /**
+     * @param resourceId The id of a resource.
+     * @return The URI of the resource.
+     */
+    public String resourceUri(int resourceId) {
+        return url(buffer.getInt(resourceTablePos + resourceId * RESOURCE_RECORD_BYTES));
+    }
+
+    /**
+     * @param resourceId The id of a resource.
+     * @return The number of references to the resource from the site.
+     */
+    public int resourceReferences(int resourceId) {
+        return buffer.getInt(resourceTablePos + resourceId * RESOURCE_RECORD_BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Find a page by binary search of the page table.
+     *
+     * @param uri The URI of the page.
+     * @return The id of the page, or -1 if the snapshot has no such page.
+     */
+    public int findPage(String uri) {
+        int low = 0;
+        int high = pageCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int order = pageUri(mid).compareTo(uri);
+            if (order < 0)
+                low = mid + 1;
+            else if (order > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return NO_PAGE;
+    }
+
+    /**
+     * Read the snapshot a page at a time, e.g. to compare it with another snapshot.
+     *
+     * @return A new source reading the pages, then resources, of this snapshot in URI order.
+     */
+    public SnapshotSource reader() {
+        return new SnapshotSource() {
+
+            int nextPageId;
+            int nextResourceId;
+
+            @Override
+            public String getDomain() {
+                return BinarySnapshot.this.getDomain();
+            }
+
+            @Override
+            public String getHomepage() {
+                return homepagePageId == NO_PAGE ? "" : pageUri(homepagePageId);
+            }
+
+            @Override
+            public Optional<PageRecord> nextPage() {
+                if (nextPageId >= pageCount)
+                    return Optional.empty();
+                return Optional.of(pageRecordOf(nextPageId++));
+            }
+
+            @Override
+            public Optional<ResourceRecord> nextResource() {
+                nextPageId = pageCount;
+                if (nextResourceId >= resourceCount)
+                    return Optional.empty();
+                final int resourceId = nextResourceId++;
+                return Optional.of(new ResourceRecord(resourceUri(resourceId), resourceReferences(resourceId)));
+            }
+
+            @Override
+            public void close() {
+                // The mapping is shared by the snapshot, which stays open.
+            }
+        };
+    }
+
+    /**
+     * Build the (URI based) record of a page.
+     *
+     * @param pageId The id of a page.
+     * @return The record of the page.
+     */
+    public PageRecord pageRecordOf(int pageId) {
+
+        final PageRecord pageRecord = new PageRecord(pageUri(pageId));
+        pageRecord.setTitle(pageTitle(pageId));
+        pageRecord.setDepth(pageDepth(pageId));
+        final ByteBuffer adjacency = adjacency(pageId);
+        for (int link : Varint.readSortedIds(adjacency))
+            pageRecord.getLinks().add(pageUri(link));
+        for (int externalLink : Varint.readSortedIds(adjacency))
+            pageRecord.getExternalLinks().add(url(externalLink));
+        for (int resource : Varint.readSortedIds(adjacency))
+            pageRecord.getResources().add(resourceUri(resource));
+        return pageRecord;
+    }
+
+    /**
+     * A mapped buffer cannot be unmapped explicitly; it is released once this snapshot is no
+     * longer referenced. Closing is still recommended, to mark the end of use.
+     */
+    @Override
+    public void close() {
+        // Nothing to release.
+    }
+
+    private int pageRecord(int pageId) {
+        if (pageId < 0 || pageId >= pageCount)
+            throw new IndexOutOfBoundsException(String.format("No page with id %d", pageId));
+        return pageTablePos + pageId * PAGE_RECORD_BYTES;
+    }
+
+    private ByteBuffer adjacency(int pageId) {
+        final ByteBuffer adjacency = buffer.duplicate();
+        adjacency.position(adjacencyPos + buffer.getInt(pageRecord(pageId) + 20));
+        return adjacency;
+    }
+
+    private String string(int position, int length) {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer slice = buffer.duplicate();
+        slice.position(position);
+        slice.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
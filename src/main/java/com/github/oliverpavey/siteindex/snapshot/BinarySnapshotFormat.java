@@ -0,0 +1,42 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+/**
+ * Layout of the binary snapshot format, shared by BinarySnapshotWriter and BinarySnapshot.
+ * <p>
+ * The file starts with a fixed size header giving the counts and the position of each section:
+ * <ul>
+ * <li>URL dictionary: every URI in the scan (pages, external links, resources and the domain),
+ * sorted and stored once, as UTF-8 data with a table of offsets. Everything else refers to URIs
+ * by their integer id (index) in the dictionary.</li>
+ * <li>Titles: the UTF-8 page titles.</li>
+ * <li>Adjacency lists: for each page, its links (as page ids), external links (as URL ids) and
+ * resources (as resource ids), each sorted and stored as varint encoded gaps.</li>
+ * <li>Page table: a fixed size record for each page, in URI order.</li>
+ * <li>Resource table: a fixed size record for each resource, in URI order.</li>
+ * </ul>
+ * As the records are fixed size and sorted, a page can be found by binary search of the memory
+ * mapped file, without reading the rest of the snapshot. Files are limited to 2GB (the most which
+ * can be memory mapped as one buffer).
+ */
+final class BinarySnapshotFormat {
+
+    static final int MAGIC = 0x53495342; // "SISB"
+    static final int VERSION = 1;
+
+    // Header: magic, version, urlCount, pageCount, resourceCount, homepagePageId, domainUrlId, then the
+    // positions of the sections: dictOffsetsPos, dictDataPos, titlesPos, adjacencyPos, pageTablePos, resourceTablePos.
+    static final int HEADER_INTS = 7;
+    static final int HEADER_LONGS = 6;
+    static final int HEADER_BYTES = HEADER_INTS * Integer.BYTES + HEADER_LONGS * Long.BYTES;
+
+    // Page record: urlId, depth, references, titleOffset, titleLength, adjacencyOffset.
+    static final int PAGE_RECORD_BYTES = 6 * Integer.BYTES;
+
+    // Resource record: urlId, references.
+    static final int RESOURCE_RECORD_BYTES = 2 * Integer.BYTES;
+
+    static final int NO_PAGE = -1;
+
+    private BinarySnapshotFormat() {
+    }
+}
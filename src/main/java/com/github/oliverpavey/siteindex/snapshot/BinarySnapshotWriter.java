@@ -0,0 +1,193 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static com.github.oliverpavey.siteindex.snapshot.BinarySnapshotFormat.*;
+
+/**
+ * Writes a snapshot of a site scan in the binary format described by BinarySnapshotFormat,
+ * through a file channel.
+ */
+public class BinarySnapshotWriter {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long flushed;
+
+    private BinarySnapshotWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Write a complete site scan to a file.
+     *
+     * @param siteScan The model of the site built by the scan.
+     * @param file     The file to write.
+     * @throws IOException Any exception which occurs whilst writing the file.
+     */
+    public static void write(SiteScan siteScan, Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            new BinarySnapshotWriter(channel).writeSiteScan(siteScan);
+        }
+    }
+
+    private void writeSiteScan(SiteScan siteScan) throws IOException {
+
+        // Assign ids. The maps of the scan are sorted, so ids follow URI order.
+        final List<PageScan> pages = new ArrayList<>(siteScan.getUriToPageScan().values());
+        final List<ResourceScan> resources = new ArrayList<>(siteScan.getUriToResourceScan().values());
+        final Map<String, Integer> pageIds = indexOf(pages.size());
+        for (PageScan page : pages)
+            pageIds.put(page.getUri(), pageIds.size());
+        final Map<String, Integer> resourceIds = indexOf(resources.size());
+        for (ResourceScan resource : resources)
+            resourceIds.put(resource.getUri(), resourceIds.size());
+
+        final TreeSet<String> urlSet = new TreeSet<>();
+        urlSet.add(siteScan.getDomain() == null ? "" : siteScan.getDomain());
+        urlSet.addAll(pageIds.keySet());
+        urlSet.addAll(resourceIds.keySet());
+        for (PageScan page : pages)
+            urlSet.addAll(page.getExternalLinks());
+        final Map<String, Integer> urlIds = indexOf(urlSet.size());
+        for (String url : urlSet)
+            urlIds.put(url, urlIds.size());
+
+        // Header placeholder, rewritten once the section positions are known.
+        put(new byte[HEADER_BYTES]);
+
+        final long dictDataPos = position();
+        final int[] urlOffsets = new int[urlSet.size() + 1];
+        int index = 0;
+        for (String url : urlSet) {
+            final byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+            put(bytes);
+            urlOffsets[++index] = offset(position() - dictDataPos);
+        }
+        final long dictOffsetsPos = position();
+        for (int urlOffset : urlOffsets) {
+            ensure(Integer.BYTES);
+            buffer.putInt(urlOffset);
+        }
+
+        final long titlesPos = position();
+        final int[] titleOffsets = new int[pages.size()];
+        final int[] titleLengths = new int[pages.size()];
+        for (int i = 0; i < pages.size(); i++) {
+            final String title = pages.get(i).getTitle();
+            final byte[] bytes = (title == null ? "" : title).getBytes(StandardCharsets.UTF_8);
+            titleOffsets[i] = offset(position() - titlesPos);
+            titleLengths[i] = bytes.length;
+            put(bytes);
+        }
+
+        final long adjacencyPos = position();
+        final int[] adjacencyOffsets = new int[pages.size()];
+        for (int i = 0; i < pages.size(); i++) {
+            final PageScan page = pages.get(i);
+            adjacencyOffsets[i] = offset(position() - adjacencyPos);
+            putSortedIds(page.getLinks().stream().mapToInt(link -> pageIds.get(link.getUri())).toArray());
+            putSortedIds(page.getExternalLinks().stream().mapToInt(urlIds::get).toArray());
+            putSortedIds(page.getResources().stream().mapToInt(resource -> resourceIds.get(resource.getUri())).toArray());
+        }
+
+        final long pageTablePos = position();
+        for (int i = 0; i < pages.size(); i++) {
+            final PageScan page = pages.get(i);
+            ensure(PAGE_RECORD_BYTES);
+            buffer.putInt(urlIds.get(page.getUri()))
+                    .putInt(page.getDepth())
+                    .putInt(page.getReferences())
+                    .putInt(titleOffsets[i])
+                    .putInt(titleLengths[i])
+                    .putInt(adjacencyOffsets[i]);
+        }
+
+        final long resourceTablePos = position();
+        for (ResourceScan resource : resources) {
+            ensure(RESOURCE_RECORD_BYTES);
+            buffer.putInt(urlIds.get(resource.getUri())).putInt(resource.getReferences());
+        }
+        flush();
+
+        final PageScan homepage = siteScan.getHomepage();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(urlSet.size())
+                .putInt(pages.size())
+                .putInt(resources.size())
+                .putInt(homepage == null ? NO_PAGE : pageIds.get(homepage.getUri()))
+                .putInt(urlIds.get(siteScan.getDomain() == null ? "" : siteScan.getDomain()))
+                .putLong(dictOffsetsPos)
+                .putLong(dictDataPos)
+                .putLong(titlesPos)
+                .putLong(adjacencyPos)
+                .putLong(pageTablePos)
+                .putLong(resourceTablePos);
+        header.flip();
+        while (header.hasRemaining())
+            channel.write(header, header.position());
+    }
+
+    private void putSortedIds(int[] ids) throws IOException {
+        ensure(Varint.maxSortedIdsBytes(ids));
+        Varint.writeSortedIds(ids, buffer);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Make room in the buffer, flushing it to the channel (and enlarging it for large values).
+     */
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes)
+            return;
+        flush();
+        if (buffer.capacity() < bytes)
+            buffer = ByteBuffer.allocate(bytes);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        flushed += buffer.remaining();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private long position() {
+        return flushed + buffer.position();
+    }
+
+    private int offset(long relativePosition) {
+        if (relativePosition > Integer.MAX_VALUE)
+            throw new IllegalStateException("Snapshot too large for the binary format");
+        return (int) relativePosition;
+    }
+
+    private static <K> Map<K, Integer> indexOf(int size) {
+        return new HashMap<>(size * 4 / 3 + 1);
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+import lombok.Data;
+
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * A page as stored in a snapshot: the page's URI, title and depth, with the URIs it references
+ * (rather than the models of the pages and resources they identify). All sets are sorted.
+ */
+@Data
+public class PageRecord {
+
+    private String uri;
+    private String title;
+    private int depth;
+    private SortedSet<String> links;
+    private SortedSet<String> externalLinks;
+    private SortedSet<String> resources;
+
+    /**
+     * Constructor, creating empty collections.
+     *
+     * @param uri URI of the page.
+     */
+    public PageRecord(String uri) {
+        this.uri = uri;
+        title = "";
+        links = new TreeSet<>();
+        externalLinks = new TreeSet<>();
+        resources = new TreeSet<>();
+    }
+
+    /**
+     * Create the record of a scanned page.
+     *
+     * @param pageScan The page model.
+     * @return The record of the page.
+     */
+    public static PageRecord of(PageScan pageScan) {
+
+        final PageRecord pageRecord = new PageRecord(pageScan.getUri());
+        pageRecord.setTitle(pageScan.getTitle());
+        pageRecord.setDepth(pageScan.getDepth());
+        for (PageScan link : pageScan.getLinks())
+            pageRecord.getLinks().add(link.getUri());
+        pageRecord.getExternalLinks().addAll(pageScan.getExternalLinks());
+        for (ResourceScan resource : pageScan.getResources())
+            pageRecord.getResources().add(resource.getUri());
+        return pageRecord;
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+import lombok.Data;
+
+/**
+ * A resource as stored in a snapshot.
+ */
+@Data
+public class ResourceRecord {
+
+    private final String uri;
+    private final int references;
+
+    /**
+     * Constructor.
+     *
+     * @param uri        URI of the resource.
+     * @param references The number of references to the resource from the site.
+     */
+    public ResourceRecord(String uri, int references) {
+        this.uri = uri;
+        this.references = references;
+    }
+}
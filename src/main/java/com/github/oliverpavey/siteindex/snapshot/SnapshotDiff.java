@@ -0,0 +1,191 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.SortedSet;
+
+/**
+ * Compares two snapshots of a site, writing a plain text report of the changes.
+ * <p>
+ * Both snapshots are sorted by URI, so they are compared with a single streaming merge: only the
+ * current page (or resource) of each snapshot is held in memory, and the time taken is proportional
+ * to the size of the snapshots.
+ * <p>
+ * The report lists pages added and removed; pages whose links, external links or resources changed
+ * (with the individual changes); and resources added, removed or referenced a different number of times.
+ */
+public class SnapshotDiff {
+
+    static final String NEW_LINE = "\n";
+    static final String INDENT = "    ";
+
+    private final Writer out;
+
+    @Getter
+    private int pagesAdded;
+    @Getter
+    private int pagesRemoved;
+    @Getter
+    private int pagesRelinked;
+    @Getter
+    private int pagesWithExternalLinkChanges;
+    @Getter
+    private int resourcesAdded;
+    @Getter
+    private int resourcesRemoved;
+    @Getter
+    private int resourcesRelinked;
+
+    /**
+     * Constructor.
+     *
+     * @param out Where to write the report.
+     */
+    public SnapshotDiff(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Compare two snapshots.
+     *
+     * @param before The earlier snapshot.
+     * @param after  The later snapshot.
+     * @throws IOException Any exception reading the snapshots or writing the report.
+     */
+    public void compare(SnapshotSource before, SnapshotSource after) throws IOException {
+
+        writeLine(String.format("Before: %s (homepage %s)", before.getDomain(), before.getHomepage()));
+        writeLine(String.format("After:  %s (homepage %s)", after.getDomain(), after.getHomepage()));
+        writeLine("");
+
+        comparePages(before, after);
+        compareResources(before, after);
+
+        writeLine("");
+        writeLine(String.format("Pages: %d added, %d removed, %d re-linked, %d with changed external links",
+                pagesAdded, pagesRemoved, pagesRelinked, pagesWithExternalLinkChanges));
+        writeLine(String.format("Resources: %d added, %d removed, %d re-linked",
+                resourcesAdded, resourcesRemoved, resourcesRelinked));
+        out.flush();
+    }
+
+    private void comparePages(SnapshotSource before, SnapshotSource after) throws IOException {
+
+        Optional<PageRecord> oldPage = before.nextPage();
+        Optional<PageRecord> newPage = after.nextPage();
+        while (oldPage.isPresent() || newPage.isPresent()) {
+            final int order = compareUris(oldPage.map(PageRecord::getUri), newPage.map(PageRecord::getUri));
+            if (order < 0) {
+                pagesRemoved++;
+                writeLine("- page " + oldPage.get().getUri());
+                oldPage = before.nextPage();
+            } else if (order > 0) {
+                pagesAdded++;
+                writeLine("+ page " + newPage.get().getUri());
+                newPage = after.nextPage();
+            } else {
+                comparePage(oldPage.get(), newPage.get());
+                oldPage = before.nextPage();
+                newPage = after.nextPage();
+            }
+        }
+    }
+
+    private void comparePage(PageRecord oldPage, PageRecord newPage) throws IOException {
+
+        final StringBuilder changes = new StringBuilder();
+        final boolean linksChanged = compareSets("link", oldPage.getLinks(), newPage.getLinks(), changes);
+        final boolean externalChanged = compareSets("external", oldPage.getExternalLinks(), newPage.getExternalLinks(), changes);
+        final boolean resourcesChanged = compareSets("resource", oldPage.getResources(), newPage.getResources(), changes);
+
+        if (linksChanged || resourcesChanged)
+            pagesRelinked++;
+        if (externalChanged)
+            pagesWithExternalLinkChanges++;
+        if (changes.length() > 0) {
+            writeLine("~ page " + newPage.getUri());
+            out.write(changes.toString());
+        }
+    }
+
+    private void compareResources(SnapshotSource before, SnapshotSource after) throws IOException {
+
+        Optional<ResourceRecord> oldResource = before.nextResource();
+        Optional<ResourceRecord> newResource = after.nextResource();
+        while (oldResource.isPresent() || newResource.isPresent()) {
+            final int order = compareUris(oldResource.map(ResourceRecord::getUri), newResource.map(ResourceRecord::getUri));
+            if (order < 0) {
+                resourcesRemoved++;
+                writeLine("- resource " + oldResource.get().getUri());
+                oldResource = before.nextResource();
+            } else if (order > 0) {
+                resourcesAdded++;
+                writeLine("+ resource " + newResource.get().getUri());
+                newResource = after.nextResource();
+            } else {
+                if (oldResource.get().getReferences() != newResource.get().getReferences()) {
+                    resourcesRelinked++;
+                    writeLine(String.format("~ resource %s (references %d -> %d)", newResource.get().getUri(),
+                            oldResource.get().getReferences(), newResource.get().getReferences()));
+                }
+                oldResource = before.nextResource();
+                newResource = after.nextResource();
+            }
+        }
+    }
+
+    /**
+     * Merge two sorted sets, describing the values added and removed.
+     *
+     * @param kind     The kind of value, for the description.
+     * @param oldSet   The values before.
+     * @param newSet   The values after.
+     * @param changes  The description of changes, appended to.
+     * @return True if the sets differ.
+     */
+    private static boolean compareSets(String kind, SortedSet<String> oldSet, SortedSet<String> newSet,
+                                       StringBuilder changes) {
+
+        boolean changed = false;
+        final Iterator<String> oldValues = oldSet.iterator();
+        final Iterator<String> newValues = newSet.iterator();
+        String oldValue = oldValues.hasNext() ? oldValues.next() : null;
+        String newValue = newValues.hasNext() ? newValues.next() : null;
+        while (oldValue != null || newValue != null) {
+            final int order = compareUris(Optional.ofNullable(oldValue), Optional.ofNullable(newValue));
+            if (order < 0) {
+                changes.append(INDENT).append("- ").append(kind).append(' ').append(oldValue).append(NEW_LINE);
+                oldValue = oldValues.hasNext() ? oldValues.next() : null;
+                changed = true;
+            } else if (order > 0) {
+                changes.append(INDENT).append("+ ").append(kind).append(' ').append(newValue).append(NEW_LINE);
+                newValue = newValues.hasNext() ? newValues.next() : null;
+                changed = true;
+            } else {
+                oldValue = oldValues.hasNext() ? oldValues.next() : null;
+                newValue = newValues.hasNext() ? newValues.next() : null;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Compare the current URIs of two sorted streams. An exhausted stream sorts last.
+     */
+    private static int compareUris(Optional<String> oldUri, Optional<String> newUri) {
+        if (oldUri.isEmpty())
+            return 1;
+        if (newUri.isEmpty())
+            return -1;
+        return oldUri.get().compareTo(newUri.get());
+    }
+
+    private void writeLine(String line) throws IOException {
+        out.write(line);
+        out.write(NEW_LINE);
+    }
+}
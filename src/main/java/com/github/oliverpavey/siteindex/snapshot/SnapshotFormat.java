@@ -0,0 +1,100 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+/**
+ * Constants and helpers shared by the reader and writer of the text snapshot format.
+ * <p>
+ * A snapshot is a UTF-8 text file of tab separated lines. A header gives the domain and homepage,
+ * then each page is written (in URI order) as a 'page' line followed by its 'link', 'external'
+ * and 'uses' lines, and finally each resource is written (in URI order) as a 'resource' line.
+ * Tabs, line breaks and backslashes within values are escaped with a backslash.
+ */
+final class SnapshotFormat {
+
+    static final String MAGIC = "siteindex-snapshot";
+    static final String VERSION = "1";
+
+    static final String DOMAIN = "domain";
+    static final String HOMEPAGE = "homepage";
+    static final String PAGE = "page";
+    static final String LINK = "link";
+    static final String EXTERNAL = "external";
+    static final String USES = "uses";
+    static final String RESOURCE = "resource";
+    static final String END = "end";
+
+    static final char SEPARATOR = '\t';
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * Join a line of fields, escaping each one.
+     *
+     * @param fields The fields of the line.
+     * @return The line, without a line break.
+     */
+    static String line(String... fields) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0)
+                sb.append(SEPARATOR);
+            escape(fields[i], sb);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Split a line into its fields, removing the escaping.
+     *
+     * @param line The line, without a line break.
+     * @return The fields of the line.
+     */
+    static String[] fields(String line) {
+        int count = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == SEPARATOR)
+                count++;
+        }
+        final String[] fields = new String[count];
+        final StringBuilder sb = new StringBuilder();
+        int field = 0;
+        for (int i = 0; i < line.length(); i++) {
+            final char ch = line.charAt(i);
+            if (ch == SEPARATOR) {
+                fields[field++] = sb.toString();
+                sb.setLength(0);
+            } else if (ch == '\\' && i + 1 < line.length()) {
+                final char escaped = line.charAt(++i);
+                sb.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped);
+            } else {
+                sb.append(ch);
+            }
+        }
+        fields[field] = sb.toString();
+        return fields;
+    }
+
+    private static void escape(String value, StringBuilder sb) {
+        if (value == null)
+            return;
+        for (int i = 0; i < value.length(); i++) {
+            final char ch = value.charAt(i);
+            switch (ch) {
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                default:
+                    sb.append(ch);
+            }
+        }
+    }
+}
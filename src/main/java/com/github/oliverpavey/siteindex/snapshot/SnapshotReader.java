@@ -0,0 +1,102 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+import lombok.Getter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static com.github.oliverpavey.siteindex.snapshot.SnapshotFormat.*;
+
+/**
+ * Reads a snapshot written by SnapshotWriter, one page (and then one resource) at a time,
+ * so that a snapshot can be processed without holding the whole site in memory.
+ */
+public class SnapshotReader implements SnapshotSource {
+
+    private final BufferedReader reader;
+    private String[] nextLine;
+
+    @Getter
+    private final String domain;
+    @Getter
+    private final String homepage;
+
+    /**
+     * Constructor. Reads the snapshot header.
+     *
+     * @param file The snapshot file.
+     * @throws IOException If the file cannot be read, or is not a snapshot.
+     */
+    public SnapshotReader(Path file) throws IOException {
+
+        reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        advance();
+        if (!MAGIC.equals(nextLine[0]) || nextLine.length < 2 || !VERSION.equals(nextLine[1]))
+            throw new IOException(String.format("Not a snapshot file: %s", file));
+        advance();
+        domain = expect(DOMAIN)[1];
+        homepage = expect(HOMEPAGE)[1];
+    }
+
+    @Override
+    public Optional<PageRecord> nextPage() throws IOException {
+
+        if (!PAGE.equals(nextLine[0]))
+            return Optional.empty();
+        final String[] pageLine = expect(PAGE);
+        final PageRecord pageRecord = new PageRecord(pageLine[1]);
+        pageRecord.setDepth(Integer.parseInt(pageLine[2]));
+        pageRecord.setTitle(pageLine.length > 3 ? pageLine[3] : "");
+        while (true) {
+            switch (nextLine[0]) {
+                case LINK:
+                    pageRecord.getLinks().add(expect(LINK)[1]);
+                    break;
+                case EXTERNAL:
+                    pageRecord.getExternalLinks().add(expect(EXTERNAL)[1]);
+                    break;
+                case USES:
+                    pageRecord.getResources().add(expect(USES)[1]);
+                    break;
+                default:
+                    return Optional.of(pageRecord);
+            }
+        }
+    }
+
+    @Override
+    public Optional<ResourceRecord> nextResource() throws IOException {
+
+        while (nextPage().isPresent()) {
+            // Skip any unread pages.
+        }
+        if (!RESOURCE.equals(nextLine[0]))
+            return Optional.empty();
+        final String[] resourceLine = expect(RESOURCE);
+        return Optional.of(new ResourceRecord(resourceLine[1], Integer.parseInt(resourceLine[2])));
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String[] expect(String type) throws IOException {
+        if (!type.equals(nextLine[0]))
+            throw new IOException(String.format("Snapshot corrupt. Expected '%s' but found '%s'", type, nextLine[0]));
+        final String[] line = nextLine;
+        advance();
+        return line;
+    }
+
+    private void advance() throws IOException {
+        final String line = reader.readLine();
+        if (line == null)
+            throw new IOException("Snapshot truncated");
+        nextLine = fields(line);
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * A snapshot being read one page (and then one resource) at a time, in URI order,
+ * whatever the format of the file it is read from.
+ */
+public interface SnapshotSource extends Closeable {
+
+    /**
+     * @return The domain of the site scanned.
+     */
+    String getDomain();
+
+    /**
+     * @return The URI of the homepage of the site scanned.
+     */
+    String getHomepage();
+
+    /**
+     * Read the next page. All pages must be read before the resources.
+     *
+     * @return The next page, or an empty optional once all the pages have been read.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    Optional<PageRecord> nextPage() throws IOException;
+
+    /**
+     * Read the next resource. (Any pages not yet read are skipped.)
+     *
+     * @return The next resource, or an empty optional once all the resources have been read.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    Optional<ResourceRecord> nextResource() throws IOException;
+}
@@ -0,0 +1,119 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.github.oliverpavey.siteindex.snapshot.SnapshotFormat.*;
+
+/**
+ * Writes a snapshot of a site scan, in the text format described by SnapshotFormat.
+ * <p>
+ * Pages and resources must be written in URI order, which allows snapshots to be compared
+ * by a streaming merge. (The maps of a SiteScan are already sorted.)
+ */
+public class SnapshotWriter implements Closeable {
+
+    private final BufferedWriter writer;
+    private String lastPageUri;
+    private String lastResourceUri;
+    private boolean pagesEnded;
+
+    /**
+     * Constructor. Writes the snapshot header.
+     *
+     * @param file     The file to write.
+     * @param domain   The domain of the site scanned.
+     * @param homepage The URI of the homepage of the site scanned.
+     * @throws IOException Any exception which occurs whilst writing the file.
+     */
+    public SnapshotWriter(Path file, String domain, String homepage) throws IOException {
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        writeLine(MAGIC, VERSION);
+        writeLine(DOMAIN, domain);
+        writeLine(HOMEPAGE, homepage);
+    }
+
+    /**
+     * Write a complete site scan to a file.
+     *
+     * @param siteScan The model of the site built by the scan.
+     * @param file     The file to write.
+     * @throws IOException Any exception which occurs whilst writing the file.
+     */
+    public static void write(SiteScan siteScan, Path file) throws IOException {
+
+        final String homepage = siteScan.getHomepage() == null ? "" : siteScan.getHomepage().getUri();
+        try (SnapshotWriter writer = new SnapshotWriter(file, siteScan.getDomain(), homepage)) {
+            for (PageScan pageScan : siteScan.getUriToPageScan().values())
+                writer.writePage(PageRecord.of(pageScan));
+            for (ResourceScan resourceScan : siteScan.getUriToResourceScan().values())
+                writer.writeResource(new ResourceRecord(resourceScan.getUri(), resourceScan.getReferences()));
+        }
+    }
+
+    /**
+     * Write the next page.
+     *
+     * @param pageRecord The page, which must follow the previous page in URI order.
+     * @throws IOException Any exception which occurs whilst writing the file.
+     */
+    public void writePage(PageRecord pageRecord) throws IOException {
+
+        if (pagesEnded)
+            throw new IllegalStateException("Pages must be written before resources");
+        lastPageUri = checkOrder(lastPageUri, pageRecord.getUri());
+        writeLine(PAGE, pageRecord.getUri(), Integer.toString(pageRecord.getDepth()), pageRecord.getTitle());
+        for (String link : pageRecord.getLinks())
+            writeLine(LINK, link);
+        for (String externalLink : pageRecord.getExternalLinks())
+            writeLine(EXTERNAL, externalLink);
+        for (String resource : pageRecord.getResources())
+            writeLine(USES, resource);
+    }
+
+    /**
+     * Write the next resource.
+     *
+     * @param resourceRecord The resource, which must follow the previous resource in URI order.
+     * @throws IOException Any exception which occurs whilst writing the file.
+     */
+    public void writeResource(ResourceRecord resourceRecord) throws IOException {
+
+        pagesEnded = true;
+        lastResourceUri = checkOrder(lastResourceUri, resourceRecord.getUri());
+        writeLine(RESOURCE, resourceRecord.getUri(), Integer.toString(resourceRecord.getReferences()));
+    }
+
+    /**
+     * Write the end marker and close the file.
+     *
+     * @throws IOException Any exception which occurs whilst writing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeLine(END);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeLine(String... fields) throws IOException {
+        writer.write(line(fields));
+        writer.newLine();
+    }
+
+    private static String checkOrder(String previous, String next) {
+        if (previous != null && previous.compareTo(next) >= 0)
+            throw new IllegalArgumentException(String.format("Snapshot entries out of order: '%s' after '%s'", next, previous));
+        return next;
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Entry points for writing and reading snapshots, whichever format they are in.
+ */
+public final class Snapshots {
+
+    public static final String FORMAT_TEXT = "text";
+    public static final String FORMAT_BINARY = "binary";
+
+    private Snapshots() {
+    }
+
+    /**
+     * Write a site scan to a snapshot file.
+     *
+     * @param siteScan The model of the site built by the scan.
+     * @param file     The file to write.
+     * @param format   The format to write: "binary", or "text" (the default if null).
+     * @throws IOException Any exception which occurs whilst writing the file.
+     */
+    public static void write(SiteScan siteScan, Path file, String format) throws IOException {
+        if (FORMAT_BINARY.equals(format))
+            BinarySnapshotWriter.write(siteScan, file);
+        else
+            SnapshotWriter.write(siteScan, file);
+    }
+
+    /**
+     * Open a snapshot file for reading a page at a time, detecting its format.
+     *
+     * @param file The snapshot file.
+     * @return The opened snapshot, which the caller must close.
+     * @throws IOException If the file cannot be read, or is not a snapshot.
+     */
+    public static SnapshotSource open(Path file) throws IOException {
+        if (isBinary(file))
+            return BinarySnapshot.open(file).reader();
+        return new SnapshotReader(file);
+    }
+
+    /**
+     * Rebuild the model of a site from a snapshot, e.g. to render its report again.
+     *
+     * @param source The opened snapshot.
+     * @return The model of the site.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    public static SiteScan load(SnapshotSource source) throws IOException {
+
+        final SiteScan siteScan = new SiteScan();
+        siteScan.setDomain(source.getDomain());
+        final Map<String, PageScan> uriToPageScan = siteScan.getUriToPageScan();
+        final Map<String, ResourceScan> uriToResourceScan = siteScan.getUriToResourceScan();
+
+        Optional<PageRecord> next;
+        while ((next = source.nextPage()).isPresent()) {
+            final PageRecord pageRecord = next.get();
+            final PageScan pageScan = uriToPageScan.computeIfAbsent(pageRecord.getUri(), PageScan::new);
+            pageScan.setTitle(pageRecord.getTitle());
+            pageScan.setDepth(pageRecord.getDepth());
+            for (String link : pageRecord.getLinks()) {
+                final PageScan linkScan = uriToPageScan.computeIfAbsent(link, PageScan::new);
+                pageScan.getLinks().add(linkScan);
+                linkScan.incReferences();
+            }
+            pageScan.getExternalLinks().addAll(pageRecord.getExternalLinks());
+            for (String resource : pageRecord.getResources())
+                pageScan.getResources().add(uriToResourceScan.computeIfAbsent(resource, ResourceScan::new));
+        }
+
+        Optional<ResourceRecord> nextResource;
+        while ((nextResource = source.nextResource()).isPresent()) {
+            final ResourceRecord resourceRecord = nextResource.get();
+            uriToResourceScan.computeIfAbsent(resourceRecord.getUri(), ResourceScan::new)
+                    .setReferences(resourceRecord.getReferences());
+        }
+
+        siteScan.setHomepage(uriToPageScan.get(source.getHomepage()));
+        return siteScan;
+    }
+
+    private static boolean isBinary(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return new DataInputStream(in).readInt() == BinarySnapshotFormat.MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+}
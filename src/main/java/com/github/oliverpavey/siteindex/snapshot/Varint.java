@@ -0,0 +1,80 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Unsigned variable length integers (LEB128): seven bits per byte, with the top bit set on every
+ * byte except the last. Small values, such as the gaps between sorted ids, take a single byte.
+ */
+final class Varint {
+
+    private Varint() {
+    }
+
+    /**
+     * @param value The (non-negative) value to write.
+     * @param out   The buffer to write to.
+     */
+    static void write(int value, ByteBuffer out) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * @param in The buffer to read from. (Its position is advanced past the value.)
+     * @return The value read.
+     */
+    static int read(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Write a sorted array of ids as a count followed by the gaps between successive ids.
+     *
+     * @param ids The ids, in ascending order.
+     * @param out The buffer to write to.
+     */
+    static void writeSortedIds(int[] ids, ByteBuffer out) {
+        write(ids.length, out);
+        int previous = 0;
+        for (int id : ids) {
+            write(id - previous, out);
+            previous = id;
+        }
+    }
+
+    /**
+     * Read a sorted array of ids written by writeSortedIds().
+     *
+     * @param in The buffer to read from. (Its position is advanced past the ids.)
+     * @return The ids, in ascending order.
+     */
+    static int[] readSortedIds(ByteBuffer in) {
+        final int[] ids = new int[read(in)];
+        int previous = 0;
+        for (int i = 0; i < ids.length; i++) {
+            previous += read(in);
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    /**
+     * @param ids The ids which will be written.
+     * @return The most bytes writeSortedIds() can take to write them.
+     */
+    static int maxSortedIdsBytes(int[] ids) {
+        return 5 * (ids.length + 1);
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.oliverpavey.siteindex.tools;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer which removes blank lines from the text passing through it, producing the same output
+ * as TextUtils.removeBlankLines() but without holding the whole text in memory. Only the current
+ * line is buffered, until it is known whether the line is blank.
+ * <p>
+ * N.B. The output will use Posix style line breaks, and has no line break after the last line.
+ */
+public class BlankLineFilterWriter extends Writer {
+
+    static final char NEW_LINE = '\n';
+    static final char CARRIAGE_RETURN = '\r';
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder();
+    private boolean lineIsBlank = true;
+    private boolean firstLine = true;
+
+    /**
+     * Constructor.
+     *
+     * @param out The writer to pass the filtered text to.
+     */
+    public BlankLineFilterWriter(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int ch) throws IOException {
+        if (ch == NEW_LINE || ch == CARRIAGE_RETURN) {
+            endLine();
+        } else {
+            line.append((char) ch);
+            if (lineIsBlank && !Character.isWhitespace(ch))
+                lineIsBlank = false;
+        }
+    }
+
+    @Override
+    public void write(char[] chars, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++)
+            write(chars[i]);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++)
+            write(str.charAt(i));
+    }
+
+    /**
+     * Flush the text written so far, except the current line (which may yet turn out to be blank).
+     *
+     * @throws IOException Any exception from the underlying writer.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Write the last line (if not blank), and close the underlying writer.
+     *
+     * @throws IOException Any exception from the underlying writer.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            endLine();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void endLine() throws IOException {
+        if (!lineIsBlank) {
+            if (!firstLine)
+                out.write(NEW_LINE);
+            out.append(line);
+            firstLine = false;
+        }
+        line.setLength(0);
+        lineIsBlank = true;
+    }
+}
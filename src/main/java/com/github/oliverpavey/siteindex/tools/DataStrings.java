@@ -0,0 +1,47 @@
+package com.github.oliverpavey.siteindex.tools;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes and reads strings of any length in binary files, as UTF-8 preceded by the number of bytes.
+ * <p>
+ * DataOutputStream.writeUTF() cannot write a string of more than 65535 bytes, and the strings found on
+ * pages may be longer. (e.g. An inline 'data:' image in a resource reference.)
+ */
+public final class DataStrings {
+
+    private DataStrings() {
+    }
+
+    /**
+     * Write a string.
+     *
+     * @param out   The stream to write.
+     * @param value The string.
+     * @throws IOException Any exception writing the stream.
+     */
+    public static void write(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by write().
+     *
+     * @param in The stream to read.
+     * @return The string.
+     * @throws IOException Any exception reading the stream, or if the length read is not valid.
+     */
+    public static String read(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0)
+            throw new IOException(String.format("Invalid string length: %d", length));
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
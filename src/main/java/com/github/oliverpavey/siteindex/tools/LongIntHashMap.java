@@ -0,0 +1,142 @@
+package com.github.oliverpavey.siteindex.tools;
+
+/**
+ * Minimal synchronized open-addressing hash map from primitive longs to ints, avoiding a boxed
+ * key, a boxed value and a hash map entry for every mapping.
+ * <p>
+ * A map created by keysOnly() holds no values, and is used as a set of longs through add() and contains().
+ */
+public class LongIntHashMap {
+
+    private static final long EMPTY = 0L;
+    private static final long ZERO_SUBSTITUTE = 0x9E3779B97F4A7C15L;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param expectedSize The number of mappings expected, used to size the initial table.
+     */
+    public LongIntHashMap(int expectedSize) {
+        this(expectedSize, true);
+    }
+
+    private LongIntHashMap(int expectedSize, boolean withValues) {
+        final int capacity = tableSizeFor(Math.max(expectedSize, 16) * 2);
+        keys = new long[capacity];
+        values = withValues ? new int[capacity] : null;
+    }
+
+    /**
+     * @param expectedSize The number of keys expected, used to size the initial table.
+     * @return A new map holding keys without values, i.e. a set of longs.
+     */
+    public static LongIntHashMap keysOnly(int expectedSize) {
+        return new LongIntHashMap(expectedSize, false);
+    }
+
+    /**
+     * @param key   The key.
+     * @param value The value to map the key to, unless it is already mapped. (Ignored by a map of keys only.)
+     * @return True if the key was not already mapped.
+     */
+    public synchronized boolean putIfAbsent(long key, int value) {
+
+        final int i = slot(keys, substitute(key));
+        if (keys[i] != EMPTY)
+            return false;
+        keys[i] = substitute(key);
+        if (values != null)
+            values[i] = value;
+        if (++size * 2 > keys.length)
+            resize();
+        return true;
+    }
+
+    /**
+     * @param key The key to add.
+     * @return True if the key was not already in the map.
+     */
+    public boolean add(long key) {
+        return putIfAbsent(key, 0);
+    }
+
+    /**
+     * @param key The key to check.
+     * @return True if the key is in the map.
+     */
+    public synchronized boolean contains(long key) {
+        return keys[slot(keys, substitute(key))] != EMPTY;
+    }
+
+    /**
+     * @param key   The key, which must already be mapped.
+     * @param value The new value of the key.
+     */
+    public synchronized void replace(long key, int value) {
+
+        final int i = slot(keys, substitute(key));
+        if (keys[i] == EMPTY)
+            throw new IllegalArgumentException(String.format("Key not mapped: %d", key));
+        values[i] = value;
+    }
+
+    /**
+     * @param key     The key.
+     * @param missing The value to return if the key is not mapped.
+     * @return The value of the key, or the missing value.
+     */
+    public synchronized int get(long key, int missing) {
+
+        final int i = slot(keys, substitute(key));
+        return keys[i] == EMPTY ? missing : values[i];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return The heap used by the tables of keys and values.
+     */
+    public synchronized long capacityBytes() {
+        return (long) keys.length * (values != null ? Long.BYTES + Integer.BYTES : Long.BYTES);
+    }
+
+    private void resize() {
+        final long[] largerKeys = new long[keys.length * 2];
+        final int[] largerValues = values != null ? new int[keys.length * 2] : null;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                final int j = slot(largerKeys, keys[i]);
+                largerKeys[j] = keys[i];
+                if (values != null)
+                    largerValues[j] = values[i];
+            }
+        }
+        keys = largerKeys;
+        values = largerValues;
+    }
+
+    /**
+     * @return The slot holding the key, or the empty slot where it would be inserted.
+     */
+    private static int slot(long[] keys, long key) {
+        final int mask = keys.length - 1;
+        int i = (int) (key ^ (key >>> 32)) & mask;
+        while (keys[i] != EMPTY && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private static long substitute(long key) {
+        return key == EMPTY ? ZERO_SUBSTITUTE : key;
+    }
+
+    private static int tableSizeFor(int n) {
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+}
@@ -15,6 +15,7 @@ import java.util.stream.Collectors;
 public class TextUtils {
 
     static final char URL_PATH_SEPARATOR = '/';
+    static final Pattern URL_DOMAIN_EXTRACTOR = Pattern.compile("^(https?://.*?/).*$");
 
     /**
      * Remove any series of a leading character from a string.
@@ -79,19 +80,30 @@ public class TextUtils {
      */
     public static String extractDomain(String url) {
 
-        final String URL_DOMAIN_EXTRACTOR_REGEX = "^(https?://.*?/).*$";
-
         if (url == null)
             return "";
 
-        Pattern pattern = Pattern.compile(URL_DOMAIN_EXTRACTOR_REGEX);
-        Matcher matcher = pattern.matcher(url);
+        final Matcher matcher = URL_DOMAIN_EXTRACTOR.matcher(url);
         if (matcher.matches())
             return matcher.group(1);
         else
             return "";
     }
 
+    /**
+     * Add to the name of a file, before its extension.
+     *
+     * @param name     The name of a file, e.g. 'metrics.txt'.
+     * @param addition The text to add, e.g. 'shard1'.
+     * @return The name with the text added, after a hyphen, e.g. 'metrics-shard1.txt'.
+     */
+    public static String addToFileName(String name, String addition) {
+        final int dot = name.lastIndexOf('.');
+        return dot > 0
+                ? name.substring(0, dot) + "-" + addition + name.substring(dot)
+                : name + "-" + addition;
+    }
+
     /**
      * Remove blank lines from a multi-line string.
      * <p>
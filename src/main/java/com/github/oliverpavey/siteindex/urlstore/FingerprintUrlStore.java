@@ -0,0 +1,53 @@
+package com.github.oliverpavey.siteindex.urlstore;
+
+import com.github.oliverpavey.siteindex.tools.LongIntHashMap;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compact UrlStore which keeps a 64 bit fingerprint of each URL rather than the URL itself, in a
+ * table of primitive longs. The store only gives a wrong answer if two URLs share a fingerprint.
+ * <p>
+ * The table starts small and doubles as it fills, so a store which sees few URLs stays small. A
+ * store of a million URLs costs 16 to 32 MB, against well over 100 MB for the hashed store.
+ */
+public class FingerprintUrlStore implements UrlStore {
+
+    static final int INITIAL_FINGERPRINTS = 1024;
+
+    private final LongIntHashMap fingerprints = LongIntHashMap.keysOnly(INITIAL_FINGERPRINTS);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Override
+    public boolean add(String url) {
+        return fingerprints.add(fingerprint(url));
+    }
+
+    @Override
+    public boolean contains(String url) {
+        final boolean found = fingerprints.contains(fingerprint(url));
+        (found ? hits : misses).increment();
+        return found;
+    }
+
+    @Override
+    public long size() {
+        return fingerprints.size();
+    }
+
+    @Override
+    public UrlStoreStats stats() {
+        return new UrlStoreStats("fingerprint", size(), hits.sum(), misses.sum(), fingerprints.capacityBytes());
+    }
+
+    /**
+     * @param url The URL to fingerprint.
+     * @return A 64 bit hash of the URL.
+     */
+    static long fingerprint(String url) {
+        return Hashing.murmur3_128().hashString(url, StandardCharsets.UTF_8).asLong();
+    }
+}
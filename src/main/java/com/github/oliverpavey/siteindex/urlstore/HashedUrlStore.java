@@ -0,0 +1,47 @@
+package com.github.oliverpavey.siteindex.urlstore;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * UrlStore keeping every URL in a concurrent hash set. Exact, with constant time lookups,
+ * but every URL is held on the heap as a String.
+ */
+public class HashedUrlStore implements UrlStore {
+
+    // Approximate heap cost of a hash set entry plus a String object, excluding the characters.
+    static final long ENTRY_OVERHEAD_BYTES = 96;
+
+    private final Set<String> urls = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder chars = new LongAdder();
+
+    @Override
+    public boolean add(String url) {
+        final boolean added = urls.add(url);
+        if (added)
+            chars.add(url.length());
+        return added;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        final boolean found = urls.contains(url);
+        (found ? hits : misses).increment();
+        return found;
+    }
+
+    @Override
+    public long size() {
+        return urls.size();
+    }
+
+    @Override
+    public UrlStoreStats stats() {
+        final long size = size();
+        return new UrlStoreStats("hashed", size, hits.sum(), misses.sum(),
+                size * ENTRY_OVERHEAD_BYTES + chars.sum());
+    }
+}
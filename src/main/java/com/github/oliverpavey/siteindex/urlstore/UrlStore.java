@@ -0,0 +1,36 @@
+package com.github.oliverpavey.siteindex.urlstore;
+
+/**
+ * A set of URLs, used by a scan to remember which URLs it has already seen (or failed to read).
+ * <p>
+ * Implementations must be safe for use by concurrent worker threads.
+ */
+public interface UrlStore {
+
+    /**
+     * Add a URL to the store. Not counted in the statistics of the store, as callers check with
+     * contains() first.
+     *
+     * @param url The URL to add.
+     * @return True if the URL was not already in the store (i.e. this call added it).
+     */
+    boolean add(String url);
+
+    /**
+     * Check whether a URL is in the store. Counted as a hit or a miss in the statistics of the store.
+     *
+     * @param url The URL to check.
+     * @return True if the URL is in the store.
+     */
+    boolean contains(String url);
+
+    /**
+     * @return The number of URLs in the store.
+     */
+    long size();
+
+    /**
+     * @return Counts of lookups and an estimate of memory used, for logging.
+     */
+    UrlStoreStats stats();
+}
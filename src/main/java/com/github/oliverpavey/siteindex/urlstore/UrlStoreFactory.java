@@ -0,0 +1,32 @@
+package com.github.oliverpavey.siteindex.urlstore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Component creating the configured kind of UrlStore for each scan.
+ */
+@Component
+public class UrlStoreFactory {
+
+    static final String TYPE_HASHED = "hashed";
+    static final String TYPE_FINGERPRINT = "fingerprint";
+
+    @Value("${siteindex.urlstore.type}")
+    private String type;
+
+    /**
+     * @return A new, empty, UrlStore of the configured type.
+     */
+    public UrlStore create() {
+
+        switch (type) {
+            case TYPE_HASHED:
+                return new HashedUrlStore();
+            case TYPE_FINGERPRINT:
+                return new FingerprintUrlStore();
+            default:
+                throw new IllegalStateException(String.format("Unknown siteindex.urlstore.type: '%s'", type));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.oliverpavey.siteindex.urlstore;
+
+import lombok.Data;
+
+/**
+ * Statistics of the use of a UrlStore.
+ * <p>
+ * A hit is a call of contains() which found the URL in the store, a miss is one which did not.
+ */
+@Data
+public class UrlStoreStats {
+
+    private final String type;
+    private final long size;
+    private final long hits;
+    private final long misses;
+    private final long estimatedBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param type           The kind of store.
+     * @param size           The number of URLs in the store.
+     * @param hits           Lookups which found the URL in the store.
+     * @param misses         Lookups which did not find the URL in the store.
+     * @param estimatedBytes An estimate of the heap used by the store.
+     */
+    public UrlStoreStats(String type, long size, long hits, long misses, long estimatedBytes) {
+        this.type = type;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.estimatedBytes = estimatedBytes;
+    }
+}
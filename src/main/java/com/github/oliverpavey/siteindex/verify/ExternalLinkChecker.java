@@ -0,0 +1,241 @@
+package com.github.oliverpavey.siteindex.verify;
+
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.ResourceCheck;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static com.github.oliverpavey.siteindex.tools.TextUtils.extractDomain;
+
+/**
+ * Component checking the external links of a scanned site, to find those which are broken.
+ * <p>
+ * The same external link may appear on many pages, so the links of the whole site are gathered
+ * first, and each unique URL is checked once (as resources are: HEAD, or a ranged GET). Checks run
+ * concurrently, with a limit on the number in flight to any one host, and hosts taking turns.
+ * <p>
+ * Results are kept in an on-disk cache for a time-to-live, so that a run soon after another only
+ * checks the links which have not been checked recently. Links which could not be reached at all
+ * are not cached, so they are tried again by the next run. The cache is read once, and shared by
+ * every scan of the application, so scans running at once do not lose each other's results.
+ */
+@Slf4j
+@Component
+public class ExternalLinkChecker {
+
+    static final String SCHEME_HTTP = "http://";
+    static final String SCHEME_HTTPS = "https://";
+
+    @Value("${siteindex.linkcheck.enabled}")
+    private boolean enabled;
+
+    @Value("${siteindex.linkcheck.concurrency}")
+    private int concurrency;
+
+    @Value("${siteindex.linkcheck.max-per-host}")
+    private int maxPerHost;
+
+    @Value("${siteindex.linkcheck.cache-file}")
+    private String cacheFile;
+
+    @Value("${siteindex.linkcheck.cache-ttl-hours}")
+    private long cacheTtlHours;
+
+    final ResourceVerifier resourceVerifier;
+
+    private LinkCheckCache cache;
+
+    /**
+     * Constructor
+     *
+     * @param resourceVerifier Makes the requests checking each link.
+     */
+    public ExternalLinkChecker(ResourceVerifier resourceVerifier) {
+        this.resourceVerifier = resourceVerifier;
+    }
+
+    /**
+     * Check the external links of a scanned site, recording the results in the model.
+     * (Does nothing if external link checking is disabled.)
+     *
+     * @param siteScan The model built by the scan.
+     * @throws InterruptedException If interrupted whilst waiting for the checks.
+     */
+    public void check(SiteScan siteScan) throws InterruptedException {
+
+        if (!enabled)
+            return;
+
+        final Set<String> urls = new TreeSet<>();
+        for (PageScan pageScan : siteScan.getUriToPageScan().values()) {
+            for (String url : pageScan.getExternalLinks()) {
+                if (url.startsWith(SCHEME_HTTP) || url.startsWith(SCHEME_HTTPS))
+                    urls.add(url);
+            }
+        }
+
+        final LinkCheckCache cache = cache();
+        final Map<String, ResourceCheck> results = siteScan.getExternalLinkChecks();
+        final List<String> unchecked = new ArrayList<>();
+        final long nowMs = System.currentTimeMillis();
+        for (String url : urls) {
+            final Optional<ResourceCheck> cached = cache.get(url, nowMs);
+            if (cached.isPresent())
+                results.put(url, cached.get());
+            else
+                unchecked.add(url);
+        }
+
+        final Map<String, ResourceCheck> checked = checkAll(unchecked, resourceVerifier::check);
+        final long checkedAtMs = System.currentTimeMillis();
+        checked.forEach((url, check) -> {
+            results.put(url, check);
+            if (check.getStatus() != 0)
+                cache.put(url, check, checkedAtMs);
+        });
+        try {
+            cache.save();
+        } catch (IOException e) {
+            log.warn("Could not write link check cache '{}': {}", cacheFile, e.getMessage());
+        }
+
+        final long broken = results.values().stream().filter(check -> !check.isOk()).count();
+        log.info("External links checked: {} ({} from cache, {} broken or unreachable)",
+                urls.size(), urls.size() - unchecked.size(), broken);
+    }
+
+    /**
+     * @return The cache shared by every scan, read from the cache file by the first scan to check its links.
+     */
+    private synchronized LinkCheckCache cache() {
+
+        if (cache == null) {
+            cache = new LinkCheckCache(Paths.get(cacheFile), TimeUnit.HOURS.toMillis(cacheTtlHours));
+            try {
+                cache.load(System.currentTimeMillis());
+            } catch (IOException e) {
+                log.warn("Could not read link check cache '{}': {}", cacheFile, e.getMessage());
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Check each of a collection of URLs, with at most 'concurrency' checks in flight, and at most
+     * 'maxPerHost' to any one host.
+     *
+     * @param urls    The URLs, each unique.
+     * @param checker Checks a URL.
+     * @return The result of checking each URL.
+     * @throws InterruptedException If interrupted whilst waiting for the checks.
+     */
+    Map<String, ResourceCheck> checkAll(Collection<String> urls, Function<String, CompletableFuture<ResourceCheck>> checker)
+            throws InterruptedException {
+
+        final CheckRun run = new CheckRun(checker, Math.max(1, concurrency), Math.max(1, maxPerHost));
+        for (String url : urls)
+            run.waiting.computeIfAbsent(extractDomain(url), host -> new ArrayDeque<>()).addLast(url);
+        run.remaining = urls.size();
+        run.start();
+        run.await();
+        return run.results;
+    }
+
+    /**
+     * The checks of a set of URLs, queued by host.
+     */
+    private static class CheckRun {
+
+        final Function<String, CompletableFuture<ResourceCheck>> checker;
+        final int concurrency;
+        final int maxPerHost;
+
+        final Map<String, Deque<String>> waiting = new LinkedHashMap<>();
+        final Map<String, Integer> hostInFlight = new HashMap<>();
+        final Map<String, ResourceCheck> results = new ConcurrentHashMap<>();
+        int inFlight;
+        int remaining;
+
+        CheckRun(Function<String, CompletableFuture<ResourceCheck>> checker, int concurrency, int maxPerHost) {
+            this.checker = checker;
+            this.concurrency = concurrency;
+            this.maxPerHost = maxPerHost;
+        }
+
+        void start() {
+            final List<String> ready;
+            synchronized (this) {
+                ready = takeReady();
+            }
+            ready.forEach(this::launch);
+        }
+
+        synchronized void await() throws InterruptedException {
+            while (remaining > 0)
+                wait();
+        }
+
+        /**
+         * @return The URLs which may be checked now, counted as in flight: a URL from each host
+         * below its limit in turn, until the overall limit is reached. (Call while synchronized.)
+         */
+        private List<String> takeReady() {
+
+            final List<String> ready = new ArrayList<>();
+            boolean taken = true;
+            while (taken && inFlight < concurrency) {
+                taken = false;
+                final Iterator<Map.Entry<String, Deque<String>>> hosts = waiting.entrySet().iterator();
+                while (hosts.hasNext() && inFlight < concurrency) {
+                    final Map.Entry<String, Deque<String>> host = hosts.next();
+                    if (hostInFlight.getOrDefault(host.getKey(), 0) >= maxPerHost)
+                        continue;
+                    ready.add(host.getValue().removeFirst());
+                    hostInFlight.merge(host.getKey(), 1, Integer::sum);
+                    inFlight++;
+                    taken = true;
+                    if (host.getValue().isEmpty())
+                        hosts.remove();
+                }
+            }
+            return ready;
+        }
+
+        private void launch(String url) {
+            checker.apply(url).whenComplete((check, e) -> {
+                results.put(url, check != null ? check
+                        : new ResourceCheck(ResourceVerifier.METHOD_HEAD, 0, -1, "", 0, String.valueOf(e)));
+                final List<String> ready;
+                synchronized (this) {
+                    inFlight--;
+                    hostInFlight.merge(extractDomain(url), -1, Integer::sum);
+                    remaining--;
+                    notifyAll();
+                    ready = takeReady();
+                }
+                ready.forEach(this::launch);
+            });
+        }
+    }
+}
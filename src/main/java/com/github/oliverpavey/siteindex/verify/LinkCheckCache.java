@@ -0,0 +1,147 @@
+package com.github.oliverpavey.siteindex.verify;
+
+import com.github.oliverpavey.siteindex.model.ResourceCheck;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * On-disk cache of the results of external link checks, so that a run soon after another (e.g. a
+ * nightly scan) need not check again the links which were recently found.
+ * <p>
+ * The cache is a single text file, with a line per URL: the time it was checked, then the result,
+ * separated by tabs. Results older than the time-to-live are dropped when the file is read, and
+ * are not used once they expire.
+ * <p>
+ * One cache is shared by the scans of the application, which may run at once (in batch mode), so
+ * each saves the results of the others too. Methods are synchronized.
+ */
+@Slf4j
+class LinkCheckCache {
+
+    static final String SEPARATOR = "\t";
+    static final int FIELDS = 7;
+
+    private final Path file;
+    private final long ttlMs;
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * A cached result, with the time it was checked.
+     */
+    private static class Entry {
+
+        final long checkedAtMs;
+        final ResourceCheck check;
+
+        Entry(long checkedAtMs, ResourceCheck check) {
+            this.checkedAtMs = checkedAtMs;
+            this.check = check;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file  The cache file. (It need not exist.)
+     * @param ttlMs How long a result may be used for after the link was checked.
+     */
+    LinkCheckCache(Path file, long ttlMs) {
+        this.file = file;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Read the results which have not expired from the cache file, if it exists.
+     *
+     * @param nowMs The current time.
+     * @throws IOException Any exception reading the file.
+     */
+    synchronized void load(long nowMs) throws IOException {
+
+        if (!Files.exists(file))
+            return;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split(SEPARATOR, FIELDS);
+                if (fields.length != FIELDS)
+                    continue;
+                try {
+                    final long checkedAtMs = Long.parseLong(fields[0]);
+                    if (nowMs - checkedAtMs >= ttlMs)
+                        continue;
+                    final ResourceCheck check = new ResourceCheck(fields[1], Integer.parseInt(fields[2]),
+                            Long.parseLong(fields[3]), fields[5], Long.parseLong(fields[4]), "");
+                    entries.put(fields[6], new Entry(checkedAtMs, check));
+                } catch (NumberFormatException e) {
+                    log.debug("Ignoring malformed link check cache line: {}", line);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param url   The URL of a link.
+     * @param nowMs The current time.
+     * @return The cached result of checking the link, if it has not expired.
+     */
+    synchronized Optional<ResourceCheck> get(String url, long nowMs) {
+        final Entry entry = entries.get(url);
+        return entry == null || nowMs - entry.checkedAtMs >= ttlMs ? Optional.empty() : Optional.of(entry.check);
+    }
+
+    /**
+     * Add the result of checking a link.
+     *
+     * @param url         The URL of the link.
+     * @param check       The result.
+     * @param checkedAtMs The time the link was checked.
+     */
+    synchronized void put(String url, ResourceCheck check, long checkedAtMs) {
+        entries.put(url, new Entry(checkedAtMs, check));
+    }
+
+    /**
+     * Write the cache file, replacing the old file once the new one is complete.
+     *
+     * @throws IOException Any exception writing the file.
+     */
+    synchronized void save() throws IOException {
+
+        final Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        final Path tempFile = Files.createTempFile(directory, "links", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                final ResourceCheck check = entry.getValue().check;
+                writer.write(String.join(SEPARATOR,
+                        Long.toString(entry.getValue().checkedAtMs),
+                        check.getMethod(),
+                        Integer.toString(check.getStatus()),
+                        Long.toString(check.getContentLength()),
+                        Long.toString(check.getLatencyMs()),
+                        clean(check.getContentType()),
+                        clean(entry.getKey())));
+                writer.newLine();
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return The value with any tabs or line breaks replaced by spaces.
+     */
+    private static String clean(String value) {
+        return value.replaceAll("[\\t\\r\\n]", " ");
+    }
+}
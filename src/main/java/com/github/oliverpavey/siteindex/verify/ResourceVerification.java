@@ -0,0 +1,133 @@
+package com.github.oliverpavey.siteindex.verify;
+
+import com.github.oliverpavey.siteindex.model.ResourceCheck;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * The verification of the resources of a single scan.
+ * <p>
+ * Resources are submitted as the pages referencing them are scanned, so verification runs alongside
+ * the crawl rather than after it. Each unique resource is checked once. At most 'concurrency' checks
+ * are in flight at a time; the rest wait in the order they were submitted.
+ * <p>
+ * Once the crawl is complete, apply() waits for the outstanding checks and records the results on
+ * the ResourceScans of the model.
+ */
+@Slf4j
+public class ResourceVerification {
+
+    static final String SCHEME_HTTP = "http://";
+    static final String SCHEME_HTTPS = "https://";
+
+    private final Function<String, CompletableFuture<ResourceCheck>> checker;
+    private final boolean enabled;
+    private final int concurrency;
+
+    private final Map<String, CompletableFuture<ResourceCheck>> checks = new ConcurrentHashMap<>();
+    private final Deque<String> waiting = new ArrayDeque<>();
+    private int inFlight;
+
+    /**
+     * Constructor.
+     *
+     * @param checker     Checks a resource.
+     * @param enabled     False to ignore the resources submitted.
+     * @param concurrency The maximum number of checks in flight.
+     */
+    ResourceVerification(Function<String, CompletableFuture<ResourceCheck>> checker, boolean enabled, int concurrency) {
+        this.checker = checker;
+        this.enabled = enabled;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Submit a resource for checking, unless it has been submitted before. Only http and https
+     * resources are checked.
+     *
+     * @param uri The URI of the resource.
+     */
+    public void submit(String uri) {
+
+        if (!enabled || !(uri.startsWith(SCHEME_HTTP) || uri.startsWith(SCHEME_HTTPS)))
+            return;
+        if (checks.putIfAbsent(uri, new CompletableFuture<>()) != null)
+            return;
+        final List<String> ready;
+        synchronized (this) {
+            waiting.addLast(uri);
+            ready = takeReady();
+        }
+        ready.forEach(this::launch);
+    }
+
+    /**
+     * Wait for every check to complete, and record the results on the resources of the model.
+     *
+     * @param siteScan The model built by the scan.
+     * @throws InterruptedException If interrupted whilst waiting.
+     */
+    public void apply(SiteScan siteScan) throws InterruptedException {
+
+        if (!enabled)
+            return;
+        int notFound = 0;
+        for (ResourceScan resourceScan : siteScan.getUriToResourceScan().values()) {
+            final CompletableFuture<ResourceCheck> check = checks.get(resourceScan.getUri());
+            if (check == null)
+                continue;
+            try {
+                resourceScan.setCheck(check.get());
+            } catch (ExecutionException e) {
+                log.warn("Problem checking resource '{}': {}", resourceScan.getUri(), e.getCause().getMessage());
+                continue;
+            }
+            if (!resourceScan.getCheck().isOk()) {
+                notFound++;
+                log.debug("Resource not found: {} ({})", resourceScan.getUri(), resourceScan.getCheck().describe());
+            }
+        }
+        log.info("Resources verified: {} ({} not found or unreachable)", checks.size(), notFound);
+    }
+
+    /**
+     * @return The resources which may start now, counted as in flight. (Call while synchronized.)
+     */
+    private List<String> takeReady() {
+        final List<String> ready = new ArrayList<>();
+        while (inFlight < concurrency && !waiting.isEmpty()) {
+            ready.add(waiting.removeFirst());
+            inFlight++;
+        }
+        return ready;
+    }
+
+    /**
+     * Start a check, and when it completes start the next waiting.
+     */
+    private void launch(String uri) {
+        checker.apply(uri).whenComplete((check, e) -> {
+            if (e != null)
+                checks.get(uri).completeExceptionally(e);
+            else
+                checks.get(uri).complete(check);
+            final List<String> ready;
+            synchronized (this) {
+                inFlight--;
+                ready = takeReady();
+            }
+            ready.forEach(this::launch);
+        });
+    }
+}
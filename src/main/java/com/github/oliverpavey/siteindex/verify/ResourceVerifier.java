@@ -0,0 +1,241 @@
+package com.github.oliverpavey.siteindex.verify;
+
+import com.github.oliverpavey.siteindex.fetch.HttpClientPageFetcher;
+import com.github.oliverpavey.siteindex.fetch.RequestUris;
+import com.github.oliverpavey.siteindex.model.ResourceCheck;
+import com.github.oliverpavey.siteindex.politeness.PolitenessScheduler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.github.oliverpavey.siteindex.tools.TextUtils.extractDomain;
+
+/**
+ * Component checking that the resources referenced by a site exist, and recording their status,
+ * size and type, without downloading them.
+ * <p>
+ * Each resource is requested with HEAD. Servers which do not allow HEAD are asked for the first byte
+ * of the resource with a ranged GET instead (and the size read from the Content-Range header).
+ * Requests share the connection pool of the page fetcher.
+ * <p>
+ * Each request waits (without holding a thread) for the politeness scheduler to allow a request to
+ * its host, so checks share the rate and in-flight limits of each host with the pages of the crawl.
+ */
+@Slf4j
+@Component
+public class ResourceVerifier {
+
+    static final String METHOD_HEAD = "HEAD";
+    static final String METHOD_GET = "GET";
+    static final String HEADER_USER_AGENT = "User-Agent";
+    static final String HEADER_RANGE = "Range";
+    static final String HEADER_CONTENT_LENGTH = "Content-Length";
+    static final String HEADER_CONTENT_RANGE = "Content-Range";
+    static final String HEADER_CONTENT_TYPE = "Content-Type";
+    static final String RANGE_FIRST_BYTE = "bytes=0-0";
+    static final int HTTP_STATUS_PARTIAL_CONTENT = 206;
+    static final int HTTP_STATUS_METHOD_NOT_ALLOWED = 405;
+    static final int HTTP_STATUS_NOT_IMPLEMENTED = 501;
+    static final long MAX_PERMIT_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Value("${siteindex.verify.enabled}")
+    private boolean enabled;
+
+    @Value("${siteindex.verify.concurrency}")
+    private int concurrency;
+
+    @Value("${siteindex.verify.timeout-ms}")
+    private long timeoutMs;
+
+    @Value("${siteindex.fetcher.user-agent}")
+    private String userAgent;
+
+    final HttpClientPageFetcher pageFetcher;
+
+    final PolitenessScheduler politenessScheduler;
+
+    /**
+     * Constructor
+     *
+     * @param pageFetcher         Provides the HTTP client shared with page retrieval.
+     * @param politenessScheduler Limits the rate of requests to each host.
+     */
+    public ResourceVerifier(HttpClientPageFetcher pageFetcher, PolitenessScheduler politenessScheduler) {
+        this.pageFetcher = pageFetcher;
+        this.politenessScheduler = politenessScheduler;
+    }
+
+    /**
+     * Start verifying the resources of a scan. (If verification is disabled, resources submitted are ignored.)
+     *
+     * @return The verification of the scan, to which resources are submitted as they are found.
+     */
+    public ResourceVerification start() {
+        return start(true);
+    }
+
+    /**
+     * Start verifying the resources of a scan, if the scan needs it. (e.g. A shard of a crawl which
+     * does not report the scan itself does not.)
+     *
+     * @param needed False to ignore the resources submitted, even if verification is enabled.
+     * @return The verification of the scan, to which resources are submitted as they are found.
+     */
+    public ResourceVerification start(boolean needed) {
+        return new ResourceVerification(this::check, enabled && needed, Math.max(1, concurrency));
+    }
+
+    /**
+     * Check a resource: HEAD, or a ranged GET if HEAD is not allowed.
+     *
+     * @param uri The URI of the resource.
+     * @return A future completing with the result. (Failures are recorded in the result, not thrown.)
+     */
+    CompletableFuture<ResourceCheck> check(String uri) {
+
+        final HttpRequest request;
+        try {
+            request = request(uri)
+                    .method(METHOD_HEAD, HttpRequest.BodyPublishers.noBody())
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(failure(METHOD_HEAD, System.nanoTime(), "Invalid URL"));
+        }
+
+        // The HEAD request's permission is released before a ranged GET waits for its own.
+        return politely(uri, () -> {
+            final long start = System.nanoTime();
+            return pageFetcher.getHttpClient().sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenApply(response -> response.statusCode() == HTTP_STATUS_METHOD_NOT_ALLOWED
+                            || response.statusCode() == HTTP_STATUS_NOT_IMPLEMENTED
+                            ? Optional.<ResourceCheck>empty()
+                            : Optional.of(result(METHOD_HEAD, response, start)))
+                    .exceptionally(e -> Optional.of(failure(METHOD_HEAD, start, message(e))));
+        }).thenCompose(check -> check.isPresent() ? CompletableFuture.completedFuture(check.get()) : rangedGet(uri));
+    }
+
+    /**
+     * Check a resource by requesting its first byte. The body is not read.
+     */
+    private CompletableFuture<ResourceCheck> rangedGet(String uri) {
+
+        final HttpRequest request = request(uri)
+                .header(HEADER_RANGE, RANGE_FIRST_BYTE)
+                .GET()
+                .build();
+        return politely(uri, () -> {
+            final long start = System.nanoTime();
+            return pageFetcher.getHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                    .thenApply(response -> {
+                        closeQuietly(response.body());
+                        return result(METHOD_GET, response, start);
+                    })
+                    .exceptionally(e -> failure(METHOD_GET, start, message(e)));
+        });
+    }
+
+    /**
+     * Make a request once the politeness scheduler allows a request to its host, and release the
+     * permission when the request completes.
+     *
+     * @param uri     The URI requested.
+     * @param request Starts the request.
+     * @return A future completing with the result of the request.
+     */
+    private <T> CompletableFuture<T> politely(String uri, Supplier<CompletableFuture<T>> request) {
+
+        final String host = extractDomain(uri);
+        return permit(host).thenCompose(ignored -> {
+            try {
+                return request.get().whenComplete((result, e) -> politenessScheduler.release(host));
+            } catch (RuntimeException e) {
+                politenessScheduler.release(host);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Wait, on a timer rather than a thread, until the politeness scheduler allows a request to a host.
+     * A host at its in-flight limit is tried again after a short interval.
+     *
+     * @param host The host.
+     * @return A future completing once a request to the host may start (counted as in flight).
+     */
+    private CompletableFuture<Void> permit(String host) {
+
+        final long waitNanos = politenessScheduler.tryAcquire(host);
+        if (waitNanos == 0)
+            return CompletableFuture.completedFuture(null);
+        final Executor later = CompletableFuture.delayedExecutor(Math.min(waitNanos, MAX_PERMIT_WAIT_NANOS),
+                TimeUnit.NANOSECONDS);
+        return CompletableFuture.supplyAsync(() -> host, later).thenCompose(this::permit);
+    }
+
+    private HttpRequest.Builder request(String uri) {
+        return HttpRequest.newBuilder(RequestUris.of(uri))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header(HEADER_USER_AGENT, userAgent);
+    }
+
+    /**
+     * Read the result of a check from the response headers.
+     */
+    static ResourceCheck result(String method, HttpResponse<?> response, long start) {
+
+        long contentLength = response.headers().firstValue(HEADER_CONTENT_LENGTH)
+                .map(ResourceVerifier::parseLength)
+                .orElse(-1L);
+        if (response.statusCode() == HTTP_STATUS_PARTIAL_CONTENT) {
+            // e.g. 'bytes 0-0/10240' (or 'bytes 0-0/*' when the size is not known)
+            contentLength = response.headers().firstValue(HEADER_CONTENT_RANGE)
+                    .map(range -> parseLength(range.substring(range.lastIndexOf('/') + 1)))
+                    .orElse(-1L);
+        }
+        final String contentType = response.headers().firstValue(HEADER_CONTENT_TYPE)
+                .map(type -> type.split(";")[0].trim())
+                .orElse("");
+        return new ResourceCheck(method, response.statusCode(), contentLength, contentType, elapsedMs(start), "");
+    }
+
+    private static ResourceCheck failure(String method, long start, String error) {
+        return new ResourceCheck(method, 0, -1, "", elapsedMs(start), error);
+    }
+
+    private static long parseLength(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private static long elapsedMs(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static String message(Throwable e) {
+        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            log.debug("Problem closing response body: {}", e.getMessage());
+        }
+    }
+}
@@ -4,18 +4,23 @@ import com.github.oliverpavey.siteindex.scanner.SiteScanner;
 import com.github.oliverpavey.siteindex.testutils.TestsiteServer;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.thymeleaf.TemplateEngine;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @Slf4j
 @ActiveProfiles("test")
-@SpringBootTest
+@SpringBootTest(properties = "siteindex.politeness.max-in-flight-per-host=1")
 class SiteindexAutorunTest {
 
     @Autowired
@@ -24,6 +29,9 @@ class SiteindexAutorunTest {
     @Autowired
     TemplateEngine templateEngine;
 
+    @TempDir
+    Path outputDir;
+
     /**
      * Execute the scan against the tests website, and process the model through Thymeleaf,
      * checking that the response looks like an XHTML document.
@@ -46,4 +54,53 @@ class SiteindexAutorunTest {
             assertTrue(xhtml.startsWith("<!DOCTYPE html>"), "XHTML not generated by template");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Run a batch of two scans against the test website (one of them failing), checking the summary
+     * reports both and the report of the successful scan is written.
+     *
+     * @throws IOException Any exception writing the batch file or the reports.
+     */
+    @Test
+    void batchTest() throws IOException {
+
+        try (final TestsiteServer server = new TestsiteServer()) {
+            final Path batchFile = outputDir.resolve("sites.txt");
+            final Path report = outputDir.resolve("testsite.html");
+            Files.writeString(batchFile, "# test sites\n"
+                    + server.getBaseUrl() + "index.html " + report + "\n"
+                    + server.getBaseUrl() + "missing.html " + outputDir.resolve("missing.html") + "\n");
+
+            final SiteindexAutorun siteindexAutorun = new SiteindexAutorun(siteScanner, templateEngine);
+            final String summary = siteindexAutorun.runBatch(batchFile.toString());
+            log.debug("{}", summary);
+
+            assertTrue(summary.startsWith("Batch completed: 2 sites (1 scanned, 1 failed)"), summary);
+            assertTrue(Files.readString(report).startsWith("<!DOCTYPE html>"), "Report not written");
+        }
+    }
+
+    /**
+     * Run a batch of two scans of the same host at once, which share the host's in-flight limit (of one
+     * request), checking neither waits forever for the other to release the host.
+     *
+     * @throws IOException Any exception writing the batch file or the reports.
+     */
+    @Test
+    @Timeout(60)
+    void batchSameHostTest() throws IOException {
+
+        try (final TestsiteServer server = new TestsiteServer()) {
+            final Path batchFile = outputDir.resolve("same-host.txt");
+            Files.writeString(batchFile, server.getBaseUrl() + "index.html " + outputDir.resolve("index.html") + "\n"
+                    + server.getBaseUrl() + "about.html " + outputDir.resolve("about.html") + "\n");
+
+            final SiteindexAutorun siteindexAutorun = new SiteindexAutorun(siteScanner, templateEngine);
+            ReflectionTestUtils.setField(siteindexAutorun, "concurrentSites", 2);
+            final String summary = siteindexAutorun.runBatch(batchFile.toString());
+            log.debug("{}", summary);
+
+            assertTrue(summary.startsWith("Batch completed: 2 sites (2 scanned, 0 failed)"), summary);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.oliverpavey.siteindex.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchEntryTest {
+
+    /**
+     * Check the sites of a batch file are read in order, skipping blank lines and comments.
+     */
+    @Test
+    void read() throws IOException {
+
+        final String batchFile = "# homepage  report  snapshot\n"
+                + "http://one.com/   one.html   one.snapshot\n"
+                + "\n"
+                + "  http://two.com/index.html\ttwo.html  \n";
+
+        final List<BatchEntry> entries = BatchEntry.read(new BufferedReader(new StringReader(batchFile)));
+        assertEquals(List.of(
+                new BatchEntry("http://one.com/", "one.html", "one.snapshot"),
+                new BatchEntry("http://two.com/index.html", "two.html", null)), entries);
+    }
+
+    /**
+     * Check a line without an output file is reported with its line number.
+     */
+    @Test
+    void missingOutputFile() {
+
+        final IOException e = assertThrows(IOException.class,
+                () -> BatchEntry.read(new BufferedReader(new StringReader("http://one.com/ one.html\nhttp://two.com/\n"))));
+        assertTrue(e.getMessage().contains("line 2"), e.getMessage());
+    }
+}
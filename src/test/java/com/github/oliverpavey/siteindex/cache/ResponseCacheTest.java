@@ -0,0 +1,80 @@
+package com.github.oliverpavey.siteindex.cache;
+
+import com.github.oliverpavey.siteindex.dedup.PageFingerprint;
+import com.github.oliverpavey.siteindex.model.PageContent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    static final PageFingerprint FINGERPRINT = new PageFingerprint("0123456789abcdef", true, 0x5A5AL);
+
+    @TempDir
+    Path cacheDir;
+
+    /**
+     * Check a cached page is read back with its validators, content and fingerprint.
+     */
+    @Test
+    void putAndGet() {
+
+        final ResponseCache cache = createCache(1_000_000);
+        cache.put(cachedPage("http://sitename.com/index.html"));
+
+        final Optional<CachedPage> cached = cache.get("http://sitename.com/index.html");
+        assertTrue(cached.isPresent(), "Page not cached");
+        assertAll(
+                () -> assertEquals("\"v1\"", cached.get().getEtag()),
+                () -> assertEquals("Home", cached.get().getContent().getTitle()),
+                () -> assertEquals("http://sitename.com/about.html", cached.get().getContent().getLinks().get(0)),
+                () -> assertEquals("http://sitename.com/logo.svg", cached.get().getContent().getResources().get(0)),
+                () -> assertEquals(FINGERPRINT, cached.get().getFingerprint()),
+                () -> assertFalse(cache.get("http://sitename.com/about.html").isPresent())
+        );
+    }
+
+    /**
+     * Check the least recently used page is evicted when the cache is full.
+     */
+    @Test
+    void evictsLeastRecentlyUsed() {
+
+        final ResponseCache cache = createCache(400);
+        cache.put(cachedPage("http://sitename.com/a.html"));
+        cache.put(cachedPage("http://sitename.com/b.html"));
+        cache.get("http://sitename.com/a.html");
+        cache.put(cachedPage("http://sitename.com/c.html"));
+
+        assertAll(
+                () -> assertTrue(cache.get("http://sitename.com/a.html").isPresent(), "Recently used page evicted"),
+                () -> assertFalse(cache.get("http://sitename.com/b.html").isPresent(), "Least recently used page kept"),
+                () -> assertTrue(cache.get("http://sitename.com/c.html").isPresent(), "Newest page evicted")
+        );
+    }
+
+    private ResponseCache createCache(long maxBytes) {
+
+        final ResponseCache cache = new ResponseCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "cacheDir", cacheDir.toString());
+        ReflectionTestUtils.setField(cache, "maxBytes", maxBytes);
+        cache.init();
+        return cache;
+    }
+
+    private CachedPage cachedPage(String url) {
+
+        final PageContent content = new PageContent();
+        content.setTitle("Home");
+        content.getLinks().add("http://sitename.com/about.html");
+        content.getExternalLinks().add("https://example.com/");
+        content.getResources().add("http://sitename.com/logo.svg");
+        return new CachedPage(url, "\"v1\"", "", content, FINGERPRINT);
+    }
+}
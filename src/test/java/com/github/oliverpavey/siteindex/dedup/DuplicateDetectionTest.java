@@ -0,0 +1,157 @@
+package com.github.oliverpavey.siteindex.dedup;
+
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateDetectionTest {
+
+    static final String SITE = "http://sitename.com/";
+
+    /**
+     * Check pages with the same body are duplicates of the first, and are recorded as one cluster.
+     */
+    @Test
+    void exactDuplicates() {
+
+        final DuplicateDetection detection = new DuplicateDetection(true, false, 3);
+        final byte[] body = page("Home", article(1), "").getBytes(StandardCharsets.UTF_8);
+
+        assertAll(
+                () -> assertEquals(Optional.empty(), detection.register(SITE, body, null)),
+                () -> assertEquals(Optional.of(SITE), detection.register(SITE + "index.html", body, null)),
+                () -> assertEquals(Optional.of(SITE), detection.register(SITE + "?utm_source=mail", body, "UTF-8")),
+                () -> assertEquals(Optional.empty(), detection.register(SITE + "about.html",
+                        page("About", article(2), "").getBytes(StandardCharsets.UTF_8), null))
+        );
+
+        final SiteScan siteScan = new SiteScan();
+        detection.apply(siteScan);
+        assertEquals(Set.of(SITE), siteScan.getDuplicateClusters().keySet());
+        assertEquals(List.of(SITE + "?utm_source=mail", SITE + "index.html"),
+                List.copyOf(siteScan.getDuplicateClusters().get(SITE)));
+    }
+
+    /**
+     * Check pages with the same text in different markup are near duplicates, when they are detected.
+     */
+    @Test
+    void nearDuplicates() {
+
+        final byte[] page = page("News", article(3), "<a href=\"/news.html\">").getBytes(StandardCharsets.UTF_8);
+        final byte[] printView = page("News", article(3), "<script>print();</script>").getBytes(StandardCharsets.UTF_8);
+        final byte[] otherPage = page("Events", article(4), "").getBytes(StandardCharsets.UTF_8);
+        final byte[] shortPage = page("Short", "A few words", "").getBytes(StandardCharsets.UTF_8);
+        final byte[] shortPrintView = page("Short", "A few words", "<hr/>").getBytes(StandardCharsets.UTF_8);
+
+        final DuplicateDetection exactOnly = new DuplicateDetection(true, false, 3);
+        exactOnly.register(SITE + "news.html", page, null);
+        assertEquals(Optional.empty(), exactOnly.register(SITE + "news.html?print", printView, null));
+
+        final DuplicateDetection detection = new DuplicateDetection(true, true, 3);
+        assertAll(
+                () -> assertEquals(Optional.empty(), detection.register(SITE + "news.html", page, null)),
+                () -> assertEquals(Optional.of(SITE + "news.html"), detection.register(SITE + "news.html?print", printView, null)),
+                () -> assertEquals(Optional.of(SITE + "news.html"), detection.register(SITE + "print/news.html", printView, null)),
+                () -> assertEquals(Optional.empty(), detection.register(SITE + "events.html", otherPage, null)),
+                () -> assertEquals(Optional.empty(), detection.register(SITE + "short.html", shortPage, null)),
+                () -> assertEquals(Optional.empty(), detection.register(SITE + "short.html?print", shortPrintView, null),
+                        "Too few words for a SimHash.")
+        );
+    }
+
+    /**
+     * Check a page registered by a fingerprint kept from an earlier scan (as for a page which has not
+     * been modified) is compared with the pages retrieved.
+     */
+    @Test
+    void cachedFingerprints() {
+
+        final byte[] page = page("News", article(5), "").getBytes(StandardCharsets.UTF_8);
+        final byte[] printView = page("News", article(5), "<hr/>").getBytes(StandardCharsets.UTF_8);
+        final PageFingerprint cached = new DuplicateDetection(true, true, 3).fingerprint(page, null);
+
+        final DuplicateDetection detection = new DuplicateDetection(true, true, 3);
+        assertAll(
+                () -> assertEquals(Optional.empty(), detection.register(SITE + "news.html", cached)),
+                () -> assertEquals(Optional.of(SITE + "news.html"), detection.register(SITE + "news.html?utm_source=mail", page, null)),
+                () -> assertEquals(Optional.of(SITE + "news.html"), detection.register(SITE + "news.html?print", printView, null)),
+                () -> assertEquals(Optional.empty(), detection.register(SITE + "old.html", PageFingerprint.NONE)),
+                () -> assertEquals(PageFingerprint.NONE, new DuplicateDetection(false, true, 3).fingerprint(page, null))
+        );
+    }
+
+    /**
+     * Check pages restored from an earlier crawl, in any order, are compared with the pages retrieved
+     * after it is resumed, and their duplicates are still recorded.
+     */
+    @Test
+    void restore() {
+
+        final byte[] page = page("News", article(6), "").getBytes(StandardCharsets.UTF_8);
+        final byte[] printView = page("News", article(6), "<hr/>").getBytes(StandardCharsets.UTF_8);
+        final DuplicateDetection earlier = new DuplicateDetection(true, true, 3);
+        final PageFingerprint pageFingerprint = earlier.fingerprint(page, null);
+        final PageFingerprint printFingerprint = earlier.fingerprint(printView, null);
+
+        final DuplicateDetection detection = new DuplicateDetection(true, true, 3);
+        detection.restore(SITE + "news.html?print", printFingerprint, SITE + "news.html");
+        detection.restore(SITE + "news.html", pageFingerprint, "");
+        assertAll(
+                () -> assertEquals(Optional.of(SITE + "news.html"), detection.register(SITE + "news.html?utm_source=mail", page, null)),
+                () -> assertEquals(Optional.of(SITE + "news.html"), detection.register(SITE + "news.html?print&a=1", printView, null))
+        );
+
+        final SiteScan siteScan = new SiteScan();
+        detection.apply(siteScan);
+        assertEquals(List.of(SITE + "news.html?print", SITE + "news.html?print&a=1", SITE + "news.html?utm_source=mail"),
+                List.copyOf(siteScan.getDuplicateClusters().get(SITE + "news.html")));
+    }
+
+    /**
+     * Check the SimHash index finds SimHashes within the maximum distance, wherever the differing bits are.
+     */
+    @Test
+    void simHashIndex() {
+
+        final SimHashIndex<String> index = new SimHashIndex<>(3);
+        index.add(0x0123456789abcdefL, "a");
+        index.add(0xfedcba9876543210L, "b");
+
+        assertAll(
+                () -> assertEquals(Optional.of("a"), index.find(0x0123456789abcdefL)),
+                () -> assertEquals(Optional.of("a"), index.find(0x0123456789abcdefL ^ 0x8000000100000001L)),
+                () -> assertEquals(Optional.of("b"), index.find(0xfedcba9876543210L ^ 0x0000000000000007L)),
+                () -> assertEquals(Optional.empty(), index.find(0x0123456789abcdefL ^ 0x8000800080008000L)),
+                () -> assertThrows(IllegalArgumentException.class, () -> new SimHashIndex<String>(64))
+        );
+    }
+
+    /**
+     * Check the words of a page are read from its text, without its markup, scripts or styles.
+     */
+    @Test
+    void words() {
+
+        assertEquals(List.of("hello", "world", "again"), ContentFingerprint.words(
+                "<p class=\"x\">Hello, <b>World</b></p><script>var a = '<p>';</script><STYLE>p {}</STYLE> again"));
+    }
+
+    private static String page(String title, String text, String markup) {
+        return "<html><head><title>" + title + "</title></head><body>" + markup + "<p>" + text + "</p></body></html>";
+    }
+
+    private static String article(int seed) {
+        return IntStream.range(0, 60)
+                .mapToObj(i -> "word" + (i * seed % 97))
+                .collect(Collectors.joining(" "));
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.oliverpavey.siteindex.export;
+
+import com.github.oliverpavey.siteindex.model.PageContent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageExportTest {
+
+    static final String SITE = "http://sitename.com/";
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Check each record is written as a line of JSON, with its strings escaped.
+     */
+    @Test
+    void ndjson() throws IOException {
+
+        final Path file = tempDir.resolve("pages.ndjson");
+        final ExportWriter writer = new ExportWriter(file, 2, 1000);
+        writer.start(false, null);
+        final PageExport export = new PageExport(writer, false);
+        export.page(scanned());
+        export.page(failed());
+        writer.close();
+
+        assertEquals(List.of(
+                "{\"site\":\"http://sitename.com/\",\"uri\":\"http://sitename.com/about.html\",\"outcome\":\"scanned\","
+                        + "\"status\":200,\"depth\":1,\"title\":\"About \\\"us\\\", \\\\ more\\n\",\"fetchMs\":12,"
+                        + "\"processMs\":3,\"links\":[\"http://sitename.com/\",\"http://sitename.com/a,b.html\"],"
+                        + "\"externalLinks\":[],\"resources\":[\"http://sitename.com/logo.png\"],\"duplicateOf\":null}",
+                "{\"site\":\"http://sitename.com/\",\"uri\":\"http://sitename.com/gone.html\",\"outcome\":\"failed\","
+                        + "\"status\":0,\"depth\":2,\"title\":\"\",\"fetchMs\":0,\"processMs\":0,\"links\":[],"
+                        + "\"externalLinks\":[],\"resources\":[],\"duplicateOf\":null}"
+        ), Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Check records are written as CSV rows, under a header which is only written to an empty file.
+     */
+    @Test
+    void csv() throws IOException {
+
+        final Path file = tempDir.resolve("pages.csv");
+        for (int run = 0; run < 2; run++) {
+            final ExportWriter writer = new ExportWriter(file, 2, 1000);
+            writer.start(run > 0, ExportedPage.CSV_HEADER);
+            final PageExport export = new PageExport(writer, true);
+            export.page(run == 0 ? scanned() : failed());
+            writer.close();
+        }
+
+        assertEquals(List.of(
+                ExportedPage.CSV_HEADER,
+                "http://sitename.com/,http://sitename.com/about.html,scanned,200,1,\"About \"\"us\"\", \\ more",
+                "\",12,3,\"http://sitename.com/ http://sitename.com/a,b.html\",,http://sitename.com/logo.png,",
+                "http://sitename.com/,http://sitename.com/gone.html,failed,0,2,,0,0,,,,"
+        ), Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Check more records than the queue holds are all written, in order, while the writer runs.
+     */
+    @Test
+    void queueFull() throws IOException {
+
+        final Path file = tempDir.resolve("pages.ndjson");
+        final ExportWriter writer = new ExportWriter(file, 2, 1000);
+        writer.start(false, null);
+        final PageExport export = new PageExport(writer, false);
+        for (int i = 0; i < 100; i++)
+            export.page(new ExportedPage(SITE, SITE + i, 1));
+        writer.close();
+
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(100, lines.size());
+        assertTrue(lines.get(99).contains("\"uri\":\"http://sitename.com/99\""));
+    }
+
+    private static ExportedPage scanned() {
+
+        final PageContent content = new PageContent();
+        content.setTitle("About \"us\", \\ more\n");
+        content.getLinks().addAll(List.of(SITE, SITE + "a,b.html"));
+        content.getResources().add(SITE + "logo.png");
+        final ExportedPage page = new ExportedPage(SITE, SITE + "about.html", 1);
+        page.setOutcome(ExportedPage.OUTCOME_SCANNED);
+        page.setStatus(200);
+        page.setFetchMs(12);
+        page.setProcessMs(3);
+        page.setContent(content);
+        return page;
+    }
+
+    private static ExportedPage failed() {
+
+        final ExportedPage page = new ExportedPage(SITE, SITE + "gone.html", 2);
+        page.setOutcome(ExportedPage.OUTCOME_FAILED);
+        return page;
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.oliverpavey.siteindex.fetch;
+
+import com.github.oliverpavey.siteindex.testutils.TestsiteServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpClientPageFetcherTest {
+
+    /**
+     * Check links with characters which may not appear in a URI are encoded, rather than rejected.
+     */
+    @Test
+    void encodesUrls() throws IOException {
+
+        assertAll(
+                () -> assertEquals("http://sitename.com/a%20b.html?q=x%7Cy%7B%7D&r=%C3%A9%20%25",
+                        RequestUris.encode("http://sitename.com/a b.html?q=x|y{}&r=\u00e9 %")),
+                () -> assertEquals("http://sitename.com/a%20b.html?q=%7C#top%23",
+                        RequestUris.encode("http://sitename.com/a%20b.html?q=%7C#top#")),
+                () -> assertEquals("http://xn--caf-dma.com:8080/menu", RequestUris.encode("http://caf\u00e9.com:8080/menu")),
+                () -> assertSame("http://sitename.com/index.html", RequestUris.encode("http://sitename.com/index.html"))
+        );
+
+        try (final TestsiteServer server = new TestsiteServer()) {
+            final HttpClientPageFetcher pageFetcher = createFetcher(2_000_000);
+            assertAll(
+                    () -> assertEquals(200, pageFetcher.fetchPage(server.getBaseUrl() + "index.html?q=a b|{c}\u00e9", Map.of()).getStatus()),
+                    () -> assertEquals(404, pageFetcher.fetchPage(server.getBaseUrl() + "about us.html", Map.of()).getStatus())
+            );
+        }
+    }
+
+    /**
+     * Check the body of a link which is not a page is not read, and a long page is cut off.
+     */
+    @Test
+    void pageBodies() throws IOException {
+
+        try (final TestsiteServer server = new TestsiteServer()) {
+            final HttpClientPageFetcher pageFetcher = createFetcher(100);
+            final FetchResult image = pageFetcher.fetchPage(server.getBaseUrl() + "images/teddy.jpg", Map.of());
+            final FetchResult page = pageFetcher.fetchPage(server.getBaseUrl() + "index.html", Map.of());
+            final FetchResult missing = pageFetcher.fetchPage(server.getBaseUrl() + "missing.html", Map.of());
+            assertAll(
+                    () -> assertEquals(200, image.getStatus()),
+                    () -> assertFalse(image.isPage()),
+                    () -> assertEquals(0, image.getBody().length),
+                    () -> assertEquals(100, page.getBody().length),
+                    () -> assertEquals(404, missing.getStatus()),
+                    () -> assertEquals(0, missing.getBody().length),
+                    () -> assertEquals(211576, pageFetcher.fetch(server.getBaseUrl() + "images/teddy.jpg").getBody().length)
+            );
+        }
+    }
+
+    private static HttpClientPageFetcher createFetcher(int maxBodyBytes) {
+
+        final HttpClientPageFetcher pageFetcher = new HttpClientPageFetcher();
+        ReflectionTestUtils.setField(pageFetcher, "connectTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(pageFetcher, "readTimeoutMs", 30000L);
+        ReflectionTestUtils.setField(pageFetcher, "poolSize", 4);
+        ReflectionTestUtils.setField(pageFetcher, "userAgent", "siteindex");
+        ReflectionTestUtils.setField(pageFetcher, "maxBodyBytes", maxBodyBytes);
+        pageFetcher.init();
+        return pageFetcher;
+    }
+}
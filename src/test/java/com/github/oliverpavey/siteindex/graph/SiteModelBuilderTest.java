@@ -0,0 +1,173 @@
+package com.github.oliverpavey.siteindex.graph;
+
+import com.github.oliverpavey.siteindex.model.PageContent;
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SiteModelBuilderTest {
+
+    static final String SITE = "http://sitename.com/";
+
+    @TempDir
+    Path spillDir;
+
+    /**
+     * Check the tree builder resolves links, counts references and corrects depths.
+     */
+    @Test
+    void treeModel() {
+
+        checkModel(build(new TreeSiteModelBuilder()));
+    }
+
+    /**
+     * Check the compact builder gives the same model as the tree builder, through its views.
+     */
+    @Test
+    void compactModel() {
+
+        final SiteScan siteScan = build(new CompactSiteModelBuilder());
+        checkModel(siteScan);
+        assertTrue(siteScan.getHomepage() instanceof CompactPageScan);
+        assertThrows(UnsupportedOperationException.class, () -> siteScan.getHomepage().setDepth(3));
+    }
+
+    /**
+     * Check the spilling builder gives the same model as the tree builder, with every page spilled
+     * to its own run, and reads the pages back from disk in URI order.
+     */
+    @Test
+    void spillModel() throws IOException {
+
+        final SiteScan siteScan = build(new SpillingSiteModelBuilder(spillDir, 1, 0));
+        checkModel(siteScan);
+        assertTrue(siteScan.getUriToPageScan() instanceof SpilledPageMap);
+        assertNull(siteScan.getUriToPageScan().get(SITE + "missing.html"));
+        try (var scanDirs = Files.list(spillDir)) {
+            final Path scanDir = scanDirs.findFirst().orElseThrow();
+            try (var files = Files.list(scanDir)) {
+                assertEquals(List.of(scanDir.resolve(SpillingSiteModelBuilder.PAGES_FILE)),
+                        files.collect(Collectors.toList()), "Runs deleted once merged.");
+            }
+        }
+    }
+
+    /**
+     * Check strings longer than 64 KB (e.g. an inline image) are spilled and read back.
+     */
+    @Test
+    void spillLongStrings() {
+
+        final String title = "Title ".repeat(20_000);
+        final PageContent content = new PageContent();
+        content.setTitle(title);
+        content.getResources().add("data:image/png;base64," + "iVBORw0KGgo".repeat(10_000));
+        final SpillingSiteModelBuilder builder = new SpillingSiteModelBuilder(spillDir, 1, 0);
+        builder.addPage(SITE + "index.html", 0, content);
+        final SiteScan siteScan = builder.build(SITE, SITE + "index.html");
+
+        assertAll(
+                () -> assertEquals(title, siteScan.getHomepage().getTitle()),
+                () -> assertEquals(content.getResources().get(0),
+                        siteScan.getHomepage().getResources().iterator().next().getUri())
+        );
+    }
+
+    /**
+     * Check pages, external links and resources of the compact graph are numbered in URI order.
+     */
+    @Test
+    void compactGraphOrder() {
+
+        final CompactSiteModelBuilder builder = new CompactSiteModelBuilder();
+        addPages(builder);
+        final CompactLinkGraph graph = builder.freeze(SITE + "index.html");
+
+        assertAll(
+                () -> assertEquals(4, graph.pageCount()),
+                () -> assertEquals(SITE + "about.html", graph.pageUri(0)),
+                () -> assertEquals(SITE + "index.html", graph.pageUri(graph.getHomepageId())),
+                () -> assertEquals(-1, graph.pageId(SITE + "missing.html")),
+                () -> assertArrayEquals(new String[]{"https://a.example.com/", "https://b.example.com/"},
+                        graph.externalLinks(graph.getHomepageId())),
+                () -> assertEquals(2, graph.externalLinkCount()),
+                () -> assertEquals(SITE + "logo.svg", graph.resource(0).getUri())
+        );
+    }
+
+    private SiteScan build(SiteModelBuilder builder) {
+
+        addPages(builder);
+        assertTrue(builder.hasPage(SITE + "index.html"));
+        assertFalse(builder.hasPage(SITE + "missing.html"));
+        assertEquals(4, builder.pageCount());
+        return builder.build(SITE, SITE + "index.html");
+    }
+
+    private void addPages(SiteModelBuilder builder) {
+
+        // deep.html was queued at depth 3 by a slow route, but is linked from the homepage.
+        builder.addPage(SITE + "index.html", 0, content("Home",
+                List.of("about.html", "contact.html", "deep.html", "missing.html", "about.html"),
+                List.of("https://b.example.com/", "https://a.example.com/"),
+                List.of("logo.svg", "style.css")));
+        builder.addPage(SITE + "about.html", 1, content("About",
+                List.of("index.html", "contact.html"),
+                List.of("https://a.example.com/"),
+                List.of("logo.svg", "logo.svg")));
+        builder.addPage(SITE + "contact.html", 1, content("Contact",
+                List.of(), List.of(), List.of()));
+        builder.addPage(SITE + "deep.html", 3, content("Deep",
+                List.of("index.html"), List.of(), List.of()));
+    }
+
+    private void checkModel(SiteScan siteScan) {
+
+        final PageScan index = siteScan.getUriToPageScan().get(SITE + "index.html");
+        final PageScan contact = siteScan.getUriToPageScan().get(SITE + "contact.html");
+        final List<String> pageUris = siteScan.getUriToPageScan().values().stream()
+                .map(PageScan::getUri)
+                .collect(Collectors.toUnmodifiableList());
+        final List<String> indexLinks = index.getLinks().stream()
+                .map(PageScan::getUri)
+                .collect(Collectors.toUnmodifiableList());
+        final ResourceScan logo = siteScan.getUriToResourceScan().get(SITE + "logo.svg");
+
+        assertAll(
+                () -> assertEquals(SITE, siteScan.getDomain()),
+                () -> assertEquals(SITE + "index.html", siteScan.getHomepage().getUri()),
+                () -> assertEquals("Home", index.getTitle()),
+                () -> assertEquals(List.of(SITE + "about.html", SITE + "contact.html", SITE + "deep.html",
+                        SITE + "index.html"), pageUris),
+                () -> assertEquals(List.of(SITE + "about.html", SITE + "contact.html", SITE + "deep.html"),
+                        indexLinks),
+                () -> assertEquals(2, index.getExternalLinks().size()),
+                () -> assertEquals(2, index.getReferences(), "Homepage references."),
+                () -> assertEquals(2, contact.getReferences(), "Contact page references."),
+                () -> assertEquals(1, siteScan.getUriToPageScan().get(SITE + "deep.html").getDepth(), "Corrected depth."),
+                () -> assertEquals(2, siteScan.getUriToResourceScan().size()),
+                () -> assertEquals(3, logo.getReferences(), "Logo references.")
+        );
+    }
+
+    private PageContent content(String title, List<String> links, List<String> externalLinks, List<String> resources) {
+
+        final PageContent content = new PageContent();
+        content.setTitle(title);
+        links.forEach(link -> content.getLinks().add(SITE + link));
+        content.getExternalLinks().addAll(externalLinks);
+        resources.forEach(resource -> content.getResources().add(SITE + resource));
+        return content;
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.oliverpavey.siteindex.journal;
+
+import com.github.oliverpavey.siteindex.dedup.PageFingerprint;
+import com.github.oliverpavey.siteindex.model.PageContent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlJournalTest {
+
+    static final String SITE = "http://sitename.com/";
+
+    @TempDir
+    Path journalDir;
+
+    /**
+     * Check the state of a crawl which was stopped is recovered when it is resumed.
+     */
+    @Test
+    void resume() {
+
+        final CrawlJournal journal = createFactory(0).create(SITE + "index.html", false);
+        journal.queued(SITE + "index.html", 0);
+        journal.pageScanned(SITE + "index.html", 0, content("Home", SITE + "about.html", SITE + "missing.html"));
+        journal.queued(SITE + "about.html", 1);
+        journal.queued(SITE + "missing.html", 1);
+        journal.queued(SITE + "contact.html", 1);
+        journal.unreadable(SITE + "missing.html");
+        journal.pageScanned(SITE + "about.html", 1, content("About", SITE + "index.html"));
+        journal.disallowed(SITE + "private.html");
+        journal.close();
+
+        final CrawlJournal resumed = createFactory(0).create(SITE + "index.html", true);
+        resumed.close();
+        assertTrue(resumed.getRecovered().isPresent(), "State not recovered");
+        final CrawlState state = resumed.getRecovered().get();
+        assertAll(
+                () -> assertEquals(2, state.getPages().size()),
+                () -> assertEquals("About", state.getPages().stream().skip(1).findFirst().orElseThrow().getContent().getTitle()),
+                () -> assertEquals(List.of(SITE + "about.html", SITE + "missing.html"),
+                        state.getPages().iterator().next().getContent().getLinks()),
+                () -> assertEquals(Map.of(SITE + "contact.html", 1), state.getPending()),
+                () -> assertEquals(List.of(SITE + "missing.html"), List.copyOf(state.getUnreadable())),
+                () -> assertEquals(List.of(SITE + "private.html"), List.copyOf(state.getDisallowed()))
+        );
+    }
+
+    /**
+     * Check the fingerprints of the pages scanned, and the pages found to be duplicates, are recovered.
+     */
+    @Test
+    void duplicates() {
+
+        final PageFingerprint fingerprint = new PageFingerprint("a1b2", true, 0x0123456789abcdefL);
+        final PageFingerprint duplicateFingerprint = new PageFingerprint("c3d4", true, 0x0123456789abcdeeL);
+        final CrawlJournal journal = createFactory(0).create(SITE + "index.html", false);
+        journal.pageScanned(SITE + "index.html", 0, content("Home"), fingerprint);
+        journal.duplicateScanned(SITE + "index.html?print", 1, duplicateFingerprint, SITE + "index.html");
+        journal.close();
+
+        final CrawlState state = createFactory(0).create(SITE + "index.html", true).getRecovered().orElseThrow();
+        final List<ScannedPage> pages = List.copyOf(state.getPages());
+        assertAll(
+                () -> assertEquals("a1b2", pages.get(0).getFingerprint().getExact()),
+                () -> assertEquals(0x0123456789abcdefL, pages.get(0).getFingerprint().getSimHash()),
+                () -> assertFalse(pages.get(0).isDuplicate()),
+                () -> assertEquals(SITE + "index.html", pages.get(1).getDuplicateOf()),
+                () -> assertEquals("c3d4", pages.get(1).getFingerprint().getExact()),
+                () -> assertTrue(pages.get(1).getFingerprint().isSimHashed())
+        );
+    }
+
+    /**
+     * Check a URL found beyond the maximum depth, then queued from a shallower page, is not recovered as too deep.
+     */
+    @Test
+    void tooDeepFoundAgain() {
+
+        final CrawlJournal journal = createFactory(0).create(SITE + "index.html", false);
+        journal.queued(SITE + "index.html", 0);
+        journal.tooDeep(SITE + "deep.html");
+        journal.tooDeep(SITE + "deeper.html");
+        journal.queued(SITE + "deep.html", 1);
+        journal.tooDeep(SITE + "deep.html");
+        journal.close();
+
+        final CrawlState state = createFactory(0).create(SITE + "index.html", true).getRecovered().orElseThrow();
+        assertAll(
+                () -> assertEquals(List.of(SITE + "deeper.html"), List.copyOf(state.getTooDeep())),
+                () -> assertEquals(Map.of(SITE + "index.html", 0, SITE + "deep.html", 1), state.getPending())
+        );
+    }
+
+    /**
+     * Check the journal is compacted into a checkpoint, and a record cut short by a crash is ignored.
+     */
+    @Test
+    void checkpointAndTornRecord() throws IOException, InterruptedException {
+
+        final CrawlJournal journal = createFactory(1).create(SITE + "index.html", false);
+        journal.queued(SITE + "index.html", 0);
+        journal.pageScanned(SITE + "index.html", 0, content("Home", SITE + "about.html"));
+        Thread.sleep(200); // a checkpoint is written
+        journal.queued(SITE + "about.html", 1);
+        journal.close();
+
+        try (var files = Files.list(journalDir)) {
+            final Path journalFile = files.filter(file -> file.toString().endsWith(CrawlJournalFactory.JOURNAL_SUFFIX))
+                    .findFirst().orElseThrow();
+            Files.write(journalFile, new byte[]{JournalRecord.TYPE_QUEUED, 0, 42, 'h'}, StandardOpenOption.APPEND);
+        }
+
+        final CrawlState state = createFactory(0).create(SITE + "index.html", true).getRecovered().orElseThrow();
+        assertAll(
+                () -> assertEquals(1, state.getPages().size()),
+                () -> assertEquals(Map.of(SITE + "about.html", 1), state.getPending())
+        );
+    }
+
+    /**
+     * Check a page with a title and a resource of more than 64 KB is journaled, along with the pages after it.
+     */
+    @Test
+    void longStrings() {
+
+        final String title = "Title ".repeat(20_000);
+        final String resource = "data:image/png;base64," + "A".repeat(100_000);
+        final PageContent content = content(title, SITE + "about.html");
+        content.getResources().add(resource);
+
+        final CrawlJournal journal = createFactory(0).create(SITE + "index.html", false);
+        journal.queued(SITE + "index.html", 0);
+        journal.pageScanned(SITE + "index.html", 0, content);
+        journal.queued(SITE + "about.html", 1);
+        journal.close();
+
+        final CrawlState state = createFactory(0).create(SITE + "index.html", true).getRecovered().orElseThrow();
+        assertAll(
+                () -> assertEquals(title, state.getPages().iterator().next().getContent().getTitle()),
+                () -> assertEquals(List.of(resource), state.getPages().iterator().next().getContent().getResources()),
+                () -> assertEquals(Map.of(SITE + "about.html", 1), state.getPending())
+        );
+    }
+
+    /**
+     * Check the journal is deleted once the crawl is complete, so there is nothing to resume.
+     */
+    @Test
+    void discard() {
+
+        final CrawlJournal journal = createFactory(0).create(SITE + "index.html", false);
+        journal.queued(SITE + "index.html", 0);
+        journal.discard();
+
+        final CrawlJournal resumed = createFactory(0).create(SITE + "index.html", true);
+        resumed.close();
+        assertFalse(resumed.getRecovered().isPresent(), "Completed crawl resumed");
+    }
+
+    private CrawlJournalFactory createFactory(long checkpointIntervalMs) {
+
+        final CrawlJournalFactory factory = new CrawlJournalFactory();
+        ReflectionTestUtils.setField(factory, "enabled", true);
+        ReflectionTestUtils.setField(factory, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(factory, "flushIntervalMs", 10L);
+        ReflectionTestUtils.setField(factory, "checkpointIntervalMs", checkpointIntervalMs);
+        return factory;
+    }
+
+    private static PageContent content(String title, String... links) {
+        final PageContent content = new PageContent();
+        content.setTitle(title);
+        content.getLinks().addAll(List.of(links));
+        return content;
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.oliverpavey.siteindex.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlMetricsTest {
+
+    static final String SITE = "http://sitename.com/";
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Check the pages, bytes and frontier recorded during a scan are reported in a progress sample.
+     */
+    @Test
+    void sample() {
+
+        final CrawlMetrics metrics = new CrawlMetrics(SITE, 0, null);
+        metrics.monitorFrontier(() -> 7, () -> 2);
+        metrics.start();
+        recordPages(metrics);
+
+        final String sample = metrics.sample();
+        assertAll(
+                () -> assertTrue(sample.startsWith("3 pages ("), sample),
+                () -> assertTrue(sample.contains("7 queued, 2 in flight"), sample),
+                () -> assertTrue(sample.contains("0.03 MB downloaded"), sample)
+        );
+        metrics.close();
+    }
+
+    /**
+     * Check every meter is written to the export file when the scan ends.
+     */
+    @Test
+    void exportOnClose() throws IOException {
+
+        final Path file = tempDir.resolve("metrics.txt");
+        final CrawlMetrics metrics = new CrawlMetrics(SITE, 0, file);
+        metrics.monitorFrontier(() -> 0, () -> 0);
+        metrics.start();
+        recordPages(metrics);
+        metrics.close();
+
+        final List<String> lines = Files.readAllLines(file);
+        assertAll(
+                () -> assertTrue(lines.stream().anyMatch(line -> line.startsWith(CrawlMetrics.FETCH + "{")
+                        && line.contains("site=" + SITE) && line.contains(" count=4.0")), String.join("\n", lines)),
+                () -> assertTrue(lines.stream().anyMatch(line -> line.startsWith(CrawlMetrics.PAGES + "{")
+                        && line.contains("outcome=scanned") && line.contains(" count=2.0")), String.join("\n", lines)),
+                () -> assertTrue(lines.stream().anyMatch(line -> line.startsWith(CrawlMetrics.PAGES + "{")
+                        && line.contains("outcome=unreadable") && line.contains(" count=1.0")), String.join("\n", lines)),
+                () -> assertTrue(lines.stream().anyMatch(line -> line.startsWith(CrawlMetrics.FETCH_BYTES + "{")
+                        && line.contains(" total=30000.0")), String.join("\n", lines)),
+                () -> assertTrue(lines.stream().anyMatch(line -> line.startsWith(CrawlMetrics.FRONTIER_QUEUED + "{")),
+                        String.join("\n", lines))
+        );
+    }
+
+    /**
+     * Check the meters are published to another registry while the scan runs, and removed from it when the scan ends.
+     */
+    @Test
+    void unpublishOnClose() {
+
+        final SimpleMeterRegistry jmxRegistry = new SimpleMeterRegistry();
+        final CrawlMetrics metrics = new CrawlMetrics(SITE, 0, null, jmxRegistry);
+        metrics.monitorFrontier(() -> 0, () -> 0);
+        metrics.start();
+        recordPages(metrics);
+        assertTrue(jmxRegistry.getMeters().stream().anyMatch(meter -> meter.getId().getName().equals(CrawlMetrics.FRONTIER_QUEUED)),
+                "Meters not published");
+
+        metrics.close();
+        assertEquals(List.of(), jmxRegistry.getMeters());
+    }
+
+    /**
+     * Check each site of a batch has a metrics file of its own, named after the site.
+     */
+    @Test
+    void perSiteFile() {
+
+        assertAll(
+                () -> assertEquals(tempDir.resolve("metrics-http_sitename.com_.txt"),
+                        CrawlMetricsFactory.perSiteFile(tempDir.resolve("metrics.txt"), SITE)),
+                () -> assertEquals(tempDir.resolve("metrics-https_sitename.com_about.html"),
+                        CrawlMetricsFactory.perSiteFile(tempDir.resolve("metrics"), "https://sitename.com/about.html"))
+        );
+    }
+
+    private static void recordPages(CrawlMetrics metrics) {
+        final long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20);
+        metrics.recordFetch(start, 10_000);
+        metrics.recordParse(start);
+        metrics.recordExtract(start);
+        metrics.pageScanned();
+        metrics.recordFetch(start, 10_000);
+        metrics.recordParse(start);
+        metrics.recordExtract(start);
+        metrics.pageScanned();
+        metrics.recordFetch(start, 0);
+        metrics.pageNotModified();
+        metrics.recordFetch(start, 10_000);
+        metrics.pageUnreadable();
+    }
+}
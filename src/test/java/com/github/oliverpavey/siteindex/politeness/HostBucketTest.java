@@ -0,0 +1,49 @@
+package com.github.oliverpavey.siteindex.politeness;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostBucketTest {
+
+    static final long SECOND = 1_000_000_000L;
+
+    /**
+     * Check requests are spaced out to the configured rate.
+     */
+    @Test
+    void limitsRequestRate() {
+
+        final HostBucket bucket = new HostBucket(4, 0, 0, 0);
+        assertEquals(0, bucket.tryAcquire(0), "First request starts immediately.");
+        assertEquals(SECOND / 4, bucket.tryAcquire(0), "Second request waits for a token.");
+        assertEquals(0, bucket.tryAcquire(SECOND / 4), "Second request starts once the token is available.");
+    }
+
+    /**
+     * Check the number of requests in-flight is capped until one is released.
+     */
+    @Test
+    void limitsRequestsInFlight() {
+
+        final HostBucket bucket = new HostBucket(0, 2, 0, 0);
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(Long.MAX_VALUE, bucket.tryAcquire(0), "Third request waits for a release.");
+        bucket.release();
+        assertEquals(0, bucket.tryAcquire(0));
+    }
+
+    /**
+     * Check the crawl delay spaces out the start of requests.
+     */
+    @Test
+    void honoursCrawlDelay() {
+
+        final HostBucket bucket = new HostBucket(0, 0, 0, 0);
+        bucket.setCrawlDelayMs(500);
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(SECOND / 2, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(SECOND / 2));
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.oliverpavey.siteindex.robots;
+
+import com.github.oliverpavey.siteindex.fetch.FetchResult;
+import com.github.oliverpavey.siteindex.fetch.PageFetcher;
+import com.github.oliverpavey.siteindex.politeness.PolitenessScheduler;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobotsPolicyTest {
+
+    /**
+     * Check robots.txt is retrieved once per host, and a missing or unreadable robots.txt is handled as RFC 9309 asks.
+     */
+    @Test
+    void robotsTxtPerHost() {
+
+        final AtomicInteger requests = new AtomicInteger();
+        final PageFetcher pageFetcher = (url, requestHeaders) -> {
+            requests.incrementAndGet();
+            switch (url) {
+                case "http://sitename.com/robots.txt":
+                    return CompletableFuture.completedFuture(new FetchResult(url, url, 200, Map.of(),
+                            "User-agent: *\nDisallow: /private/\n".getBytes(StandardCharsets.UTF_8)));
+                case "http://broken.com/robots.txt":
+                    return CompletableFuture.completedFuture(new FetchResult(url, url, 503, Map.of(), new byte[0]));
+                default:
+                    return CompletableFuture.completedFuture(new FetchResult(url, url, 404, Map.of(), new byte[0]));
+            }
+        };
+        final RobotsPolicy policy = new RobotsPolicy(pageFetcher, new PolitenessScheduler());
+        ReflectionTestUtils.setField(policy, "enabled", true);
+        ReflectionTestUtils.setField(policy, "maxCrawlDelayMs", 30000L);
+        ReflectionTestUtils.setField(policy, "userAgent", "siteindex");
+
+        assertAll(
+                () -> assertTrue(policy.isAllowed("http://sitename.com/index.html")),
+                () -> assertFalse(policy.isAllowed("http://sitename.com/private/page.html")),
+                () -> assertTrue(policy.isAllowed("http://sitename.com")),
+                () -> assertTrue(policy.isAllowed("http://missing.com/private/page.html")),
+                () -> assertFalse(policy.isAllowed("http://broken.com/index.html")),
+                () -> assertEquals(3, requests.get())
+        );
+    }
+
+    /**
+     * Check a host whose robots.txt could not be read because of an unexpected error is disallowed,
+     * and later checks of the host do not wait for it.
+     */
+    @Test
+    void robotsTxtError() {
+
+        final PageFetcher pageFetcher = (url, requestHeaders) -> {
+            throw new IllegalStateException("Fetcher closed");
+        };
+        final RobotsPolicy policy = new RobotsPolicy(pageFetcher, new PolitenessScheduler());
+        ReflectionTestUtils.setField(policy, "enabled", true);
+        ReflectionTestUtils.setField(policy, "userAgent", "siteindex");
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertAll(
+                () -> assertFalse(policy.isAllowed("http://sitename.com/index.html")),
+                () -> assertFalse(policy.isAllowed("http://sitename.com/about.html"))
+        ));
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.oliverpavey.siteindex.robots;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobotsRulesTest {
+
+    static final String ROBOTS_TXT = "# robots.txt for sitename.com\n"
+            + "User-agent: othercrawler\n"
+            + "Disallow: /\n"
+            + "\n"
+            + "User-agent: *\n"
+            + "Disallow: /private/\n"
+            + "Allow: /private/public.html\n"
+            + "Disallow: /*.pdf$\n"
+            + "Disallow: /search*q=\n"
+            + "Allow: /page\n"
+            + "Disallow: /page\n"
+            + "Disallow: /exact.html$\n"
+            + "Crawl-delay: 2.5\n"
+            + "\n"
+            + "Sitemap: http://sitename.com/sitemap.xml\n";
+
+    /**
+     * Check the longest matching rule decides, and an allow rule wins a tie.
+     */
+    @Test
+    void longestMatchWins() {
+
+        final RobotsRules rules = RobotsRules.parse(ROBOTS_TXT, "siteindex");
+        assertAll(
+                () -> assertTrue(rules.isAllowed("/index.html")),
+                () -> assertFalse(rules.isAllowed("/private/")),
+                () -> assertFalse(rules.isAllowed("/private/secret.html")),
+                () -> assertTrue(rules.isAllowed("/private/public.html")),
+                () -> assertTrue(rules.isAllowed("/page.html"))
+        );
+    }
+
+    /**
+     * Check rules with '*' and '$'.
+     */
+    @Test
+    void wildcards() {
+
+        final RobotsRules rules = RobotsRules.parse(ROBOTS_TXT, "siteindex");
+        assertAll(
+                () -> assertFalse(rules.isAllowed("/docs/guide.pdf")),
+                () -> assertTrue(rules.isAllowed("/docs/guide.pdf?download=1")),
+                () -> assertFalse(rules.isAllowed("/search?lang=en&q=garden")),
+                () -> assertTrue(rules.isAllowed("/search?lang=en")),
+                () -> assertFalse(rules.isAllowed("/exact.html")),
+                () -> assertTrue(rules.isAllowed("/exact.html?v=2"))
+        );
+    }
+
+    /**
+     * Check the group naming the crawler's product token is used instead of the group for '*'.
+     */
+    @Test
+    void groupSelection() {
+
+        final RobotsRules other = RobotsRules.parse(ROBOTS_TXT, "OtherCrawler/2.1 (+http://other.com/)");
+        assertFalse(other.isAllowed("/index.html"));
+        assertEquals(0, other.getCrawlDelayMs());
+
+        final RobotsRules ours = RobotsRules.parse(ROBOTS_TXT, "siteindex/1.0");
+        assertTrue(ours.isAllowed("/index.html"));
+        assertEquals(2500, ours.getCrawlDelayMs());
+    }
+
+    /**
+     * Check an empty disallow rule, or an empty file, allows everything.
+     */
+    @Test
+    void emptyRules() {
+
+        assertTrue(RobotsRules.parse("User-agent: *\nDisallow:\n", "siteindex").isAllowed("/index.html"));
+        assertTrue(RobotsRules.parse("", "siteindex").isAllowed("/index.html"));
+        assertFalse(RobotsRules.disallowAll().isAllowed("/"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.oliverpavey.siteindex.scanner;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReferenceFinderTest {
+
+    static final List<String> TESTSITE_PAGES = List.of("index.html", "about.html", "exercise.html",
+            "garden.html", "homeware.html", "tools.html");
+
+    /**
+     * Check links and resources are found in one walk of a page, including srcset and data-src values.
+     */
+    @Test
+    void findReferences() {
+
+        final ReferenceFinder finder = ReferenceFinder.compile("a.href",
+                "script.src,img.src,img.srcset,img.data-src,link.href");
+        final Document doc = Jsoup.parse("<html><head><link href='style.css'><script src='app.js'></script></head>"
+                + "<body><a href='about.html'>About</a><a name='top'></a>"
+                + "<img src='small.jpg' srcset='small.jpg 480w, large.jpg 1080w'>"
+                + "<img data-src='lazy.jpg'></body></html>");
+
+        final List<String> links = new ArrayList<>();
+        final List<String> resources = new ArrayList<>();
+        finder.find(doc, (tagName, attrName, value) -> links.add(value),
+                (tagName, attrName, value) -> resources.add(tagName + "." + attrName + "=" + value));
+
+        assertAll(
+                () -> assertEquals(List.of("about.html"), links),
+                () -> assertEquals(List.of("link.href=style.css", "script.src=app.js", "img.src=small.jpg",
+                        "img.srcset=small.jpg", "img.srcset=large.jpg", "img.data-src=lazy.jpg"), resources)
+        );
+    }
+
+    /**
+     * Check the tokenizer finds the same title and references as a JSoup document, for each page of the test site.
+     *
+     * @throws IOException Reading the test site.
+     */
+    @Test
+    void tokenizerMatchesDocument() throws IOException {
+
+        final ReferenceFinder finder = ReferenceFinder.compile("a.href",
+                "script.src,img.src,img.srcset,img.data-src,source.src,source.srcset,link.href");
+        for (String page : TESTSITE_PAGES) {
+            final String html;
+            try (InputStream in = getClass().getClassLoader().getResourceAsStream("testsite/" + page)) {
+                html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            final Document doc = Jsoup.parse(html);
+            final List<String> docReferences = new ArrayList<>();
+            finder.find(doc, (tagName, attrName, value) -> docReferences.add("link " + value),
+                    (tagName, attrName, value) -> docReferences.add("resource " + value));
+
+            final List<String> tokenReferences = new ArrayList<>();
+            final String title = finder.find(new TagTokenizer(html),
+                    (tagName, attrName, value) -> tokenReferences.add("link " + value),
+                    (tagName, attrName, value) -> tokenReferences.add("resource " + value));
+
+            assertEquals(doc.title(), title, page);
+            assertEquals(docReferences, tokenReferences, page);
+        }
+    }
+
+    /**
+     * Check the URLs of srcset candidates are split from their descriptors.
+     */
+    @Test
+    void srcsetUrls() {
+
+        assertAll(
+                () -> assertEquals(List.of("a.jpg"), ReferenceFinder.srcsetUrls("a.jpg")),
+                () -> assertEquals(List.of("a.jpg", "b.jpg"), ReferenceFinder.srcsetUrls("a.jpg 1x,b.jpg 2x")),
+                () -> assertEquals(List.of("a.jpg", "b.jpg"), ReferenceFinder.srcsetUrls(" a.jpg, b.jpg 2x ")),
+                () -> assertEquals(List.of("data:image/png;base64,AAAA", "c.jpg"),
+                        ReferenceFinder.srcsetUrls("data:image/png;base64,AAAA 1x, c.jpg 2x")),
+                () -> assertEquals(List.of(), ReferenceFinder.srcsetUrls(""))
+        );
+    }
+
+    /**
+     * Check a template which is not a tag.attribute pair is rejected.
+     */
+    @Test
+    void badTemplate() {
+
+        assertThrows(IllegalArgumentException.class, () -> ReferenceFinder.compile("a", "img.src"));
+    }
+}
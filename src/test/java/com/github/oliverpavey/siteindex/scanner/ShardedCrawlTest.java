@@ -0,0 +1,93 @@
+package com.github.oliverpavey.siteindex.scanner;
+
+import com.github.oliverpavey.siteindex.SiteindexApplication;
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import com.github.oliverpavey.siteindex.testutils.TestsiteServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scan the test site as a sharded crawl of two processes: shard 0 in this test, and shard 1 as a
+ * separate JVM running the application.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"siteindex.shard.count=2", "siteindex.shard.index=0", "siteindex.shard.poll-interval-ms=50"})
+class ShardedCrawlTest {
+
+    static Path shardDir;
+
+    @Autowired
+    SiteScanner siteScanner;
+
+    @DynamicPropertySource
+    static void shardProperties(DynamicPropertyRegistry registry) throws IOException {
+        shardDir = Files.createTempDirectory("siteindex-shards");
+        registry.add("siteindex.shard.dir", shardDir::toString);
+    }
+
+    /**
+     * Check the merged scan matches the scan of a single process, and the shard files are removed.
+     */
+    @Test
+    void shardedScanTest() throws IOException, InterruptedException {
+
+        try (final TestsiteServer server = new TestsiteServer()) {
+            final String baseUrl = server.getBaseUrl();
+            final Process shard1 = startShard(1, baseUrl + "index.html");
+            try {
+                final Optional<SiteScan> optSiteScan = siteScanner.scan(baseUrl + "index.html");
+                assertTrue(shard1.waitFor(60, TimeUnit.SECONDS), "Shard 1 did not finish");
+                assertTrue(optSiteScan.isPresent(), "Site scan did not return data");
+
+                final SiteScan siteScan = optSiteScan.get();
+                final PageScan aboutScan = siteScan.getUriToPageScan().get(baseUrl + "about.html");
+                assertAll(
+                        () -> assertEquals(6, siteScan.getUriToPageScan().size(), "Number of pages found."),
+                        () -> assertEquals(12, siteScan.getUriToResourceScan().size(), "Number of resources found."),
+                        () -> assertEquals(6, aboutScan.getLinks().size(), "About page links."),
+                        () -> assertEquals(1, aboutScan.getDepth(), "About page depth."),
+                        () -> assertEquals(0, shard1.exitValue(), "Shard 1 exit code.")
+                );
+                try (Stream<Path> files = Files.list(shardDir)) {
+                    assertEquals(0, files.count(), "Shard files not deleted");
+                }
+            } finally {
+                shard1.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Start a shard of the crawl as a separate JVM, configured with environment variables as siteindex-shards.sh does.
+     */
+    private static Process startShard(int index, String homepageUrl) throws IOException {
+
+        final ProcessBuilder builder = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                SiteindexApplication.class.getName());
+        builder.environment().put("HOMEPAGE_URL", homepageUrl);
+        builder.environment().put("OUTPUT_FILE", shardDir.resolve("shard-" + index + ".html").toString());
+        builder.environment().put("SITEINDEX_SHARD_COUNT", "2");
+        builder.environment().put("SITEINDEX_SHARD_INDEX", String.valueOf(index));
+        builder.environment().put("SITEINDEX_SHARD_DIR", shardDir.toString());
+        builder.environment().put("SITEINDEX_SHARD_POLL_INTERVAL_MS", "50");
+        builder.inheritIO();
+        return builder.start();
+    }
+}
@@ -47,6 +47,8 @@ class SiteScannerTest {
                     () -> assertEquals(6, pageScans.size(), "Number of pages found."),
                     () -> assertEquals(12, resourceScans.size(), "Number of resources found."),
                     () -> assertEquals(6, aboutScan.getLinks().size(), "About page links."),
+                    () -> assertEquals(0, siteScan.getHomepage().getDepth(), "Homepage depth."),
+                    () -> assertEquals(1, aboutScan.getDepth(), "About page depth."),
                     () -> assertTrue(aboutScanLinkURIs.contains(homepageUrl)),
                     () -> assertTrue(aboutScanLinkURIs.contains(baseUrl + "homeware.html")),
                     () -> assertTrue(aboutScanLinkURIs.contains(baseUrl + "garden.html")),
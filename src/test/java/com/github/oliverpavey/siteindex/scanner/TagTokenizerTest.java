@@ -0,0 +1,85 @@
+package com.github.oliverpavey.siteindex.scanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagTokenizerTest {
+
+    /**
+     * Check start tags are read with their attributes, skipping comments and the content of scripts.
+     */
+    @Test
+    void readTags() {
+
+        final TagTokenizer tokenizer = new TagTokenizer("<!DOCTYPE html><HTML><!-- <a href='no.html'> -->"
+                + "<script>if (a<b) document.write('<a href=\"no.html\">')</script>"
+                + "<A HREF=\"one.html?a=1&amp;b=2\" class=x>1 < 2</a><img src=two.jpg alt='&lt;'/>"
+                + "<a href='first.html' href='second.html'><input disabled value=''></html>");
+
+        final List<String> tags = new ArrayList<>();
+        while (tokenizer.nextTag()) {
+            final String tagName = tokenizer.tagName();
+            switch (tagName) {
+                case "a":
+                    tags.add("a " + tokenizer.attr("href"));
+                    break;
+                case "img":
+                    tags.add("img " + tokenizer.attr("src") + " " + tokenizer.attr("alt"));
+                    break;
+                case "input":
+                    tags.add("input " + tokenizer.attr("disabled").isEmpty() + " " + tokenizer.attr("value").isEmpty()
+                            + " " + tokenizer.attr("missing"));
+                    break;
+                default:
+                    tags.add(tagName);
+            }
+        }
+
+        assertEquals(List.of("html", "script", "a one.html?a=1&b=2", "img two.jpg <", "a first.html",
+                "input true true null"), tags);
+    }
+
+    /**
+     * Check the text of a title is read with references decoded and whitespace normalised.
+     */
+    @Test
+    void readTitle() {
+
+        final TagTokenizer tokenizer = new TagTokenizer("<head><title>\n  Tom &amp; Jerry <b>\n</title><body>");
+        assertTrue(tokenizer.nextTag());
+        assertTrue(tokenizer.nextTag());
+        assertEquals("title", tokenizer.tagName());
+        assertEquals("Tom & Jerry <b>", tokenizer.text());
+        assertTrue(tokenizer.nextTag());
+        assertEquals("body", tokenizer.tagName());
+        assertFalse(tokenizer.nextTag());
+    }
+
+    /**
+     * Check the character set is taken from the header, then from a meta tag, then defaults to UTF-8.
+     */
+    @Test
+    void detectCharset() {
+
+        final byte[] meta = "<html><head><meta charset=\"ISO-8859-1\">".getBytes(StandardCharsets.US_ASCII);
+        final byte[] httpEquiv = "<meta http-equiv=Content-Type content=\"text/html; charset=windows-1252\">"
+                .getBytes(StandardCharsets.US_ASCII);
+        final byte[] plain = "<html>".getBytes(StandardCharsets.US_ASCII);
+        final byte[] bom = {(byte) 0xef, (byte) 0xbb, (byte) 0xbf, '<'};
+
+        assertAll(
+                () -> assertEquals(Optional.of(StandardCharsets.UTF_16), TagTokenizer.detectCharset(meta, "utf-16")),
+                () -> assertEquals(Optional.of(StandardCharsets.ISO_8859_1), TagTokenizer.detectCharset(meta, null)),
+                () -> assertEquals("windows-1252", TagTokenizer.detectCharset(httpEquiv, null).orElseThrow().name()),
+                () -> assertEquals(Optional.of(StandardCharsets.UTF_8), TagTokenizer.detectCharset(plain, null)),
+                () -> assertEquals(Optional.empty(), TagTokenizer.detectCharset(plain, "no-such-charset")),
+                () -> assertEquals(Optional.empty(), TagTokenizer.detectCharset(bom, null))
+        );
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.oliverpavey.siteindex.scanner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlBaseTest {
+
+    /**
+     * Check references resolve as in the examples of RFC 3986 section 5.4 (without fragments).
+     */
+    @Test
+    void resolveRfcExamples() {
+
+        final UrlBase base = UrlBase.parse("http://a/b/c/d;p?q");
+        final Map<String, String> examples = Map.ofEntries(
+                Map.entry("g:h", "g:h"),
+                Map.entry("g", "http://a/b/c/g"),
+                Map.entry("./g", "http://a/b/c/g"),
+                Map.entry("g/", "http://a/b/c/g/"),
+                Map.entry("/g", "http://a/g"),
+                Map.entry("//g", "http://g"),
+                Map.entry("?y", "http://a/b/c/d;p?y"),
+                Map.entry("g?y", "http://a/b/c/g?y"),
+                Map.entry("#s", "http://a/b/c/d;p?q"),
+                Map.entry("g#s", "http://a/b/c/g"),
+                Map.entry(";x", "http://a/b/c/;x"),
+                Map.entry("", "http://a/b/c/d;p?q"),
+                Map.entry(".", "http://a/b/c/"),
+                Map.entry("./", "http://a/b/c/"),
+                Map.entry("..", "http://a/b/"),
+                Map.entry("../", "http://a/b/"),
+                Map.entry("../g", "http://a/b/g"),
+                Map.entry("../..", "http://a/"),
+                Map.entry("../../g", "http://a/g"),
+                Map.entry("../../../g", "http://a/g"),
+                Map.entry("/./g", "http://a/g"),
+                Map.entry("/../g", "http://a/g"),
+                Map.entry("g.", "http://a/b/c/g."),
+                Map.entry("..g", "http://a/b/c/..g"),
+                Map.entry("./g/.", "http://a/b/c/g/"),
+                Map.entry("g/./h", "http://a/b/c/g/h"),
+                Map.entry("g/../h", "http://a/b/c/h"),
+                Map.entry("g;x=1/../y", "http://a/b/c/y"),
+                Map.entry("g?y/../x", "http://a/b/c/g?y/../x")
+        );
+
+        examples.forEach((ref, expected) -> assertEquals(expected, base.resolve(ref), ref));
+    }
+
+    /**
+     * Check site references are recognised, including protocol-relative and root-relative links.
+     */
+    @Test
+    void siteReferences() {
+
+        final UrlBase base = UrlBase.parse("http://sitename.com/section/page.html");
+        final AbsoluteRef external = new AbsoluteRef(base, "//cdn.example.com/lib.js");
+        final AbsoluteRef root = new AbsoluteRef(base, " /index.html#top ");
+        final AbsoluteRef absolute = new AbsoluteRef(base, "HTTPS://example.com/");
+
+        assertAll(
+                () -> assertEquals("http://sitename.com/", base.getDomain()),
+                () -> assertEquals("http://cdn.example.com/lib.js", external.getAbsoluteRef()),
+                () -> assertFalse(external.isSiteReference()),
+                () -> assertFalse(external.isRefIsAbsolute()),
+                () -> assertEquals("http://sitename.com/index.html", root.getAbsoluteRef()),
+                () -> assertTrue(root.isSiteReference()),
+                () -> assertTrue(absolute.isRefIsAbsolute()),
+                () -> assertFalse(absolute.isSiteReference()),
+                () -> assertFalse(new AbsoluteRef(base, "mailto:someone@sitename.com").isSiteReference())
+        );
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.oliverpavey.siteindex.shard;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlShardingTest {
+
+    /**
+     * Check each shard of a sharded crawl writes files of its own, and a crawl which is not sharded the files themselves.
+     */
+    @Test
+    void shardFile() {
+
+        final Path file = Paths.get("output", "export.ndjson");
+        assertAll(
+                () -> assertEquals(file, createSharding(1, 0).shardFile(file)),
+                () -> assertEquals(Paths.get("output", "export-shard0.ndjson"), createSharding(3, 0).shardFile(file)),
+                () -> assertEquals(Paths.get("output", "export-shard2.ndjson"), createSharding(3, 2).shardFile(file)),
+                () -> assertEquals(Paths.get("metrics-shard1"), createSharding(2, 1).shardFile(Paths.get("metrics")))
+        );
+    }
+
+    private static CrawlSharding createSharding(int count, int index) {
+
+        final CrawlSharding crawlSharding = new CrawlSharding();
+        ReflectionTestUtils.setField(crawlSharding, "count", count);
+        ReflectionTestUtils.setField(crawlSharding, "index", index);
+        return crawlSharding;
+    }
+}
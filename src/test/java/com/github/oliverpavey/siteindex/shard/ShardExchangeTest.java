@@ -0,0 +1,148 @@
+package com.github.oliverpavey.siteindex.shard;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardExchangeTest {
+
+    static final String SITE = "http://sitename.com/";
+
+    @TempDir
+    Path shardDir;
+
+    /**
+     * Check a URL is forwarded to the shard which owns it, and both shards then see the crawl has finished.
+     */
+    @Test
+    void forwardAndFinish() throws IOException, InterruptedException {
+
+        final String url = urlOwnedBy(1);
+        final Map<String, Integer> received0 = new ConcurrentHashMap<>();
+        final Map<String, Integer> received1 = new ConcurrentHashMap<>();
+        final CountDownLatch finished = new CountDownLatch(2);
+
+        final ShardExchange shard0 = new ShardExchange(shardDir, 0, 2, 10, 5000, received0::put, () -> true, finished::countDown);
+        final ShardExchange shard1 = new ShardExchange(shardDir, 1, 2, 10, 5000, received1::put, () -> true, finished::countDown);
+        shard0.forward(url, 3);
+        shard0.open();
+        shard0.start();
+        shard1.open();
+        shard1.start();
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS), "Shards did not finish");
+        assertAll(
+                () -> assertEquals(Map.of(url, 3), received1),
+                () -> assertTrue(received0.isEmpty())
+        );
+
+        shard0.markDone();
+        shard1.markDone();
+        assertEquals(1, shard0.awaitShards().size());
+        shard0.cleanUp();
+        try (Stream<Path> files = Files.list(shardDir)) {
+            assertEquals(0, files.count(), "Shard files not deleted");
+        }
+    }
+
+    /**
+     * Check the crawl is not finished while a shard is busy.
+     */
+    @Test
+    void waitsForBusyShard() throws IOException, InterruptedException {
+
+        final CountDownLatch finished = new CountDownLatch(2);
+        final AtomicBoolean busy = new AtomicBoolean(true);
+        final ShardExchange shard0 = new ShardExchange(shardDir, 0, 2, 10, 5000, (u, d) -> {}, () -> true, finished::countDown);
+        final ShardExchange shard1 = new ShardExchange(shardDir, 1, 2, 10, 5000, (u, d) -> {}, () -> !busy.get(), finished::countDown);
+        shard0.open();
+        shard0.start();
+        shard1.open();
+        shard1.start();
+
+        assertFalse(finished.await(300, TimeUnit.MILLISECONDS), "Finished while a shard was busy");
+        busy.set(false);
+        assertTrue(finished.await(10, TimeUnit.SECONDS), "Shards did not finish");
+    }
+
+    /**
+     * Check URLs are kept until their shard has started, and the files left in its inbox by an
+     * earlier crawl are not read.
+     */
+    @Test
+    void sendsOnceShardStarted() throws IOException, InterruptedException {
+
+        final String url = urlOwnedBy(1);
+        final Path inbox1 = Files.createDirectories(shardDir.resolve(ShardExchange.INBOX_PREFIX + 1));
+        Files.write(inbox1.resolve("shard-0-000000000" + ShardExchange.LINKS_SUFFIX), List.of("1\t" + SITE + "old.html"));
+        final Map<String, Integer> received1 = new ConcurrentHashMap<>();
+        final CountDownLatch finished = new CountDownLatch(2);
+
+        final ShardExchange shard0 = new ShardExchange(shardDir, 0, 2, 10, 5000, (u, d) -> {}, () -> true, finished::countDown);
+        final ShardExchange shard1 = new ShardExchange(shardDir, 1, 2, 10, 5000, received1::put, () -> true, finished::countDown);
+        shard0.forward(url, 3);
+        shard0.open();
+        shard0.start();
+        Thread.sleep(100); // shard 0 polls before shard 1 starts
+        shard1.open();
+        shard1.start();
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS), "Shards did not finish");
+        assertEquals(Map.of(url, 3), received1);
+    }
+
+    /**
+     * Check a shard gives up when another shard fails, or has not started within the timeout, and
+     * the coordinator does not wait for a shard which has failed.
+     */
+    @Test
+    void failedShards() throws IOException, InterruptedException {
+
+        final CountDownLatch finished = new CountDownLatch(2);
+        final ShardExchange shard0 = new ShardExchange(shardDir, 0, 2, 10, 5000, (u, d) -> {}, () -> true, finished::countDown);
+        final ShardExchange shard1 = new ShardExchange(shardDir, 1, 2, 10, 5000, (u, d) -> {}, () -> false, finished::countDown);
+        shard0.open();
+        shard0.start();
+        shard1.open();
+        shard1.start();
+        shard1.markFailed();
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS), "Shards did not give up");
+        assertAll(
+                () -> assertTrue(shard0.isFailed()),
+                () -> assertTrue(shard1.isFailed()),
+                () -> assertThrows(IOException.class, shard0::awaitShards)
+        );
+        shard0.cleanUp();
+
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        final ShardExchange alone = new ShardExchange(shardDir, 0, 2, 10, 100, (u, d) -> {}, () -> true, timedOut::countDown);
+        alone.open();
+        alone.start();
+        assertTrue(timedOut.await(10, TimeUnit.SECONDS), "Shard did not time out");
+        assertAll(
+                () -> assertTrue(alone.isFailed()),
+                () -> assertThrows(IOException.class, alone::awaitShards)
+        );
+    }
+
+    private static String urlOwnedBy(int shard) {
+        for (int i = 0; ; i++) {
+            final String url = SITE + "page" + i + ".html";
+            if (CrawlSharding.shardOf(url, 2) == shard)
+                return url;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.oliverpavey.siteindex.sitemap;
+
+import com.github.oliverpavey.siteindex.fetch.FetchResult;
+import com.github.oliverpavey.siteindex.fetch.PageFetcher;
+import com.github.oliverpavey.siteindex.graph.TreeSiteModelBuilder;
+import com.github.oliverpavey.siteindex.model.PageContent;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SitemapSeederTest {
+
+    static final String SITE = "http://sitename.com/";
+
+    static final String SITEMAP_INDEX = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+            + "  <sitemap><loc>http://sitename.com/sitemap-pages.xml</loc><lastmod>2021-06-01</lastmod></sitemap>\n"
+            + "  <sitemap><loc>http://sitename.com/sitemap-more.xml.gz</loc></sitemap>\n"
+            + "</sitemapindex>\n";
+
+    static final String SITEMAP_PAGES = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+            + "  <url><loc>http://sitename.com/index.html</loc><priority>1.0</priority></url>\n"
+            + "  <url><loc>\n    http://sitename.com/about.html\n  </loc></url>\n"
+            + "  <url><loc>http://sitename.com/deep/page.html?id=1&amp;v=2</loc></url>\n"
+            + "  <url><loc>https://elsewhere.com/page.html</loc></url>\n"
+            + "</urlset>\n";
+
+    static final String SITEMAP_MORE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+            + "  <url><loc>http://sitename.com/orphan.html</loc></url>\n"
+            + "  <url><loc>http://sitename.com/about.html</loc></url>\n"
+            + "</urlset>\n";
+
+    /**
+     * Check the pages of a sitemap index, its sitemaps and a gzipped sitemap are read, in order,
+     * without duplicates or pages of other sites.
+     */
+    @Test
+    void loadSitemapIndex() throws IOException {
+
+        final SitemapSeeder seeder = createSeeder(Map.of(
+                SITE + "sitemap.xml", SITEMAP_INDEX.getBytes(StandardCharsets.UTF_8),
+                SITE + "sitemap-pages.xml", SITEMAP_PAGES.getBytes(StandardCharsets.UTF_8),
+                SITE + "sitemap-more.xml.gz", gzip(SITEMAP_MORE)));
+
+        final Set<String> pages = seeder.load(SITE + "index.html");
+        assertEquals(List.of(SITE + "index.html", SITE + "about.html", SITE + "deep/page.html?id=1&v=2",
+                SITE + "orphan.html"), List.copyOf(pages));
+    }
+
+    /**
+     * Check a site without a sitemap is scanned without seeds.
+     */
+    @Test
+    void noSitemap() {
+
+        final SitemapSeeder seeder = createSeeder(Map.of());
+        assertTrue(seeder.load(SITE + "index.html").isEmpty());
+    }
+
+    /**
+     * Check sitemap pages which are not linked, and linked pages which are not in the sitemap, are recorded.
+     */
+    @Test
+    void audit() {
+
+        final TreeSiteModelBuilder builder = new TreeSiteModelBuilder();
+        builder.addPage(SITE + "index.html", 0, content(SITE + "about.html", SITE + "index.html"));
+        builder.addPage(SITE + "about.html", 1, content(SITE + "index.html", SITE + "unlisted.html"));
+        builder.addPage(SITE + "unlisted.html", 2, content(SITE + "index.html"));
+        builder.addPage(SITE + "orphan.html", 1, content(SITE + "orphan.html", SITE + "index.html"));
+        final SiteScan siteScan = builder.build(SITE, SITE + "index.html");
+
+        createSeeder(Map.of()).audit(siteScan, List.of(SITE + "index.html", SITE + "about.html", SITE + "orphan.html",
+                SITE + "gone.html"));
+
+        assertAll(
+                () -> assertEquals(4, siteScan.getSitemapSize()),
+                () -> assertEquals(List.of(SITE + "gone.html", SITE + "orphan.html"), List.copyOf(siteScan.getSitemapOrphans())),
+                () -> assertEquals(List.of(SITE + "unlisted.html"), List.copyOf(siteScan.getSitemapMissing()))
+        );
+    }
+
+    private static SitemapSeeder createSeeder(Map<String, byte[]> files) {
+
+        final PageFetcher pageFetcher = (url, requestHeaders) -> CompletableFuture.completedFuture(files.containsKey(url)
+                ? new FetchResult(url, url, 200, Map.of(), files.get(url))
+                : new FetchResult(url, url, 404, Map.of(), new byte[0]));
+        final SitemapSeeder seeder = new SitemapSeeder(pageFetcher);
+        ReflectionTestUtils.setField(seeder, "enabled", true);
+        ReflectionTestUtils.setField(seeder, "path", "/sitemap.xml");
+        ReflectionTestUtils.setField(seeder, "maxSitemaps", 10);
+        ReflectionTestUtils.setField(seeder, "maxUrls", 1000);
+        return seeder;
+    }
+
+    private static PageContent content(String... links) {
+        final PageContent content = new PageContent();
+        content.getLinks().addAll(List.of(links));
+        return content;
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySnapshotTest {
+
+    static final String SITE = "http://sitename.com/";
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Check pages, links and resources can be looked up in a binary snapshot.
+     *
+     * @throws IOException Reading or writing the snapshot.
+     */
+    @Test
+    void writeAndQuery() throws IOException {
+
+        final Path file = tempDir.resolve("site.snapshot");
+        Snapshots.write(siteScan(), file, Snapshots.FORMAT_BINARY);
+
+        try (BinarySnapshot snapshot = BinarySnapshot.open(file)) {
+            final int index = snapshot.findPage(SITE + "index.html");
+            assertAll(
+                    () -> assertEquals(SITE, snapshot.getDomain()),
+                    () -> assertEquals(index, snapshot.getHomepageId()),
+                    () -> assertEquals("Home", snapshot.pageTitle(index)),
+                    () -> assertEquals(2, snapshot.links(index).length),
+                    () -> assertEquals(1, snapshot.externalLinks(index).length),
+                    () -> assertEquals(SITE + "logo.svg", snapshot.resourceUri(snapshot.resources(index)[0])),
+                    () -> assertEquals(1, snapshot.pageDepth(snapshot.findPage(SITE + "about.html"))),
+                    () -> assertEquals(-1, snapshot.findPage(SITE + "missing.html"))
+            );
+        }
+    }
+
+    /**
+     * Check text and binary snapshots of the same scan compare as identical.
+     *
+     * @throws IOException Reading or writing the snapshots.
+     */
+    @Test
+    void matchesTextSnapshot() throws IOException {
+
+        final SiteScan siteScan = siteScan();
+        final Path text = tempDir.resolve("text.snapshot");
+        final Path binary = tempDir.resolve("binary.snapshot");
+        Snapshots.write(siteScan, text, Snapshots.FORMAT_TEXT);
+        Snapshots.write(siteScan, binary, Snapshots.FORMAT_BINARY);
+
+        final SnapshotDiff diff = new SnapshotDiff(new StringWriter());
+        try (SnapshotSource before = Snapshots.open(text);
+             SnapshotSource after = Snapshots.open(binary)) {
+            diff.compare(before, after);
+        }
+
+        assertAll(
+                () -> assertEquals(0, diff.getPagesAdded(), "Pages added."),
+                () -> assertEquals(0, diff.getPagesRemoved(), "Pages removed."),
+                () -> assertEquals(0, diff.getPagesRelinked(), "Pages re-linked."),
+                () -> assertEquals(0, diff.getPagesWithExternalLinkChanges(), "External links changed."),
+                () -> assertEquals(0, diff.getResourcesAdded(), "Resources added."),
+                () -> assertEquals(0, diff.getResourcesRelinked(), "Resources re-linked.")
+        );
+    }
+
+    private SiteScan siteScan() {
+        final SiteScan siteScan = new SiteScan();
+        siteScan.setDomain(SITE);
+        final PageScan index = page(siteScan, "index.html", "Home", 0);
+        final PageScan about = page(siteScan, "about.html", "About", 1);
+        final PageScan contact = page(siteScan, "contact.html", "Contact", 1);
+        index.getLinks().add(about);
+        index.getLinks().add(contact);
+        about.getLinks().add(index);
+        index.getExternalLinks().add("https://example.com/");
+        final ResourceScan logo = new ResourceScan(SITE + "logo.svg");
+        logo.incReferences();
+        index.getResources().add(logo);
+        siteScan.getUriToResourceScan().put(logo.getUri(), logo);
+        siteScan.setHomepage(index);
+        return siteScan;
+    }
+
+    private PageScan page(SiteScan siteScan, String path, String title, int depth) {
+        final PageScan pageScan = new PageScan(SITE + path);
+        pageScan.setTitle(title);
+        pageScan.setDepth(depth);
+        siteScan.getUriToPageScan().put(pageScan.getUri(), pageScan);
+        return pageScan;
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.oliverpavey.siteindex.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotDiffTest {
+
+    static final String SITE = "http://sitename.com/";
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Check a snapshot reads back as written, including escaped characters.
+     *
+     * @throws IOException Reading or writing the snapshot.
+     */
+    @Test
+    void writeAndRead() throws IOException {
+
+        final Path file = tempDir.resolve("site.snapshot");
+        try (SnapshotWriter writer = new SnapshotWriter(file, SITE, SITE + "index.html")) {
+            final PageRecord page = page("index.html", "about.html");
+            page.setTitle("Home\tpage");
+            page.getExternalLinks().add("https://example.com/");
+            writer.writePage(page);
+            writer.writeResource(new ResourceRecord(SITE + "logo.svg", 3));
+        }
+
+        try (SnapshotReader reader = new SnapshotReader(file)) {
+            final Optional<PageRecord> page = reader.nextPage();
+            assertTrue(page.isPresent(), "Page missing");
+            assertAll(
+                    () -> assertEquals(SITE + "index.html", reader.getHomepage()),
+                    () -> assertEquals("Home\tpage", page.get().getTitle()),
+                    () -> assertTrue(page.get().getLinks().contains(SITE + "about.html")),
+                    () -> assertTrue(page.get().getExternalLinks().contains("https://example.com/")),
+                    () -> assertFalse(reader.nextPage().isPresent(), "Unexpected page"),
+                    () -> assertEquals(3, reader.nextResource().orElseThrow().getReferences()),
+                    () -> assertFalse(reader.nextResource().isPresent(), "Unexpected resource")
+            );
+        }
+    }
+
+    /**
+     * Check added, removed and re-linked pages and resources are counted.
+     *
+     * @throws IOException Reading or writing the snapshots.
+     */
+    @Test
+    void compareSnapshots() throws IOException {
+
+        final Path before = tempDir.resolve("before.snapshot");
+        try (SnapshotWriter writer = new SnapshotWriter(before, SITE, SITE + "index.html")) {
+            writer.writePage(page("about.html"));
+            writer.writePage(page("index.html", "about.html", "old.html"));
+            writer.writePage(page("old.html"));
+            writer.writeResource(new ResourceRecord(SITE + "logo.svg", 2));
+            writer.writeResource(new ResourceRecord(SITE + "old.jpg", 1));
+        }
+        final Path after = tempDir.resolve("after.snapshot");
+        try (SnapshotWriter writer = new SnapshotWriter(after, SITE, SITE + "index.html")) {
+            writer.writePage(page("about.html"));
+            writer.writePage(page("index.html", "about.html", "new.html"));
+            writer.writePage(page("new.html"));
+            writer.writeResource(new ResourceRecord(SITE + "logo.svg", 3));
+        }
+
+        final StringWriter report = new StringWriter();
+        final SnapshotDiff diff = new SnapshotDiff(report);
+        try (SnapshotReader beforeReader = new SnapshotReader(before);
+             SnapshotReader afterReader = new SnapshotReader(after)) {
+            diff.compare(beforeReader, afterReader);
+        }
+
+        assertAll(
+                () -> assertEquals(1, diff.getPagesAdded(), "Pages added."),
+                () -> assertEquals(1, diff.getPagesRemoved(), "Pages removed."),
+                () -> assertEquals(1, diff.getPagesRelinked(), "Pages re-linked."),
+                () -> assertEquals(0, diff.getResourcesAdded(), "Resources added."),
+                () -> assertEquals(1, diff.getResourcesRemoved(), "Resources removed."),
+                () -> assertEquals(1, diff.getResourcesRelinked(), "Resources re-linked."),
+                () -> assertTrue(report.toString().contains("+ link " + SITE + "new.html"))
+        );
+    }
+
+    private PageRecord page(String path, String... links) {
+        final PageRecord pageRecord = new PageRecord(SITE + path);
+        for (String link : links)
+            pageRecord.getLinks().add(SITE + link);
+        return pageRecord;
+    }
+}
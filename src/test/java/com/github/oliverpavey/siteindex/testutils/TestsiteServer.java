@@ -105,16 +105,20 @@ public class TestsiteServer implements AutoCloseable {
     /**
      * Handler for HTTP requests.
      * <p>
-     * Only supports GET requests.
-     * Attempts to resolve the GET requests by reading resources corresponding to the path supplied.
+     * Only supports GET and HEAD requests.
+     * Attempts to resolve the requests by reading resources corresponding to the path supplied.
+     * A HEAD request is answered with the headers of the GET request, including Content-Length, but no body.
      */
     static class TestsiteRequestHandler implements HttpHandler {
 
         static final String HTTP_METHOD_GET = "GET";
+        static final String HTTP_METHOD_HEAD = "HEAD";
         static final int HTTP_STATUS_OK = 200;
         static final int HTTP_STATUS_NOT_FOUND = 404;
+        static final int HTTP_STATUS_METHOD_NOT_ALLOWED = 405;
         static final int HTTP_STATUS_INTERNAL_ERROR = 500;
         static final String HTTP_HEADER_CONTENT_TYPE = "Content-Type";
+        static final String HTTP_HEADER_CONTENT_LENGTH = "Content-Length";
 
         /**
          * Exception to throw indicating processing cannot proceed, and indicating HTTP response to give.
@@ -140,10 +144,10 @@ public class TestsiteServer implements AutoCloseable {
         @Override
         public void handle(HttpExchange httpExchange) {
             try {
-                checkMethodIsGet(httpExchange);
+                checkMethodIsSupported(httpExchange);
 
                 final String path = httpExchange.getRequestURI().getPath();
-                log.info("Processing GET request for '{}'", path);
+                log.info("Processing {} request for '{}'", httpExchange.getRequestMethod(), path);
                 byte[] responseContent = readResourceForPath(path);
 
                 Map<String, String> headerMap = new LinkedHashMap<>();
@@ -174,6 +178,13 @@ public class TestsiteServer implements AutoCloseable {
                     responseHeaders.add(entry.getKey(), entry.getValue());
                 }
 
+                if (HTTP_METHOD_HEAD.equals(httpExchange.getRequestMethod())) {
+                    responseHeaders.add(HTTP_HEADER_CONTENT_LENGTH, Integer.toString(responseContent.length));
+                    httpExchange.sendResponseHeaders(status, -1);
+                    httpExchange.close();
+                    return;
+                }
+
                 httpExchange.sendResponseHeaders(status, responseContent.length);
                 OutputStream os = httpExchange.getResponseBody();
                 os.write(responseContent);
@@ -185,17 +196,17 @@ public class TestsiteServer implements AutoCloseable {
         }
 
         /**
-         * Check that the request is a GET request. We only support GET requests.
+         * Check that the request is a GET or HEAD request. We only support GET and HEAD requests.
          *
          * @param httpExchange The exchange object with the request method information.
-         * @throws UnsupportedRequest Thrown if this is not a GET request.
+         * @throws UnsupportedRequest Thrown if this is not a GET or HEAD request.
          */
-        private void checkMethodIsGet(HttpExchange httpExchange) throws UnsupportedRequest {
+        private void checkMethodIsSupported(HttpExchange httpExchange) throws UnsupportedRequest {
 
             String method = httpExchange.getRequestMethod();
-            if (!HTTP_METHOD_GET.equals(method))
-                throw new UnsupportedRequest(HTTP_STATUS_NOT_FOUND,
-                        String.format("Only GET methods are supported: '%s'", method));
+            if (!HTTP_METHOD_GET.equals(method) && !HTTP_METHOD_HEAD.equals(method))
+                throw new UnsupportedRequest(HTTP_STATUS_METHOD_NOT_ALLOWED,
+                        String.format("Only GET and HEAD methods are supported: '%s'", method));
         }
 
         /**
@@ -0,0 +1,37 @@
+package com.github.oliverpavey.siteindex.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlankLineFilterWriterTest {
+
+    /**
+     * Check the writer gives the same output as TextUtils.removeBlankLines(), however the text is split.
+     *
+     * @throws IOException Writing to the filter.
+     */
+    @Test
+    void matchesRemoveBlankLines() throws IOException {
+
+        final String text = "\n<html>\r\n   \r\n  <body>\n\t\n\n<p>text</p>\n</body>\r\n</html>\n\n";
+
+        final StringWriter whole = new StringWriter();
+        try (Writer writer = new BlankLineFilterWriter(whole)) {
+            writer.write(text);
+        }
+
+        final StringWriter pieces = new StringWriter();
+        try (Writer writer = new BlankLineFilterWriter(pieces)) {
+            for (int i = 0; i < text.length(); i += 3)
+                writer.write(text, i, Math.min(3, text.length() - i));
+        }
+
+        assertEquals(TextUtils.removeBlankLines(text), whole.toString());
+        assertEquals(TextUtils.removeBlankLines(text), pieces.toString());
+    }
+}
@@ -25,4 +25,18 @@ class TextUtilsTest {
         final String domain = TextUtils.extractDomain("https://sitename.com/section/page.html");
         assertEquals("https://sitename.com/", domain);
     }
+
+    /**
+     * Check text is added to the name of a file before its extension, if it has one.
+     */
+    @Test
+    void addToFileName() {
+
+        assertAll(
+                () -> assertEquals("export-shard1.ndjson", TextUtils.addToFileName("export.ndjson", "shard1")),
+                () -> assertEquals("export.tar-shard1.gz", TextUtils.addToFileName("export.tar.gz", "shard1")),
+                () -> assertEquals("export-shard1", TextUtils.addToFileName("export", "shard1")),
+                () -> assertEquals(".export-shard1", TextUtils.addToFileName(".export", "shard1"))
+        );
+    }
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.github.oliverpavey.siteindex.urlstore;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlStoreTest {
+
+    /**
+     * Check the hashed store reports each URL as new only once, and counts hits and misses.
+     */
+    @Test
+    void hashedStoreAddsOnce() {
+
+        checkAddsOnce(new HashedUrlStore());
+    }
+
+    /**
+     * Check the fingerprint store reports each URL as new only once, and counts hits and misses.
+     */
+    @Test
+    void fingerprintStoreAddsOnce() {
+
+        checkAddsOnce(new FingerprintUrlStore());
+    }
+
+    /**
+     * Check the fingerprint store stays exact as its table grows.
+     */
+    @Test
+    void fingerprintStoreExactWhenGrown() {
+
+        final UrlStore store = new FingerprintUrlStore();
+        for (int i = 0; i < 10_000; i++)
+            assertTrue(store.add("http://sitename.com/page" + i + ".html"));
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(store.contains("http://sitename.com/page" + i + ".html"));
+            assertFalse(store.contains("http://sitename.com/other" + i + ".html"));
+        }
+        assertAll(
+                () -> assertEquals(10_000, store.size()),
+                () -> assertTrue(store.stats().getEstimatedBytes() >= 10_000L * Long.BYTES, "Table grown.")
+        );
+    }
+
+    private void checkAddsOnce(UrlStore store) {
+
+        assertTrue(store.add("http://sitename.com/index.html"));
+        assertTrue(store.add("http://sitename.com/about.html"));
+        assertFalse(store.add("http://sitename.com/index.html"));
+        assertTrue(store.contains("http://sitename.com/about.html"));
+        assertFalse(store.contains("http://sitename.com/missing.html"));
+
+        final UrlStoreStats stats = store.stats();
+        assertAll(
+                () -> assertEquals(2, stats.getSize(), "Size."),
+                () -> assertEquals(1, stats.getHits(), "Hits."),
+                () -> assertEquals(1, stats.getMisses(), "Misses."),
+                () -> assertTrue(stats.getEstimatedBytes() > 0, "Estimated bytes.")
+        );
+    }
+}
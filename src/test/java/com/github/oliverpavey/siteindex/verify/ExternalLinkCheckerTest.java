@@ -0,0 +1,183 @@
+package com.github.oliverpavey.siteindex.verify;
+
+import com.github.oliverpavey.siteindex.fetch.HttpClientPageFetcher;
+import com.github.oliverpavey.siteindex.model.PageScan;
+import com.github.oliverpavey.siteindex.model.ResourceCheck;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import com.github.oliverpavey.siteindex.politeness.PolitenessScheduler;
+import com.github.oliverpavey.siteindex.testutils.TestsiteServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalLinkCheckerTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Check each unique external link is checked, and the results are used from the cache by a later
+     * run (even though the site linked to has gone).
+     */
+    @Test
+    void checkAndCache() throws Exception {
+
+        final String baseUrl;
+        try (final TestsiteServer server = new TestsiteServer()) {
+            baseUrl = server.getBaseUrl();
+            final SiteScan siteScan = siteScan(baseUrl);
+            createChecker(24).check(siteScan);
+
+            final Map<String, ResourceCheck> checks = siteScan.getExternalLinkChecks();
+            assertAll(
+                    () -> assertEquals(2, checks.size()),
+                    () -> assertEquals(200, checks.get(baseUrl + "about.html").getStatus()),
+                    () -> assertEquals(404, checks.get(baseUrl + "missing.html").getStatus())
+            );
+        }
+
+        final SiteScan rescan = siteScan(baseUrl);
+        createChecker(24).check(rescan);
+        assertAll(
+                () -> assertEquals(200, rescan.getExternalLinkChecks().get(baseUrl + "about.html").getStatus()),
+                () -> assertEquals(404, rescan.getExternalLinkChecks().get(baseUrl + "missing.html").getStatus())
+        );
+    }
+
+    /**
+     * Check the scans of one application share the cache, so each saves the results of the others,
+     * even if the cache file is replaced in the meantime.
+     */
+    @Test
+    void cacheSharedByScans() throws Exception {
+
+        final String baseUrl;
+        final ExternalLinkChecker checker = createChecker(24);
+        try (final TestsiteServer server = new TestsiteServer()) {
+            baseUrl = server.getBaseUrl();
+            checker.check(siteScan(baseUrl));
+            Files.delete(tempDir.resolve("links.tsv"));
+
+            final SiteScan otherSite = new SiteScan();
+            final PageScan pageScan = new PageScan("http://othersite.com/index.html");
+            pageScan.getExternalLinks().add(baseUrl + "index.html");
+            otherSite.getUriToPageScan().put(pageScan.getUri(), pageScan);
+            checker.check(otherSite);
+        }
+
+        final SiteScan rescan = siteScan(baseUrl);
+        rescan.getUriToPageScan().values().iterator().next().getExternalLinks().add(baseUrl + "index.html");
+        createChecker(24).check(rescan);
+        assertAll(
+                () -> assertEquals(200, rescan.getExternalLinkChecks().get(baseUrl + "about.html").getStatus()),
+                () -> assertEquals(200, rescan.getExternalLinkChecks().get(baseUrl + "index.html").getStatus())
+        );
+    }
+
+    /**
+     * Check cached results are not used once they have expired.
+     */
+    @Test
+    void expiredResultsChecked() throws Exception {
+
+        final String baseUrl;
+        try (final TestsiteServer server = new TestsiteServer()) {
+            baseUrl = server.getBaseUrl();
+            createChecker(0).check(siteScan(baseUrl));
+        }
+
+        final SiteScan rescan = siteScan(baseUrl);
+        createChecker(0).check(rescan);
+        assertEquals(0, rescan.getExternalLinkChecks().get(baseUrl + "about.html").getStatus());
+    }
+
+    /**
+     * Check no more than the permitted number of checks are in flight, in total and to each host.
+     */
+    @Test
+    void concurrencyLimits() throws Exception {
+
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final Map<String, AtomicInteger> hostInFlight = new ConcurrentHashMap<>();
+        final Map<String, AtomicInteger> maxHostInFlight = new ConcurrentHashMap<>();
+
+        final List<String> urls = new ArrayList<>();
+        for (int host = 0; host < 3; host++) {
+            for (int page = 0; page < 10; page++)
+                urls.add("http://host" + host + ".com/page" + page + ".html");
+        }
+
+        final ExternalLinkChecker checker = createChecker(24);
+        final Map<String, ResourceCheck> results = checker.checkAll(urls, url -> CompletableFuture.supplyAsync(() -> {
+            final String host = url.substring(0, url.indexOf(".com/"));
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            final int hostCount = hostInFlight.computeIfAbsent(host, key -> new AtomicInteger()).incrementAndGet();
+            maxHostInFlight.computeIfAbsent(host, key -> new AtomicInteger()).accumulateAndGet(hostCount, Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            hostInFlight.get(host).decrementAndGet();
+            inFlight.decrementAndGet();
+            return new ResourceCheck("HEAD", 200, -1, "text/html", 5, "");
+        }));
+
+        assertAll(
+                () -> assertEquals(30, results.size()),
+                () -> assertTrue(maxInFlight.get() <= 4, "Max in flight: " + maxInFlight.get()),
+                () -> assertTrue(maxHostInFlight.values().stream().allMatch(max -> max.get() <= 2),
+                        "Max in flight per host: " + maxHostInFlight)
+        );
+    }
+
+    private ExternalLinkChecker createChecker(long cacheTtlHours) {
+
+        final HttpClientPageFetcher pageFetcher = new HttpClientPageFetcher();
+        ReflectionTestUtils.setField(pageFetcher, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(pageFetcher, "readTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(pageFetcher, "poolSize", 4);
+        ReflectionTestUtils.setField(pageFetcher, "userAgent", "siteindex-test");
+        ReflectionTestUtils.invokeMethod(pageFetcher, "init");
+
+        final ResourceVerifier resourceVerifier = new ResourceVerifier(pageFetcher, new PolitenessScheduler());
+        ReflectionTestUtils.setField(resourceVerifier, "timeoutMs", 5000L);
+        ReflectionTestUtils.setField(resourceVerifier, "userAgent", "siteindex-test");
+
+        final ExternalLinkChecker checker = new ExternalLinkChecker(resourceVerifier);
+        ReflectionTestUtils.setField(checker, "enabled", true);
+        ReflectionTestUtils.setField(checker, "concurrency", 4);
+        ReflectionTestUtils.setField(checker, "maxPerHost", 2);
+        ReflectionTestUtils.setField(checker, "cacheFile", tempDir.resolve("links.tsv").toString());
+        ReflectionTestUtils.setField(checker, "cacheTtlHours", cacheTtlHours);
+        return checker;
+    }
+
+    /**
+     * @return A site of two pages, linking (externally) to the same pages of the test site server.
+     */
+    private static SiteScan siteScan(String externalUrl) {
+
+        final SiteScan siteScan = new SiteScan();
+        for (String uri : List.of("http://sitename.com/index.html", "http://sitename.com/about.html")) {
+            final PageScan pageScan = new PageScan(uri);
+            pageScan.getExternalLinks().add(externalUrl + "about.html");
+            pageScan.getExternalLinks().add(externalUrl + "missing.html");
+            pageScan.getExternalLinks().add("mailto:someone@example.com");
+            siteScan.getUriToPageScan().put(uri, pageScan);
+        }
+        return siteScan;
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.oliverpavey.siteindex.verify;
+
+import com.github.oliverpavey.siteindex.fetch.HttpClientPageFetcher;
+import com.github.oliverpavey.siteindex.model.ResourceCheck;
+import com.github.oliverpavey.siteindex.model.ResourceScan;
+import com.github.oliverpavey.siteindex.model.SiteScan;
+import com.github.oliverpavey.siteindex.politeness.PolitenessScheduler;
+import com.github.oliverpavey.siteindex.scanner.SiteScanner;
+import com.github.oliverpavey.siteindex.testutils.TestsiteServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.github.oliverpavey.siteindex.tools.TextUtils.extractDomain;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "siteindex.verify.enabled=true")
+class ResourceVerifierTest {
+
+    @Autowired
+    ResourceVerifier resourceVerifier;
+
+    @Autowired
+    SiteScanner siteScanner;
+
+    @Autowired
+    HttpClientPageFetcher pageFetcher;
+
+    /**
+     * Check a resource of the test site is found with HEAD, with its size and type.
+     */
+    @Test
+    void checkExisting() throws Exception {
+
+        try (final TestsiteServer server = new TestsiteServer()) {
+            final ResourceCheck check = resourceVerifier.check(server.getBaseUrl() + "images/teddy.jpg").get();
+            assertAll(
+                    () -> assertEquals("HEAD", check.getMethod()),
+                    () -> assertEquals(200, check.getStatus()),
+                    () -> assertEquals(211576, check.getContentLength()),
+                    () -> assertEquals("image/jpeg", check.getContentType()),
+                    () -> assertTrue(check.isOk())
+            );
+        }
+    }
+
+    /**
+     * Check a missing resource is reported as not found.
+     */
+    @Test
+    void checkMissing() throws Exception {
+
+        try (final TestsiteServer server = new TestsiteServer()) {
+            final ResourceCheck check = resourceVerifier.check(server.getBaseUrl() + "images/missing.jpg").get();
+            assertAll(
+                    () -> assertEquals(404, check.getStatus()),
+                    () -> assertFalse(check.isOk())
+            );
+        }
+    }
+
+    /**
+     * Scan the test site, and check each of its own resources is verified.
+     */
+    @Test
+    void scanVerifiesResources() {
+
+        try (final TestsiteServer server = new TestsiteServer()) {
+            final Optional<SiteScan> siteScan = siteScanner.scan(server.getBaseUrl() + "index.html");
+            assertTrue(siteScan.isPresent(), "Site scan did not return data");
+
+            final List<ResourceScan> localResources = siteScan.get().getUriToResourceScan().values().stream()
+                    .filter(resource -> resource.getUri().startsWith(server.getBaseUrl()))
+                    .collect(Collectors.toList());
+            assertFalse(localResources.isEmpty());
+            for (ResourceScan resource : localResources) {
+                assertNotNull(resource.getCheck(), resource.getUri());
+                assertTrue(resource.getCheck().isOk(), resource.getUri());
+                assertTrue(resource.getCheck().getContentLength() > 0, resource.getUri());
+            }
+        }
+    }
+
+    /**
+     * Check a resource is not requested while its host is at its politeness limit, and is once the limit allows.
+     */
+    @Test
+    void checkWaitsForHost() throws Exception {
+
+        final PolitenessScheduler politenessScheduler = new PolitenessScheduler();
+        ReflectionTestUtils.setField(politenessScheduler, "maxInFlightPerHost", 1);
+        final ResourceVerifier verifier = new ResourceVerifier(pageFetcher, politenessScheduler);
+        ReflectionTestUtils.setField(verifier, "timeoutMs", 5000L);
+        ReflectionTestUtils.setField(verifier, "userAgent", "siteindex-test");
+
+        try (final TestsiteServer server = new TestsiteServer()) {
+            final String host = extractDomain(server.getBaseUrl());
+            assertEquals(0, politenessScheduler.tryAcquire(host), "Page request to the host.");
+            final CompletableFuture<ResourceCheck> check = verifier.check(server.getBaseUrl() + "images/teddy.jpg");
+            Thread.sleep(200);
+            assertFalse(check.isDone(), "Checked while the host was at its limit.");
+
+            politenessScheduler.release(host);
+            assertEquals(200, check.get().getStatus());
+            assertEquals(0, politenessScheduler.tryAcquire(host), "Permission released after the check.");
+        }
+    }
+
+    /**
+     * Check each resource is checked once, however often it is submitted, with no more than the
+     * permitted number of checks in flight.
+     */
+    @Test
+    void checksEachResourceOnce() throws Exception {
+
+        final AtomicInteger checks = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final ResourceVerification verification = new ResourceVerification(uri -> CompletableFuture.supplyAsync(() -> {
+            checks.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return new ResourceCheck("HEAD", 200, 10, "image/png", 5, "");
+        }), true, 2);
+
+        final SiteScan siteScan = new SiteScan();
+        for (int i = 0; i < 10; i++) {
+            final String uri = "http://sitename.com/image" + i + ".png";
+            siteScan.getUriToResourceScan().put(uri, new ResourceScan(uri));
+            verification.submit(uri);
+            verification.submit(uri);
+        }
+        verification.submit("data:image/png;base64,AAAA");
+        verification.apply(siteScan);
+
+        assertAll(
+                () -> assertEquals(10, checks.get()),
+                () -> assertTrue(maxInFlight.get() <= 2, "Max in flight: " + maxInFlight.get()),
+                () -> assertTrue(siteScan.getUriToResourceScan().values().stream()
+                        .allMatch(resource -> resource.getCheck() != null && resource.getCheck().isOk()))
+        );
+    }
+}